@@ -0,0 +1,19 @@
+#!/bin/sh
+# 以 aot profile 打包，并做一次训练运行生成 AppCDS 归档（上下文刷新完成即退出，不触发 GDAL/OpenCV 初始化）
+set -e
+cd "$(dirname "$0")/.."
+
+JAR=RasterProcessing-0.0.1-SNAPSHOT.jar
+
+./mvnw -B -Paot -DskipTests package
+rm -rf target/app
+java -Djarmode=tools -jar "target/$JAR" extract --destination target/app
+
+cd target/app
+java -XX:ArchiveClassesAtExit=application.jsa \
+     -Dspring.aot.enabled=true \
+     -Dspring.context.exit=onRefresh \
+     -Draster.catalog.scan-on-startup=false \
+     -jar "$JAR"
+
+echo "启动命令: cd target/app && java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar $JAR"
@@ -0,0 +1,157 @@
+package org.example.rasterprocessing.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.rasterprocessing.service.MemoryBudget;
+import org.example.rasterprocessing.service.MemoryCostEstimator;
+import org.example.rasterprocessing.service.WatermarkResultCache;
+import org.example.rasterprocessing.util.FileTypeDetector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存准入控制：在进入控制器之前按文件头估算开销并从全局预算中预留，请求完成后归还；
+ * 预算不足且排队已满或等待超时时直接返回 429。结果缓存中已有的嵌入/提取不做实际处理，不占用预算
+ */
+@Component
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String RESERVATION = AdmissionInterceptor.class.getName() + ".reservation";
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private MemoryCostEstimator estimator;
+
+    @Autowired
+    private WatermarkResultCache watermarkResultCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!memoryBudget.isEnabled()) {
+            return true;
+        }
+        String operation = operation(request);
+        if (operation == null || cached(operation, request)) {
+            return true;
+        }
+        long cost = estimate(operation, request);
+        try {
+            request.setAttribute(RESERVATION, memoryBudget.acquire(operation, cost));
+            return true;
+        } catch (MemoryBudget.RejectedException e) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("success", false);
+            body.put("message", e.getMessage());
+            body.put("estimatedBytes", cost);
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getWriter(), body);
+            return false;
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object reservation = request.getAttribute(RESERVATION);
+        if (reservation instanceof MemoryBudget.Reservation) {
+            ((MemoryBudget.Reservation) reservation).close();
+        }
+    }
+
+    private static String operation(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (uri.endsWith("/api/watermark/embed")) {
+            return "embed";
+        } else if (uri.endsWith("/api/watermark/extract")) {
+            return "extract";
+        } else if (uri.endsWith("/api/watermark/update")) {
+            return "update";
+        } else if (uri.endsWith("/api/raster/pixels")) {
+            return "pixels";
+        }
+        return null;
+    }
+
+    /**
+     * 结果缓存命中时控制器直接返回缓存结果；探测与控制器取用之间条目恰好被淘汰的少数请求会不经预算重新计算
+     */
+    private boolean cached(String operation, HttpServletRequest request) {
+        switch (operation) {
+            case "embed": {
+                String inputPath = request.getParameter("inputPath");
+                String outputPath = request.getParameter("outputPath");
+                String watermarkText = request.getParameter("watermarkText");
+                String verify = request.getParameter("verify");
+                String type = resultType(inputPath);
+                // verify 的写法不止 true/false，拿不准时按需要校验报告探测，最多只是少跳过一次准入
+                return type != null && outputPath != null && watermarkText != null
+                        && watermarkResultCache.containsEmbedding(inputPath, outputPath, watermarkText, type,
+                        verify != null && !"false".equalsIgnoreCase(verify.trim()));
+            }
+            case "extract": {
+                String filePath = request.getParameter("filePath");
+                String type = resultType(filePath);
+                return type != null && request.getParameter("watermarkLength") != null
+                        && watermarkResultCache.containsExtraction(filePath, intParameter(request, "watermarkLength", 255), type);
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 与控制器相同的分类：先按图像格式，再按栅格格式
+     */
+    private static String resultType(String path) {
+        if (path == null) {
+            return null;
+        } else if (FileTypeDetector.isImageFormat(path)) {
+            return "image";
+        } else if (FileTypeDetector.isRasterFormat(path)) {
+            return "raster";
+        }
+        return null;
+    }
+
+    private long estimate(String operation, HttpServletRequest request) {
+        switch (operation) {
+            case "embed":
+                return request.getParameter("inputPath") == null ? 0
+                        : estimator.embed(request.getParameter("inputPath"), request.getParameter("watermarkText"));
+            case "extract":
+                return request.getParameter("filePath") == null ? 0
+                        : estimator.extract(request.getParameter("filePath"), intParameter(request, "watermarkLength", 255));
+            case "update":
+                return request.getParameter("filePath") == null ? 0
+                        : estimator.update(request.getParameter("filePath"), request.getParameter("watermarkText"));
+            case "pixels":
+                return request.getParameter("filePath") == null ? 0 : estimator.pixels(request.getParameter("filePath"),
+                        intParameter(request, "width", 10), intParameter(request, "height", 10));
+            default:
+                return 0;
+        }
+    }
+
+    private static int intParameter(HttpServletRequest request, String name, int defaultValue) {
+        try {
+            String value = request.getParameter(name);
+            return value == null ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
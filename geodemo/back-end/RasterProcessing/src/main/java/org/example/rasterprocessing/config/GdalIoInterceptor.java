@@ -0,0 +1,29 @@
+package org.example.rasterprocessing.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.rasterprocessing.service.GdalIoAccounting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 为每个栅格/水印请求开启 GDAL I/O 记账
+ */
+@Component
+public class GdalIoInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private GdalIoAccounting accounting;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        accounting.begin(request.getMethod() + " " + request.getRequestURI());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        accounting.end();
+    }
+}
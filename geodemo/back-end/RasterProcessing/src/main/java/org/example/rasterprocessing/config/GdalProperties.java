@@ -0,0 +1,145 @@
+package org.example.rasterprocessing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * GDAL 块缓存与 I/O 配置（前缀 raster.gdal）
+ * 未显式配置的项取所选 profile 的默认值
+ */
+@Component
+@ConfigurationProperties(prefix = "raster.gdal")
+public class GdalProperties {
+
+    /**
+     * 预设配置档
+     */
+    public enum Profile {
+        /** 交互式像素读取：大块缓存，单请求少线程，开启 VSI 缓存 */
+        INTERACTIVE("25%", "2", true, 64L * 1024 * 1024),
+        /** 批量水印处理：顺序扫描复用率低，小块缓存，多线程解码 */
+        BULK("5%", "ALL_CPUS", false, 16L * 1024 * 1024);
+
+        private final String cacheMax;
+        private final String numThreads;
+        private final boolean vsiCache;
+        private final long vsiCacheSize;
+
+        Profile(String cacheMax, String numThreads, boolean vsiCache, long vsiCacheSize) {
+            this.cacheMax = cacheMax;
+            this.numThreads = numThreads;
+            this.vsiCache = vsiCache;
+            this.vsiCacheSize = vsiCacheSize;
+        }
+
+        public String getCacheMax() {
+            return cacheMax;
+        }
+
+        public String getNumThreads() {
+            return numThreads;
+        }
+
+        public boolean isVsiCache() {
+            return vsiCache;
+        }
+
+        public long getVsiCacheSize() {
+            return vsiCacheSize;
+        }
+    }
+
+    private Profile profile = Profile.INTERACTIVE;
+
+    /** 块缓存上限，支持 "512MB"、"2GB"、"25%"（物理内存百分比）或字节数 */
+    private String cacheMax;
+
+    /** GDAL_NUM_THREADS，数字或 ALL_CPUS；同时控制 GTiff 内 Deflate/JPEG 等压缩块的多线程解码 */
+    private String numThreads;
+
+    private Boolean vsiCache;
+
+    private Long vsiCacheSize;
+
+    /** 额外的 GDAL 配置项，原样传给 gdal.SetConfigOption */
+    private Map<String, String> options = new LinkedHashMap<>();
+
+    /** 每请求 I/O 统计保留的最近请求数 */
+    private int recentRequests = 200;
+
+    public String effectiveCacheMax() {
+        return cacheMax != null ? cacheMax : profile.getCacheMax();
+    }
+
+    public String effectiveNumThreads() {
+        return numThreads != null ? numThreads : profile.getNumThreads();
+    }
+
+    public boolean effectiveVsiCache() {
+        return vsiCache != null ? vsiCache : profile.isVsiCache();
+    }
+
+    public long effectiveVsiCacheSize() {
+        return vsiCacheSize != null ? vsiCacheSize : profile.getVsiCacheSize();
+    }
+
+    // Getters and Setters
+    public Profile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    public String getCacheMax() {
+        return cacheMax;
+    }
+
+    public void setCacheMax(String cacheMax) {
+        this.cacheMax = cacheMax;
+    }
+
+    public String getNumThreads() {
+        return numThreads;
+    }
+
+    public void setNumThreads(String numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    public Boolean getVsiCache() {
+        return vsiCache;
+    }
+
+    public void setVsiCache(Boolean vsiCache) {
+        this.vsiCache = vsiCache;
+    }
+
+    public Long getVsiCacheSize() {
+        return vsiCacheSize;
+    }
+
+    public void setVsiCacheSize(Long vsiCacheSize) {
+        this.vsiCacheSize = vsiCacheSize;
+    }
+
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    public void setOptions(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public int getRecentRequests() {
+        return recentRequests;
+    }
+
+    public void setRecentRequests(int recentRequests) {
+        this.recentRequests = recentRequests;
+    }
+}
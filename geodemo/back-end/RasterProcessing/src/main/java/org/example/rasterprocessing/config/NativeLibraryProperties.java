@@ -0,0 +1,82 @@
+package org.example.rasterprocessing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地库加载配置（前缀 raster.native）
+ */
+@Component
+@ConfigurationProperties(prefix = "raster.native")
+public class NativeLibraryProperties {
+
+    /** 本地库所在目录；为空时沿用旧位置 ${user.dir}/src/main/resources */
+    private String libraryPath;
+
+    /** OpenCV Java 库名（不含平台前后缀），按平台解析为 libxxx.so / xxx.dll / libxxx.dylib */
+    private String opencvLibrary = "opencv_java4120";
+
+    /** 在 GDAL 之前按顺序从 libraryPath 预加载的依赖库名（同样不含平台前后缀） */
+    private List<String> preload = new ArrayList<>();
+
+    /** 需要注册的 GDAL 驱动短名（如 GTiff、COG、netCDF，区分大小写），按顺序注册，为空表示全部；VRT 与 MEM 总会注册 */
+    private List<String> gdalDrivers = new ArrayList<>();
+
+    /** 是否加载 GDAL 插件驱动，关闭可跳过插件目录扫描 */
+    private boolean gdalPlugins = true;
+
+    /** 启动完成后在后台预先初始化 GDAL，首个读取请求无需等待驱动注册 */
+    private boolean warmup = true;
+
+    // Getters and Setters
+    public String getLibraryPath() {
+        return libraryPath;
+    }
+
+    public void setLibraryPath(String libraryPath) {
+        this.libraryPath = libraryPath;
+    }
+
+    public String getOpencvLibrary() {
+        return opencvLibrary;
+    }
+
+    public void setOpencvLibrary(String opencvLibrary) {
+        this.opencvLibrary = opencvLibrary;
+    }
+
+    public List<String> getPreload() {
+        return preload;
+    }
+
+    public void setPreload(List<String> preload) {
+        this.preload = preload;
+    }
+
+    public List<String> getGdalDrivers() {
+        return gdalDrivers;
+    }
+
+    public void setGdalDrivers(List<String> gdalDrivers) {
+        this.gdalDrivers = gdalDrivers;
+    }
+
+    public boolean isGdalPlugins() {
+        return gdalPlugins;
+    }
+
+    public void setGdalPlugins(boolean gdalPlugins) {
+        this.gdalPlugins = gdalPlugins;
+    }
+
+    public boolean isWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(boolean warmup) {
+        this.warmup = warmup;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.rasterprocessing.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 栅格并行处理线程池配置
+ */
+@Configuration
+public class RasterExecutorConfig {
+
+    /**
+     * 按块并行读取/计算使用的共享线程池，线程数默认等于 CPU 核数
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService rasterWorkerPool(@Value("${raster.worker-threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "raster-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(size, factory);
+    }
+}
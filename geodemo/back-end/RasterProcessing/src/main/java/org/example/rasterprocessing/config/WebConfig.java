@@ -0,0 +1,26 @@
+package org.example.rasterprocessing.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Web 层配置
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private GdalIoInterceptor gdalIoInterceptor;
+
+    @Autowired
+    private AdmissionInterceptor admissionInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(gdalIoInterceptor).addPathPatterns("/api/raster/**", "/api/watermark/**");
+        registry.addInterceptor(admissionInterceptor).addPathPatterns("/api/raster/pixels",
+                "/api/watermark/embed", "/api/watermark/extract", "/api/watermark/update");
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.rasterprocessing.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.rasterprocessing.service.FileDownloadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * 下载控制器 - 取回水印、波段运算等接口写到服务器上的结果文件
+ */
+@RestController
+@RequestMapping("/api/download")
+public class DownloadController {
+
+    // Tomcat 的 sendfile 请求属性（org.apache.catalina.Globals），与 DefaultServlet 发送静态文件的方式相同
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private FileDownloadService fileDownloadService;
+
+    @Value("${raster.download.sendfile-min-bytes:49152}")
+    private long sendfileMinBytes;
+
+    /**
+     * 下载文件，支持 Range 续传与 ETag / Last-Modified 条件请求；HEAD 请求只返回响应头
+     * 连接器支持时由 Tomcat 在请求结束后用 sendfile 零拷贝发送，否则用 FileChannel.transferTo 写出
+     * @param filePath 文件路径，须在 raster.download.roots 下
+     * @return 文件内容（200 / 206），未变化时 304，范围无法满足时 416
+     */
+    @GetMapping
+    public ResponseEntity<?> download(@RequestParam String filePath, HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        FileDownloadService.Download download;
+        try {
+            Path file = fileDownloadService.resolve(filePath);
+            download = fileDownloadService.plan(file, request.getHeader("Range"), request.getHeader("If-None-Match"),
+                    request.getDateHeader("If-Modified-Since"), request.getHeader("If-Range"));
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("错误: 文件不存在: " + filePath);
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("错误: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+
+        response.setStatus(download.getStatus());
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("ETag", download.getEtag());
+        response.setDateHeader("Last-Modified", download.getLastModified());
+        if (download.getStatus() == HttpStatus.NOT_MODIFIED.value()) {
+            return null;
+        }
+        if (download.getStatus() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+            response.setHeader("Content-Range", download.getContentRange());
+            response.setContentLengthLong(0);
+            return null;
+        }
+        if (download.getStatus() == HttpStatus.PARTIAL_CONTENT.value()) {
+            response.setHeader("Content-Range", download.getContentRange());
+        }
+        response.setContentType(download.getContentType());
+        response.setHeader("Content-Disposition", ContentDisposition.attachment()
+                .filename(download.getPath().getFileName().toString(), StandardCharsets.UTF_8).build().toString());
+        response.setContentLengthLong(download.getLength());
+        if (!download.hasBody() || "HEAD".equals(request.getMethod())) {
+            return null;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED)) && download.getLength() >= sendfileMinBytes) {
+            response.setHeader("X-Transfer-Mode", "sendfile");
+            request.setAttribute(SENDFILE_FILENAME, download.getPath().toString());
+            request.setAttribute(SENDFILE_START, download.getStart());
+            request.setAttribute(SENDFILE_END, download.getStart() + download.getLength());
+            return null;
+        }
+        response.setHeader("X-Transfer-Mode", "transferTo");
+        fileDownloadService.transfer(download, response.getOutputStream());
+        return null;
+    }
+}
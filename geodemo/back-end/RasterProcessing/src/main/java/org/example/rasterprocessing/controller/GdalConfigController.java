@@ -0,0 +1,107 @@
+package org.example.rasterprocessing.controller;
+
+import org.example.rasterprocessing.config.GdalProperties;
+import org.example.rasterprocessing.service.GdalConfigService;
+import org.example.rasterprocessing.service.GdalIoAccounting;
+import org.example.rasterprocessing.service.NativeLibraryLoader;
+import org.example.rasterprocessing.service.NativeWorkerPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * GDAL 缓存与 I/O 配置控制器
+ */
+@RestController
+@RequestMapping("/api/gdal")
+public class GdalConfigController {
+
+    @Autowired
+    private GdalConfigService gdalConfigService;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
+
+    @Autowired
+    private NativeWorkerPool nativeWorkerPool;
+
+    /**
+     * 获取当前生效的 GDAL 配置
+     */
+    @GetMapping("/config")
+    public ResponseEntity<?> getConfig() {
+        return ResponseEntity.ok(gdalConfigService.describe());
+    }
+
+    /**
+     * 运行时调整 GDAL 配置，未传的参数保持不变
+     * @param cacheMax 块缓存上限，如 512MB、25%
+     * @param numThreads GDAL_NUM_THREADS
+     * @param vsiCache 是否开启 VSI 缓存
+     * @param vsiCacheSize VSI 缓存字节数
+     * @param options 其他 GDAL 配置项
+     */
+    @PutMapping("/config")
+    public ResponseEntity<?> updateConfig(
+            @RequestParam(required = false) String cacheMax,
+            @RequestParam(required = false) String numThreads,
+            @RequestParam(required = false) Boolean vsiCache,
+            @RequestParam(required = false) Long vsiCacheSize,
+            @RequestBody(required = false) Map<String, String> options) {
+        try {
+            gdalConfigService.update(cacheMax, numThreads, vsiCache, vsiCacheSize, options);
+            return ResponseEntity.ok(gdalConfigService.describe());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 切换配置档
+     * @param name interactive 或 bulk
+     */
+    @PostMapping("/profile")
+    public ResponseEntity<?> switchProfile(@RequestParam String name) {
+        try {
+            GdalProperties.Profile profile = GdalProperties.Profile.valueOf(name.toUpperCase(Locale.ROOT));
+            gdalConfigService.switchProfile(profile);
+            return ResponseEntity.ok(gdalConfigService.describe());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: 未知的配置档 " + name);
+        }
+    }
+
+    /**
+     * 块缓存使用量、进程读取字节数与最近请求读取的块数、字节数
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("summary", gdalIoAccounting.summary());
+        response.put("recentRequests", gdalIoAccounting.recentRequests());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 本地库加载状态与初始化耗时
+     */
+    @GetMapping("/native")
+    public ResponseEntity<?> getNativeStatus() {
+        return ResponseEntity.ok(nativeLibraryLoader.status());
+    }
+
+    /**
+     * 本地库工作进程池状态
+     */
+    @GetMapping("/workers")
+    public ResponseEntity<?> getWorkerStatus() {
+        return ResponseEntity.ok(nativeWorkerPool.status());
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.rasterprocessing.controller;
+
+import org.example.rasterprocessing.service.MemoryBudget;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存预算不足时统一返回 429
+ * 控制器在服务中预留工作内存被拒绝时，只需把 RejectedException 原样抛出（不要被通用的 catch (Exception) 转成 400）
+ */
+@RestControllerAdvice
+public class MemoryBudgetExceptionHandler {
+
+    @ExceptionHandler(MemoryBudget.RejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleRejected(MemoryBudget.RejectedException e) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.rasterprocessing.controller;
+
+import org.example.rasterprocessing.model.MosaicRequest;
+import org.example.rasterprocessing.model.PointSampleRequest;
+import org.example.rasterprocessing.service.MosaicService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 镶嵌控制器 - 把一组相邻栅格当作一个数据集访问
+ */
+@RestController
+@RequestMapping("/api/mosaic")
+public class MosaicController {
+
+    @Autowired
+    private MosaicService mosaicService;
+
+    /**
+     * 创建或重建镶嵌
+     */
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody MosaicRequest request) {
+        try {
+            return ResponseEntity.ok(mosaicService.create(request.getName(), request.getFiles(),
+                    request.getDirectory(), request.getPattern()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 已登记的镶嵌
+     */
+    @GetMapping
+    public ResponseEntity<?> list() {
+        return ResponseEntity.ok(mosaicService.list());
+    }
+
+    @GetMapping("/{name}")
+    public ResponseEntity<?> info(@PathVariable String name) {
+        try {
+            return ResponseEntity.ok(mosaicService.info(name));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{name}")
+    public ResponseEntity<?> delete(@PathVariable String name) {
+        try {
+            if (!mosaicService.delete(name)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok().build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取镶嵌网格中的像素窗口
+     */
+    @GetMapping("/{name}/pixels")
+    public ResponseEntity<?> pixels(
+            @PathVariable String name,
+            @RequestParam(defaultValue = "1") int bandIndex,
+            @RequestParam int x,
+            @RequestParam int y,
+            @RequestParam int width,
+            @RequestParam int height) {
+        try {
+            return ResponseEntity.ok(mosaicService.readPixels(name, bandIndex, x, y, width, height));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 统计镶嵌像素
+     * @param bbox 可选，镶嵌坐标系下的 minX,minY,maxX,maxY
+     */
+    @GetMapping("/{name}/statistics")
+    public ResponseEntity<?> statistics(
+            @PathVariable String name,
+            @RequestParam(defaultValue = "1") int bandIndex,
+            @RequestParam(required = false) String bbox) {
+        try {
+            double[] bounds = null;
+            if (bbox != null && !bbox.isEmpty()) {
+                String[] parts = bbox.split(",");
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException("bbox 格式应为 minX,minY,maxX,maxY");
+                }
+                bounds = new double[4];
+                for (int i = 0; i < 4; i++) {
+                    bounds[i] = Double.parseDouble(parts[i].trim());
+                }
+            }
+            return ResponseEntity.ok(mosaicService.statistics(name, bandIndex, bounds));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 点采样，请求体同 /api/raster/sample（filePath 忽略）
+     */
+    @PostMapping("/{name}/sample")
+    public ResponseEntity<?> sample(@PathVariable String name, @RequestBody PointSampleRequest request) {
+        try {
+            return ResponseEntity.ok(mosaicService.sample(name, request));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.rasterprocessing.controller;
+
+import org.example.rasterprocessing.entity.RasterCatalogEntry;
+import org.example.rasterprocessing.service.CoordinateTransformService;
+import org.example.rasterprocessing.service.RasterCatalogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 栅格目录控制器 - 按空间范围检索栅格
+ */
+@RestController
+@RequestMapping("/api/raster")
+public class RasterCatalogController {
+
+    @Autowired
+    private RasterCatalogService rasterCatalogService;
+
+    /**
+     * 按外包矩形检索覆盖该范围的栅格
+     * @param bbox minX,minY,maxX,maxY
+     * @param crs bbox 所用坐标系，默认 EPSG:4326
+     * @param limit 最多返回条数
+     * @return 目录条目列表
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> search(
+            @RequestParam String bbox,
+            @RequestParam(defaultValue = CoordinateTransformService.WGS84) String crs,
+            @RequestParam(defaultValue = "1000") int limit) {
+        try {
+            String[] parts = bbox.split(",");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("bbox 格式应为 minX,minY,maxX,maxY");
+            }
+            double[] bounds = new double[4];
+            for (int i = 0; i < 4; i++) {
+                bounds[i] = Double.parseDouble(parts[i].trim());
+            }
+            List<RasterCatalogEntry> results = rasterCatalogService.search(bounds, crs, limit);
+            return ResponseEntity.ok(results);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 触发一次增量扫描
+     */
+    @PostMapping("/catalog/scan")
+    public ResponseEntity<?> scan() {
+        try {
+            return ResponseEntity.ok(rasterCatalogService.scan());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 目录状态
+     */
+    @GetMapping("/catalog/status")
+    public ResponseEntity<?> status() {
+        return ResponseEntity.ok(rasterCatalogService.status());
+    }
+}
@@ -1,12 +1,38 @@
 package org.example.rasterprocessing.controller;
 
+import org.example.rasterprocessing.model.BandMathRequest;
+import org.example.rasterprocessing.model.PointSampleRequest;
 import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.model.TemporalStatisticsRequest;
+import org.example.rasterprocessing.model.TerrainRequest;
+import org.example.rasterprocessing.model.ZarrExportRequest;
+import org.example.rasterprocessing.model.ZonalStatisticsRequest;
+import org.example.rasterprocessing.service.BandMathService;
+import org.example.rasterprocessing.service.MemoryBudget;
+import org.example.rasterprocessing.service.PointSamplingService;
+import org.example.rasterprocessing.service.QuicklookService;
+import org.example.rasterprocessing.service.RasterReadCoalescer;
 import org.example.rasterprocessing.service.RasterReaderService;
+import org.example.rasterprocessing.service.ReprojectionService;
+import org.example.rasterprocessing.service.TemporalStatisticsService;
+import org.example.rasterprocessing.service.TerrainService;
+import org.example.rasterprocessing.service.ZarrExportService;
+import org.example.rasterprocessing.service.ZonalStatisticsService;
+import org.example.rasterprocessing.util.RasterBuffer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 栅格数据读取控制器
@@ -15,9 +41,42 @@ import java.util.Map;
 @RequestMapping("/api/raster")
 public class RasterController {
 
+    // /pixels/raw 每段缓冲的最大字节数
+    private static final long RAW_STRIP_BYTES = 64L << 20;
+
     @Autowired
     private RasterReaderService rasterReaderService;
 
+    @Autowired
+    private RasterReadCoalescer rasterReadCoalescer;
+
+    @Autowired
+    private PointSamplingService pointSamplingService;
+
+    @Autowired
+    private ZonalStatisticsService zonalStatisticsService;
+
+    @Autowired
+    private ReprojectionService reprojectionService;
+
+    @Autowired
+    private QuicklookService quicklookService;
+
+    @Autowired
+    private BandMathService bandMathService;
+
+    @Autowired
+    private ZarrExportService zarrExportService;
+
+    @Autowired
+    private TerrainService terrainService;
+
+    @Autowired
+    private TemporalStatisticsService temporalStatisticsService;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
     /**
      * 获取栅格数据的基本信息
      * @param filePath 文件路径
@@ -26,13 +85,27 @@ public class RasterController {
     @GetMapping("/info")
     public ResponseEntity<?> getRasterInfo(@RequestParam String filePath) {
         try {
-            RasterInfo rasterInfo = rasterReaderService.readRasterInfo(filePath);
+            RasterInfo rasterInfo = rasterReadCoalescer.readRasterInfo(filePath);
             return ResponseEntity.ok(rasterInfo);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("错误: " + e.getMessage());
         }
     }
 
+    /**
+     * 批量获取栅格数据的基本信息
+     * @param filePaths 文件路径列表
+     * @return 每个文件的信息或错误，顺序与请求一致
+     */
+    @PostMapping("/info/batch")
+    public ResponseEntity<?> getRasterInfoBatch(@RequestBody List<String> filePaths) {
+        try {
+            return ResponseEntity.ok(rasterReaderService.readRasterInfoBatch(filePaths));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取栅格数据的像素值
      * @param filePath 文件路径
@@ -52,13 +125,96 @@ public class RasterController {
             @RequestParam(defaultValue = "10") int width,
             @RequestParam(defaultValue = "10") int height) {
         try {
-            double[] pixels = rasterReaderService.readPixelValues(filePath, bandIndex, x, y, width, height);
+            double[] pixels = rasterReadCoalescer.readPixelValues(filePath, bandIndex, x, y, width, height);
             return ResponseEntity.ok(pixels);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("错误: " + e.getMessage());
         }
     }
 
+    /**
+     * 以二进制流获取像素窗口，窗口大小不受 Java 数组长度限制
+     * 窗口按 RAW_STRIP_BYTES 分段读入堆外 RasterBuffer，按行优先、小端序 Float64 逐段写出；尺寸与缓冲实现在响应头中。
+     * 同时驻留的只有一段，预算只预留一段的大小，写完后释放
+     */
+    @GetMapping("/pixels/raw")
+    public ResponseEntity<?> getPixelValuesRaw(
+            @RequestParam String filePath,
+            @RequestParam(defaultValue = "1") int bandIndex,
+            @RequestParam(defaultValue = "0") int x,
+            @RequestParam(defaultValue = "0") int y,
+            @RequestParam int width,
+            @RequestParam int height) {
+        MemoryBudget.Reservation reservation = null;
+        RasterBuffer buffer = null;
+        try {
+            RasterInfo info = rasterReaderService.readRasterInfo(filePath);
+            if (width <= 0 || height <= 0 || x < 0 || y < 0 || x >= info.getWidth() || y >= info.getHeight()) {
+                throw new IllegalArgumentException("无效的窗口: (" + x + ", " + y + ") " + width + "x" + height
+                        + "，栅格尺寸 " + info.getWidth() + "x" + info.getHeight());
+            }
+            // 超出栅格的部分截掉
+            int w = Math.min(width, info.getWidth() - x);
+            int h = Math.min(height, info.getHeight() - y);
+            int stripRows = (int) Math.max(1, Math.min(h, RAW_STRIP_BYTES / ((long) w * Double.BYTES)));
+            reservation = memoryBudget.isEnabled()
+                    ? memoryBudget.acquire("pixels-raw", (long) w * stripRows * Double.BYTES) : null;
+            // 第一段在返回响应前读取，文件或波段错误仍按 400 返回
+            buffer = rasterReaderService.readPixelBuffer(filePath, bandIndex, x, y, w, stripRows);
+            RasterBuffer first = buffer;
+            MemoryBudget.Reservation held = reservation;
+            StreamingResponseBody body = out -> {
+                RasterBuffer strip = first;
+                try {
+                    int row = 0;
+                    while (true) {
+                        strip.writeTo(out);
+                        row += strip.getHeight();
+                        if (row >= h) {
+                            break;
+                        }
+                        int rows = Math.min(stripRows, h - row);
+                        if (rows != strip.getHeight()) {
+                            strip.close();
+                            strip = RasterBuffer.allocate(w, rows);
+                        }
+                        rasterReaderService.readPixelBuffer(filePath, bandIndex, x, y + row, strip);
+                    }
+                } finally {
+                    strip.close();
+                    if (held != null) {
+                        held.close();
+                    }
+                }
+            };
+            ResponseEntity<StreamingResponseBody> response = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength((long) w * h * Double.BYTES)
+                    .header("X-Raster-Width", String.valueOf(w))
+                    .header("X-Raster-Height", String.valueOf(h))
+                    .header("X-Raster-Data-Type", "Float64")
+                    .header("X-Raster-Buffer", buffer.getBackend())
+                    .body(body);
+            buffer = null;
+            reservation = null;
+            return response;
+        } catch (MemoryBudget.RejectedException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.badRequest().body("错误: 读取被中断");
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        } finally {
+            if (buffer != null) {
+                buffer.close();
+            }
+            if (reservation != null) {
+                reservation.close();
+            }
+        }
+    }
+
     /**
      * 获取栅格数据的统计信息
      * @param filePath 文件路径
@@ -70,10 +226,263 @@ public class RasterController {
             @RequestParam String filePath,
             @RequestParam(defaultValue = "1") int bandIndex) {
         try {
-            Map<String, Double> statistics = rasterReaderService.getRasterStatistics(filePath, bandIndex);
+            Map<String, Double> statistics = rasterReadCoalescer.getRasterStatistics(filePath, bandIndex);
             return ResponseEntity.ok(statistics);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("错误: " + e.getMessage());
         }
     }
+
+    /**
+     * 批量点采样
+     * @param request 文件路径、坐标系、波段和点坐标列表
+     * @return 每个波段按请求顺序排列的采样值
+     */
+    @PostMapping("/sample")
+    public ResponseEntity<?> samplePoints(@RequestBody PointSampleRequest request) {
+        try {
+            return ResponseEntity.ok(pointSamplingService.sample(request));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 分区统计
+     * @param request 文件路径、波段、GeoJSON 面要素或外包矩形、直方图设置
+     * @return 每个区域的统计信息
+     */
+    @PostMapping("/statistics/zonal")
+    public ResponseEntity<?> getZonalStatistics(@RequestBody ZonalStatisticsRequest request) {
+        try {
+            return ResponseEntity.ok(zonalStatisticsService.compute(request));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在目标坐标系下读取像素窗口
+     * @param filePath 文件路径
+     * @param crs 目标坐标系，如 EPSG:3857、EPSG:4326、EPSG:4490
+     * @param bbox 目标坐标系下的范围 minX,minY,maxX,maxY，为空表示整个栅格
+     * @param resolution 目标分辨率，为空则自动估算
+     * @param bandIndex 波段索引（从1开始）
+     * @param resampling 重采样方法
+     * @return 像素值及窗口的地理参考
+     */
+    @GetMapping("/warp")
+    public ResponseEntity<?> getWarpedPixels(
+            @RequestParam String filePath,
+            @RequestParam String crs,
+            @RequestParam(required = false) String bbox,
+            @RequestParam(required = false) Double resolution,
+            @RequestParam(defaultValue = "1") int bandIndex,
+            @RequestParam(defaultValue = "near") String resampling) {
+        try {
+            double[] bounds = null;
+            if (bbox != null && !bbox.isEmpty()) {
+                String[] parts = bbox.split(",");
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException("bbox 格式应为 minX,minY,maxX,maxY");
+                }
+                bounds = new double[4];
+                for (int i = 0; i < 4; i++) {
+                    bounds[i] = Double.parseDouble(parts[i].trim());
+                }
+            }
+            return ResponseEntity.ok(reprojectionService.readWindow(filePath, crs, resolution, bounds, bandIndex, resampling));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 重投影定义与句柄缓存的命中情况
+     */
+    @GetMapping("/warp/cache")
+    public ResponseEntity<?> getWarpCacheStats() {
+        return ResponseEntity.ok(reprojectionService.stats());
+    }
+
+    /**
+     * 快视图（缩略图）
+     * @param filePath 文件路径
+     * @param maxSize 输出图像长边的最大像素数
+     * @param format 输出格式 png / jpeg / webp
+     * @param bands 波段列表，如 1 或 3,2,1，为空自动选择
+     * @param low 拉伸下限百分位
+     * @param high 拉伸上限百分位
+     * @return 编码后的图像，文件未变化时按 If-None-Match 返回 304
+     */
+    @GetMapping("/quicklook")
+    public ResponseEntity<?> getQuicklook(
+            @RequestParam String filePath,
+            @RequestParam(defaultValue = "256") int maxSize,
+            @RequestParam(defaultValue = "png") String format,
+            @RequestParam(required = false) String bands,
+            @RequestParam(defaultValue = "2") double low,
+            @RequestParam(defaultValue = "98") double high,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        try {
+            QuicklookService.Quicklook quicklook = quicklookService.render(filePath, maxSize, format, bands, low, high,
+                    ifNoneMatch);
+            if (quicklook.isNotModified()) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(quicklook.getEtag()).build();
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(quicklook.getContentType()))
+                    .eTag(quicklook.getEtag())
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS).mustRevalidate())
+                    .header("X-Quicklook-Cache", quicklook.isCached() ? "HIT" : "MISS")
+                    .body(quicklook.getData());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 快视图缓存的占用与命中情况
+     */
+    @GetMapping("/quicklook/cache")
+    public ResponseEntity<?> getQuicklookCacheStats() {
+        return ResponseEntity.ok(quicklookService.stats());
+    }
+
+    /**
+     * 波段运算
+     * @param request 输入栅格、表达式、输出路径与数据类型
+     * @return 指定 outputPath 时写入 GeoTIFF 并返回摘要；否则以二进制流返回结果（行优先、小端序），
+     *         尺寸、数据类型、nodata 与地理变换在响应头中
+     */
+    @PostMapping("/algebra")
+    public ResponseEntity<?> evaluateBandMath(@RequestBody BandMathRequest request) {
+        try {
+            BandMathService.Plan plan = bandMathService.prepare(request);
+            if (request.getOutputPath() != null && !request.getOutputPath().isEmpty()) {
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("success", true);
+                response.putAll(bandMathService.writeGeoTiff(plan, request.getOutputPath()));
+                return ResponseEntity.ok(response);
+            }
+            StreamingResponseBody body = out -> {
+                try {
+                    bandMathService.stream(plan, out);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("波段运算被中断");
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header("X-Raster-Width", String.valueOf(plan.getWidth()))
+                    .header("X-Raster-Height", String.valueOf(plan.getHeight()))
+                    .header("X-Raster-Data-Type", plan.getDataType())
+                    .header("X-Raster-NoData", String.valueOf(plan.getNoDataValue()))
+                    .header("X-Raster-GeoTransform", Arrays.toString(plan.getGeoTransform()))
+                    .body(body);
+        } catch (MemoryBudget.RejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 计算 DEM 窗口的坡度、坡向或晕渲
+     * @param operator slope / aspect / hillshade
+     */
+    @GetMapping("/terrain")
+    public ResponseEntity<?> getTerrainWindow(
+            @RequestParam String filePath,
+            @RequestParam String operator,
+            @RequestParam(defaultValue = "1") int bandIndex,
+            @RequestParam int x,
+            @RequestParam int y,
+            @RequestParam int width,
+            @RequestParam int height,
+            @RequestParam(defaultValue = "1") double zFactor,
+            @RequestParam(defaultValue = "false") boolean percent,
+            @RequestParam(defaultValue = "315") double azimuth,
+            @RequestParam(defaultValue = "45") double altitude) {
+        try {
+            TerrainService.Plan plan = terrainService.prepare(filePath, operator, bandIndex, zFactor, percent, azimuth, altitude);
+            return ResponseEntity.ok(terrainService.readWindow(plan, x, y, width, height));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 计算整个 DEM 的地形因子并写成 COG
+     */
+    @PostMapping("/terrain")
+    public ResponseEntity<?> writeTerrain(@RequestBody TerrainRequest request) {
+        try {
+            if (request.getOutputPath() == null || request.getOutputPath().isEmpty()) {
+                throw new IllegalArgumentException("outputPath 不能为空");
+            }
+            TerrainService.Plan plan = terrainService.prepare(request.getFilePath(), request.getOperator(),
+                    request.getBandIndex(), request.getZFactor(), request.isPercent(), request.getAzimuth(), request.getAltitude());
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            response.putAll(terrainService.writeCog(plan, request.getOutputPath()));
+            return ResponseEntity.ok(response);
+        } catch (MemoryBudget.RejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 导出为 Zarr 目录存储，再次导出到同一目录时只重写变化的块
+     */
+    @PostMapping("/export/zarr")
+    public ResponseEntity<?> exportZarr(@RequestBody ZarrExportRequest request) {
+        try {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            response.putAll(zarrExportService.export(request));
+            return ResponseEntity.ok(response);
+        } catch (MemoryBudget.RejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 一组对齐栅格或 NetCDF 变量各时间步的逐像素统计，写成多波段 GeoTIFF
+     */
+    @PostMapping("/temporal-statistics")
+    public ResponseEntity<?> temporalStatistics(@RequestBody TemporalStatisticsRequest request) {
+        try {
+            TemporalStatisticsService.Plan plan = temporalStatisticsService.prepare(request);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            response.putAll(temporalStatisticsService.run(plan, request.getOutputPath()));
+            return ResponseEntity.ok(response);
+        } catch (MemoryBudget.RejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 信息、统计、像素请求的合并情况
+     */
+    @GetMapping("/coalesce")
+    public ResponseEntity<?> getCoalescingStats() {
+        return ResponseEntity.ok(rasterReadCoalescer.stats());
+    }
+
+    /**
+     * 内存准入控制的预算占用与排队情况
+     */
+    @GetMapping("/admission")
+    public ResponseEntity<?> getAdmissionStatus() {
+        return ResponseEntity.ok(memoryBudget.status());
+    }
 }
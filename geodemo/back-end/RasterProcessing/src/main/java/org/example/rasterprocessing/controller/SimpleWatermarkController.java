@@ -1,9 +1,13 @@
 package org.example.rasterprocessing.controller;
 
-import org.example.rasterprocessing.service.SimpleWatermarkService;
-import org.example.rasterprocessing.service.SimpleRasterWatermarkService;
+import org.example.rasterprocessing.service.MemoryBudget;
+import org.example.rasterprocessing.service.NativeOperations;
+import org.example.rasterprocessing.service.QualityReportService;
+import org.example.rasterprocessing.service.WatermarkJobService;
+import org.example.rasterprocessing.service.WatermarkResultCache;
 import org.example.rasterprocessing.util.FileTypeDetector;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -17,10 +21,16 @@ import java.util.Map;
 public class SimpleWatermarkController {
 
     @Autowired
-    private SimpleWatermarkService imageWatermarkService;
-    
+    private NativeOperations nativeOperations;
+
+    @Autowired
+    private WatermarkResultCache watermarkResultCache;
+
+    @Autowired
+    private WatermarkJobService watermarkJobService;
+
     @Autowired
-    private SimpleRasterWatermarkService rasterWatermarkService;
+    private QualityReportService qualityReportService;
 
     /**
      * 统一的水印嵌入接口 - 自动识别文件类型
@@ -29,7 +39,8 @@ public class SimpleWatermarkController {
     public Map<String, Object> embedWatermark(
             @RequestParam String inputPath,
             @RequestParam String outputPath,
-            @RequestParam String watermarkText) {
+            @RequestParam String watermarkText,
+            @RequestParam(defaultValue = "false") boolean verify) {
         
         Map<String, Object> response = new HashMap<>();
         
@@ -44,15 +55,34 @@ public class SimpleWatermarkController {
             
             long startTime = System.currentTimeMillis();
             String processingType;
+            boolean cached;
+            Map<String, Object> verification = null;
             
-            // 根据文件类型选择处理方式
+            // 根据文件类型选择处理方式，相同输入内容与水印文本的结果直接取缓存；
+            // verify 时在嵌入的同一次处理中按写出的最终像素解码水印，不再回读输出文件
             if (FileTypeDetector.isImageFormat(inputPath)) {
                 // 处理普通图像格式
-                imageWatermarkService.embedWatermark(inputPath, outputPath, watermarkText);
+                if (verify) {
+                    WatermarkResultCache.VerifiedEmbedding embedded = watermarkResultCache.embedVerified(inputPath, outputPath,
+                            watermarkText, "image", () -> nativeOperations.embedImageWatermark(inputPath, outputPath, watermarkText, true));
+                    cached = embedded.isCached();
+                    verification = embedded.getReport();
+                } else {
+                    cached = watermarkResultCache.embed(inputPath, outputPath, watermarkText, "image",
+                            () -> nativeOperations.embedImageWatermark(inputPath, outputPath, watermarkText));
+                }
                 processingType = "图像水印处理";
             } else if (FileTypeDetector.isRasterFormat(inputPath)) {
                 // 处理栅格数据格式
-                rasterWatermarkService.embedWatermark(inputPath, outputPath, watermarkText);
+                if (verify) {
+                    WatermarkResultCache.VerifiedEmbedding embedded = watermarkResultCache.embedVerified(inputPath, outputPath,
+                            watermarkText, "raster", () -> nativeOperations.embedRasterWatermark(inputPath, outputPath, watermarkText, true));
+                    cached = embedded.isCached();
+                    verification = embedded.getReport();
+                } else {
+                    cached = watermarkResultCache.embed(inputPath, outputPath, watermarkText, "raster",
+                            () -> nativeOperations.embedRasterWatermark(inputPath, outputPath, watermarkText));
+                }
                 processingType = "栅格水印处理";
             } else {
                 response.put("success", false);
@@ -66,8 +96,13 @@ public class SimpleWatermarkController {
             response.put("message", processingType + "嵌入成功");
             response.put("outputPath", outputPath);
             response.put("processingTime", endTime - startTime);
+            response.put("cached", cached);
             response.put("watermarkLength", watermarkText.length());
             response.put("fileType", FileTypeDetector.getFileTypeDescription(inputPath));
+            if (verification != null) {
+                response.put("verified", Boolean.TRUE.equals(verification.get("passed")));
+                response.put("verification", verification);
+            }
             
         } catch (Exception e) {
             response.put("success", false);
@@ -98,17 +133,19 @@ public class SimpleWatermarkController {
             }
             
             long startTime = System.currentTimeMillis();
-            String extractedText;
+            WatermarkResultCache.Extraction extracted;
             String processingType;
             
-            // 根据文件类型选择处理方式
+            // 根据文件类型选择处理方式，同一文件内容的提取结果直接取缓存
             if (FileTypeDetector.isImageFormat(filePath)) {
                 // 处理普通图像格式
-                extractedText = imageWatermarkService.extractWatermark(filePath, watermarkLength);
+                extracted = watermarkResultCache.extract(filePath, watermarkLength, "image",
+                        () -> nativeOperations.extractImageWatermark(filePath, watermarkLength));
                 processingType = "图像水印提取";
             } else if (FileTypeDetector.isRasterFormat(filePath)) {
                 // 处理栅格数据格式
-                extractedText = rasterWatermarkService.extractWatermark(filePath, watermarkLength);
+                extracted = watermarkResultCache.extract(filePath, watermarkLength, "raster",
+                        () -> nativeOperations.extractRasterWatermark(filePath, watermarkLength));
                 processingType = "栅格水印提取";
             } else {
                 response.put("success", false);
@@ -117,12 +154,14 @@ public class SimpleWatermarkController {
             }
             
             long endTime = System.currentTimeMillis();
+            String extractedText = extracted.getText();
             
             response.put("success", true);
             response.put("message", processingType + "成功");
             response.put("watermarkText", extractedText);
             response.put("processingTime", endTime - startTime);
             response.put("extractedLength", extractedText.length());
+            response.put("cached", extracted.isCached());
             response.put("fileType", FileTypeDetector.getFileTypeDescription(filePath));
             
         } catch (Exception e) {
@@ -134,6 +173,133 @@ public class SimpleWatermarkController {
         return response;
     }
 
+    /**
+     * 原地更新栅格文件中的水印 - 只改写水印位发生变化的块
+     */
+    @PostMapping("/update")
+    public Map<String, Object> updateWatermark(
+            @RequestParam String filePath,
+            @RequestParam String watermarkText,
+            @RequestParam(required = false) String currentText) {
+
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            if (!FileTypeDetector.isRasterFormat(filePath)) {
+                response.put("success", false);
+                response.put("message", "原地更新仅支持栅格数据格式: " + filePath);
+                return response;
+            }
+
+            response.putAll(nativeOperations.updateRasterWatermark(filePath, watermarkText, currentText));
+            response.put("success", true);
+            response.put("message", "栅格水印更新成功");
+            response.put("fileType", FileTypeDetector.getFileTypeDescription(filePath));
+
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "更新失败: " + e.getMessage());
+            response.put("fileType", FileTypeDetector.getFileTypeDescription(filePath));
+        }
+
+        return response;
+    }
+
+    /**
+     * 提交异步嵌入任务到共享任务队列，由任意节点执行
+     */
+    @PostMapping("/jobs/embed")
+    public Map<String, Object> submitEmbedJob(
+            @RequestParam String inputPath,
+            @RequestParam String outputPath,
+            @RequestParam String watermarkText) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            if (!FileTypeDetector.isSupportedFormat(inputPath)) {
+                response.put("success", false);
+                response.put("message", "不支持的文件格式: " + inputPath);
+                return response;
+            }
+            response.put("success", true);
+            response.put("jobId", watermarkJobService.submitEmbed(inputPath, outputPath, watermarkText));
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "提交失败: " + e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * 提交异步提取任务
+     */
+    @PostMapping("/jobs/extract")
+    public Map<String, Object> submitExtractJob(
+            @RequestParam String filePath,
+            @RequestParam int watermarkLength) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            if (!FileTypeDetector.isSupportedFormat(filePath)) {
+                response.put("success", false);
+                response.put("message", "不支持的文件格式: " + filePath);
+                return response;
+            }
+            response.put("success", true);
+            response.put("jobId", watermarkJobService.submitExtract(filePath, watermarkLength));
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "提交失败: " + e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * 查询任务状态（pending / running / done / failed）与结果
+     */
+    @GetMapping("/jobs/{jobId}")
+    public Map<String, Object> getJob(@PathVariable String jobId) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Map<String, Object> job = watermarkJobService.find(jobId);
+            if (job == null) {
+                response.put("success", false);
+                response.put("message", "任务不存在: " + jobId);
+                return response;
+            }
+            response.put("success", true);
+            response.put("job", job);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "查询失败: " + e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * 任务队列与本节点的处理情况
+     */
+    @GetMapping("/jobs")
+    public Map<String, Object> jobStatus() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.putAll(watermarkJobService.status());
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "查询失败: " + e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * 水印结果缓存的命中情况
+     */
+    @GetMapping("/cache")
+    public Map<String, Object> cacheStats() {
+        return watermarkResultCache.stats();
+    }
+
     /**
      * 检查文件格式是否受支持
      */
@@ -161,6 +327,45 @@ public class SimpleWatermarkController {
         return FileTypeDetector.getSupportedFormats();
     }
 
+    /**
+     * 原图与加水印结果的失真报告：逐波段 MSE / PSNR、最大绝对误差与 8x8 窗口 SSIM
+     * @param originalPath 原图
+     * @param watermarkedPath 加水印后的文件，尺寸须与原图一致
+     * @param bands 波段列表，如 1 或 3,2,1，为空时比较全部波段
+     * @param region full（整幅）/ payload（只比较水印所在的块行）
+     * @param watermarkLength payload 时水印的 UTF-8 字节数，为空时按最长 255 字节
+     * @param dynamicRange 像素取值范围，为空时按数据类型或原图实际范围
+     */
+    @GetMapping("/quality")
+    public ResponseEntity<Map<String, Object>> qualityReport(
+            @RequestParam String originalPath,
+            @RequestParam String watermarkedPath,
+            @RequestParam(required = false) String bands,
+            @RequestParam(defaultValue = "full") String region,
+            @RequestParam(required = false) Integer watermarkLength,
+            @RequestParam(required = false) Double dynamicRange) {
+
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            response.putAll(qualityReportService.compare(originalPath, watermarkedPath, bands, region,
+                    watermarkLength, dynamicRange));
+            response.put("success", true);
+            response.put("message", "失真报告生成成功");
+        } catch (MemoryBudget.RejectedException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.put("success", false);
+            response.put("message", "失真报告被中断");
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "失真报告生成失败: " + e.getMessage());
+        }
+
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * 快速测试接口 - 测试多种文本和格式
      */
@@ -186,20 +391,19 @@ public class SimpleWatermarkController {
                     String inputPath = "testdata/test2.png";
                     String outputPath = "testdata/test_" + text.hashCode() + ".png";
                     
+                    // 嵌入时直接校验写出的像素，不再回读输出文件
                     long embedStart = System.currentTimeMillis();
-                    imageWatermarkService.embedWatermark(inputPath, outputPath, text);
+                    Map<String, Object> verification = nativeOperations.embedImageWatermark(inputPath, outputPath, text, true);
                     long embedTime = System.currentTimeMillis() - embedStart;
-                    
-                    long extractStart = System.currentTimeMillis();
-                    String extracted = imageWatermarkService.extractWatermark(outputPath, text.length());
-                    long extractTime = System.currentTimeMillis() - extractStart;
+                    String extracted = (String) verification.get("decodedText");
                     
                     Map<String, Object> testResult = new HashMap<>();
                     testResult.put("original", text);
                     testResult.put("extracted", extracted);
-                    testResult.put("match", text.equals(extracted));
+                    testResult.put("match", text.equals(extracted) && Boolean.TRUE.equals(verification.get("passed")));
                     testResult.put("embedTime", embedTime);
-                    testResult.put("extractTime", extractTime);
+                    testResult.put("bitErrorRate", verification.get("bitErrorRate"));
+                    testResult.put("minVoteMargin", verification.get("minVoteMargin"));
                     testResult.put("fileType", "PNG图像");
                     
                     results.put("test_" + text, testResult);
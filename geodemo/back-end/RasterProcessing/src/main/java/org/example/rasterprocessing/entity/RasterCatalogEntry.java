@@ -0,0 +1,244 @@
+package org.example.rasterprocessing.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+/**
+ * 栅格目录条目 - 一个文件的信息、WGS84 外包矩形与第一波段统计
+ */
+@Entity
+@Table(name = "raster_catalog", indexes = @Index(name = "idx_catalog_root", columnList = "rootDir"))
+public class RasterCatalogEntry {
+
+    @Id
+    @Column(length = 2048)
+    private String filePath;
+
+    @Column(length = 2048)
+    private String rootDir;
+
+    private long lastModified;
+    private long fileSize;
+    private long indexedAt;
+
+    private int width;
+    private int height;
+    private int bandCount;
+    private String driver;
+    private String dataType;
+    private Double noDataValue;
+
+    @Lob
+    private String projection;
+
+    /** 地理变换参数，逗号分隔的 6 个数 */
+    @Column(length = 512)
+    private String geoTransform;
+
+    // WGS84 外包矩形，无坐标系的文件为空
+    private Double minLon;
+    private Double minLat;
+    private Double maxLon;
+    private Double maxLat;
+
+    // 第一波段统计
+    private Double statMin;
+    private Double statMax;
+    private Double statMean;
+    private Double statStddev;
+
+    /** 最近一次读取失败的原因 */
+    @Column(length = 1024)
+    private String error;
+
+    public RasterCatalogEntry() {}
+
+    public RasterCatalogEntry(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public boolean hasBounds() {
+        return minLon != null && minLat != null && maxLon != null && maxLat != null;
+    }
+
+    // Getters and Setters
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getRootDir() {
+        return rootDir;
+    }
+
+    public void setRootDir(String rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getIndexedAt() {
+        return indexedAt;
+    }
+
+    public void setIndexedAt(long indexedAt) {
+        this.indexedAt = indexedAt;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public int getBandCount() {
+        return bandCount;
+    }
+
+    public void setBandCount(int bandCount) {
+        this.bandCount = bandCount;
+    }
+
+    public String getDriver() {
+        return driver;
+    }
+
+    public void setDriver(String driver) {
+        this.driver = driver;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    public void setDataType(String dataType) {
+        this.dataType = dataType;
+    }
+
+    public Double getNoDataValue() {
+        return noDataValue;
+    }
+
+    public void setNoDataValue(Double noDataValue) {
+        this.noDataValue = noDataValue;
+    }
+
+    public String getProjection() {
+        return projection;
+    }
+
+    public void setProjection(String projection) {
+        this.projection = projection;
+    }
+
+    public String getGeoTransform() {
+        return geoTransform;
+    }
+
+    public void setGeoTransform(String geoTransform) {
+        this.geoTransform = geoTransform;
+    }
+
+    public Double getMinLon() {
+        return minLon;
+    }
+
+    public void setMinLon(Double minLon) {
+        this.minLon = minLon;
+    }
+
+    public Double getMinLat() {
+        return minLat;
+    }
+
+    public void setMinLat(Double minLat) {
+        this.minLat = minLat;
+    }
+
+    public Double getMaxLon() {
+        return maxLon;
+    }
+
+    public void setMaxLon(Double maxLon) {
+        this.maxLon = maxLon;
+    }
+
+    public Double getMaxLat() {
+        return maxLat;
+    }
+
+    public void setMaxLat(Double maxLat) {
+        this.maxLat = maxLat;
+    }
+
+    public Double getStatMin() {
+        return statMin;
+    }
+
+    public void setStatMin(Double statMin) {
+        this.statMin = statMin;
+    }
+
+    public Double getStatMax() {
+        return statMax;
+    }
+
+    public void setStatMax(Double statMax) {
+        this.statMax = statMax;
+    }
+
+    public Double getStatMean() {
+        return statMean;
+    }
+
+    public void setStatMean(Double statMean) {
+        this.statMean = statMean;
+    }
+
+    public Double getStatStddev() {
+        return statStddev;
+    }
+
+    public void setStatStddev(Double statStddev) {
+        this.statStddev = statStddev;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.rasterprocessing.model;
+
+import java.util.Map;
+
+/**
+ * 波段运算请求
+ */
+public class BandMathRequest {
+    /** 输入栅格，别名 -> 文件路径；表达式中用 别名.b1 引用，不带别名的 b1 指第一个输入 */
+    private Map<String, String> inputs;
+    /** 只有一个输入时可直接给出文件路径，别名为 a */
+    private String filePath;
+    /** 表达式，如 (b4-b3)/(b4+b3) */
+    private String expression;
+    /** 输出 GeoTIFF 路径，为空时以二进制流返回结果 */
+    private String outputPath;
+    /** 输出数据类型 Float32 / Float64 */
+    private String dataType = "Float32";
+    /** 输出 nodata 值，为空时为 NaN */
+    private Double noDataValue;
+
+    public BandMathRequest() {}
+
+    // Getters and Setters
+    public Map<String, String> getInputs() {
+        return inputs;
+    }
+
+    public void setInputs(Map<String, String> inputs) {
+        this.inputs = inputs;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public void setExpression(String expression) {
+        this.expression = expression;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    public void setDataType(String dataType) {
+        this.dataType = dataType;
+    }
+
+    public Double getNoDataValue() {
+        return noDataValue;
+    }
+
+    public void setNoDataValue(Double noDataValue) {
+        this.noDataValue = noDataValue;
+    }
+}
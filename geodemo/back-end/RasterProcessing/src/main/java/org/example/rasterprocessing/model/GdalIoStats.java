@@ -0,0 +1,71 @@
+package org.example.rasterprocessing.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个请求的 GDAL I/O 统计
+ * 只记录能确定的量：读取窗口数、窗口覆盖的块数与块字节数、请求的像素字节数，
+ * 以及请求结束时 GDAL 块缓存的实际占用。GDAL 不暴露块缓存命中计数，这里不做估算
+ */
+public class GdalIoStats {
+    private final String request;
+    private final long startTime;
+    private long durationMs;
+    private long cacheUsedBytes = -1;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong blocksTouched = new AtomicLong();
+    private final AtomicLong blockBytes = new AtomicLong();
+    private final AtomicLong bytesRequested = new AtomicLong();
+
+    public GdalIoStats(String request) {
+        this.request = request;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public void record(long blocks, long blockBytes, long requested) {
+        reads.incrementAndGet();
+        blocksTouched.addAndGet(blocks);
+        this.blockBytes.addAndGet(blockBytes);
+        bytesRequested.addAndGet(requested);
+    }
+
+    public void finish(long cacheUsedBytes) {
+        this.durationMs = System.currentTimeMillis() - startTime;
+        this.cacheUsedBytes = cacheUsedBytes;
+    }
+
+    // Getters
+    public String getRequest() {
+        return request;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /** 请求结束时 GDAL 块缓存占用（gdal.GetCacheUsed()），未结束时为 -1 */
+    public long getCacheUsedBytes() {
+        return cacheUsedBytes;
+    }
+
+    public long getReads() {
+        return reads.get();
+    }
+
+    public long getBlocksTouched() {
+        return blocksTouched.get();
+    }
+
+    /** 覆盖读取窗口的块的解码后字节数，块不在缓存中时 GDAL 需要解码的上限 */
+    public long getBlockBytes() {
+        return blockBytes.get();
+    }
+
+    public long getBytesRequested() {
+        return bytesRequested.get();
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.rasterprocessing.model;
+
+import java.util.List;
+
+/**
+ * 创建镶嵌请求
+ */
+public class MosaicRequest {
+    /** 镶嵌名称，只能包含字母、数字、下划线和连字符 */
+    private String name;
+    /** 成员文件列表，按顺序叠放，重叠处后者覆盖前者 */
+    private List<String> files;
+    /** 成员所在目录，与 files 可同时给出 */
+    private String directory;
+    /** 目录下的文件通配符，默认 *.tif */
+    private String pattern;
+
+    public MosaicRequest() {}
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<String> files) {
+        this.files = files;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+}
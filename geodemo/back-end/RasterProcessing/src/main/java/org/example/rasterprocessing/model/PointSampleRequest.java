@@ -0,0 +1,51 @@
+package org.example.rasterprocessing.model;
+
+import java.util.List;
+
+/**
+ * 批量点采样请求
+ */
+public class PointSampleRequest {
+    private String filePath;
+    /** 点坐标所用坐标系（如 EPSG:4326），为空表示与栅格相同 */
+    private String crs;
+    /** 要采样的波段（从1开始），为空表示全部波段 */
+    private List<Integer> bands;
+    /** 点坐标列表，每个点为 [x, y] */
+    private List<double[]> points;
+
+    public PointSampleRequest() {}
+
+    // Getters and Setters
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getCrs() {
+        return crs;
+    }
+
+    public void setCrs(String crs) {
+        this.crs = crs;
+    }
+
+    public List<Integer> getBands() {
+        return bands;
+    }
+
+    public void setBands(List<Integer> bands) {
+        this.bands = bands;
+    }
+
+    public List<double[]> getPoints() {
+        return points;
+    }
+
+    public void setPoints(List<double[]> points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.rasterprocessing.model;
+
+import java.util.List;
+
+/**
+ * 时间序列叠加统计请求
+ */
+public class TemporalStatisticsRequest {
+    /** 叠加的栅格文件，须尺寸、地理变换、坐标系一致，按时间顺序给出 */
+    private List<String> files;
+    /** 成员所在目录，与 files 可同时给出 */
+    private String directory;
+    /** 目录下的文件通配符，默认 *.tif */
+    private String pattern;
+    /** 多文件时参与统计的波段，默认 1 */
+    private Integer bandIndex;
+    /** NetCDF 文件，与 files/directory 二选一；变量的每个波段（时间步）是一个成员 */
+    private String netcdfPath;
+    /** NetCDF 变量名 */
+    private String variable;
+    /** 输出的统计量，按顺序成为输出波段：mean、min、max、stddev、count，默认全部 */
+    private List<String> statistics;
+    /** 输出 GeoTIFF 路径 */
+    private String outputPath;
+    /** 输出数据类型 Float32（默认）/ Float64 */
+    private String dataType;
+    /** 没有有效观测的像素的输出值，默认 -9999（count 波段为 0） */
+    private Double noDataValue;
+
+    public TemporalStatisticsRequest() {}
+
+    // Getters and Setters
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<String> files) {
+        this.files = files;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public Integer getBandIndex() {
+        return bandIndex;
+    }
+
+    public void setBandIndex(Integer bandIndex) {
+        this.bandIndex = bandIndex;
+    }
+
+    public String getNetcdfPath() {
+        return netcdfPath;
+    }
+
+    public void setNetcdfPath(String netcdfPath) {
+        this.netcdfPath = netcdfPath;
+    }
+
+    public String getVariable() {
+        return variable;
+    }
+
+    public void setVariable(String variable) {
+        this.variable = variable;
+    }
+
+    public List<String> getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(List<String> statistics) {
+        this.statistics = statistics;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    public void setDataType(String dataType) {
+        this.dataType = dataType;
+    }
+
+    public Double getNoDataValue() {
+        return noDataValue;
+    }
+
+    public void setNoDataValue(Double noDataValue) {
+        this.noDataValue = noDataValue;
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.rasterprocessing.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 地形分析请求
+ */
+public class TerrainRequest {
+    /** DEM 文件路径 */
+    private String filePath;
+    /** 输出 COG 路径 */
+    private String outputPath;
+    /** slope / aspect / hillshade */
+    private String operator;
+    private int bandIndex = 1;
+    /** 高程单位换算到米的系数，如高程以英尺为单位时为 0.3048 */
+    @JsonProperty("zFactor")
+    private double zFactor = 1;
+    /** 坡度以百分比输出 */
+    private boolean percent;
+    /** 晕渲光源方位角，北为 0 顺时针 */
+    private double azimuth = 315;
+    /** 晕渲光源高度角 */
+    private double altitude = 45;
+
+    public TerrainRequest() {}
+
+    // Getters and Setters
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public void setOperator(String operator) {
+        this.operator = operator;
+    }
+
+    public int getBandIndex() {
+        return bandIndex;
+    }
+
+    public void setBandIndex(int bandIndex) {
+        this.bandIndex = bandIndex;
+    }
+
+    public double getZFactor() {
+        return zFactor;
+    }
+
+    public void setZFactor(double zFactor) {
+        this.zFactor = zFactor;
+    }
+
+    public boolean isPercent() {
+        return percent;
+    }
+
+    public void setPercent(boolean percent) {
+        this.percent = percent;
+    }
+
+    public double getAzimuth() {
+        return azimuth;
+    }
+
+    public void setAzimuth(double azimuth) {
+        this.azimuth = azimuth;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public void setAltitude(double altitude) {
+        this.altitude = altitude;
+    }
+}
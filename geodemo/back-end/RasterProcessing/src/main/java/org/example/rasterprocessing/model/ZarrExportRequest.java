@@ -0,0 +1,129 @@
+package org.example.rasterprocessing.model;
+
+import java.util.List;
+
+/**
+ * Zarr 导出请求
+ */
+public class ZarrExportRequest {
+    /** 源栅格文件路径 */
+    private String filePath;
+    /** 输出 Zarr 目录；再次导出到同一目录时只重写内容变化的块 */
+    private String outputPath;
+    /** 导出的波段（从 1 开始），为空表示全部 */
+    private List<Integer> bands;
+    /** 导出窗口，为空表示整个栅格 */
+    private Integer x;
+    private Integer y;
+    private Integer width;
+    private Integer height;
+    /** 块大小 [行, 列]，为空时取 raster.zarr.chunk-size */
+    private List<Integer> chunks;
+    /** Zarr 格式版本 2 / 3 */
+    private int zarrFormat = 2;
+    /** 压缩器 zlib / gzip / none（v3 不支持 zlib） */
+    private String compressor;
+    /** 压缩级别 0-9 */
+    private int level = 1;
+    /** 数组名称，即输出目录下的子目录 */
+    private String arrayName = "data";
+
+    public ZarrExportRequest() {}
+
+    // Getters and Setters
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath;
+    }
+
+    public List<Integer> getBands() {
+        return bands;
+    }
+
+    public void setBands(List<Integer> bands) {
+        this.bands = bands;
+    }
+
+    public Integer getX() {
+        return x;
+    }
+
+    public void setX(Integer x) {
+        this.x = x;
+    }
+
+    public Integer getY() {
+        return y;
+    }
+
+    public void setY(Integer y) {
+        this.y = y;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public List<Integer> getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(List<Integer> chunks) {
+        this.chunks = chunks;
+    }
+
+    public int getZarrFormat() {
+        return zarrFormat;
+    }
+
+    public void setZarrFormat(int zarrFormat) {
+        this.zarrFormat = zarrFormat;
+    }
+
+    public String getCompressor() {
+        return compressor;
+    }
+
+    public void setCompressor(String compressor) {
+        this.compressor = compressor;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public String getArrayName() {
+        return arrayName;
+    }
+
+    public void setArrayName(String arrayName) {
+        this.arrayName = arrayName;
+    }
+}
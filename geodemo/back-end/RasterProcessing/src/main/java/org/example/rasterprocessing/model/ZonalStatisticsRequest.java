@@ -0,0 +1,90 @@
+package org.example.rasterprocessing.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分区统计请求
+ */
+public class ZonalStatisticsRequest {
+    private String filePath;
+    private int bandIndex = 1;
+    /** 区域坐标所用坐标系（如 EPSG:4326），为空表示与栅格相同 */
+    private String crs;
+    /** GeoJSON 面要素（FeatureCollection / Feature / Polygon / MultiPolygon） */
+    private Map<String, Object> geojson;
+    /** 外包矩形区域，每个为 [minX, minY, maxX, maxY]，排在 GeoJSON 区域之后 */
+    private List<double[]> bboxes;
+    /** 直方图分箱数，0 表示不统计，最多 1000，且与区域数的乘积不超过 1000000 */
+    private int bins;
+    /** 直方图范围（含两端），bins 大于 0 时必填 */
+    private Double histogramMin;
+    private Double histogramMax;
+
+    public ZonalStatisticsRequest() {}
+
+    // Getters and Setters
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public int getBandIndex() {
+        return bandIndex;
+    }
+
+    public void setBandIndex(int bandIndex) {
+        this.bandIndex = bandIndex;
+    }
+
+    public String getCrs() {
+        return crs;
+    }
+
+    public void setCrs(String crs) {
+        this.crs = crs;
+    }
+
+    public Map<String, Object> getGeojson() {
+        return geojson;
+    }
+
+    public void setGeojson(Map<String, Object> geojson) {
+        this.geojson = geojson;
+    }
+
+    public List<double[]> getBboxes() {
+        return bboxes;
+    }
+
+    public void setBboxes(List<double[]> bboxes) {
+        this.bboxes = bboxes;
+    }
+
+    public int getBins() {
+        return bins;
+    }
+
+    public void setBins(int bins) {
+        this.bins = bins;
+    }
+
+    public Double getHistogramMin() {
+        return histogramMin;
+    }
+
+    public void setHistogramMin(Double histogramMin) {
+        this.histogramMin = histogramMin;
+    }
+
+    public Double getHistogramMax() {
+        return histogramMax;
+    }
+
+    public void setHistogramMax(Double histogramMax) {
+        this.histogramMax = histogramMax;
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.rasterprocessing.repository;
+
+import org.example.rasterprocessing.entity.RasterCatalogEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+/**
+ * 栅格目录仓库
+ */
+public interface RasterCatalogRepository extends JpaRepository<RasterCatalogEntry, String> {
+
+    List<RasterCatalogEntry> findByRootDir(String rootDir);
+}
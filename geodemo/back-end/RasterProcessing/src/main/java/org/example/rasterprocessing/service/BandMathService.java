@@ -0,0 +1,395 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.BandMathRequest;
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.example.rasterprocessing.util.BandMathExpression;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.Driver;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 波段运算服务
+ * 表达式编译一次（见 BandMathExpression），按整行条带分块：每一轮把至多 parallelism() 个条带分给工作线程，
+ * 各线程自己打开输入数据集、读取并求值，结果按行顺序写入 GeoTIFF 或二进制流。
+ * 求值器与输入缓冲按线程复用，内存占用只与条带大小和线程数有关
+ */
+@Service
+public class BandMathService {
+
+    private static final int MAX_INPUTS = 16;
+    private static final int MAX_EXPRESSION_LENGTH = 2000;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
+
+    @Autowired
+    private ParallelRasterExecutor parallelRasterExecutor;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Value("${raster.algebra.block-pixels:262144}")
+    private int blockPixels;
+
+    /**
+     * 已校验、已编译的运算
+     */
+    public static class Plan {
+        private final BandMathExpression expression;
+        private final Map<String, String> paths;
+        private final int width;
+        private final int height;
+        private final double[] geoTransform;
+        private final String projection;
+        private final double[] inputNoData;
+        private final boolean float64;
+        private final double noDataValue;
+        private final int rowsPerStrip;
+
+        Plan(BandMathExpression expression, Map<String, String> paths, int width, int height, double[] geoTransform,
+             String projection, double[] inputNoData, boolean float64, double noDataValue, int rowsPerStrip) {
+            this.expression = expression;
+            this.paths = paths;
+            this.width = width;
+            this.height = height;
+            this.geoTransform = geoTransform;
+            this.projection = projection;
+            this.inputNoData = inputNoData;
+            this.float64 = float64;
+            this.noDataValue = noDataValue;
+            this.rowsPerStrip = rowsPerStrip;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public double[] getGeoTransform() {
+            return geoTransform;
+        }
+
+        public String getDataType() {
+            return float64 ? "Float64" : "Float32";
+        }
+
+        public double getNoDataValue() {
+            return noDataValue;
+        }
+    }
+
+    /**
+     * 一个分区任务的求值器与输入缓冲
+     */
+    private static class Workspace {
+        final BandMathExpression.Evaluator evaluator;
+        final double[][] inputs;
+        final double[] out;
+
+        Workspace(BandMathExpression expression, int capacity) {
+            evaluator = expression.evaluator(capacity);
+            inputs = new double[expression.getInputs().size()][capacity];
+            out = new double[capacity];
+        }
+    }
+
+    private static class StripResult {
+        final int y;
+        final int rows;
+        final Object data;
+        final int noDataCount;
+
+        StripResult(int y, int rows, Object data, int noDataCount) {
+            this.y = y;
+            this.rows = rows;
+            this.data = data;
+            this.noDataCount = noDataCount;
+        }
+    }
+
+    private interface StripSink {
+        void accept(StripResult strip) throws IOException;
+    }
+
+    /**
+     * 校验输入并编译表达式
+     */
+    public Plan prepare(BandMathRequest request) {
+        Map<String, String> inputs = new LinkedHashMap<>();
+        if (request.getInputs() != null) {
+            inputs.putAll(request.getInputs());
+        }
+        if (request.getFilePath() != null && !request.getFilePath().isEmpty()) {
+            if (!inputs.isEmpty()) {
+                throw new RuntimeException("filePath 与 inputs 只能给出一个");
+            }
+            inputs.put("a", request.getFilePath());
+        }
+        if (inputs.isEmpty()) {
+            throw new RuntimeException("没有输入栅格");
+        }
+        if (inputs.size() > MAX_INPUTS) {
+            throw new RuntimeException("输入栅格最多 " + MAX_INPUTS + " 个");
+        }
+        for (String alias : inputs.keySet()) {
+            if (!alias.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+                throw new RuntimeException("无效的输入别名: " + alias);
+            }
+        }
+        if (request.getExpression() != null && request.getExpression().length() > MAX_EXPRESSION_LENGTH) {
+            throw new RuntimeException("表达式过长，上限 " + MAX_EXPRESSION_LENGTH + " 个字符");
+        }
+        String dataType = request.getDataType() == null ? "Float32" : request.getDataType();
+        if (!"Float32".equalsIgnoreCase(dataType) && !"Float64".equalsIgnoreCase(dataType)) {
+            throw new RuntimeException("输出数据类型只支持 Float32 / Float64");
+        }
+        BandMathExpression expression = BandMathExpression.compile(request.getExpression(), new ArrayList<>(inputs.keySet()));
+
+        nativeLibraryLoader.ensureGdal();
+        Map<String, String> paths = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : inputs.entrySet()) {
+            paths.put(e.getKey(), Paths.get(e.getValue()).toAbsolutePath().toString());
+        }
+        List<BandMathExpression.BandRef> refs = expression.getInputs();
+        double[] inputNoData = new double[refs.size()];
+        int width = -1;
+        int height = -1;
+        int blockHeight = 1;
+        double[] geoTransform = null;
+        String projection = null;
+        for (Map.Entry<String, String> e : paths.entrySet()) {
+            Dataset dataset = gdal.Open(e.getValue(), gdalconst.GA_ReadOnly);
+            if (dataset == null) {
+                throw new RuntimeException("无法打开栅格文件: " + inputs.get(e.getKey()));
+            }
+            try {
+                if (width < 0) {
+                    width = dataset.getRasterXSize();
+                    height = dataset.getRasterYSize();
+                    geoTransform = new double[6];
+                    dataset.GetGeoTransform(geoTransform);
+                    projection = dataset.GetProjection();
+                    blockHeight = Math.max(1, dataset.GetRasterBand(1).GetBlockYSize());
+                } else if (dataset.getRasterXSize() != width || dataset.getRasterYSize() != height) {
+                    throw new RuntimeException("输入栅格尺寸不一致: " + e.getKey() + " 为 "
+                            + dataset.getRasterXSize() + "x" + dataset.getRasterYSize() + "，应为 " + width + "x" + height);
+                }
+                for (int s = 0; s < refs.size(); s++) {
+                    BandMathExpression.BandRef ref = refs.get(s);
+                    if (!ref.getAlias().equals(e.getKey())) {
+                        continue;
+                    }
+                    if (ref.getBand() > dataset.getRasterCount()) {
+                        throw new RuntimeException("波段 " + ref + " 不存在，" + e.getKey() + " 共 "
+                                + dataset.getRasterCount() + " 个波段");
+                    }
+                    Double[] noData = new Double[1];
+                    dataset.GetRasterBand(ref.getBand()).GetNoDataValue(noData);
+                    inputNoData[s] = noData[0] == null ? Double.NaN : noData[0];
+                }
+            } finally {
+                dataset.delete();
+            }
+        }
+
+        // 条带行数按第一个输入的块高对齐，避免相邻条带重复解码同一块
+        int rows = Math.max(1, blockPixels / width);
+        if (rows >= blockHeight) {
+            rows = rows / blockHeight * blockHeight;
+        }
+        rows = Math.min(rows, height);
+        double noDataValue = request.getNoDataValue() == null ? Double.NaN : request.getNoDataValue();
+        return new Plan(expression, paths, width, height, geoTransform, projection, inputNoData,
+                "Float64".equalsIgnoreCase(dataType), noDataValue, rows);
+    }
+
+    /**
+     * 计算结果写入 GeoTIFF
+     */
+    public Map<String, Object> writeGeoTiff(Plan plan, String outputPath) throws InterruptedException {
+        Driver driver = gdal.GetDriverByName("GTiff");
+        String output = Paths.get(outputPath).toAbsolutePath().toString();
+        Dataset dataset = driver.Create(output, plan.width, plan.height, 1,
+                plan.float64 ? gdalconst.GDT_Float64 : gdalconst.GDT_Float32,
+                new String[]{"BIGTIFF=IF_SAFER", "ROWSPERSTRIP=" + plan.rowsPerStrip});
+        if (dataset == null) {
+            throw new RuntimeException("无法创建输出文件: " + gdal.GetLastErrorMsg());
+        }
+        boolean ok = false;
+        try {
+            if (plan.geoTransform != null) {
+                dataset.SetGeoTransform(plan.geoTransform);
+            }
+            if (plan.projection != null && !plan.projection.isEmpty()) {
+                dataset.SetProjection(plan.projection);
+            }
+            Band band = dataset.GetRasterBand(1);
+            band.SetNoDataValue(plan.noDataValue);
+            Map<String, Object> summary = run(plan, false, strip -> {
+                int result = plan.float64
+                        ? band.WriteRaster(0, strip.y, plan.width, strip.rows, gdalconst.GDT_Float64, (double[]) strip.data)
+                        : band.WriteRaster(0, strip.y, plan.width, strip.rows, gdalconst.GDT_Float32, (float[]) strip.data);
+                if (result != gdalconst.CE_None) {
+                    throw new IOException("写入输出失败: " + gdal.GetLastErrorMsg());
+                }
+            });
+            dataset.FlushCache();
+            summary.put("outputPath", outputPath);
+            ok = true;
+            return summary;
+        } finally {
+            dataset.delete();
+            if (!ok) {
+                driver.Delete(output);
+            }
+        }
+    }
+
+    /**
+     * 计算结果按行优先、小端序写入输出流
+     */
+    public Map<String, Object> stream(Plan plan, OutputStream out) throws InterruptedException {
+        return run(plan, true, strip -> out.write((byte[]) strip.data));
+    }
+
+    private Map<String, Object> run(Plan plan, boolean asBytes, StripSink sink) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        List<int[]> strips = new ArrayList<>();
+        for (int y = 0; y < plan.height; y += plan.rowsPerStrip) {
+            strips.add(new int[]{y, Math.min(plan.rowsPerStrip, plan.height - y)});
+        }
+        int parallelism = Math.max(1, parallelRasterExecutor.parallelism());
+        // 每个线程：寄存器 + 输入缓冲 + 输出缓冲 + 一份转换后的结果
+        long workspaceBytes = (long) parallelism * plan.rowsPerStrip * plan.width * Double.BYTES
+                * (plan.expression.getRegisterCount() + plan.expression.getInputs().size() + 2L);
+        GdalIoStats stats = gdalIoAccounting.current();
+        long noDataCount = 0;
+        MemoryBudget.Reservation reservation = memoryBudget.isEnabled() ? memoryBudget.acquire("algebra", workspaceBytes) : null;
+        // 分区任务借用、归还工作区，同时运行的任务不超过 parallelism 个；工作区随本次运行释放，与预算预留同生命周期
+        Queue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+        try {
+            for (int from = 0; from < strips.size(); from += parallelism) {
+                List<int[]> wave = strips.subList(from, Math.min(strips.size(), from + parallelism));
+                List<StripResult> results = parallelRasterExecutor.mapPartitions(wave, parallelism, slice -> {
+                    Workspace ws = workspaces.poll();
+                    if (ws == null) {
+                        ws = new Workspace(plan.expression, plan.rowsPerStrip * plan.width);
+                    }
+                    try {
+                        List<StripResult> computed = new ArrayList<>(slice.size());
+                        for (int[] strip : slice) {
+                            computed.add(computeStrip(plan, ws, stats, strip[0], strip[1], asBytes));
+                        }
+                        return computed;
+                    } finally {
+                        workspaces.add(ws);
+                    }
+                });
+                for (StripResult result : results) {
+                    noDataCount += result.noDataCount;
+                    sink.accept(result);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (reservation != null) {
+                reservation.close();
+            }
+        }
+        long elapsed = System.currentTimeMillis() - startTime;
+        long pixels = (long) plan.width * plan.height;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("expression", plan.expression.getSource());
+        summary.put("bands", plan.expression.getInputs().toString());
+        summary.put("width", plan.width);
+        summary.put("height", plan.height);
+        summary.put("dataType", plan.getDataType());
+        summary.put("noDataValue", plan.noDataValue);
+        summary.put("noDataCount", noDataCount);
+        summary.put("rowsPerStrip", plan.rowsPerStrip);
+        summary.put("processingTime", elapsed);
+        summary.put("megapixelsPerSecond", elapsed == 0 ? null : pixels / 1000.0 / elapsed);
+        return summary;
+    }
+
+    private StripResult computeStrip(Plan plan, Workspace ws, GdalIoStats stats, int y, int rows, boolean asBytes) {
+        List<BandMathExpression.BandRef> refs = plan.expression.getInputs();
+        int n = rows * plan.width;
+        Map<String, Dataset> open = new HashMap<>();
+        try {
+            for (int s = 0; s < refs.size(); s++) {
+                BandMathExpression.BandRef ref = refs.get(s);
+                String path = plan.paths.get(ref.getAlias());
+                Dataset dataset = open.get(ref.getAlias());
+                if (dataset == null) {
+                    dataset = gdal.Open(path, gdalconst.GA_ReadOnly);
+                    if (dataset == null) {
+                        throw new RuntimeException("无法打开栅格文件: " + path);
+                    }
+                    open.put(ref.getAlias(), dataset);
+                }
+                Band band = dataset.GetRasterBand(ref.getBand());
+                gdalIoAccounting.recordRead(stats, path, band, ref.getBand(), 0, y, plan.width, rows);
+                int result = band.ReadRaster(0, y, plan.width, rows, plan.width, rows, gdalconst.GDT_Float64, ws.inputs[s]);
+                if (result != gdalconst.CE_None) {
+                    throw new RuntimeException("读取 " + ref + " 失败: " + gdal.GetLastErrorMsg());
+                }
+            }
+        } finally {
+            for (Dataset dataset : open.values()) {
+                dataset.delete();
+            }
+        }
+        int noDataCount = ws.evaluator.evaluate(ws.inputs, plan.inputNoData, n, ws.out, plan.noDataValue);
+
+        Object data;
+        if (asBytes) {
+            ByteBuffer buffer = ByteBuffer.allocate(n * (plan.float64 ? Double.BYTES : Float.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+            if (plan.float64) {
+                buffer.asDoubleBuffer().put(ws.out, 0, n);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    buffer.putFloat(i * Float.BYTES, (float) ws.out[i]);
+                }
+            }
+            data = buffer.array();
+        } else if (plan.float64) {
+            double[] copy = new double[n];
+            System.arraycopy(ws.out, 0, copy, 0, n);
+            data = copy;
+        } else {
+            float[] copy = new float[n];
+            for (int i = 0; i < n; i++) {
+                copy[i] = (float) ws.out[i];
+            }
+            data = copy;
+        }
+        return new StripResult(y, rows, data, noDataCount);
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.rasterprocessing.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.rasterprocessing.util.HandlePool;
+import org.gdal.osr.CoordinateTransformation;
+import org.gdal.osr.SpatialReference;
+import org.gdal.osr.osr;
+import org.gdal.osr.osrConstants;
+import org.springframework.stereotype.Service;
+
+/**
+ * 坐标转换服务
+ * OSR 的 CoordinateTransformation 不是线程安全的，(源, 目标) 坐标系对应的转换对象放在跨线程共享的句柄池中，
+ * 使用期间由当前线程独占；空闲对象数有上限，淘汰或服务关闭时释放底层的 OSR 对象
+ */
+@Service
+public class CoordinateTransformService {
+
+    public static final String WGS84 = "EPSG:4326";
+
+    private static final int MAX_IDLE_TRANSFORMS = 64;
+
+    private final HandlePool<CoordinateTransformation> transforms =
+            new HandlePool<>(MAX_IDLE_TRANSFORMS, CoordinateTransformation::delete);
+
+    @PreDestroy
+    public void shutdown() {
+        transforms.close();
+    }
+
+    /**
+     * 解析坐标系，支持 EPSG:xxxx、WKT、PROJ 字符串等 GDAL 可识别的写法；统一使用经度在前的轴序
+     */
+    public SpatialReference parseCrs(String crs) {
+        SpatialReference srs = new SpatialReference();
+        int err;
+        try {
+            err = srs.SetFromUserInput(crs);
+        } catch (RuntimeException e) {
+            err = 1;
+        }
+        if (err != 0) {
+            srs.delete();
+            throw new RuntimeException("无法识别的坐标系: " + crs);
+        }
+        srs.SetAxisMappingStrategy(osrConstants.OAMS_TRADITIONAL_GIS_ORDER);
+        return srs;
+    }
+
+    /**
+     * 原地转换点坐标，每个点为 {x, y}；转换失败的点置为 NaN
+     */
+    public void transform(String sourceCrs, String targetCrs, double[][] points) {
+        if (sourceCrs.equals(targetCrs) || points.length == 0) {
+            return;
+        }
+        String key = sourceCrs + "\n=>\n" + targetCrs;
+        CoordinateTransformation ct = transforms.borrow(key, null, () -> create(sourceCrs, targetCrs));
+        boolean broken = true;
+        try {
+            ct.TransformPoints(points);
+            broken = false;
+        } finally {
+            transforms.release(key, null, ct, broken);
+        }
+        for (double[] p : points) {
+            if (!Double.isFinite(p[0]) || !Double.isFinite(p[1])) {
+                p[0] = Double.NaN;
+                p[1] = Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * 转换外包矩形 {minX, minY, maxX, maxY}，沿四边加密采样以覆盖投影后弯曲的边界
+     * @return 目标坐标系下的外包矩形，全部点转换失败时返回 null
+     */
+    public double[] transformBounds(String sourceCrs, String targetCrs, double[] bounds, int densify) {
+        if (sourceCrs.equals(targetCrs)) {
+            return bounds.clone();
+        }
+        int steps = Math.max(1, densify);
+        double[][] points = new double[steps * 4][];
+        int i = 0;
+        for (int s = 0; s < steps; s++) {
+            double t = (double) s / steps;
+            double x = bounds[0] + (bounds[2] - bounds[0]) * t;
+            double y = bounds[1] + (bounds[3] - bounds[1]) * t;
+            points[i++] = new double[]{x, bounds[1]};
+            points[i++] = new double[]{bounds[2], y};
+            points[i++] = new double[]{bounds[2] - (x - bounds[0]), bounds[3]};
+            points[i++] = new double[]{bounds[0], bounds[3] - (y - bounds[1])};
+        }
+        transform(sourceCrs, targetCrs, points);
+        return envelope(points);
+    }
+
+    /**
+     * 由地理变换参数求栅格在原坐标系下的外包矩形
+     */
+    public static double[] rasterBounds(double[] geoTransform, int width, int height) {
+        double[][] corners = {
+                pixelToGeo(geoTransform, 0, 0), pixelToGeo(geoTransform, width, 0),
+                pixelToGeo(geoTransform, 0, height), pixelToGeo(geoTransform, width, height)
+        };
+        return envelope(corners);
+    }
+
+    /**
+     * 像素/行坐标转地理坐标
+     */
+    public static double[] pixelToGeo(double[] gt, double px, double py) {
+        return new double[]{gt[0] + px * gt[1] + py * gt[2], gt[3] + px * gt[4] + py * gt[5]};
+    }
+
+    /**
+     * 求地理变换的逆变换，用于地理坐标转像素坐标
+     */
+    public static double[] invertGeoTransform(double[] gt) {
+        double det = gt[1] * gt[5] - gt[2] * gt[4];
+        if (Math.abs(det) < 1e-15) {
+            throw new RuntimeException("地理变换参数不可逆");
+        }
+        double inv = 1.0 / det;
+        return new double[]{
+                (gt[2] * gt[3] - gt[0] * gt[5]) * inv, gt[5] * inv, -gt[2] * inv,
+                (-gt[1] * gt[3] + gt[0] * gt[4]) * inv, -gt[4] * inv, gt[1] * inv
+        };
+    }
+
+    private static double[] envelope(double[][] points) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (double[] p : points) {
+            if (Double.isNaN(p[0]) || Double.isNaN(p[1])) {
+                continue;
+            }
+            minX = Math.min(minX, p[0]);
+            minY = Math.min(minY, p[1]);
+            maxX = Math.max(maxX, p[0]);
+            maxY = Math.max(maxY, p[1]);
+        }
+        return minX > maxX ? null : new double[]{minX, minY, maxX, maxY};
+    }
+
+    private CoordinateTransformation create(String sourceCrs, String targetCrs) {
+        CoordinateTransformation ct;
+        SpatialReference source = parseCrs(sourceCrs);
+        SpatialReference target = parseCrs(targetCrs);
+        try {
+            ct = osr.CreateCoordinateTransformation(source, target);
+        } finally {
+            source.delete();
+            target.delete();
+        }
+        if (ct == null) {
+            throw new RuntimeException("无法创建坐标转换: " + sourceCrs + " -> " + targetCrs);
+        }
+        return ct;
+    }
+}
@@ -0,0 +1,255 @@
+package org.example.rasterprocessing.service;
+
+import jakarta.annotation.PostConstruct;
+import org.example.rasterprocessing.util.EntityTags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 处理结果下载
+ * 只允许下载 raster.download.roots 下的文件（按真实路径判断，符号链接不能越界）；
+ * 按 ETag（修改时间 + 大小）与 Last-Modified 处理条件请求，支持单段 Range 与 If-Range 断点续传。
+ * 本类只决定返回哪一段，字节由控制器交给容器的 sendfile 或 FileChannel.transferTo 发送
+ */
+@Service
+public class FileDownloadService {
+
+    @Value("${raster.download.roots:./data}")
+    private String roots;
+
+    private final List<Path> rootPaths = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        rootPaths.clear();
+        for (String root : roots.split(",")) {
+            if (!root.trim().isEmpty()) {
+                rootPaths.add(Paths.get(root.trim()).toAbsolutePath().normalize());
+            }
+        }
+    }
+
+    /**
+     * 一次下载响应：状态码与要发送的字节区间
+     */
+    public static class Download {
+        private final Path path;
+        private final int status;
+        private final long start;
+        private final long length;
+        private final long size;
+        private final String etag;
+        private final long lastModified;
+        private final String contentType;
+
+        Download(Path path, int status, long start, long length, long size, String etag, long lastModified,
+                 String contentType) {
+            this.path = path;
+            this.status = status;
+            this.start = start;
+            this.length = length;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /** 200 / 206 / 304 / 416 */
+        public int getStatus() {
+            return status;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public boolean hasBody() {
+            return (status == HttpStatus.OK.value() || status == HttpStatus.PARTIAL_CONTENT.value()) && length > 0;
+        }
+
+        /** 206 的 Content-Range；416 时只给出文件大小 */
+        public String getContentRange() {
+            if (status == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                return "bytes */" + size;
+            }
+            return "bytes " + start + "-" + (start + length - 1) + "/" + size;
+        }
+    }
+
+    /**
+     * 解析为允许下载的真实路径。先按规范化后的路径判断是否在下载目录中，越界的路径不会触及文件系统；
+     * 再解析符号链接并复查真实路径。越界、不存在、不是普通文件一律抛出相同的 NoSuchFileException，
+     * 调用方无法借此探测下载目录之外的文件是否存在
+     * @throws NoSuchFileException 文件不存在、不是普通文件或不在下载目录中
+     * @throws SecurityException 未配置下载目录
+     */
+    public Path resolve(String filePath) throws IOException {
+        if (rootPaths.isEmpty()) {
+            throw new SecurityException("未配置下载目录（raster.download.roots）");
+        }
+        Path normalized;
+        try {
+            normalized = Paths.get(filePath).toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            throw new NoSuchFileException(filePath);
+        }
+        if (rootPaths.stream().noneMatch(normalized::startsWith)) {
+            throw new NoSuchFileException(filePath);
+        }
+        Path real;
+        try {
+            real = normalized.toRealPath();
+        } catch (IOException e) {
+            throw new NoSuchFileException(filePath);
+        }
+        // 目录中的符号链接可能指向目录之外
+        if (Files.isRegularFile(real)) {
+            for (Path root : rootPaths) {
+                if (Files.isDirectory(root) && real.startsWith(root.toRealPath())) {
+                    return real;
+                }
+            }
+        }
+        throw new NoSuchFileException(filePath);
+    }
+
+    /**
+     * 按条件请求头与 Range 决定响应
+     * @param range Range 头，可为 null
+     * @param ifNoneMatch If-None-Match 头，可为 null
+     * @param ifModifiedSince If-Modified-Since（毫秒），没有时为 -1
+     * @param ifRange If-Range 头（ETag 或 HTTP 日期），可为 null
+     */
+    public Download plan(Path file, String range, String ifNoneMatch, long ifModifiedSince, String ifRange)
+            throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long mtime = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(mtime) + "-" + Long.toHexString(size) + "\"";
+        String contentType = Files.probeContentType(file);
+        if (contentType == null) {
+            contentType = "application/octet-stream";
+        }
+
+        // If-None-Match 优先于 If-Modified-Since（HTTP 日期只精确到秒）
+        boolean notModified = ifNoneMatch != null ? EntityTags.matchesAny(ifNoneMatch, etag)
+                : ifModifiedSince >= 0 && mtime / 1000 <= ifModifiedSince / 1000;
+        if (notModified) {
+            return new Download(file, HttpStatus.NOT_MODIFIED.value(), 0, 0, size, etag, mtime, contentType);
+        }
+
+        Download full = new Download(file, HttpStatus.OK.value(), 0, size, size, etag, mtime, contentType);
+        if (range == null || (ifRange != null && !ifRangeMatches(ifRange, etag, mtime))) {
+            return full;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            // 语法错误的 Range 按规范忽略
+            return full;
+        }
+        if (ranges.size() != 1) {
+            // 多段范围需要 multipart/byteranges，续传客户端只发单段，直接返回整个文件
+            return full;
+        }
+        try {
+            long start = ranges.get(0).getRangeStart(size);
+            long end = ranges.get(0).getRangeEnd(size);
+            if (end >= start) {
+                return new Download(file, HttpStatus.PARTIAL_CONTENT.value(), start, end - start + 1, size, etag,
+                        mtime, contentType);
+            }
+        } catch (IllegalArgumentException e) {
+            // 起点超出文件末尾
+        }
+        return new Download(file, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), 0, 0, size, etag, mtime,
+                contentType);
+    }
+
+    /**
+     * 用 FileChannel.transferTo 发送区间：目标是套接字通道时由内核直接拷贝，否则只经过通道实现的小缓冲
+     * @return 发送的字节数
+     */
+    public long transfer(Download download, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = download.getStart();
+        long remaining = download.getLength();
+        try (FileChannel channel = FileChannel.open(download.getPath(), StandardOpenOption.READ)) {
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    // 文件在发送过程中被截断
+                    throw new IOException("文件在下载过程中被修改: " + download.getPath());
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+        out.flush();
+        return download.getLength();
+    }
+
+    /**
+     * If-Range 使用强比较：弱 ETag 永不匹配，日期须与修改时间（秒）完全一致
+     */
+    private static boolean ifRangeMatches(String ifRange, String etag, long mtime) {
+        String value = ifRange.trim();
+        if (value.startsWith("W/")) {
+            return false;
+        }
+        if (value.startsWith("\"")) {
+            return value.equals(etag);
+        }
+        try {
+            long date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date / 1000 == mtime / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
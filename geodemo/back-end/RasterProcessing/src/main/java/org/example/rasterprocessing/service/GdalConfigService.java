@@ -0,0 +1,135 @@
+package org.example.rasterprocessing.service;
+
+import jakarta.annotation.PostConstruct;
+import org.example.rasterprocessing.config.GdalProperties;
+import org.gdal.gdal.gdal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * GDAL 配置服务 - 启动时应用 raster.gdal.* 配置，并支持运行时调整
+ * 注意：NUM_THREADS、VSI_CACHE 等选项只对之后打开的数据集生效
+ */
+@Service
+public class GdalConfigService {
+
+    @Autowired
+    private GdalProperties properties;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
+
+    @PostConstruct
+    public void init() {
+        nativeLibraryLoader.preloadGdal();
+        apply();
+        System.out.println("GDAL配置已应用: " + describe());
+    }
+
+    /**
+     * 将当前配置写入 GDAL
+     */
+    public synchronized void apply() {
+        gdal.SetCacheMax(parseCacheSize(properties.effectiveCacheMax()));
+        gdal.SetConfigOption("GDAL_NUM_THREADS", properties.effectiveNumThreads());
+        gdal.SetConfigOption("VSI_CACHE", properties.effectiveVsiCache() ? "TRUE" : "FALSE");
+        gdal.SetConfigOption("VSI_CACHE_SIZE", String.valueOf(properties.effectiveVsiCacheSize()));
+        for (Map.Entry<String, String> option : properties.getOptions().entrySet()) {
+            gdal.SetConfigOption(option.getKey(), option.getValue());
+        }
+    }
+
+    /**
+     * 切换配置档，清除之前显式覆盖的同名项
+     */
+    public synchronized void switchProfile(GdalProperties.Profile profile) {
+        properties.setProfile(profile);
+        properties.setCacheMax(null);
+        properties.setNumThreads(null);
+        properties.setVsiCache(null);
+        properties.setVsiCacheSize(null);
+        apply();
+    }
+
+    /**
+     * 运行时调整，参数为 null 的项保持不变
+     */
+    public synchronized void update(String cacheMax, String numThreads, Boolean vsiCache, Long vsiCacheSize,
+                                    Map<String, String> options) {
+        if (cacheMax != null) {
+            parseCacheSize(cacheMax); // 先校验
+            properties.setCacheMax(cacheMax);
+        }
+        if (numThreads != null) {
+            properties.setNumThreads(numThreads);
+        }
+        if (vsiCache != null) {
+            properties.setVsiCache(vsiCache);
+        }
+        if (vsiCacheSize != null) {
+            properties.setVsiCacheSize(vsiCacheSize);
+        }
+        if (options != null) {
+            properties.getOptions().putAll(options);
+        }
+        apply();
+    }
+
+    /**
+     * 当前生效的配置
+     */
+    public synchronized Map<String, Object> describe() {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("profile", properties.getProfile());
+        config.put("cacheMax", properties.effectiveCacheMax());
+        config.put("cacheMaxBytes", gdal.GetCacheMax());
+        config.put("numThreads", properties.effectiveNumThreads());
+        config.put("vsiCache", properties.effectiveVsiCache());
+        config.put("vsiCacheSize", properties.effectiveVsiCacheSize());
+        config.put("options", new LinkedHashMap<>(properties.getOptions()));
+        return config;
+    }
+
+    /**
+     * 解析缓存大小：字节数、KB/MB/GB 后缀或物理内存百分比
+     */
+    static long parseCacheSize(String value) {
+        String v = value.trim().toUpperCase(Locale.ROOT);
+        try {
+            if (v.endsWith("%")) {
+                double percent = Double.parseDouble(v.substring(0, v.length() - 1));
+                if (percent <= 0 || percent > 90) {
+                    throw new IllegalArgumentException("缓存百分比须在 (0, 90] 之间: " + value);
+                }
+                return (long) (physicalMemoryBytes() * percent / 100.0);
+            }
+            long unit = 1;
+            if (v.endsWith("KB")) {
+                unit = 1024L;
+            } else if (v.endsWith("MB")) {
+                unit = 1024L * 1024;
+            } else if (v.endsWith("GB")) {
+                unit = 1024L * 1024 * 1024;
+            }
+            if (unit > 1) {
+                v = v.substring(0, v.length() - 2).trim();
+            }
+            return (long) (Double.parseDouble(v) * unit);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无法解析缓存大小: " + value);
+        }
+    }
+
+    private static long physicalMemoryBytes() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize();
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.rasterprocessing.service;
+
+/**
+ * 逐个注册 GDAL 驱动
+ * GDAL 的 Java 绑定只提供 gdal.AllRegister()，单个驱动的 GDALRegister_xxx 由 java22 profile 中的
+ * ForeignGdalDriverRegistrar 通过 FFM 调用；没有该实现时 NativeLibraryLoader 回退到全部注册后注销
+ */
+interface GdalDriverRegistrar {
+
+    /**
+     * 注册一个驱动
+     * @param driverName 驱动短名（区分大小写，如 GTiff、netCDF）
+     * @return 驱动已编译进 GDAL 或有同名插件并注册成功时返回 true
+     */
+    boolean register(String driverName);
+}
@@ -0,0 +1,191 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.config.GdalProperties;
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.gdal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GDAL I/O 记账服务
+ * GDAL 不对外暴露块缓存命中计数，这里只报告可观测的数据：块缓存的实际占用与上限（gdal.GetCacheUsed / GetCacheMax）、
+ * 每次窗口读取覆盖的块数与请求的字节数，以及进程从存储实际读取的字节数（Linux 的 /proc/self/io）
+ */
+@Service
+public class GdalIoAccounting {
+
+    private static final Path PROC_IO = Paths.get("/proc/self/io");
+
+    @Autowired
+    private GdalProperties properties;
+
+    private final ThreadLocal<GdalIoStats> current = new ThreadLocal<>();
+
+    private final Deque<GdalIoStats> recent = new ArrayDeque<>();
+
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong totalReads = new AtomicLong();
+    private final AtomicLong totalBlocks = new AtomicLong();
+    private final AtomicLong totalBlockBytes = new AtomicLong();
+    private final AtomicLong totalBytesRequested = new AtomicLong();
+
+    /**
+     * 开始记录当前线程上的请求
+     */
+    public GdalIoStats begin(String request) {
+        GdalIoStats stats = new GdalIoStats(request);
+        current.set(stats);
+        return stats;
+    }
+
+    /**
+     * 结束记录并归档
+     */
+    public GdalIoStats end() {
+        GdalIoStats stats = current.get();
+        current.remove();
+        if (stats == null) {
+            return null;
+        }
+        stats.finish(gdal.GetCacheUsed());
+        totalRequests.incrementAndGet();
+        synchronized (recent) {
+            recent.addLast(stats);
+            while (recent.size() > Math.max(1, properties.getRecentRequests())) {
+                recent.removeFirst();
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 当前线程的请求统计，供并行任务显式传递
+     */
+    public GdalIoStats current() {
+        return current.get();
+    }
+
+    /**
+     * 记录一次窗口读取（统计归入当前线程的请求）
+     */
+    public void recordRead(String filePath, Band band, int bandIndex, int x, int y, int width, int height) {
+        recordRead(current.get(), filePath, band, bandIndex, x, y, width, height);
+    }
+
+    /**
+     * 记录一次窗口读取
+     */
+    public void recordRead(GdalIoStats stats, String filePath, Band band, int bandIndex,
+                           int x, int y, int width, int height) {
+        int pixelBytes = Math.max(1, gdal.GetDataTypeSize(band.getDataType()) / 8);
+        record(stats, band.GetBlockXSize(), band.GetBlockYSize(), pixelBytes, x, y, width, height);
+    }
+
+    /**
+     * 按块布局记录一次窗口读取
+     */
+    void record(GdalIoStats stats, int blockXSize, int blockYSize, int pixelBytes,
+                int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        long blocks = blocksTouched(blockXSize, blockYSize, x, y, width, height);
+        long blockBytes = blocks * Math.max(1, blockXSize) * Math.max(1, blockYSize) * pixelBytes;
+        long requested = (long) width * height * pixelBytes;
+        totalReads.incrementAndGet();
+        totalBlocks.addAndGet(blocks);
+        totalBlockBytes.addAndGet(blockBytes);
+        totalBytesRequested.addAndGet(requested);
+        if (stats != null) {
+            stats.record(blocks, blockBytes, requested);
+        }
+    }
+
+    /**
+     * 窗口覆盖的块数
+     */
+    static long blocksTouched(int blockXSize, int blockYSize, int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        int bx = Math.max(1, blockXSize);
+        int by = Math.max(1, blockYSize);
+        long columns = (x + width - 1) / bx - x / bx + 1;
+        long rows = (y + height - 1) / by - y / by + 1;
+        return columns * rows;
+    }
+
+    /**
+     * 全局块缓存与 I/O 汇总
+     */
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        long used = gdal.GetCacheUsed();
+        long max = gdal.GetCacheMax();
+        summary.put("cacheUsedBytes", used);
+        summary.put("cacheMaxBytes", max);
+        summary.put("cacheUsage", max == 0 ? 0.0 : (double) used / max);
+        summary.put("requests", totalRequests.get());
+        summary.put("reads", totalReads.get());
+        summary.put("blocksTouched", totalBlocks.get());
+        summary.put("blockBytes", totalBlockBytes.get());
+        summary.put("bytesRequested", totalBytesRequested.get());
+        // 进程级计数，包含 GDAL 以外的读取（例如内存映射读取与结果下载）
+        Map<String, Long> io = readProcessIo();
+        summary.put("processReadBytes", io.get("read_bytes"));
+        summary.put("processReadChars", io.get("rchar"));
+        return summary;
+    }
+
+    /**
+     * 最近请求的 I/O 明细，最新的在前
+     */
+    public List<GdalIoStats> recentRequests() {
+        synchronized (recent) {
+            List<GdalIoStats> list = new ArrayList<>(recent);
+            java.util.Collections.reverse(list);
+            return list;
+        }
+    }
+
+    private static Map<String, Long> readProcessIo() {
+        try {
+            return parseIoCounters(Files.readAllLines(PROC_IO));
+        } catch (IOException | SecurityException e) {
+            // 非 Linux 或无权读取
+            return new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * 解析 /proc/[pid]/io（每行 "name: value"）
+     */
+    static Map<String, Long> parseIoCounters(List<String> lines) {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        for (String line : lines) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            try {
+                counters.put(line.substring(0, colon).trim(), Long.parseLong(line.substring(colon + 1).trim()));
+            } catch (NumberFormatException e) {
+                // 忽略无法识别的行
+            }
+        }
+        return counters;
+    }
+}
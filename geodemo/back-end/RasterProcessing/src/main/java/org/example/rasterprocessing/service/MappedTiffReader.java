@@ -0,0 +1,457 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.util.RasterBuffer;
+import org.example.rasterprocessing.util.TiffDirectory;
+import org.example.rasterprocessing.util.TiffParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 内存映射 GeoTIFF 读取服务
+ * 对未压缩的条带/瓦片 TIFF 直接从 FileChannel.map 得到的缓冲区取值，绕过 GDAL 块缓存和 JNI 拷贝；
+ * 其他文件由调用方回退到 GDAL
+ */
+@Service
+public class MappedTiffReader {
+
+    /** 每个映射段的步长；相邻段重叠一个最大数据块，保证任一数据块落在单个段内 */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final int TYPE_U8 = 0, TYPE_I8 = 1, TYPE_U16 = 2, TYPE_I16 = 3,
+            TYPE_U32 = 4, TYPE_I32 = 5, TYPE_F32 = 6, TYPE_F64 = 7;
+
+    @Value("${raster.mmap.enabled:true}")
+    private boolean enabled;
+
+    @Value("${raster.mmap.max-open-files:64}")
+    private int maxOpenFiles;
+
+    private final LinkedHashMap<String, MappedTiff> openFiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 文件是否可由映射读取器处理（未压缩、样本类型受支持的 TIFF）
+     */
+    public boolean supports(String filePath) {
+        if (!enabled || !isTiffExtension(filePath)) {
+            return false;
+        }
+        MappedTiff tiff = open(filePath);
+        return tiff != null && tiff.supported;
+    }
+
+    /**
+     * 数据块（瓦片或条带）尺寸 {宽, 高}，与 GDAL GTiff 驱动报告的块大小一致
+     */
+    public int[] blockSize(String filePath) {
+        MappedTiff tiff = require(filePath, 1);
+        return new int[]{tiff.chunkWidth, tiff.chunkHeight};
+    }
+
+    /**
+     * 读取窗口像素值，语义与 GDAL ReadRaster(GDT_Float64) 一致
+     */
+    public double[] readWindow(String filePath, int bandIndex, int x, int y, int width, int height) {
+        MappedTiff tiff = require(filePath, bandIndex);
+        checkWindow(tiff, x, y, width, height);
+        if ((long) width * height > RasterBuffer.MAX_ARRAY_LENGTH) {
+            throw new RuntimeException("读取窗口过大: " + (long) width * height + " 像素，请改用 RasterBuffer");
+        }
+        double[] buffer = new double[width * height];
+        int band = bandIndex - 1;
+        int cyStart = y / tiff.chunkHeight;
+        int cyEnd = (y + height - 1) / tiff.chunkHeight;
+        int cxStart = x / tiff.chunkWidth;
+        int cxEnd = (x + width - 1) / tiff.chunkWidth;
+
+        for (int cy = cyStart; cy <= cyEnd; cy++) {
+            for (int cx = cxStart; cx <= cxEnd; cx++) {
+                int chunkX = cx * tiff.chunkWidth;
+                int chunkY = cy * tiff.chunkHeight;
+                int x0 = Math.max(x, chunkX);
+                int x1 = Math.min(x + width, chunkX + tiff.chunkWidth);
+                int y0 = Math.max(y, chunkY);
+                int y1 = Math.min(y + height, chunkY + tiff.chunkHeight);
+                int chunk = tiff.chunkIndex(band, cx, cy);
+                ByteBuffer data = tiff.chunkBuffer(chunk);
+                for (int row = y0; row < y1; row++) {
+                    int outPos = (row - y) * width + (x0 - x);
+                    if (data == null) {
+                        java.util.Arrays.fill(buffer, outPos, outPos + (x1 - x0), tiff.fillValue);
+                        continue;
+                    }
+                    int pos = tiff.position(chunk, band, x0 - chunkX, row - chunkY);
+                    tiff.readRow(data, pos, x1 - x0, buffer, outPos);
+                }
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * 读取窗口像素值到堆外缓冲（尺寸须与窗口一致），按输出行逐行拼接，堆上只占一行
+     */
+    public void readWindow(String filePath, int bandIndex, int x, int y, RasterBuffer out) {
+        MappedTiff tiff = require(filePath, bandIndex);
+        int width = out.getWidth();
+        int height = out.getHeight();
+        checkWindow(tiff, x, y, width, height);
+        double[] row = new double[width];
+        int band = bandIndex - 1;
+        int cxStart = x / tiff.chunkWidth;
+        int cxEnd = (x + width - 1) / tiff.chunkWidth;
+
+        for (int r = y; r < y + height; r++) {
+            int cy = r / tiff.chunkHeight;
+            int chunkY = cy * tiff.chunkHeight;
+            for (int cx = cxStart; cx <= cxEnd; cx++) {
+                int chunkX = cx * tiff.chunkWidth;
+                int x0 = Math.max(x, chunkX);
+                int x1 = Math.min(x + width, chunkX + tiff.chunkWidth);
+                int chunk = tiff.chunkIndex(band, cx, cy);
+                ByteBuffer data = tiff.chunkBuffer(chunk);
+                if (data == null) {
+                    java.util.Arrays.fill(row, x0 - x, x1 - x, tiff.fillValue);
+                    continue;
+                }
+                tiff.readRow(data, tiff.position(chunk, band, x0 - chunkX, r - chunkY), x1 - x0, row, x0 - x);
+            }
+            out.put((long) (r - y) * width, row, 0, width);
+        }
+    }
+
+    private static void checkWindow(MappedTiff tiff, int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0
+                || (long) x + width > tiff.width || (long) y + height > tiff.height) {
+            throw new RuntimeException("读取窗口越界: (" + x + ", " + y + ", " + width + ", " + height + ")");
+        }
+    }
+
+    /**
+     * 全波段统计（排除 NoData 与 NaN），按数据块并行扫描
+     */
+    public Map<String, Double> statistics(String filePath, int bandIndex) {
+        MappedTiff tiff = require(filePath, bandIndex);
+        int band = bandIndex - 1;
+        int chunksPerBand = tiff.chunksAcross * tiff.chunksDown;
+
+        double[] total = IntStream.range(0, chunksPerBand).parallel()
+                .mapToObj(c -> scanChunk(tiff, band, c % tiff.chunksAcross, c / tiff.chunksAcross))
+                .reduce(MappedTiffReader::merge)
+                .orElse(null);
+        if (total == null || total[0] == 0) {
+            throw new RuntimeException("波段没有有效像素: " + bandIndex);
+        }
+
+        Map<String, Double> statistics = new HashMap<>();
+        statistics.put("min", total[3]);
+        statistics.put("max", total[4]);
+        statistics.put("mean", total[1]);
+        statistics.put("stddev", Math.sqrt(total[2] / total[0]));
+        return statistics;
+    }
+
+    /**
+     * 扫描单个数据块，返回 {count, mean, M2, min, max}
+     */
+    private double[] scanChunk(MappedTiff tiff, int band, int cx, int cy) {
+        int chunkX = cx * tiff.chunkWidth;
+        int chunkY = cy * tiff.chunkHeight;
+        int cols = Math.min(tiff.chunkWidth, tiff.width - chunkX);
+        int rows = Math.min(tiff.chunkHeight, tiff.height - chunkY);
+        int chunk = tiff.chunkIndex(band, cx, cy);
+        ByteBuffer data = tiff.chunkBuffer(chunk);
+        double[] row = new double[cols];
+
+        long count = 0;
+        double shift = Double.NaN;
+        double s1 = 0;
+        double s2 = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int r = 0; r < rows; r++) {
+            if (data == null) {
+                java.util.Arrays.fill(row, tiff.fillValue);
+            } else {
+                tiff.readRow(data, tiff.position(chunk, band, 0, r), cols, row, 0);
+            }
+            for (int i = 0; i < cols; i++) {
+                double v = row[i];
+                if (v != v || (tiff.hasNoData && v == tiff.noData)) {
+                    continue;
+                }
+                if (shift != shift) {
+                    shift = v;
+                }
+                double d = v - shift;
+                s1 += d;
+                s2 += d * d;
+                count++;
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+            }
+        }
+        if (count == 0) {
+            return new double[]{0, 0, 0, min, max};
+        }
+        double meanShifted = s1 / count;
+        double m2 = Math.max(0, s2 - s1 * meanShifted);
+        return new double[]{count, shift + meanShifted, m2, min, max};
+    }
+
+    /**
+     * Chan 并行合并公式
+     */
+    private static double[] merge(double[] a, double[] b) {
+        if (a[0] == 0) {
+            return b;
+        }
+        if (b[0] == 0) {
+            return a;
+        }
+        double n = a[0] + b[0];
+        double delta = b[1] - a[1];
+        double mean = a[1] + delta * b[0] / n;
+        double m2 = a[2] + b[2] + delta * delta * a[0] * b[0] / n;
+        return new double[]{n, mean, m2, Math.min(a[3], b[3]), Math.max(a[4], b[4])};
+    }
+
+    private MappedTiff require(String filePath, int bandIndex) {
+        MappedTiff tiff = open(filePath);
+        if (tiff == null || !tiff.supported) {
+            throw new RuntimeException("映射读取器不支持该文件: " + filePath);
+        }
+        if (bandIndex < 1 || bandIndex > tiff.bands) {
+            throw new RuntimeException("无法获取波段: " + bandIndex);
+        }
+        return tiff;
+    }
+
+    /**
+     * 取已映射的文件，按修改时间和大小判断是否失效
+     */
+    private MappedTiff open(String filePath) {
+        Path path = Paths.get(filePath);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        long mtime = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        synchronized (openFiles) {
+            MappedTiff cached = openFiles.get(filePath);
+            if (cached != null && cached.mtime == mtime && cached.size == size) {
+                return cached;
+            }
+        }
+
+        MappedTiff tiff = new MappedTiff(mtime, size);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            tiff.init(TiffParser.parse(channel, true), channel);
+        } catch (IOException | RuntimeException e) {
+            tiff.supported = false;
+        }
+
+        synchronized (openFiles) {
+            openFiles.put(filePath, tiff);
+            while (openFiles.size() > Math.max(1, maxOpenFiles)) {
+                openFiles.remove(openFiles.keySet().iterator().next());
+            }
+        }
+        return tiff;
+    }
+
+    private static boolean isTiffExtension(String filePath) {
+        String lower = filePath.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".tif") || lower.endsWith(".tiff");
+    }
+
+    /**
+     * 已映射的 TIFF 文件
+     */
+    private static class MappedTiff {
+        final long mtime;
+        final long size;
+        boolean supported;
+
+        int width;
+        int height;
+        int bands;
+        int chunkWidth;
+        int chunkHeight;
+        int chunksAcross;
+        int chunksDown;
+        boolean planar;
+        int type;
+        int bytesPerSample;
+        int pixelStride;
+        long[] offsets;
+        long[] byteCounts;
+        MappedByteBuffer[] segments;
+        boolean hasNoData;
+        double noData;
+        double fillValue;
+
+        MappedTiff(long mtime, long size) {
+            this.mtime = mtime;
+            this.size = size;
+        }
+
+        void init(TiffDirectory dir, FileChannel channel) throws IOException {
+            if (dir.getCompression() != 1 || !dir.hasUniformBitsPerSample()) {
+                return;
+            }
+            type = sampleType(dir.getSampleFormat(), dir.getBitsPerSample());
+            if (type < 0) {
+                return;
+            }
+            width = dir.getWidth();
+            height = dir.getHeight();
+            bands = dir.getSamplesPerPixel();
+            chunkWidth = dir.getChunkWidth();
+            chunkHeight = dir.getChunkHeight();
+            offsets = dir.getChunkOffsets();
+            byteCounts = dir.getChunkByteCounts();
+            planar = dir.getPlanarConfiguration() == 2;
+            if (width <= 0 || height <= 0 || chunkWidth <= 0 || chunkHeight <= 0
+                    || offsets == null || byteCounts == null || offsets.length != byteCounts.length) {
+                return;
+            }
+            chunksAcross = (width + chunkWidth - 1) / chunkWidth;
+            chunksDown = (height + chunkHeight - 1) / chunkHeight;
+            long expectedChunks = (long) chunksAcross * chunksDown * (planar ? bands : 1);
+            if (offsets.length < expectedChunks) {
+                return;
+            }
+            bytesPerSample = dir.getBitsPerSample() / 8;
+            pixelStride = planar ? bytesPerSample : bytesPerSample * bands;
+
+            Double nd = dir.getNoData();
+            hasNoData = nd != null && !nd.isNaN();
+            noData = nd != null ? nd : 0;
+            fillValue = nd != null ? nd : 0;
+
+            long maxChunk = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                if (byteCounts[i] > 0 && offsets[i] + byteCounts[i] > size) {
+                    return;
+                }
+                maxChunk = Math.max(maxChunk, byteCounts[i]);
+            }
+            if (SEGMENT_SIZE + maxChunk > Integer.MAX_VALUE) {
+                return;
+            }
+            int segmentCount = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            segments = new MappedByteBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++) {
+                long start = s * SEGMENT_SIZE;
+                long length = Math.min(size - start, SEGMENT_SIZE + maxChunk);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                segment.order(dir.getByteOrder());
+                segments[s] = segment;
+            }
+            supported = true;
+        }
+
+        int chunkIndex(int band, int cx, int cy) {
+            int index = cy * chunksAcross + cx;
+            return planar ? band * chunksAcross * chunksDown + index : index;
+        }
+
+        /**
+         * 数据块所在的映射段，稀疏（未写入）的块返回 null
+         */
+        ByteBuffer chunkBuffer(int chunk) {
+            if (byteCounts[chunk] == 0) {
+                return null;
+            }
+            return segments[(int) (offsets[chunk] / SEGMENT_SIZE)];
+        }
+
+        /**
+         * 块内 (col, row) 处样本在映射段中的绝对位置
+         */
+        int position(int chunk, int band, int col, int row) {
+            long local = offsets[chunk] % SEGMENT_SIZE;
+            long pos = local + ((long) row * chunkWidth + col) * pixelStride;
+            if (!planar) {
+                pos += (long) band * bytesPerSample;
+            }
+            return (int) pos;
+        }
+
+        /**
+         * 连续读取 n 个样本并转换为 double
+         */
+        void readRow(ByteBuffer data, int pos, int n, double[] out, int outPos) {
+            int stride = pixelStride;
+            switch (type) {
+                case TYPE_U8:
+                    for (int i = 0; i < n; i++, pos += stride) out[outPos + i] = data.get(pos) & 0xFF;
+                    break;
+                case TYPE_I8:
+                    for (int i = 0; i < n; i++, pos += stride) out[outPos + i] = data.get(pos);
+                    break;
+                case TYPE_U16:
+                    for (int i = 0; i < n; i++, pos += stride) out[outPos + i] = data.getShort(pos) & 0xFFFF;
+                    break;
+                case TYPE_I16:
+                    for (int i = 0; i < n; i++, pos += stride) out[outPos + i] = data.getShort(pos);
+                    break;
+                case TYPE_U32:
+                    for (int i = 0; i < n; i++, pos += stride) out[outPos + i] = data.getInt(pos) & 0xFFFFFFFFL;
+                    break;
+                case TYPE_I32:
+                    for (int i = 0; i < n; i++, pos += stride) out[outPos + i] = data.getInt(pos);
+                    break;
+                case TYPE_F32:
+                    for (int i = 0; i < n; i++, pos += stride) out[outPos + i] = data.getFloat(pos);
+                    break;
+                default:
+                    for (int i = 0; i < n; i++, pos += stride) out[outPos + i] = data.getDouble(pos);
+                    break;
+            }
+        }
+
+        private static int sampleType(int format, int bits) {
+            if (format == TiffDirectory.SAMPLE_FORMAT_FLOAT) {
+                return bits == 32 ? TYPE_F32 : bits == 64 ? TYPE_F64 : -1;
+            }
+            boolean signed = format == TiffDirectory.SAMPLE_FORMAT_INT;
+            if (format != TiffDirectory.SAMPLE_FORMAT_UINT && !signed) {
+                return -1;
+            }
+            switch (bits) {
+                case 8:
+                    return signed ? TYPE_I8 : TYPE_U8;
+                case 16:
+                    return signed ? TYPE_I16 : TYPE_U16;
+                case 32:
+                    return signed ? TYPE_I32 : TYPE_U32;
+                default:
+                    return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.example.rasterprocessing.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局内存预算
+ * 请求开始前按估算开销预留，结束后归还；预算不足时按先来先服务排队，队首未满足前后面的请求不会插队，
+ * 避免大请求一直被小请求饿死；排队已满或等待超时则拒绝。单个请求的开销超过总预算时按总预算计，即独占执行
+ */
+@Service
+public class MemoryBudget {
+
+    /**
+     * 预算不足被拒绝，调用方应返回 429
+     */
+    public static class RejectedException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        RejectedException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * 一次预留，close 时归还，重复 close 无副作用
+     */
+    public class Reservation implements AutoCloseable {
+        private final long bytes;
+        private boolean released;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            synchronized (MemoryBudget.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                reserved -= bytes;
+                active--;
+                MemoryBudget.this.notifyAll();
+            }
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${raster.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${raster.admission.budget:}")
+    private String budget;
+
+    @Value("${raster.admission.max-queue:32}")
+    private int maxQueue;
+
+    @Value("${raster.admission.max-wait-ms:15000}")
+    private long maxWaitMs;
+
+    private long budgetBytes;
+    private long reserved;
+    private int active;
+    private long admitted;
+    private long rejected;
+    private final ArrayDeque<Object> queue = new ArrayDeque<>();
+
+    @PostConstruct
+    public void init() {
+        budgetBytes = budget == null || budget.trim().isEmpty()
+                ? Runtime.getRuntime().maxMemory()
+                : GdalConfigService.parseCacheSize(budget);
+        Gauge.builder("raster.admission.budget", this, b -> b.budgetBytes).baseUnit("bytes")
+                .description("内存预算总量").register(meterRegistry);
+        Gauge.builder("raster.admission.reserved", this, MemoryBudget::reservedBytes).baseUnit("bytes")
+                .description("已预留的内存").register(meterRegistry);
+        Gauge.builder("raster.admission.active", this, MemoryBudget::activeCount)
+                .description("持有预留的请求数").register(meterRegistry);
+        Gauge.builder("raster.admission.queued", this, MemoryBudget::queuedCount)
+                .description("排队等待预算的请求数").register(meterRegistry);
+        System.out.println("内存准入控制: " + (enabled ? "预算 " + budgetBytes / (1024 * 1024) + "MB" : "已关闭"));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 预留内存，预算不足时最多等待 max-wait-ms
+     * @param operation 操作名，用于指标标签
+     * @param bytes 估算开销
+     * @throws RejectedException 排队已满或等待超时
+     */
+    public Reservation acquire(String operation, long bytes) throws InterruptedException {
+        long cost = Math.max(0, Math.min(bytes, budgetBytes));
+        long start = System.nanoTime();
+        Object ticket = new Object();
+        synchronized (this) {
+            if (queue.isEmpty() && reserved + cost <= budgetBytes) {
+                return admit(operation, cost, start);
+            }
+            if (queue.size() >= maxQueue) {
+                return reject(operation, "queue_full", "内存预算不足且排队已满，请稍后重试");
+            }
+            queue.addLast(ticket);
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            try {
+                while (queue.peekFirst() != ticket || reserved + cost > budgetBytes) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return reject(operation, "timeout", "等待内存预算超时（" + maxWaitMs + "ms），请稍后重试");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+                return admit(operation, cost, start);
+            } finally {
+                queue.remove(ticket);
+                // 队首变化，唤醒后面的请求重新检查
+                notifyAll();
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("budgetBytes", budgetBytes);
+        status.put("reservedBytes", reserved);
+        status.put("active", active);
+        status.put("queued", queue.size());
+        status.put("maxQueue", maxQueue);
+        status.put("maxWaitMs", maxWaitMs);
+        status.put("admitted", admitted);
+        status.put("rejected", rejected);
+        return status;
+    }
+
+    private Reservation admit(String operation, long cost, long start) {
+        reserved += cost;
+        active++;
+        admitted++;
+        meterRegistry.timer("raster.admission.wait", "operation", operation)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Reservation(cost);
+    }
+
+    private Reservation reject(String operation, String reason, String message) {
+        rejected++;
+        meterRegistry.counter("raster.admission.rejected", "operation", operation, "reason", reason).increment();
+        throw new RejectedException(message, Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMs)));
+    }
+
+    private synchronized double reservedBytes() {
+        return reserved;
+    }
+
+    private synchronized double activeCount() {
+        return active;
+    }
+
+    private synchronized double queuedCount() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,165 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.util.FileTypeDetector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * 按文件头估算请求的峰值内存（堆 + 本地 Mat/GDAL 缓冲），不读取像素
+ * 系数来自各服务的实际分配：
+ * 栅格嵌入、提取按块行逐条处理水印所在的块行，峰值为一个块行的 float[] 缓冲 + CV_32F Mat = 8 字节/像素；
+ * 图像嵌入 BGR、YUV、三个单通道、结果 BGR 与编码缓冲 ≈ 15 字节/像素；图像提取 BGR、YUV、三个单通道 = 9 字节/像素
+ */
+@Service
+public class MemoryCostEstimator {
+
+    private static final long RASTER_WATERMARK_BYTES_PER_PIXEL = 8;
+    private static final long IMAGE_EMBED_BYTES_PER_PIXEL = 15;
+    private static final long IMAGE_EXTRACT_BYTES_PER_PIXEL = 9;
+    // 像素读取：原始类型窗口 + double[] + JSON 序列化（每个值约 20 字节）
+    private static final long PIXEL_JSON_BYTES = 20;
+    // 原地更新：每个水印位占 8x8 块；保存原值、修改副本和日志序列化三份 double
+    private static final long UPDATE_BYTES_PER_BIT = 8 * 8 * 8 * 3;
+    private static final int PAYLOAD_BITS_PER_BYTE = 8 * 9;
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    /**
+     * 水印嵌入，输入可以是图像或栅格；水印文本未知时按最长 255 字节估算
+     */
+    public long embed(String inputPath, String watermarkText) {
+        if (FileTypeDetector.isImageFormat(inputPath)) {
+            long[] size = imageSize(inputPath);
+            return size == null ? 0 : size[0] * size[1] * IMAGE_EMBED_BYTES_PER_PIXEL;
+        }
+        RasterInfo info = rasterInfo(inputPath);
+        int textBytes = watermarkText == null ? 255 : Math.min(255, watermarkText.getBytes(StandardCharsets.UTF_8).length);
+        // 输出由 CreateCopy 逐块复制，不计入
+        return info == null ? 0 : payloadPixels(info, 1 + textBytes) * RASTER_WATERMARK_BYTES_PER_PIXEL;
+    }
+
+    /**
+     * 水印提取
+     */
+    public long extract(String filePath, int watermarkLength) {
+        if (FileTypeDetector.isImageFormat(filePath)) {
+            long[] size = imageSize(filePath);
+            return size == null ? 0 : size[0] * size[1] * IMAGE_EXTRACT_BYTES_PER_PIXEL;
+        }
+        RasterInfo info = rasterInfo(filePath);
+        return info == null ? 0 : payloadPixels(info, 1 + Math.max(0L, watermarkLength)) * RASTER_WATERMARK_BYTES_PER_PIXEL;
+    }
+
+    /**
+     * 原地更新水印，只改写水印所在的块行；旧水印长度未知时按新水印的两倍估算
+     */
+    public long update(String filePath, String watermarkText) {
+        RasterInfo info = rasterInfo(filePath);
+        if (info == null) {
+            return 0;
+        }
+        int textBytes = Math.min(255, watermarkText == null ? 0 : watermarkText.getBytes(StandardCharsets.UTF_8).length);
+        long bits = 2L * (1 + textBytes) * PAYLOAD_BITS_PER_BYTE;
+        return Math.min(bits * UPDATE_BYTES_PER_BIT, pixels(info) * 8 * 3);
+    }
+
+    /**
+     * 像素窗口读取，窗口越界部分按栅格范围截断
+     */
+    public long pixels(String filePath, int width, int height) {
+        RasterInfo info = rasterInfo(filePath);
+        if (info == null || width <= 0 || height <= 0) {
+            return 0;
+        }
+        long w = Math.min(width, info.getWidth());
+        long h = Math.min(height, info.getHeight());
+        return w * h * (dataTypeSize(info.getDataType()) + 8 + PIXEL_JSON_BYTES);
+    }
+
+    /**
+     * GDAL 数据类型名对应的字节数
+     */
+    static int dataTypeSize(String dataType) {
+        if (dataType == null) {
+            return 8;
+        }
+        switch (dataType) {
+            case "Byte":
+            case "Int8":
+                return 1;
+            case "UInt16":
+            case "Int16":
+                return 2;
+            case "UInt32":
+            case "Int32":
+            case "Float32":
+            case "CInt16":
+                return 4;
+            case "CInt32":
+            case "CFloat32":
+            case "UInt64":
+            case "Int64":
+                return 8;
+            case "CFloat64":
+                return 16;
+            default:
+                return 8;
+        }
+    }
+
+    private static long pixels(RasterInfo info) {
+        return (long) info.getWidth() * info.getHeight();
+    }
+
+    /**
+     * 水印（长度字节 + payloadBytes - 1 个数据字节）处理时同时驻留的像素数：一个块行（宽 x 8），栅格放不下一个块时为 0
+     */
+    private static long payloadPixels(RasterInfo info, long payloadBytes) {
+        return SimpleRasterWatermarkService.payloadRows(payloadBytes * PAYLOAD_BITS_PER_BYTE,
+                info.getWidth(), info.getHeight()) == 0 ? 0 : 8L * info.getWidth();
+    }
+
+    /**
+     * 估算失败时返回 null，交给后续处理报告具体错误
+     */
+    private RasterInfo rasterInfo(String filePath) {
+        try {
+            return rasterReaderService.readRasterInfo(filePath);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 只解析图像头取宽高；ImageIO 不支持的格式回退到 GDAL
+     */
+    private long[] imageSize(String filePath) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new File(filePath))) {
+            if (in != null) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+                if (readers.hasNext()) {
+                    ImageReader reader = readers.next();
+                    try {
+                        reader.setInput(in, true, true);
+                        return new long[]{reader.getWidth(0), reader.getHeight(0)};
+                    } finally {
+                        reader.dispose();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 回退到 GDAL
+        }
+        RasterInfo info = rasterInfo(filePath);
+        return info == null ? null : new long[]{info.getWidth(), info.getHeight()};
+    }
+}
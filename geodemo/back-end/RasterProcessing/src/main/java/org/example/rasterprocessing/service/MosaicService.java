@@ -0,0 +1,749 @@
+package org.example.rasterprocessing.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.example.rasterprocessing.model.PointSampleRequest;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.util.FileTypeDetector;
+import org.example.rasterprocessing.util.RunningStatistics;
+import org.example.rasterprocessing.util.StrTree;
+import org.gdal.gdal.BuildVRTOptions;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.gdal.osr.SpatialReference;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 镶嵌数据集服务
+ * 一组相邻栅格登记为一个命名镶嵌：生成覆盖全部成员的 GDAL VRT（保存在 raster.mosaic.dir，其他按 filePath 工作的接口
+ * 可直接使用），并用 STR 树索引成员范围。窗口读取、统计与点采样只打开与请求相交的成员并在工作线程上并行读取；
+ * 成员与镶嵌网格对齐（分辨率相同、偏移为整数像素）时直接读成员文件（未压缩 GeoTIFF 走内存映射），否则回退到 VRT。
+ * 成员重叠时按登记顺序后者覆盖前者，与 VRT 一致
+ */
+@Service
+public class MosaicService {
+
+    private static final double ALIGN_EPSILON = 1e-3;
+
+    // 统计时合成的瓦片边长（像素）
+    private static final int STATISTICS_TILE = 512;
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    @Autowired
+    private PointSamplingService pointSamplingService;
+
+    @Autowired
+    private CoordinateTransformService coordinateTransformService;
+
+    @Autowired
+    private ParallelRasterExecutor parallelRasterExecutor;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${raster.mosaic.dir:./data/mosaics}")
+    private String mosaicDir;
+
+    @Value("${raster.mosaic.max-members:100000}")
+    private int maxMembers;
+
+    @Value("${raster.mosaic.max-pixels:16777216}")
+    private long maxPixels;
+
+    private final Map<String, Mosaic> mosaics = new ConcurrentHashMap<>();
+
+    /**
+     * 镶嵌成员
+     */
+    static class Member {
+        int index;
+        String path;
+        int width;
+        int height;
+        double[] geoTransform;
+        Double noData;
+        // 在镶嵌网格中的像素偏移，未对齐时为 null
+        int[] offset;
+
+        double[] envelope() {
+            double x1 = geoTransform[0] + width * geoTransform[1];
+            double y1 = geoTransform[3] + height * geoTransform[5];
+            return new double[]{Math.min(geoTransform[0], x1), Math.min(geoTransform[3], y1),
+                    Math.max(geoTransform[0], x1), Math.max(geoTransform[3], y1)};
+        }
+    }
+
+    static class Mosaic {
+        final String name;
+        final String vrtPath;
+        final List<Member> members;
+        final int width;
+        final int height;
+        final int bandCount;
+        final double[] geoTransform;
+        final String projection;
+        final Double noData;
+        final StrTree<Member> index;
+        final long createdAt;
+
+        Mosaic(String name, String vrtPath, List<Member> members, int width, int height, int bandCount,
+               double[] geoTransform, String projection, Double noData, long createdAt) {
+            this.name = name;
+            this.vrtPath = vrtPath;
+            this.members = members;
+            this.width = width;
+            this.height = height;
+            this.bandCount = bandCount;
+            this.geoTransform = geoTransform;
+            this.projection = projection;
+            this.noData = noData;
+            this.createdAt = createdAt;
+            this.index = StrTree.build(members, Member::envelope);
+        }
+    }
+
+    /**
+     * 读取到的成员窗口
+     */
+    private static class Piece {
+        final Member member;
+        final int[] target; // 在请求窗口中的 {x, y, 宽, 高}
+        final double[] values;
+
+        Piece(Member member, int[] target, double[] values) {
+            this.member = member;
+            this.target = target;
+            this.values = values;
+        }
+    }
+
+    /**
+     * 创建或重建镶嵌
+     * @param name 名称
+     * @param files 成员文件列表，与 directory 二选一
+     * @param directory 成员所在目录
+     * @param pattern 目录下的文件通配符，默认 *.tif
+     */
+    public Map<String, Object> create(String name, List<String> files, String directory, String pattern) {
+        long startTime = System.currentTimeMillis();
+        checkName(name);
+        List<String> paths = new ArrayList<>();
+        if (files != null) {
+            paths.addAll(files);
+        }
+        if (directory != null && !directory.isEmpty()) {
+            String glob = pattern == null || pattern.isEmpty() ? "*.tif" : pattern;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(directory), glob)) {
+                for (Path file : stream) {
+                    if (Files.isRegularFile(file) && FileTypeDetector.isRasterFormat(file.toString())) {
+                        paths.add(file.toString());
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("无法读取目录: " + directory);
+            }
+            Collections.sort(paths);
+        }
+        if (paths.isEmpty()) {
+            throw new RuntimeException("镶嵌没有成员文件");
+        }
+        if (paths.size() > maxMembers) {
+            throw new RuntimeException("成员数超过上限: " + maxMembers);
+        }
+
+        // GeoTIFF 成员只解析文件头，数千个文件也只需几百毫秒
+        List<Map<String, Object>> infos = rasterReaderService.readRasterInfoBatch(paths);
+        List<Member> members = new ArrayList<>(paths.size());
+        RasterInfo first = null;
+        for (Map<String, Object> result : infos) {
+            if (!Boolean.TRUE.equals(result.get("success"))) {
+                throw new RuntimeException("无法读取成员 " + result.get("filePath") + ": " + result.get("message"));
+            }
+            RasterInfo info = (RasterInfo) result.get("info");
+            double[] gt = info.getGeoTransform();
+            if (gt == null || gt[2] != 0 || gt[4] != 0) {
+                throw new RuntimeException("成员缺少地理变换或带旋转: " + result.get("filePath"));
+            }
+            if (first == null) {
+                first = info;
+            } else if (info.getBandCount() != first.getBandCount()) {
+                throw new RuntimeException("成员波段数不一致: " + result.get("filePath"));
+            } else if (!sameProjection(first.getProjection(), info.getProjection())) {
+                throw new RuntimeException("成员坐标系不一致: " + result.get("filePath"));
+            }
+            Member member = new Member();
+            member.index = members.size();
+            member.path = Paths.get((String) result.get("filePath")).toAbsolutePath().toString();
+            member.width = info.getWidth();
+            member.height = info.getHeight();
+            member.geoTransform = gt;
+            member.noData = info.getNoDataValue();
+            members.add(member);
+        }
+
+        // 镶嵌网格取第一个成员的分辨率，范围为全部成员的并集
+        double resX = first.getGeoTransform()[1];
+        double resY = first.getGeoTransform()[5];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Member member : members) {
+            double[] e = member.envelope();
+            minX = Math.min(minX, e[0]);
+            minY = Math.min(minY, e[1]);
+            maxX = Math.max(maxX, e[2]);
+            maxY = Math.max(maxY, e[3]);
+        }
+        int width = (int) Math.ceil((maxX - minX) / Math.abs(resX) - ALIGN_EPSILON);
+        int height = (int) Math.ceil((maxY - minY) / Math.abs(resY) - ALIGN_EPSILON);
+        double[] gt = {resX > 0 ? minX : maxX, resX, 0, resY < 0 ? maxY : minY, 0, resY};
+        int aligned = 0;
+        for (Member member : members) {
+            member.offset = alignment(gt, member.geoTransform);
+            aligned += member.offset != null ? 1 : 0;
+        }
+
+        String vrtPath = buildVrt(name, members, gt, width, height);
+        Mosaic mosaic = new Mosaic(name, vrtPath, members, width, height, first.getBandCount(), gt,
+                first.getProjection(), first.getNoDataValue(), System.currentTimeMillis());
+        save(mosaic);
+        mosaics.put(name, mosaic);
+
+        Map<String, Object> summary = describe(mosaic);
+        summary.put("alignedMembers", aligned);
+        summary.put("processingTime", System.currentTimeMillis() - startTime);
+        return summary;
+    }
+
+    public List<Map<String, Object>> list() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(mosaicDir), "*.json")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString().replaceAll("\\.json$", "");
+                try {
+                    list.add(describe(get(name)));
+                } catch (RuntimeException e) {
+                    System.err.println("无法加载镶嵌 " + name + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            // 目录不存在时没有镶嵌
+        }
+        list.sort(Comparator.comparing(m -> (String) m.get("name")));
+        return list;
+    }
+
+    public Map<String, Object> info(String name) {
+        return describe(get(name));
+    }
+
+    public boolean delete(String name) {
+        checkName(name);
+        mosaics.remove(name);
+        try {
+            boolean existed = Files.deleteIfExists(Paths.get(mosaicDir, name + ".json"));
+            Files.deleteIfExists(Paths.get(mosaicDir, name + ".vrt"));
+            return existed;
+        } catch (IOException e) {
+            throw new RuntimeException("删除镶嵌失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取镶嵌网格中的像素窗口
+     */
+    public Map<String, Object> readPixels(String name, int bandIndex, int x, int y, int width, int height) {
+        long startTime = System.currentTimeMillis();
+        Mosaic mosaic = get(name);
+        checkBand(mosaic, bandIndex);
+        if (width <= 0 || height <= 0 || x < 0 || y < 0 || x + width > mosaic.width || y + height > mosaic.height) {
+            throw new RuntimeException("窗口超出镶嵌范围 " + mosaic.width + "x" + mosaic.height);
+        }
+        if ((long) width * height > maxPixels) {
+            throw new RuntimeException("请求窗口过大，上限 " + maxPixels + " 像素");
+        }
+        List<Member> hits = intersecting(mosaic, x, y, width, height);
+        double fill = mosaic.noData != null ? mosaic.noData : Double.NaN;
+        double[] values = new double[width * height];
+        Arrays.fill(values, fill);
+
+        String source;
+        if (hits.stream().allMatch(m -> m.offset != null)) {
+            source = "members";
+            GdalIoStats stats = gdalIoAccounting.current();
+            List<Piece> pieces = parallelRasterExecutor.mapPartitions(hits, partition -> {
+                List<Piece> read = new ArrayList<>(partition.size());
+                for (Member member : partition) {
+                    int[] w = memberWindow(member, x, y, width, height);
+                    try (WindowReader reader = rasterReaderService.openWindowReader(member.path, stats)) {
+                        read.add(new Piece(member, new int[]{w[0] + member.offset[0] - x, w[1] + member.offset[1] - y, w[2], w[3]},
+                                reader.read(bandIndex, w[0], w[1], w[2], w[3])));
+                    }
+                }
+                return read;
+            });
+            // 按登记顺序粘贴，后者覆盖前者；成员自身的 nodata 不覆盖
+            for (Piece piece : pieces) {
+                paste(piece, values, null, width);
+            }
+        } else {
+            source = "vrt";
+            values = readVrt(mosaic, bandIndex, x, y, width, height);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("name", name);
+        response.put("bandIndex", bandIndex);
+        response.put("x", x);
+        response.put("y", y);
+        response.put("width", width);
+        response.put("height", height);
+        response.put("membersRead", hits.size());
+        response.put("source", source);
+        response.put("noDataValue", mosaic.noData);
+        response.put("values", values);
+        response.put("processingTime", System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    /**
+     * 统计镶嵌（或 bbox 范围内）的像素
+     * 窗口切成瓦片按分区并行，每个瓦片与 readPixels 一样按登记顺序合成后再累加，重叠处只统计最后一个有效成员；
+     * 含未对齐成员的瓦片经 VRT 读取
+     * @param bbox 镶嵌坐标系下的 {minX, minY, maxX, maxY}，为空表示全部
+     */
+    public Map<String, Object> statistics(String name, int bandIndex, double[] bbox) {
+        long startTime = System.currentTimeMillis();
+        Mosaic mosaic = get(name);
+        checkBand(mosaic, bandIndex);
+        int[] window = bbox == null ? new int[]{0, 0, mosaic.width, mosaic.height} : toWindow(mosaic, bbox);
+        List<Member> hits = intersecting(mosaic, window[0], window[1], window[2], window[3]);
+        List<int[]> tiles = new ArrayList<>();
+        for (int ty = window[1]; ty < window[1] + window[3]; ty += STATISTICS_TILE) {
+            for (int tx = window[0]; tx < window[0] + window[2]; tx += STATISTICS_TILE) {
+                tiles.add(new int[]{tx, ty, Math.min(STATISTICS_TILE, window[0] + window[2] - tx),
+                        Math.min(STATISTICS_TILE, window[1] + window[3] - ty)});
+            }
+        }
+        GdalIoStats stats = gdalIoAccounting.current();
+        AtomicInteger vrtTiles = new AtomicInteger();
+        List<RunningStatistics> partials = parallelRasterExecutor.mapPartitions(tiles, partition -> {
+            RunningStatistics statistics = new RunningStatistics();
+            for (int[] tile : partition) {
+                if (!accumulate(mosaic, bandIndex, tile, stats, statistics)) {
+                    vrtTiles.incrementAndGet();
+                }
+            }
+            return Collections.singletonList(statistics);
+        });
+        RunningStatistics total = new RunningStatistics();
+        partials.forEach(total::merge);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("name", name);
+        response.put("bandIndex", bandIndex);
+        response.put("count", total.getCount());
+        response.put("min", total.getCount() == 0 ? null : total.getMin());
+        response.put("max", total.getCount() == 0 ? null : total.getMax());
+        response.put("mean", total.getCount() == 0 ? null : total.getMean());
+        response.put("stddev", total.getCount() == 0 ? null : total.getStddev());
+        response.put("membersRead", hits.size());
+        response.put("vrtTiles", vrtTiles.get());
+        response.put("processingTime", System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    /**
+     * 点采样：每个点归属覆盖它的最后一个成员，按成员分组后交给 PointSamplingService
+     */
+    public Map<String, Object> sample(String name, PointSampleRequest request) {
+        long startTime = System.currentTimeMillis();
+        Mosaic mosaic = get(name);
+        List<double[]> points = request.getPoints() == null ? Collections.emptyList() : request.getPoints();
+        int n = points.size();
+        double[][] coords = new double[n][];
+        for (int i = 0; i < n; i++) {
+            double[] p = points.get(i);
+            if (p == null || p.length < 2) {
+                throw new RuntimeException("第 " + i + " 个点坐标格式错误，应为 [x, y]");
+            }
+            coords[i] = new double[]{p[0], p[1]};
+        }
+        if (request.getCrs() != null && !request.getCrs().isEmpty()
+                && mosaic.projection != null && !mosaic.projection.isEmpty()) {
+            coordinateTransformService.transform(request.getCrs(), mosaic.projection, coords);
+        }
+
+        Map<Member, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            double px = coords[i][0];
+            double py = coords[i][1];
+            Member owner = null;
+            for (Member member : mosaic.index.query(px, py, px, py)) {
+                double[] e = member.envelope();
+                if (px >= e[0] && px < e[2] && py > e[1] && py <= e[3] && (owner == null || member.index > owner.index)) {
+                    owner = member;
+                }
+            }
+            if (owner != null) {
+                groups.computeIfAbsent(owner, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<Integer> bandList = request.getBands();
+        int bandCount = bandList == null || bandList.isEmpty() ? mosaic.bandCount : bandList.size();
+        Double[][] values = new Double[bandCount][n];
+        // 每个成员内部已按块并行，这里按成员顺序调用，避免在分区任务里嵌套使用同一线程池
+        for (Map.Entry<Member, List<Integer>> group : groups.entrySet()) {
+            PointSampleRequest sub = new PointSampleRequest();
+            sub.setFilePath(group.getKey().path);
+            sub.setBands(bandList);
+            List<double[]> subPoints = new ArrayList<>(group.getValue().size());
+            for (int i : group.getValue()) {
+                subPoints.add(coords[i]);
+            }
+            sub.setPoints(subPoints);
+            Double[][] sampled = (Double[][]) pointSamplingService.sample(sub).get("values");
+            for (int b = 0; b < bandCount; b++) {
+                for (int k = 0; k < subPoints.size(); k++) {
+                    values[b][group.getValue().get(k)] = sampled[b][k];
+                }
+            }
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("name", name);
+        response.put("values", values);
+        response.put("pointCount", n);
+        response.put("outsideCount", n - groups.values().stream().mapToInt(List::size).sum());
+        response.put("membersRead", groups.size());
+        response.put("processingTime", System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    // ---- 内部 ----
+
+    private Mosaic get(String name) {
+        checkName(name);
+        Mosaic cached = mosaics.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        Path file = Paths.get(mosaicDir, name + ".json");
+        if (!Files.exists(file)) {
+            throw new RuntimeException("镶嵌不存在: " + name);
+        }
+        return mosaics.computeIfAbsent(name, k -> load(k, file));
+    }
+
+    private List<Member> intersecting(Mosaic mosaic, int x, int y, int width, int height) {
+        double[] gt = mosaic.geoTransform;
+        double x0 = gt[0] + x * gt[1];
+        double x1 = gt[0] + (x + width) * gt[1];
+        double y0 = gt[3] + y * gt[5];
+        double y1 = gt[3] + (y + height) * gt[5];
+        List<Member> hits = new ArrayList<>();
+        for (Member member : mosaic.index.query(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1))) {
+            // 只共享边界的相邻成员没有像素落在窗口内
+            if (member.offset == null || memberWindow(member, x, y, width, height) != null) {
+                hits.add(member);
+            }
+        }
+        hits.sort(Comparator.comparingInt(m -> m.index));
+        return hits;
+    }
+
+    /**
+     * 请求窗口与对齐成员相交部分在成员像素坐标中的 {x, y, 宽, 高}，不相交返回 null
+     */
+    static int[] memberWindow(Member member, int x, int y, int width, int height) {
+        int x0 = Math.max(x, member.offset[0]);
+        int y0 = Math.max(y, member.offset[1]);
+        int x1 = Math.min(x + width, member.offset[0] + member.width);
+        int y1 = Math.min(y + height, member.offset[1] + member.height);
+        if (x0 >= x1 || y0 >= y1) {
+            return null;
+        }
+        return new int[]{x0 - member.offset[0], y0 - member.offset[1], x1 - x0, y1 - y0};
+    }
+
+    /**
+     * 把成员窗口的有效像素写入结果，valid 不为 null 时同时标记有效
+     */
+    private static void paste(Piece piece, double[] values, boolean[] valid, int width) {
+        int[] t = piece.target;
+        Double noData = piece.member.noData;
+        for (int row = 0; row < t[3]; row++) {
+            int src = row * t[2];
+            int dst = (t[1] + row) * width + t[0];
+            for (int col = 0; col < t[2]; col++) {
+                double v = piece.values[src + col];
+                if (v == v && (noData == null || v != noData)) {
+                    values[dst + col] = v;
+                    if (valid != null) {
+                        valid[dst + col] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 合成一个瓦片并累加其有效像素；瓦片在调用方的分区任务中，成员在这里顺序读取
+     * @return 是否直接读取成员，false 表示经 VRT 读取
+     */
+    private boolean accumulate(Mosaic mosaic, int bandIndex, int[] tile, GdalIoStats stats, RunningStatistics statistics) {
+        List<Member> hits = intersecting(mosaic, tile[0], tile[1], tile[2], tile[3]);
+        if (hits.isEmpty()) {
+            return true;
+        }
+        if (!hits.stream().allMatch(m -> m.offset != null)) {
+            Double noData = mosaic.noData;
+            for (double v : readVrt(mosaic, bandIndex, tile[0], tile[1], tile[2], tile[3])) {
+                if (v == v && (noData == null || v != noData)) {
+                    statistics.add(v);
+                }
+            }
+            return false;
+        }
+        double[] values = new double[tile[2] * tile[3]];
+        boolean[] valid = new boolean[values.length];
+        for (Member member : hits) {
+            int[] w = memberWindow(member, tile[0], tile[1], tile[2], tile[3]);
+            try (WindowReader reader = rasterReaderService.openWindowReader(member.path, stats)) {
+                paste(new Piece(member, new int[]{w[0] + member.offset[0] - tile[0], w[1] + member.offset[1] - tile[1], w[2], w[3]},
+                        reader.read(bandIndex, w[0], w[1], w[2], w[3])), values, valid, tile[2]);
+            }
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (valid[i]) {
+                statistics.add(values[i]);
+            }
+        }
+        return true;
+    }
+
+    private double[] readVrt(Mosaic mosaic, int bandIndex, int x, int y, int width, int height) {
+        nativeLibraryLoader.ensureGdal();
+        Dataset dataset = gdal.Open(mosaic.vrtPath, gdalconst.GA_ReadOnly);
+        if (dataset == null) {
+            throw new RuntimeException("无法打开镶嵌 VRT: " + mosaic.vrtPath);
+        }
+        try {
+            Band band = dataset.GetRasterBand(bandIndex);
+            gdalIoAccounting.recordRead(mosaic.vrtPath, band, bandIndex, x, y, width, height);
+            double[] values = new double[width * height];
+            if (band.ReadRaster(x, y, width, height, width, height, gdalconst.GDT_Float64, values) != gdalconst.CE_None) {
+                throw new RuntimeException("读取镶嵌失败: " + gdal.GetLastErrorMsg());
+            }
+            return values;
+        } finally {
+            dataset.delete();
+        }
+    }
+
+    private static int[] toWindow(Mosaic mosaic, double[] bbox) {
+        double[] gt = mosaic.geoTransform;
+        double c0 = (bbox[0] - gt[0]) / gt[1];
+        double c1 = (bbox[2] - gt[0]) / gt[1];
+        double r0 = (bbox[3] - gt[3]) / gt[5];
+        double r1 = (bbox[1] - gt[3]) / gt[5];
+        int x0 = (int) Math.max(0, Math.floor(Math.min(c0, c1)));
+        int x1 = (int) Math.min(mosaic.width, Math.ceil(Math.max(c0, c1)));
+        int y0 = (int) Math.max(0, Math.floor(Math.min(r0, r1)));
+        int y1 = (int) Math.min(mosaic.height, Math.ceil(Math.max(r0, r1)));
+        if (x0 >= x1 || y0 >= y1) {
+            throw new RuntimeException("bbox 与镶嵌不相交");
+        }
+        return new int[]{x0, y0, x1 - x0, y1 - y0};
+    }
+
+    /**
+     * 成员在镶嵌网格中的整数像素偏移，分辨率不同或偏移不是整数时返回 null
+     */
+    static int[] alignment(double[] mosaicGt, double[] memberGt) {
+        if (Math.abs(memberGt[1] - mosaicGt[1]) > Math.abs(mosaicGt[1]) * 1e-9
+                || Math.abs(memberGt[5] - mosaicGt[5]) > Math.abs(mosaicGt[5]) * 1e-9) {
+            return null;
+        }
+        double ox = (memberGt[0] - mosaicGt[0]) / mosaicGt[1];
+        double oy = (memberGt[3] - mosaicGt[3]) / mosaicGt[5];
+        if (Math.abs(ox - Math.rint(ox)) > ALIGN_EPSILON || Math.abs(oy - Math.rint(oy)) > ALIGN_EPSILON) {
+            return null;
+        }
+        return new int[]{(int) Math.rint(ox), (int) Math.rint(oy)};
+    }
+
+    private String buildVrt(String name, List<Member> members, double[] gt, int width, int height) {
+        nativeLibraryLoader.ensureGdal();
+        Path dir = Paths.get(mosaicDir);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("无法创建镶嵌目录: " + mosaicDir);
+        }
+        String vrtPath = dir.resolve(name + ".vrt").toAbsolutePath().toString();
+        double minX = Math.min(gt[0], gt[0] + width * gt[1]);
+        double maxX = Math.max(gt[0], gt[0] + width * gt[1]);
+        double minY = Math.min(gt[3], gt[3] + height * gt[5]);
+        double maxY = Math.max(gt[3], gt[3] + height * gt[5]);
+        Vector<String> args = new Vector<>();
+        args.add("-te");
+        args.add(String.valueOf(minX));
+        args.add(String.valueOf(minY));
+        args.add(String.valueOf(maxX));
+        args.add(String.valueOf(maxY));
+        args.add("-tr");
+        args.add(String.valueOf(Math.abs(gt[1])));
+        args.add(String.valueOf(Math.abs(gt[5])));
+        BuildVRTOptions options = new BuildVRTOptions(args);
+        try {
+            String[] sources = members.stream().map(m -> m.path).toArray(String[]::new);
+            Dataset vrt = gdal.BuildVRT(vrtPath, sources, options);
+            if (vrt == null) {
+                throw new RuntimeException("生成镶嵌 VRT 失败: " + gdal.GetLastErrorMsg());
+            }
+            vrt.delete(); // 关闭时写出 VRT 文件
+        } finally {
+            options.delete();
+        }
+        return vrtPath;
+    }
+
+    private void save(Mosaic mosaic) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("name", mosaic.name);
+        record.put("vrtPath", mosaic.vrtPath);
+        record.put("width", mosaic.width);
+        record.put("height", mosaic.height);
+        record.put("bandCount", mosaic.bandCount);
+        record.put("geoTransform", mosaic.geoTransform);
+        record.put("projection", mosaic.projection);
+        record.put("noData", mosaic.noData);
+        record.put("createdAt", mosaic.createdAt);
+        List<Map<String, Object>> members = new ArrayList<>(mosaic.members.size());
+        for (Member member : mosaic.members) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("path", member.path);
+            m.put("width", member.width);
+            m.put("height", member.height);
+            m.put("geoTransform", member.geoTransform);
+            m.put("noData", member.noData);
+            members.add(m);
+        }
+        record.put("members", members);
+        try {
+            Path target = Paths.get(mosaicDir, mosaic.name + ".json");
+            Path temp = Paths.get(mosaicDir, "." + mosaic.name + ".json.tmp");
+            objectMapper.writeValue(temp.toFile(), record);
+            Files.move(temp, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                    java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("保存镶嵌定义失败: " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mosaic load(String name, Path file) {
+        try {
+            Map<String, Object> record = objectMapper.readValue(file.toFile(), Map.class);
+            double[] gt = toDoubles(record.get("geoTransform"));
+            List<Member> members = new ArrayList<>();
+            for (Map<String, Object> m : (List<Map<String, Object>>) record.get("members")) {
+                Member member = new Member();
+                member.index = members.size();
+                member.path = (String) m.get("path");
+                member.width = ((Number) m.get("width")).intValue();
+                member.height = ((Number) m.get("height")).intValue();
+                member.geoTransform = toDoubles(m.get("geoTransform"));
+                member.noData = m.get("noData") == null ? null : ((Number) m.get("noData")).doubleValue();
+                member.offset = alignment(gt, member.geoTransform);
+                members.add(member);
+            }
+            return new Mosaic(name, (String) record.get("vrtPath"), members,
+                    ((Number) record.get("width")).intValue(), ((Number) record.get("height")).intValue(),
+                    ((Number) record.get("bandCount")).intValue(), gt, (String) record.get("projection"),
+                    record.get("noData") == null ? null : ((Number) record.get("noData")).doubleValue(),
+                    ((Number) record.get("createdAt")).longValue());
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("镶嵌定义损坏: " + name + " (" + e.getMessage() + ")");
+        }
+    }
+
+    private static double[] toDoubles(Object list) {
+        return ((List<?>) list).stream().mapToDouble(v -> ((Number) v).doubleValue()).toArray();
+    }
+
+    private static Map<String, Object> describe(Mosaic mosaic) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("name", mosaic.name);
+        info.put("vrtPath", mosaic.vrtPath);
+        info.put("members", mosaic.members.size());
+        info.put("width", mosaic.width);
+        info.put("height", mosaic.height);
+        info.put("bandCount", mosaic.bandCount);
+        info.put("geoTransform", mosaic.geoTransform);
+        info.put("projection", mosaic.projection);
+        info.put("noDataValue", mosaic.noData);
+        info.put("createdAt", mosaic.createdAt);
+        return info;
+    }
+
+    private static void checkBand(Mosaic mosaic, int bandIndex) {
+        if (bandIndex < 1 || bandIndex > mosaic.bandCount) {
+            throw new RuntimeException("波段索引超出范围: " + bandIndex);
+        }
+    }
+
+    private static void checkName(String name) {
+        if (name == null || !name.matches("[A-Za-z0-9_-]{1,64}")) {
+            throw new RuntimeException("镶嵌名称只能包含字母、数字、下划线和连字符");
+        }
+    }
+
+    private boolean sameProjection(String a, String b) {
+        if (a == null || a.isEmpty() || b == null || b.isEmpty()) {
+            return (a == null || a.isEmpty()) == (b == null || b.isEmpty());
+        }
+        if (a.equals(b)) {
+            return true;
+        }
+        // 同一坐标系的 WKT 写法可能不同（如 TOWGS84、权威代码），交给 OSR 判断
+        SpatialReference sa = coordinateTransformService.parseCrs(a);
+        SpatialReference sb = coordinateTransformService.parseCrs(b);
+        try {
+            return sa.IsSame(sb) == 1;
+        } finally {
+            sa.delete();
+            sb.delete();
+        }
+    }
+}
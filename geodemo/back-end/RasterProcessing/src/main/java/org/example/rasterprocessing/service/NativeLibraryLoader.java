@@ -0,0 +1,257 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.config.NativeLibraryProperties;
+import org.gdal.gdal.Driver;
+import org.gdal.gdal.gdal;
+import org.opencv.core.Core;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 本地库加载器
+ * 取代启动类中的静态初始化：GDAL 驱动在第一次需要时（或启动完成后在后台）才注册，且只注册配置的驱动；
+ * OpenCV 在第一次水印处理时才加载。库文件按当前平台的命名规则从配置目录解析。
+ * 在 Java 22+ 上以 java22 profile 构建时逐个调用 GDALRegister_xxx，不再付出注册全部驱动的开销；
+ * 否则只能通过 gdal.AllRegister() 注册全部驱动后注销未配置的驱动
+ */
+@Service
+public class NativeLibraryLoader {
+
+    // GDAL 内部依赖的驱动：Warped VRT 与内存数据集
+    private static final String[] REQUIRED_DRIVERS = {"VRT", "MEM"};
+
+    private static final String FOREIGN_REGISTRAR = "org.example.rasterprocessing.service.ForeignGdalDriverRegistrar";
+
+    @Autowired
+    private NativeLibraryProperties properties;
+
+    private final Object gdalLock = new Object();
+    private final Object opencvLock = new Object();
+    private volatile boolean preloaded;
+    private volatile boolean gdalReady;
+    private volatile boolean opencvReady;
+    private volatile long gdalInitMillis = -1;
+    private volatile long opencvInitMillis = -1;
+    private volatile String gdalRegistration;
+    private volatile List<String> unavailableDrivers = new ArrayList<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (properties.isWarmup()) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    ensureGdal();
+                } catch (RuntimeException e) {
+                    System.err.println("GDAL 预初始化失败: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * 预加载 GDAL 依赖库，GDAL Java 类首次使用前调用
+     */
+    public void preloadGdal() {
+        if (preloaded) {
+            return;
+        }
+        synchronized (gdalLock) {
+            if (preloaded) {
+                return;
+            }
+            for (String name : properties.getPreload()) {
+                File file = resolve(name);
+                if (file == null) {
+                    throw new RuntimeException("找不到本地库: " + System.mapLibraryName(name) + "（目录: " + libraryDir() + "）");
+                }
+                System.load(file.getAbsolutePath());
+            }
+            preloaded = true;
+        }
+    }
+
+    /**
+     * 确保 GDAL 驱动已注册，打开数据集前调用；只有第一次调用有开销
+     */
+    public void ensureGdal() {
+        if (gdalReady) {
+            return;
+        }
+        preloadGdal();
+        synchronized (gdalLock) {
+            if (gdalReady) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            if (!properties.isGdalPlugins()) {
+                gdal.SetConfigOption("GDAL_DRIVER_PATH", "disable");
+            }
+            List<String> drivers = driverNames(properties.getGdalDrivers());
+            if (drivers.isEmpty()) {
+                gdal.AllRegister();
+                gdalRegistration = "all";
+            } else {
+                GdalDriverRegistrar registrar = foreignRegistrar();
+                List<String> missing = registrar == null ? null : registerEach(registrar, drivers);
+                if (missing != null) {
+                    unavailableDrivers = missing;
+                    gdalRegistration = "individual";
+                } else {
+                    registerAllExcept(drivers);
+                    gdalRegistration = "all-deregister";
+                }
+            }
+            gdalInitMillis = System.currentTimeMillis() - start;
+            gdalReady = true;
+            System.out.println("GDAL initialized in " + gdalInitMillis + " ms (" + gdalRegistration + "), drivers: "
+                    + gdal.GetDriverCount() + (unavailableDrivers.isEmpty() ? "" : ", unavailable: " + unavailableDrivers));
+        }
+    }
+
+    /**
+     * 配置的驱动加上 GDAL 内部依赖的驱动，按配置顺序去重（顺序即格式识别的优先顺序）；配置为空时返回空列表，表示注册全部
+     */
+    static List<String> driverNames(List<String> configured) {
+        List<String> names = new ArrayList<>();
+        if (configured == null || configured.isEmpty()) {
+            return names;
+        }
+        Set<String> seen = new HashSet<>();
+        for (String name : configured) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty() && seen.add(trimmed.toUpperCase(Locale.ROOT))) {
+                names.add(trimmed);
+            }
+        }
+        for (String name : REQUIRED_DRIVERS) {
+            if (seen.add(name)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 逐个注册驱动
+     * @return 未编译进 GDAL 也没有插件的驱动；GDAL 内部依赖的驱动注册失败时返回 null，由调用方回退到全部注册
+     */
+    static List<String> registerEach(GdalDriverRegistrar registrar, List<String> names) {
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            if (!registrar.register(name)) {
+                for (String required : REQUIRED_DRIVERS) {
+                    if (required.equalsIgnoreCase(name)) {
+                        return null;
+                    }
+                }
+                missing.add(name);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Java 绑定没有单驱动注册：注册全部驱动后倒序注销未配置的驱动（避免下标随注销移动）
+     */
+    private static void registerAllExcept(List<String> keepNames) {
+        gdal.AllRegister();
+        Set<String> keep = new HashSet<>();
+        for (String name : keepNames) {
+            keep.add(name.toUpperCase(Locale.ROOT));
+        }
+        for (int i = gdal.GetDriverCount() - 1; i >= 0; i--) {
+            Driver driver = gdal.GetDriver(i);
+            if (driver != null && !keep.contains(driver.getShortName().toUpperCase(Locale.ROOT))) {
+                driver.Deregister();
+            }
+        }
+    }
+
+    /**
+     * java22 profile 下的 FFM 注册器；低版本 Java、未以该 profile 构建或找不到 GDAL 符号时返回 null
+     */
+    private static GdalDriverRegistrar foreignRegistrar() {
+        if (Runtime.version().feature() < 22) {
+            return null;
+        }
+        try {
+            gdal.GetDriverCount(); // 触发 gdal 类加载 JNI 库
+            return Class.forName(FOREIGN_REGISTRAR).asSubclass(GdalDriverRegistrar.class)
+                    .getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            System.err.println("无法逐个注册 GDAL 驱动，回退到全部注册: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 确保 OpenCV 已加载，使用 Core/Mat 前调用
+     */
+    public void ensureOpenCv() {
+        if (opencvReady) {
+            return;
+        }
+        synchronized (opencvLock) {
+            if (opencvReady) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            String name = properties.getOpencvLibrary();
+            File file = resolve(name);
+            try {
+                if (file != null) {
+                    System.load(file.getAbsolutePath());
+                } else {
+                    System.loadLibrary(name); // 回退到 java.library.path
+                }
+            } catch (UnsatisfiedLinkError e) {
+                throw new RuntimeException("OpenCV 加载失败: " + System.mapLibraryName(name)
+                        + "（目录: " + libraryDir() + "）: " + e.getMessage(), e);
+            }
+            opencvInitMillis = System.currentTimeMillis() - start;
+            opencvReady = true;
+            System.out.println("OpenCV loaded in " + opencvInitMillis + " ms, version: " + Core.VERSION);
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("libraryPath", libraryDir());
+        status.put("gdalReady", gdalReady);
+        status.put("gdalInitMillis", gdalInitMillis);
+        status.put("gdalDrivers", gdalReady ? gdal.GetDriverCount() : 0);
+        status.put("gdalRegistration", gdalRegistration);
+        status.put("unavailableDrivers", unavailableDrivers);
+        status.put("opencvReady", opencvReady);
+        status.put("opencvInitMillis", opencvInitMillis);
+        return status;
+    }
+
+    /**
+     * 在库目录中按平台命名解析库文件，不存在返回 null
+     */
+    File resolve(String name) {
+        File file = new File(libraryDir(), System.mapLibraryName(name));
+        return file.isFile() ? file : null;
+    }
+
+    String libraryDir() {
+        String path = properties.getLibraryPath();
+        if (path != null && !path.isEmpty()) {
+            return path;
+        }
+        return System.getProperty("user.dir") + File.separator + "src" + File.separator + "main" + File.separator + "resources";
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.rasterprocessing.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 调用 GDAL/OpenCV 的操作入口：工作进程池启用时转发到独立进程，否则在本进程内直接调用对应服务
+ * 点采样、分区统计、重投影等基于内存映射或按线程缓存句柄的读取仍在本进程执行
+ */
+@Service
+public class NativeOperations {
+
+    @Autowired
+    private NativeWorkerPool workerPool;
+
+    @Autowired
+    private SimpleRasterWatermarkService rasterWatermarkService;
+
+    @Autowired
+    private SimpleWatermarkService imageWatermarkService;
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    public void embedRasterWatermark(String inputPath, String outputPath, String watermarkText) {
+        embedRasterWatermark(inputPath, outputPath, watermarkText, false);
+    }
+
+    /**
+     * @return verify 为 true 时返回嵌入时得到的校验报告，否则为 null
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> embedRasterWatermark(String inputPath, String outputPath, String watermarkText, boolean verify) {
+        if (!workerPool.isEnabled()) {
+            return rasterWatermarkService.embedWatermark(inputPath, outputPath, watermarkText, verify);
+        }
+        return workerPool.invoke("embedRaster", args("inputPath", inputPath, "outputPath", outputPath,
+                "watermarkText", watermarkText, "verify", verify), reply -> (Map<String, Object>) reply.result());
+    }
+
+    public void embedImageWatermark(String inputPath, String outputPath, String watermarkText) {
+        embedImageWatermark(inputPath, outputPath, watermarkText, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> embedImageWatermark(String inputPath, String outputPath, String watermarkText, boolean verify) {
+        if (!workerPool.isEnabled()) {
+            return imageWatermarkService.embedWatermark(inputPath, outputPath, watermarkText, verify);
+        }
+        return workerPool.invoke("embedImage", args("inputPath", inputPath, "outputPath", outputPath,
+                "watermarkText", watermarkText, "verify", verify), reply -> (Map<String, Object>) reply.result());
+    }
+
+    public String extractRasterWatermark(String filePath, int watermarkLength) {
+        if (!workerPool.isEnabled()) {
+            return rasterWatermarkService.extractWatermark(filePath, watermarkLength);
+        }
+        return workerPool.invoke("extractRaster", args("filePath", filePath, "watermarkLength", watermarkLength),
+                reply -> (String) reply.result());
+    }
+
+    public String extractImageWatermark(String filePath, int watermarkLength) {
+        if (!workerPool.isEnabled()) {
+            return imageWatermarkService.extractWatermark(filePath, watermarkLength);
+        }
+        return workerPool.invoke("extractImage", args("filePath", filePath, "watermarkLength", watermarkLength),
+                reply -> (String) reply.result());
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> updateRasterWatermark(String filePath, String watermarkText, String currentText) {
+        if (!workerPool.isEnabled()) {
+            return rasterWatermarkService.updateWatermark(filePath, watermarkText, currentText);
+        }
+        // 同一文件的原地更新由工作进程内的 .wmlock 文件锁跨进程串行
+        return workerPool.invoke("updateRaster", args("filePath", filePath, "watermarkText", watermarkText,
+                "currentText", currentText), reply -> (Map<String, Object>) reply.result());
+    }
+
+    public double[] readPixelValues(String filePath, int bandIndex, int x, int y, int width, int height) {
+        if (!workerPool.isEnabled()) {
+            return rasterReaderService.readPixelValues(filePath, bandIndex, x, y, width, height);
+        }
+        return workerPool.invoke("pixels", args("filePath", filePath, "bandIndex", bandIndex, "x", x, "y", y,
+                "width", width, "height", height), NativeWorkerPool.Reply::doubles);
+    }
+
+    public Map<String, Double> getRasterStatistics(String filePath, int bandIndex) {
+        if (!workerPool.isEnabled()) {
+            return rasterReaderService.getRasterStatistics(filePath, bandIndex);
+        }
+        return workerPool.invoke("statistics", args("filePath", filePath, "bandIndex", bandIndex), reply -> {
+            Map<String, Double> stats = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) reply.result()).entrySet()) {
+                // NaN 在 JSON 中以字符串传递
+                Object v = e.getValue();
+                stats.put(String.valueOf(e.getKey()), v instanceof Number ? ((Number) v).doubleValue()
+                        : v == null ? null : Double.valueOf(v.toString()));
+            }
+            return stats;
+        });
+    }
+
+    private static Map<String, Object> args(Object... keyValues) {
+        Map<String, Object> args = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            args.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return args;
+    }
+}
@@ -0,0 +1,426 @@
+package org.example.rasterprocessing.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.example.rasterprocessing.util.SharedExchangeFile;
+import org.example.rasterprocessing.worker.NativeWorkerMain;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 本地库工作进程池
+ * 启用后 GDAL/OpenCV 操作在预热好的独立 JVM 中执行：本地代码崩溃只让当前请求失败，
+ * 崩溃或超时的进程被强制结束并在后台重启；各进程的堆与 GC 互不影响，本地计算可以跨进程扩展
+ * 控制消息走子进程标准输入/输出，像素数组等大块数据走每个进程独占的内存映射交换文件。
+ * 同一文件的原地更新可能同时落在不同进程中，由 SimpleRasterWatermarkService 的操作系统文件锁互斥
+ */
+@Service
+public class NativeWorkerPool {
+
+    /** 工作进程输出中协议行的前缀，其他输出（本地库直接写标准输出等）原样转发到日志 */
+    public static final String PROTOCOL_PREFIX = "@@raster-worker@@ ";
+
+    private static final String EOF = "\u0000EOF";
+    private static final String SPRING_BOOT_LAUNCHER = "org.springframework.boot.loader.launch.PropertiesLauncher";
+    private static final String[] FORWARDED_PREFIXES = {"raster.native.", "raster.gdal.", "raster.mmap.", "raster.info-cache."};
+
+    @Autowired
+    private ConfigurableEnvironment environment;
+
+    @Value("${raster.workers.enabled:false}")
+    private boolean enabled;
+
+    @Value("${raster.workers.count:2}")
+    private int workerCount;
+
+    @Value("${raster.workers.jvm-options:-Xmx1g}")
+    private String jvmOptions;
+
+    @Value("${raster.workers.request-timeout-ms:300000}")
+    private long requestTimeoutMs;
+
+    @Value("${raster.workers.startup-timeout-ms:60000}")
+    private long startupTimeoutMs;
+
+    @Value("${raster.workers.exchange-dir:./data/workers}")
+    private String exchangeDir;
+
+    // 工作进程入口，测试中替换为模拟进程
+    private String workerMainClass = NativeWorkerMain.class.getName();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final LinkedBlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    private final List<Worker> all = new ArrayList<>();
+    private final ExecutorService spawner = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "native-worker-spawner");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong crashes = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+    private volatile boolean shuttingDown;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(Paths.get(exchangeDir));
+        } catch (IOException e) {
+            throw new RuntimeException("无法创建工作进程交换目录: " + exchangeDir, e);
+        }
+        for (int slot = 0; slot < Math.max(1, workerCount); slot++) {
+            int s = slot;
+            spawner.execute(() -> spawn(s));
+        }
+    }
+
+    /**
+     * 在空闲工作进程中执行一个操作
+     * @param op 操作名，见 NativeWorkerMain
+     * @param args 参数
+     * @param reader 在归还进程之前处理响应（可从交换文件读取大块结果）
+     */
+    public <T> T invoke(String op, Map<String, Object> args, Function<Reply, T> reader) {
+        Worker worker = checkout();
+        requests.incrementAndGet();
+
+        Map<String, Object> response;
+        try {
+            Map<String, Object> request = new LinkedHashMap<>();
+            request.put("op", op);
+            request.put("args", args);
+            worker.stdin.write(mapper.writeValueAsString(request));
+            worker.stdin.newLine();
+            worker.stdin.flush();
+
+            String line = worker.responses.poll(requestTimeoutMs, TimeUnit.MILLISECONDS);
+            if (line == null) {
+                timeouts.incrementAndGet();
+                retire(worker, "处理超时（" + requestTimeoutMs + "ms）");
+                throw new RuntimeException("工作进程处理超时，已终止该请求");
+            }
+            if (EOF.equals(line)) {
+                crashes.incrementAndGet();
+                int exitCode = worker.exitCode();
+                retire(worker, "进程退出，退出码 " + exitCode);
+                throw new RuntimeException("工作进程异常退出（退出码 " + exitCode + "），该请求已终止");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> parsed = mapper.readValue(line, Map.class);
+            response = parsed;
+        } catch (IOException e) {
+            crashes.incrementAndGet();
+            retire(worker, "控制通道中断: " + e.getMessage());
+            throw new RuntimeException("工作进程通信失败，该请求已终止: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // 响应状态不确定，不能再复用该进程
+            retire(worker, "等待响应被中断");
+            throw new RuntimeException("等待工作进程响应被中断");
+        }
+
+        try {
+            if (!Boolean.TRUE.equals(response.get("ok"))) {
+                failures.incrementAndGet();
+                throw new RuntimeException(String.valueOf(response.get("error")));
+            }
+            return reader.apply(new Reply(response, worker.exchange));
+        } finally {
+            worker.served++;
+            idle.offer(worker);
+        }
+    }
+
+    /**
+     * 取一个空闲且存活的工作进程；空闲期间已退出的进程下线重启，不让下一个请求因此失败
+     */
+    private Worker checkout() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeoutMs);
+        while (true) {
+            Worker worker;
+            try {
+                worker = idle.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("等待工作进程被中断");
+            }
+            if (worker == null) {
+                throw new RuntimeException("没有可用的工作进程（" + requestTimeoutMs + "ms 内）");
+            }
+            // 空闲进程不应有输出：退出时输出线程会放入 EOF，其他行说明控制通道已错位
+            String pending = worker.responses.peek();
+            if (pending == null && worker.process.isAlive()) {
+                return worker;
+            }
+            crashes.incrementAndGet();
+            retire(worker, pending == null || EOF.equals(pending)
+                    ? "空闲时退出，退出码 " + worker.exitCode() : "空闲时收到意外响应");
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("configuredWorkers", workerCount);
+        List<Map<String, Object>> workers = new ArrayList<>();
+        synchronized (all) {
+            for (Worker w : all) {
+                Map<String, Object> info = new LinkedHashMap<>();
+                info.put("slot", w.slot);
+                info.put("pid", w.process.pid());
+                info.put("alive", w.process.isAlive());
+                info.put("served", w.served);
+                info.put("startedAt", w.startedAt);
+                workers.add(info);
+            }
+        }
+        status.put("workers", workers);
+        status.put("idle", idle.size());
+        status.put("requests", requests.get());
+        status.put("failures", failures.get());
+        status.put("crashes", crashes.get());
+        status.put("timeouts", timeouts.get());
+        status.put("restarts", restarts.get());
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        spawner.shutdownNow();
+        synchronized (all) {
+            for (Worker w : all) {
+                w.destroy();
+            }
+            all.clear();
+        }
+    }
+
+    /**
+     * 工作进程的一次响应
+     */
+    public static class Reply {
+        private final Map<String, Object> body;
+        private final SharedExchangeFile exchange;
+
+        Reply(Map<String, Object> body, SharedExchangeFile exchange) {
+            this.body = body;
+            this.exchange = exchange;
+        }
+
+        public Object result() {
+            return body.get("result");
+        }
+
+        /**
+         * 读取工作进程写入交换文件的 double 数组
+         */
+        public double[] doubles() {
+            try {
+                return exchange.readDoubles(((Number) body.get("doubles")).intValue());
+            } catch (IOException e) {
+                throw new RuntimeException("读取交换文件失败: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void spawn(int slot) {
+        while (!shuttingDown) {
+            Worker worker = null;
+            try {
+                worker = start(slot);
+                String ready = worker.responses.poll(startupTimeoutMs, TimeUnit.MILLISECONDS);
+                if (ready == null || EOF.equals(ready)) {
+                    throw new IOException(ready == null ? "启动超时" : "启动时退出，退出码 " + worker.exitCode());
+                }
+                synchronized (all) {
+                    all.add(worker);
+                }
+                idle.offer(worker);
+                System.out.println("工作进程就绪: slot=" + slot + ", pid=" + worker.process.pid());
+                return;
+            } catch (Exception e) {
+                System.err.println("工作进程启动失败: slot=" + slot + ", " + e.getMessage());
+                if (worker != null) {
+                    worker.destroy();
+                }
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void retire(Worker worker, String reason) {
+        System.err.println("工作进程下线: slot=" + worker.slot + ", pid=" + worker.process.pid() + ", " + reason);
+        worker.destroy();
+        synchronized (all) {
+            all.remove(worker);
+        }
+        if (!shuttingDown) {
+            restarts.incrementAndGet();
+            CompletableFuture.runAsync(() -> spawn(worker.slot), spawner);
+        }
+    }
+
+    private Worker start(int slot) throws IOException {
+        Path exchangeFile = Paths.get(exchangeDir, "worker-" + slot + ".buf").toAbsolutePath();
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String option : jvmOptions.trim().split("\\s+")) {
+            if (!option.isEmpty()) {
+                command.add(option);
+            }
+        }
+        command.add("-Djava.library.path=" + System.getProperty("java.library.path", ""));
+        command.add("-XX:ErrorFile=" + Paths.get(exchangeDir).toAbsolutePath().resolve("hs_err_worker_%p.log"));
+        command.add("-Dfile.encoding=UTF-8");
+        String classPath = System.getProperty("java.class.path");
+        if (isFatJar(classPath)) {
+            // 以可执行 jar 运行时，应用类位于 BOOT-INF/classes，需要通过 Spring Boot 的启动器加载
+            command.add("-Dloader.main=" + workerMainClass);
+            command.add("-cp");
+            command.add(classPath);
+            command.add(SPRING_BOOT_LAUNCHER);
+        } else {
+            command.add("-cp");
+            command.add(classPath);
+            command.add(workerMainClass);
+        }
+        command.add(exchangeFile.toString());
+        for (Map.Entry<String, String> property : forwardedProperties().entrySet()) {
+            command.add("--" + property.getKey() + "=" + property.getValue());
+        }
+        command.add("--raster.native.warmup=false");
+
+        ProcessBuilder builder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+        return new Worker(slot, process, new SharedExchangeFile(exchangeFile));
+    }
+
+    private static boolean isFatJar(String classPath) {
+        if (classPath == null || classPath.contains(File.pathSeparator) || !classPath.endsWith(".jar")) {
+            return false;
+        }
+        java.net.URL location = NativeWorkerPool.class.getProtectionDomain().getCodeSource().getLocation();
+        return location != null && location.toString().contains("BOOT-INF");
+    }
+
+    /**
+     * 工作进程与主进程使用相同的本地库、GDAL 和读取配置
+     */
+    private Map<String, String> forwardedProperties() {
+        Map<String, String> properties = new TreeMap<>();
+        for (PropertySource<?> source : environment.getPropertySources()) {
+            if (!(source instanceof EnumerablePropertySource)) {
+                continue;
+            }
+            for (String name : ((EnumerablePropertySource<?>) source).getPropertyNames()) {
+                for (String prefix : FORWARDED_PREFIXES) {
+                    if (name.startsWith(prefix) && !properties.containsKey(name)) {
+                        String value = environment.getProperty(name);
+                        if (value != null) {
+                            properties.put(name, value);
+                        }
+                    }
+                }
+            }
+        }
+        return properties;
+    }
+
+    private class Worker {
+        final int slot;
+        final Process process;
+        final SharedExchangeFile exchange;
+        final BufferedWriter stdin;
+        final LinkedBlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        final long startedAt = System.currentTimeMillis();
+        volatile long served;
+
+        Worker(int slot, Process process, SharedExchangeFile exchange) {
+            this.slot = slot;
+            this.process = process;
+            this.exchange = exchange;
+            this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            Thread reader = new Thread(this::readOutput, "native-worker-" + slot + "-stdout");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void readOutput() {
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    if (line.startsWith(PROTOCOL_PREFIX)) {
+                        responses.offer(line.substring(PROTOCOL_PREFIX.length()));
+                    } else {
+                        System.out.println("[worker-" + slot + "] " + line);
+                    }
+                }
+            } catch (IOException e) {
+                // 进程被结束
+            }
+            responses.offer(EOF);
+        }
+
+        int exitCode() {
+            try {
+                return process.waitFor(5, TimeUnit.SECONDS) ? process.exitValue() : -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+            try {
+                exchange.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+    }
+}
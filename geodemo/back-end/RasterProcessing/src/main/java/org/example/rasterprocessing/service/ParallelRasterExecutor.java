@@ -0,0 +1,79 @@
+package org.example.rasterprocessing.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * 栅格分块并行执行器
+ * GDAL 数据集句柄不能跨线程共享，因此按分区而不是按块提交任务：每个分区在一个工作线程上顺序处理，
+ * 由分区任务自己打开和关闭数据集
+ */
+@Service
+public class ParallelRasterExecutor {
+
+    @Autowired
+    @Qualifier("rasterWorkerPool")
+    private ExecutorService rasterWorkerPool;
+
+    /**
+     * 把条目按原顺序切成至多 parallelism() 个连续分区并行处理，结果按原顺序拼接
+     * 不要在分区任务内部再次调用本方法，以免占满线程池后相互等待
+     */
+    public <T, R> List<R> mapPartitions(List<T> items, Function<List<T>, List<R>> worker) {
+        return mapPartitions(items, parallelism(), worker);
+    }
+
+    public <T, R> List<R> mapPartitions(List<T> items, int maxPartitions, Function<List<T>, List<R>> worker) {
+        List<R> results = new ArrayList<>(items.size());
+        if (items.isEmpty()) {
+            return results;
+        }
+        int partitions = Math.max(1, Math.min(maxPartitions, items.size()));
+        if (partitions == 1) {
+            results.addAll(worker.apply(items));
+            return results;
+        }
+        List<Future<List<R>>> futures = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            int from = (int) ((long) items.size() * p / partitions);
+            int to = (int) ((long) items.size() * (p + 1) / partitions);
+            List<T> slice = items.subList(from, to);
+            futures.add(rasterWorkerPool.submit(() -> worker.apply(slice)));
+        }
+        try {
+            for (Future<List<R>> future : futures) {
+                results.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new RuntimeException("并行任务被中断", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+        return results;
+    }
+
+    /**
+     * 可用的并行度
+     */
+    public int parallelism() {
+        if (rasterWorkerPool instanceof java.util.concurrent.ThreadPoolExecutor) {
+            return ((java.util.concurrent.ThreadPoolExecutor) rasterWorkerPool).getMaximumPoolSize();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
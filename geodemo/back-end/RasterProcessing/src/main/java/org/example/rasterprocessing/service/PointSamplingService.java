@@ -0,0 +1,215 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.example.rasterprocessing.model.PointSampleRequest;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量点采样服务
+ * 点先转换到栅格坐标系并换算成行列号，再按所在数据块分组；每个块只读取一次（覆盖块内所有点的最小窗口），
+ * 块在工作线程间按分区并行读取
+ */
+@Service
+public class PointSamplingService {
+
+    private static final int MAX_POINTS = 1_000_000;
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    @Autowired
+    private CoordinateTransformService coordinateTransformService;
+
+    @Autowired
+    private ParallelRasterExecutor parallelRasterExecutor;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    /**
+     * 采样
+     * @param request 采样请求
+     * @return 每个波段按请求顺序排列的采样值，栅格范围外的点为 null
+     */
+    public Map<String, Object> sample(PointSampleRequest request) {
+        long startTime = System.currentTimeMillis();
+        String filePath = request.getFilePath();
+        if (filePath == null || filePath.isEmpty()) {
+            throw new RuntimeException("文件路径不能为空");
+        }
+        List<double[]> points = request.getPoints() == null ? Collections.emptyList() : request.getPoints();
+        if (points.size() > MAX_POINTS) {
+            throw new RuntimeException("点数量超过上限: " + MAX_POINTS);
+        }
+
+        RasterInfo info = rasterReaderService.readRasterInfo(filePath);
+        int[] bands = resolveBands(request.getBands(), info.getBandCount());
+        double[] gt = info.getGeoTransform() != null ? info.getGeoTransform() : new double[]{0, 1, 0, 0, 0, 1};
+        double[] inv = CoordinateTransformService.invertGeoTransform(gt);
+
+        int n = points.size();
+        double[][] coords = new double[n][];
+        for (int i = 0; i < n; i++) {
+            double[] p = points.get(i);
+            if (p == null || p.length < 2) {
+                throw new RuntimeException("第 " + i + " 个点坐标格式错误，应为 [x, y]");
+            }
+            coords[i] = new double[]{p[0], p[1]};
+        }
+        String crs = request.getCrs();
+        String projection = info.getProjection();
+        if (crs != null && !crs.isEmpty() && projection != null && !projection.isEmpty()) {
+            coordinateTransformService.transform(crs, projection, coords);
+        }
+
+        // 行列号，范围外的点记为 -1
+        int[] cols = new int[n];
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            double gx = coords[i][0];
+            double gy = coords[i][1];
+            double px = Math.floor(inv[0] + gx * inv[1] + gy * inv[2]);
+            double py = Math.floor(inv[3] + gx * inv[4] + gy * inv[5]);
+            boolean inside = px >= 0 && py >= 0 && px < info.getWidth() && py < info.getHeight();
+            cols[i] = inside ? (int) px : -1;
+            rows[i] = inside ? (int) py : -1;
+        }
+
+        GdalIoStats stats = gdalIoAccounting.current();
+        int[] blockSize;
+        try (WindowReader reader = rasterReaderService.openWindowReader(filePath, stats)) {
+            blockSize = reader.blockSize(bands[0]);
+        }
+        List<int[]> groups = groupByBlock(cols, rows, blockSize, info.getWidth());
+        int[] order = groups.isEmpty() ? new int[0] : groups.get(0);
+        List<int[]> blocks = groups.isEmpty() ? Collections.emptyList() : groups.subList(1, groups.size());
+
+        double[][] values = new double[bands.length][n];
+        for (double[] v : values) {
+            Arrays.fill(v, Double.NaN);
+        }
+        parallelRasterExecutor.mapPartitions(blocks, partition -> {
+            try (WindowReader reader = rasterReaderService.openWindowReader(filePath, stats)) {
+                for (int[] block : partition) {
+                    readBlock(reader, bands, order, block[0], block[1], cols, rows, values);
+                }
+            }
+            return Collections.<Void>emptyList();
+        });
+
+        int outside = 0;
+        for (int i = 0; i < n; i++) {
+            if (cols[i] < 0) {
+                outside++;
+            }
+        }
+        Double[][] result = new Double[bands.length][n];
+        for (int b = 0; b < bands.length; b++) {
+            for (int i = 0; i < n; i++) {
+                result[b][i] = Double.isNaN(values[b][i]) ? null : values[b][i];
+            }
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("filePath", filePath);
+        response.put("bands", bands);
+        response.put("values", result);
+        response.put("pointCount", n);
+        response.put("outsideCount", outside);
+        response.put("blocksRead", blocks.size());
+        response.put("blockSize", blockSize);
+        response.put("noDataValue", info.getNoDataValue());
+        response.put("processingTime", System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    /**
+     * 按数据块分组
+     * @return 第一个元素是按块排序后的点序号，其余每个元素为该序列中一个块的 [起, 止) 区间
+     */
+    static List<int[]> groupByBlock(int[] cols, int[] rows, int[] blockSize, int width) {
+        int blocksAcross = (width + blockSize[0] - 1) / blockSize[0];
+        long[] keys = new long[cols.length];
+        int count = 0;
+        for (int i = 0; i < cols.length; i++) {
+            if (cols[i] < 0) {
+                continue;
+            }
+            long block = (long) (rows[i] / blockSize[1]) * blocksAcross + cols[i] / blockSize[0];
+            keys[count++] = (block << 32) | i;
+        }
+        List<int[]> groups = new ArrayList<>();
+        if (count == 0) {
+            return groups;
+        }
+        Arrays.sort(keys, 0, count);
+        int[] order = new int[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = (int) keys[k];
+        }
+        groups.add(order);
+        int start = 0;
+        for (int k = 1; k <= count; k++) {
+            if (k == count || (keys[k] >>> 32) != (keys[start] >>> 32)) {
+                groups.add(new int[]{start, k});
+                start = k;
+            }
+        }
+        return groups;
+    }
+
+    private void readBlock(WindowReader reader, int[] bands, int[] order, int from, int to,
+                           int[] cols, int[] rows, double[][] values) {
+        int minCol = Integer.MAX_VALUE;
+        int minRow = Integer.MAX_VALUE;
+        int maxCol = Integer.MIN_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            minCol = Math.min(minCol, cols[i]);
+            minRow = Math.min(minRow, rows[i]);
+            maxCol = Math.max(maxCol, cols[i]);
+            maxRow = Math.max(maxRow, rows[i]);
+        }
+        int width = maxCol - minCol + 1;
+        int height = maxRow - minRow + 1;
+        for (int b = 0; b < bands.length; b++) {
+            double[] window = reader.read(bands[b], minCol, minRow, width, height);
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                values[b][i] = window[(rows[i] - minRow) * width + (cols[i] - minCol)];
+            }
+        }
+    }
+
+    private static int[] resolveBands(List<Integer> requested, int bandCount) {
+        if (requested == null || requested.isEmpty()) {
+            int[] all = new int[bandCount];
+            for (int b = 0; b < bandCount; b++) {
+                all[b] = b + 1;
+            }
+            if (bandCount == 0) {
+                throw new RuntimeException("栅格没有波段");
+            }
+            return all;
+        }
+        int[] bands = new int[requested.size()];
+        for (int i = 0; i < bands.length; i++) {
+            Integer band = requested.get(i);
+            if (band == null || band < 1 || band > bandCount) {
+                throw new RuntimeException("波段索引超出范围: " + band);
+            }
+            bands[i] = band;
+        }
+        return bands;
+    }
+}
@@ -0,0 +1,215 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.util.ImageQualityMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 原图与加水印结果的失真报告（MSE / PSNR、最大绝对误差、窗口 SSIM）
+ * 两幅影像按对齐的瓦片同时读取，每个工作线程处理一段连续瓦片、为每个波段累加一份可合并的度量，
+ * 最后按波段合并；每个线程只持有两个瓦片大小的读取缓冲，内存与影像大小无关。
+ * region 为 payload 时只比较水印所在的块行（布局与栅格、图像水印一致：8x8 块按行排列，每位重复 9 次）
+ */
+@Service
+public class QualityReportService {
+
+    private static final int BLOCK_SIZE = 8;
+    private static final int REPEAT_TIMES = 9;
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    @Autowired
+    private ParallelRasterExecutor parallelRasterExecutor;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Value("${raster.quality.tile-size:512}")
+    private int tileSize;
+
+    /**
+     * @param bands 波段列表，如 1 或 3,2,1，为空时比较全部波段
+     * @param region full（整幅）/ payload（水印块行）
+     * @param watermarkLength payload 时水印的 UTF-8 字节数，为空时按最长 255 字节
+     * @param dynamicRange 像素取值范围，为空时整数类型取类型范围，浮点类型取原图该波段的最大值与最小值之差
+     */
+    public Map<String, Object> compare(String originalPath, String modifiedPath, String bands, String region,
+                                       Integer watermarkLength, Double dynamicRange) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        RasterInfo original = rasterReaderService.readRasterInfo(originalPath);
+        RasterInfo modified = rasterReaderService.readRasterInfo(modifiedPath);
+        if (original.getWidth() != modified.getWidth() || original.getHeight() != modified.getHeight()) {
+            throw new IllegalArgumentException("两幅影像尺寸不一致: " + original.getWidth() + "x" + original.getHeight()
+                    + " / " + modified.getWidth() + "x" + modified.getHeight());
+        }
+        int width = original.getWidth();
+        List<Integer> bandList = parseBands(bands, Math.min(original.getBandCount(), modified.getBandCount()));
+
+        String mode = region == null ? "full" : region.trim().toLowerCase();
+        int height;
+        if ("full".equals(mode)) {
+            height = original.getHeight();
+        } else if ("payload".equals(mode)) {
+            int length = watermarkLength == null ? 255 : Math.max(0, Math.min(255, watermarkLength));
+            height = SimpleRasterWatermarkService.payloadRows((8 + length * 8L) * REPEAT_TIMES, width,
+                    original.getHeight());
+            if (height == 0) {
+                throw new IllegalArgumentException("影像小于一个水印块，没有水印区域");
+            }
+        } else {
+            throw new IllegalArgumentException("不支持的比较区域: " + region + "，可选 full、payload");
+        }
+
+        double[] ranges = new double[bandList.size()];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = dynamicRange != null ? dynamicRange : dynamicRange(originalPath, bandList.get(i), original.getDataType());
+        }
+        double noData = original.getNoDataValue() == null ? Double.NaN : original.getNoDataValue();
+
+        // 瓦片边长取 8 的倍数，SSIM 窗口的起点在全图上按步长对齐
+        int tile = Math.max(BLOCK_SIZE * 4, tileSize / BLOCK_SIZE * BLOCK_SIZE);
+        List<int[]> tiles = new ArrayList<>();
+        for (int ty = 0; ty < height; ty += tile) {
+            for (int tx = 0; tx < width; tx += tile) {
+                tiles.add(new int[]{tx, ty, Math.min(tile, width - tx), Math.min(tile, height - ty)});
+            }
+        }
+        int parallelism = Math.max(1, Math.min(tiles.size(), parallelRasterExecutor.parallelism()));
+        long windowPixels = (long) (tile + ImageQualityMetrics.STRIDE) * (tile + ImageQualityMetrics.STRIDE);
+        long workspaceBytes = (long) parallelism * windowPixels * Double.BYTES * 2;
+
+        GdalIoStats stats = gdalIoAccounting.current();
+        int rows = height;
+        List<ImageQualityMetrics[]> partials;
+        MemoryBudget.Reservation reservation = memoryBudget.isEnabled() ? memoryBudget.acquire("quality", workspaceBytes) : null;
+        try {
+            partials = parallelRasterExecutor.mapPartitions(tiles, parallelism, slice -> Collections.singletonList(
+                    accumulate(originalPath, modifiedPath, bandList, ranges, noData, width, rows, slice, stats)));
+        } finally {
+            if (reservation != null) {
+                reservation.close();
+            }
+        }
+
+        List<Map<String, Object>> bandReports = new ArrayList<>();
+        for (int i = 0; i < bandList.size(); i++) {
+            ImageQualityMetrics merged = new ImageQualityMetrics(ranges[i]);
+            for (ImageQualityMetrics[] partial : partials) {
+                merged.merge(partial[i]);
+            }
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("band", bandList.get(i));
+            report.putAll(merged.toMap());
+            bandReports.add(report);
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        Map<String, Object> window = new LinkedHashMap<>();
+        window.put("x", 0);
+        window.put("y", 0);
+        window.put("width", width);
+        window.put("height", height);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("originalPath", originalPath);
+        summary.put("watermarkedPath", modifiedPath);
+        summary.put("region", mode);
+        summary.put("window", window);
+        summary.put("dataType", original.getDataType());
+        summary.put("bands", bandReports);
+        summary.put("ssimWindow", ImageQualityMetrics.WINDOW + "x" + ImageQualityMetrics.WINDOW
+                + "/" + ImageQualityMetrics.STRIDE);
+        summary.put("tileSize", tile);
+        summary.put("tiles", tiles.size());
+        summary.put("processingTime", elapsed);
+        summary.put("megapixelsPerSecond", elapsed == 0 ? null
+                : (double) width * height * bandList.size() / 1000.0 / elapsed);
+        return summary;
+    }
+
+    /**
+     * 一个工作线程处理一段连续瓦片：两个文件各打开一次，逐瓦片、逐波段读取并累加
+     */
+    private ImageQualityMetrics[] accumulate(String originalPath, String modifiedPath, List<Integer> bands,
+                                             double[] ranges, double noData, int width, int height,
+                                             List<int[]> tiles, GdalIoStats stats) {
+        ImageQualityMetrics[] metrics = new ImageQualityMetrics[bands.size()];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = new ImageQualityMetrics(ranges[i]);
+        }
+        try (WindowReader a = rasterReaderService.openWindowReader(originalPath, stats);
+             WindowReader b = rasterReaderService.openWindowReader(modifiedPath, stats)) {
+            for (int[] t : tiles) {
+                // 向右、向下多读 STRIDE 个像素，让以本瓦片为起点的 SSIM 窗口完整
+                int w = Math.min(t[2] + ImageQualityMetrics.STRIDE, width - t[0]);
+                int h = Math.min(t[3] + ImageQualityMetrics.STRIDE, height - t[1]);
+                for (int i = 0; i < metrics.length; i++) {
+                    int band = bands.get(i);
+                    metrics[i].add(a.read(band, t[0], t[1], w, h), b.read(band, t[0], t[1], w, h), w, h,
+                            t[2], t[3], noData);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * 整数类型取类型范围；浮点类型取原图波段的实际范围
+     */
+    private double dynamicRange(String filePath, int band, String dataType) {
+        if (dataType != null) {
+            switch (dataType) {
+                case "Byte":
+                case "Int8":
+                    return 255;
+                case "UInt16":
+                case "Int16":
+                    return 65535;
+                case "UInt32":
+                case "Int32":
+                    return 4294967295.0;
+                default:
+                    break;
+            }
+        }
+        Map<String, Double> statistics = rasterReaderService.getRasterStatistics(filePath, band);
+        double range = statistics.get("max") - statistics.get("min");
+        return range > 0 ? range : 1;
+    }
+
+    private static List<Integer> parseBands(String bands, int bandCount) {
+        List<Integer> list = new ArrayList<>();
+        if (bands == null || bands.trim().isEmpty()) {
+            for (int b = 1; b <= bandCount; b++) {
+                list.add(b);
+            }
+            return list;
+        }
+        for (String token : bands.split(",")) {
+            int band;
+            try {
+                band = Integer.parseInt(token.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的波段: " + token);
+            }
+            if (band < 1 || band > bandCount) {
+                throw new IllegalArgumentException("波段超出范围: " + band + "（共 " + bandCount + " 个波段）");
+            }
+            list.add(band);
+        }
+        return list;
+    }
+}
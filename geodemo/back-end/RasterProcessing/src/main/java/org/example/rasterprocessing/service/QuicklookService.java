@@ -0,0 +1,386 @@
+package org.example.rasterprocessing.service;
+
+import jakarta.annotation.PostConstruct;
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.example.rasterprocessing.util.EntityTags;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 快视图（缩略图）服务
+ * 按输出尺寸选择最接近的概视图层级，没有概视图时由 ReadRaster 抽样读取，读取量只与输出尺寸有关；
+ * 多波段按波段并行读取与拉伸。结果按 (文件, 修改时间, 大小, 样式) 缓存在内存中，按总字节数 LRU 淘汰
+ */
+@Service
+public class QuicklookService {
+
+    private static final List<String> FORMATS = Arrays.asList("png", "jpeg", "webp");
+
+    // 计算百分位时最多取的样本数
+    private static final int PERCENTILE_SAMPLES = 65536;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
+
+    @Autowired
+    private ParallelRasterExecutor parallelRasterExecutor;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Value("${raster.quicklook.max-size:1024}")
+    private int maxSizeLimit;
+
+    @Value("${raster.quicklook.cache-size:64MB}")
+    private String cacheSize;
+
+    @Value("${raster.quicklook.jpeg-quality:85}")
+    private int jpegQuality;
+
+    private long cacheMaxBytes;
+    private long cacheBytes;
+    private final LinkedHashMap<String, Quicklook> cache = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 编码后的快视图；客户端缓存仍有效时只有 ETag，没有数据
+     */
+    public static class Quicklook {
+        private final byte[] data;
+        private final String contentType;
+        private final String etag;
+        private final boolean cached;
+
+        Quicklook(byte[] data, String contentType, String etag, boolean cached) {
+            this.data = data;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.cached = cached;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public boolean isNotModified() {
+            return data == null;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        cacheMaxBytes = GdalConfigService.parseCacheSize(cacheSize);
+    }
+
+    /**
+     * 生成快视图
+     * @param filePath 文件路径
+     * @param maxSize 输出图像长边的最大像素数，不放大
+     * @param format png / jpeg / webp
+     * @param bands 波段列表，1 个为灰度，3 个为 RGB；为空时三波段及以上取 1,2,3，否则取 1
+     * @param lowPercent 拉伸下限百分位
+     * @param highPercent 拉伸上限百分位
+     * @param ifNoneMatch If-None-Match 头，可为 null；与 ETag 匹配时不查缓存也不读取文件，直接返回未修改
+     */
+    public Quicklook render(String filePath, int maxSize, String format, String bands,
+                            double lowPercent, double highPercent, String ifNoneMatch) {
+        String fmt = format == null ? "png" : format.toLowerCase();
+        if ("jpg".equals(fmt)) {
+            fmt = "jpeg";
+        }
+        if (!FORMATS.contains(fmt)) {
+            throw new RuntimeException("不支持的输出格式: " + format + "，可选: " + FORMATS);
+        }
+        if (maxSize < 1 || maxSize > maxSizeLimit) {
+            throw new RuntimeException("maxSize 取值范围为 1-" + maxSizeLimit);
+        }
+        if (!(lowPercent >= 0 && lowPercent < highPercent && highPercent <= 100)) {
+            throw new RuntimeException("拉伸百分位须满足 0 <= low < high <= 100");
+        }
+        long[] fingerprint = RasterInfoCache.fingerprint(filePath);
+        if (fingerprint == null) {
+            throw new RuntimeException("无法访问栅格文件: " + filePath);
+        }
+        String style = maxSize + "|" + fmt + "|" + (bands == null ? "" : bands.replace(" ", ""))
+                + "|" + lowPercent + "|" + highPercent;
+        String key = filePath + "|" + fingerprint[0] + "|" + fingerprint[1] + "|" + style;
+        String etag = "\"" + Long.toHexString(fingerprint[0]) + "-" + Long.toHexString(fingerprint[1])
+                + "-" + Integer.toHexString(style.hashCode()) + "\"";
+        if (ifNoneMatch != null && EntityTags.matchesAny(ifNoneMatch, etag)) {
+            return new Quicklook(null, "image/" + fmt, etag, false);
+        }
+        synchronized (cache) {
+            Quicklook cached = cache.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return new Quicklook(cached.data, cached.contentType, etag, true);
+            }
+        }
+        misses.incrementAndGet();
+
+        byte[] data = encode(filePath, maxSize, fmt, bands, lowPercent, highPercent);
+        Quicklook created = new Quicklook(data, "image/" + fmt, etag, false);
+        synchronized (cache) {
+            Quicklook previous = cache.put(key, created);
+            cacheBytes += data.length - (previous == null ? 0 : previous.data.length);
+            while (cacheBytes > cacheMaxBytes && !cache.isEmpty()) {
+                String eldest = cache.keySet().iterator().next();
+                cacheBytes -= cache.remove(eldest).data.length;
+            }
+        }
+        return created;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (cache) {
+            stats.put("entries", cache.size());
+            stats.put("bytes", cacheBytes);
+        }
+        stats.put("maxBytes", cacheMaxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    private byte[] encode(String filePath, int maxSize, String fmt, String bands, double lowPercent, double highPercent) {
+        nativeLibraryLoader.ensureGdal();
+        String path = Paths.get(filePath).toAbsolutePath().toString();
+        int width;
+        int height;
+        List<Integer> bandList;
+        Dataset dataset = gdal.Open(path, gdalconst.GA_ReadOnly);
+        if (dataset == null) {
+            throw new RuntimeException("无法打开栅格文件: " + filePath);
+        }
+        try {
+            width = dataset.getRasterXSize();
+            height = dataset.getRasterYSize();
+            bandList = parseBands(bands, dataset.getRasterCount());
+        } finally {
+            dataset.delete();
+        }
+        int[] size = outputSize(width, height, maxSize);
+
+        // GDAL 数据集句柄不能跨线程共享，每个波段任务各自打开
+        GdalIoStats stats = gdalIoAccounting.current();
+        List<byte[][]> channels = parallelRasterExecutor.mapPartitions(bandList, bandList.size(), slice -> {
+            List<byte[][]> result = new ArrayList<>(slice.size());
+            for (int bandIndex : slice) {
+                result.add(readStretched(stats, path, bandIndex, size[0], size[1], lowPercent, highPercent));
+            }
+            return result;
+        });
+
+        int pixels = size[0] * size[1];
+        // 任一波段为 nodata 的像素透明；JPEG 不支持透明，按黑色输出
+        byte[] mask = null;
+        if (!"jpeg".equals(fmt)) {
+            for (byte[][] channel : channels) {
+                if (channel[1] == null) {
+                    continue;
+                }
+                if (mask == null) {
+                    mask = channel[1].clone();
+                } else {
+                    for (int i = 0; i < pixels; i++) {
+                        mask[i] &= channel[1][i];
+                    }
+                }
+            }
+        }
+
+        nativeLibraryLoader.ensureOpenCv();
+        int outChannels = channels.size() == 1 && mask == null ? 1 : mask == null ? 3 : 4;
+        byte[] interleaved = new byte[pixels * outChannels];
+        if (outChannels == 1) {
+            System.arraycopy(channels.get(0)[0], 0, interleaved, 0, pixels);
+        } else {
+            // OpenCV 按 BGR(A) 顺序
+            byte[] r = channels.get(0)[0];
+            byte[] g = channels.get(channels.size() == 1 ? 0 : 1)[0];
+            byte[] b = channels.get(channels.size() == 1 ? 0 : 2)[0];
+            for (int i = 0, o = 0; i < pixels; i++, o += outChannels) {
+                interleaved[o] = b[i];
+                interleaved[o + 1] = g[i];
+                interleaved[o + 2] = r[i];
+                if (outChannels == 4) {
+                    interleaved[o + 3] = mask[i];
+                }
+            }
+        }
+        Mat image = new Mat(size[1], size[0], outChannels == 1 ? CvType.CV_8UC1 : outChannels == 3 ? CvType.CV_8UC3 : CvType.CV_8UC4);
+        MatOfByte buffer = new MatOfByte();
+        try {
+            image.put(0, 0, interleaved);
+            boolean ok;
+            if ("jpeg".equals(fmt)) {
+                ok = Imgcodecs.imencode(".jpg", image, buffer, new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, jpegQuality));
+            } else if ("webp".equals(fmt)) {
+                ok = Imgcodecs.imencode(".webp", image, buffer, new MatOfInt(Imgcodecs.IMWRITE_WEBP_QUALITY, jpegQuality));
+            } else {
+                ok = Imgcodecs.imencode(".png", image, buffer);
+            }
+            if (!ok) {
+                throw new RuntimeException("图像编码失败: " + fmt);
+            }
+            return buffer.toArray();
+        } finally {
+            image.release();
+            buffer.release();
+        }
+    }
+
+    /**
+     * 读取一个波段的缩小版本并拉伸到 0-255
+     * @return {拉伸后的灰度, 有效像素掩码（255 有效 / 0 nodata），全部有效时为 null}
+     */
+    private byte[][] readStretched(GdalIoStats stats, String path, int bandIndex, int outWidth, int outHeight,
+                                   double lowPercent, double highPercent) {
+        Dataset dataset = gdal.Open(path, gdalconst.GA_ReadOnly);
+        if (dataset == null) {
+            throw new RuntimeException("无法打开栅格文件: " + path);
+        }
+        try {
+            Band band = dataset.GetRasterBand(bandIndex);
+            Double[] noData = new Double[1];
+            band.GetNoDataValue(noData);
+            Band source = overviewFor(band, outWidth, outHeight);
+            gdalIoAccounting.recordRead(stats, path, source, bandIndex, 0, 0, source.getXSize(), source.getYSize());
+            float[] values = new float[outWidth * outHeight];
+            int result = source.ReadRaster(0, 0, source.getXSize(), source.getYSize(),
+                    outWidth, outHeight, gdalconst.GDT_Float32, values);
+            if (result != gdalconst.CE_None) {
+                throw new RuntimeException("读取波段 " + bandIndex + " 失败: " + gdal.GetLastErrorMsg());
+            }
+            return stretch(values, noData[0], lowPercent, highPercent);
+        } finally {
+            dataset.delete();
+        }
+    }
+
+    /**
+     * 尺寸不小于输出的最小概视图，没有合适的概视图时返回原波段
+     */
+    private static Band overviewFor(Band band, int outWidth, int outHeight) {
+        Band best = band;
+        for (int i = 0; i < band.GetOverviewCount(); i++) {
+            Band overview = band.GetOverview(i);
+            if (overview != null && overview.getXSize() >= outWidth && overview.getYSize() >= outHeight
+                    && overview.getXSize() < best.getXSize()) {
+                best = overview;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 按百分位线性拉伸到 0-255，nodata 与 NaN 不参与统计
+     * @return {拉伸结果, 有效像素掩码或 null}
+     */
+    static byte[][] stretch(float[] values, Double noData, double lowPercent, double highPercent) {
+        int valid = 0;
+        byte[] mask = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            float v = values[i];
+            if (!Float.isNaN(v) && (noData == null || v != noData.floatValue())) {
+                mask[i] = (byte) 255;
+                valid++;
+            }
+        }
+        byte[] out = new byte[values.length];
+        if (valid == 0) {
+            return new byte[][]{out, mask};
+        }
+        int step = Math.max(1, valid / PERCENTILE_SAMPLES);
+        float[] samples = new float[(valid + step - 1) / step];
+        int n = 0;
+        for (int i = 0, k = 0; i < values.length; i++) {
+            if (mask[i] != 0 && k++ % step == 0 && n < samples.length) {
+                samples[n++] = values[i];
+            }
+        }
+        Arrays.sort(samples, 0, n);
+        double low = samples[(int) Math.round((n - 1) * lowPercent / 100)];
+        double high = samples[(int) Math.round((n - 1) * highPercent / 100)];
+        double scale = high > low ? 255.0 / (high - low) : 0;
+        for (int i = 0; i < values.length; i++) {
+            if (mask[i] != 0) {
+                double s = scale == 0 ? (values[i] > low ? 255 : 0) : (values[i] - low) * scale;
+                out[i] = (byte) Math.max(0, Math.min(255, Math.round(s)));
+            }
+        }
+        return new byte[][]{out, valid == values.length ? null : mask};
+    }
+
+    /**
+     * 长边缩放到 maxSize 的输出尺寸 {宽, 高}，小图不放大
+     */
+    static int[] outputSize(int width, int height, int maxSize) {
+        if (width <= maxSize && height <= maxSize) {
+            return new int[]{width, height};
+        }
+        double scale = (double) maxSize / Math.max(width, height);
+        return new int[]{Math.max(1, (int) Math.round(width * scale)), Math.max(1, (int) Math.round(height * scale))};
+    }
+
+    static List<Integer> parseBands(String bands, int bandCount) {
+        List<Integer> list = new ArrayList<>();
+        if (bands == null || bands.trim().isEmpty()) {
+            if (bandCount >= 3) {
+                list.addAll(Arrays.asList(1, 2, 3));
+            } else {
+                list.add(1);
+            }
+            return list;
+        }
+        for (String part : bands.split(",")) {
+            int index;
+            try {
+                index = Integer.parseInt(part.trim());
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("波段列表格式应为 1 或 3,2,1: " + bands);
+            }
+            if (index < 1 || index > bandCount) {
+                throw new RuntimeException("波段索引超出范围: " + index + "，共 " + bandCount + " 个波段");
+            }
+            list.add(index);
+        }
+        if (list.size() != 1 && list.size() != 3) {
+            throw new RuntimeException("快视图需要 1 个（灰度）或 3 个（RGB）波段");
+        }
+        return list;
+    }
+}
@@ -0,0 +1,301 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.entity.RasterCatalogEntry;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.repository.RasterCatalogRepository;
+import org.example.rasterprocessing.util.FileTypeDetector;
+import org.example.rasterprocessing.util.StrTree;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 栅格目录服务
+ * 增量扫描配置的目录，把每个文件的信息、WGS84 外包矩形和统计存入 H2，读取失败的文件在下次扫描时重试；
+ * 空间查询走内存中的 STR R 树，扫描完成后整体重建并替换
+ */
+@Service
+public class RasterCatalogService {
+
+    private static final int SAVE_BATCH_SIZE = 200;
+    private static final int BOUNDS_DENSIFY = 21;
+
+    @Autowired
+    private RasterCatalogRepository repository;
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    @Autowired
+    private CoordinateTransformService coordinateTransformService;
+
+    @Value("${raster.catalog.roots:}")
+    private String roots;
+
+    @Value("${raster.catalog.scan-threads:4}")
+    private int scanThreads;
+
+    @Value("${raster.catalog.compute-statistics:true}")
+    private boolean computeStatistics;
+
+    @Value("${raster.catalog.scan-on-startup:true}")
+    private boolean scanOnStartup;
+
+    private volatile StrTree<RasterCatalogEntry> index = StrTree.empty();
+
+    private final AtomicBoolean scanning = new AtomicBoolean(false);
+
+    private volatile Map<String, Object> lastScan = new LinkedHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildIndex();
+        if (scanOnStartup && !rootDirs().isEmpty()) {
+            CompletableFuture.runAsync(this::scan);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${raster.catalog.rescan-interval-ms:600000}",
+            initialDelayString = "${raster.catalog.rescan-interval-ms:600000}")
+    public void scheduledScan() {
+        if (!rootDirs().isEmpty()) {
+            scan();
+        }
+    }
+
+    /**
+     * 扫描所有目录，只重新读取新增或修改过的文件，并删除已不存在的文件
+     * @return 扫描结果摘要；已有扫描在进行时直接返回提示
+     */
+    public Map<String, Object> scan() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        if (!scanning.compareAndSet(false, true)) {
+            summary.put("success", false);
+            summary.put("message", "已有扫描在进行中");
+            return summary;
+        }
+        long startTime = System.currentTimeMillis();
+        int scanned = 0;
+        int updated = 0;
+        int removed = 0;
+        int failed = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, scanThreads));
+        try {
+            for (String root : rootDirs()) {
+                Map<String, RasterCatalogEntry> existing = repository.findByRootDir(root).stream()
+                        .collect(Collectors.toMap(RasterCatalogEntry::getFilePath, e -> e));
+                Set<String> seen = new HashSet<>();
+                List<Future<RasterCatalogEntry>> pending = new ArrayList<>();
+
+                for (Map.Entry<String, BasicFileAttributes> file : listRasterFiles(root).entrySet()) {
+                    String filePath = file.getKey();
+                    BasicFileAttributes attributes = file.getValue();
+                    seen.add(filePath);
+                    scanned++;
+                    RasterCatalogEntry old = existing.get(filePath);
+                    long mtime = attributes.lastModifiedTime().toMillis();
+                    if (isCurrent(old, mtime, attributes.size())) {
+                        continue;
+                    }
+                    pending.add(executor.submit(() -> readEntry(root, filePath, mtime, attributes.size())));
+                }
+
+                List<RasterCatalogEntry> batch = new ArrayList<>();
+                for (Future<RasterCatalogEntry> future : pending) {
+                    RasterCatalogEntry entry = future.get();
+                    if (entry.getError() != null) {
+                        failed++;
+                    }
+                    batch.add(entry);
+                    updated++;
+                    if (batch.size() >= SAVE_BATCH_SIZE) {
+                        repository.saveAll(batch);
+                        batch.clear();
+                    }
+                }
+                repository.saveAll(batch);
+
+                List<String> deleted = existing.keySet().stream()
+                        .filter(path -> !seen.contains(path))
+                        .collect(Collectors.toList());
+                repository.deleteAllById(deleted);
+                removed += deleted.size();
+            }
+            rebuildIndex();
+
+            summary.put("success", true);
+            summary.put("scanned", scanned);
+            summary.put("updated", updated);
+            summary.put("removed", removed);
+            summary.put("failed", failed);
+            summary.put("indexed", index.size());
+            summary.put("processingTime", System.currentTimeMillis() - startTime);
+            lastScan = summary;
+            System.out.println("栅格目录扫描完成: " + summary);
+            return summary;
+        } catch (Exception e) {
+            throw new RuntimeException("栅格目录扫描失败: " + e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+            scanning.set(false);
+        }
+    }
+
+    /**
+     * 查询与 WGS84 外包矩形相交的栅格
+     * @param bbox {minLon, minLat, maxLon, maxLat}
+     * @param limit 最多返回条数
+     */
+    public List<RasterCatalogEntry> search(double[] bbox, int limit) {
+        return index.query(bbox[0], bbox[1], bbox[2], bbox[3]).stream()
+                .limit(Math.max(0, limit))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 查询任意坐标系下的外包矩形，先转换到 WGS84
+     */
+    public List<RasterCatalogEntry> search(double[] bbox, String crs, int limit) {
+        double[] wgs84 = coordinateTransformService.transformBounds(crs, CoordinateTransformService.WGS84, bbox, BOUNDS_DENSIFY);
+        if (wgs84 == null) {
+            throw new RuntimeException("无法将查询范围转换到 WGS84");
+        }
+        return search(wgs84, limit);
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("roots", rootDirs());
+        status.put("scanning", scanning.get());
+        status.put("indexed", index.size());
+        status.put("lastScan", lastScan);
+        return status;
+    }
+
+    /**
+     * 从数据库重建空间索引
+     */
+    public void rebuildIndex() {
+        List<RasterCatalogEntry> entries = repository.findAll().stream()
+                .filter(RasterCatalogEntry::hasBounds)
+                .collect(Collectors.toList());
+        index = StrTree.build(entries,
+                e -> new double[]{e.getMinLon(), e.getMinLat(), e.getMaxLon(), e.getMaxLat()});
+    }
+
+    /**
+     * 条目是否无需重新读取：文件未变且上次读取成功；读取失败的条目（如 GDAL 的临时错误）每次扫描都重试
+     */
+    static boolean isCurrent(RasterCatalogEntry old, long mtime, long size) {
+        return old != null && old.getError() == null && old.getLastModified() == mtime && old.getFileSize() == size;
+    }
+
+    private RasterCatalogEntry readEntry(String root, String filePath, long mtime, long size) {
+        RasterCatalogEntry entry = new RasterCatalogEntry(filePath);
+        entry.setRootDir(root);
+        entry.setLastModified(mtime);
+        entry.setFileSize(size);
+        entry.setIndexedAt(System.currentTimeMillis());
+        try {
+            RasterInfo info = rasterReaderService.readRasterInfo(filePath);
+            entry.setWidth(info.getWidth());
+            entry.setHeight(info.getHeight());
+            entry.setBandCount(info.getBandCount());
+            entry.setDriver(info.getDriver());
+            entry.setDataType(info.getDataType());
+            entry.setNoDataValue(info.getNoDataValue());
+            entry.setProjection(info.getProjection());
+
+            double[] gt = info.getGeoTransform();
+            if (gt != null) {
+                entry.setGeoTransform(java.util.Arrays.stream(gt)
+                        .mapToObj(String::valueOf)
+                        .collect(Collectors.joining(",")));
+            }
+            if (gt != null && info.getProjection() != null && !info.getProjection().isEmpty()) {
+                double[] nativeBounds = CoordinateTransformService.rasterBounds(gt, info.getWidth(), info.getHeight());
+                double[] wgs84 = coordinateTransformService.transformBounds(
+                        info.getProjection(), CoordinateTransformService.WGS84, nativeBounds, BOUNDS_DENSIFY);
+                if (wgs84 != null) {
+                    entry.setMinLon(wgs84[0]);
+                    entry.setMinLat(wgs84[1]);
+                    entry.setMaxLon(wgs84[2]);
+                    entry.setMaxLat(wgs84[3]);
+                }
+            }
+
+            if (computeStatistics && info.getBandCount() > 0) {
+                Map<String, Double> stats = rasterReaderService.getRasterStatistics(filePath, 1);
+                entry.setStatMin(stats.get("min"));
+                entry.setStatMax(stats.get("max"));
+                entry.setStatMean(stats.get("mean"));
+                entry.setStatStddev(stats.get("stddev"));
+            }
+        } catch (Exception e) {
+            String message = e.getMessage() == null ? e.toString() : e.getMessage();
+            entry.setError(message.length() > 1000 ? message.substring(0, 1000) : message);
+        }
+        return entry;
+    }
+
+    private Map<String, BasicFileAttributes> listRasterFiles(String root) throws IOException {
+        Map<String, BasicFileAttributes> files = new HashMap<>();
+        Path rootPath = Paths.get(root);
+        if (!Files.isDirectory(rootPath)) {
+            System.err.println("栅格目录不存在: " + root);
+            return files;
+        }
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && FileTypeDetector.isRasterFormat(file.toString())) {
+                    files.put(file.toString(), attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private List<String> rootDirs() {
+        List<String> dirs = new ArrayList<>();
+        if (roots == null) {
+            return dirs;
+        }
+        for (String root : roots.split(",")) {
+            if (!root.trim().isEmpty()) {
+                dirs.add(root.trim());
+            }
+        }
+        return dirs;
+    }
+}
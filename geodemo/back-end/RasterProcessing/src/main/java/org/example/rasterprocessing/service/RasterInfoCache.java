@@ -0,0 +1,99 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.RasterInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 栅格信息缓存 - 有界 LRU，按文件修改时间和大小判断失效
+ * 缓存的 RasterInfo 为共享实例，调用方不要修改
+ */
+@Service
+public class RasterInfoCache {
+
+    @Value("${raster.info-cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 文件当前状态的指纹（修改时间 + 大小），文件不可访问时返回 null
+     */
+    public static long[] fingerprint(String filePath) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(filePath), BasicFileAttributes.class);
+            return new long[]{attributes.lastModifiedTime().toMillis(), attributes.size()};
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 取仍然有效的缓存项
+     */
+    public RasterInfo get(String filePath, long[] fingerprint) {
+        if (fingerprint != null) {
+            synchronized (entries) {
+                Entry entry = entries.get(filePath);
+                if (entry != null && entry.mtime == fingerprint[0] && entry.size == fingerprint[1]) {
+                    hits.incrementAndGet();
+                    return entry.info;
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String filePath, long[] fingerprint, RasterInfo info) {
+        if (fingerprint == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(filePath, new Entry(fingerprint[0], fingerprint[1], info));
+            while (entries.size() > Math.max(1, maxEntries)) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    public void invalidate(String filePath) {
+        synchronized (entries) {
+            entries.remove(filePath);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    private static class Entry {
+        final long mtime;
+        final long size;
+        final RasterInfo info;
+
+        Entry(long mtime, long size, RasterInfo info) {
+            this.mtime = mtime;
+            this.size = size;
+            this.info = info;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.rasterprocessing.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.util.SingleFlight;
+import org.example.rasterprocessing.util.WindowCoalescer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 栅格读取请求合并
+ * 位于 RasterReaderService / NativeOperations 之前：同一文件的并发信息、统计请求共享一次计算，
+ * 同一波段的重叠像素窗口合并为一次按块对齐的读取后分别切片。合并比例以 raster.coalesce.* 指标导出
+ */
+@Service
+public class RasterReadCoalescer {
+
+    private static final int MAX_BLOCK_SIZES = 1024;
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    @Autowired
+    private NativeOperations nativeOperations;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${raster.coalesce.enabled:true}")
+    private boolean enabled;
+
+    @Value("${raster.coalesce.max-merge-pixels:4194304}")
+    private long maxMergePixels;
+
+    private final SingleFlight infoFlights = new SingleFlight();
+    private final SingleFlight statisticsFlights = new SingleFlight();
+    private WindowCoalescer windows;
+
+    // 文件#波段#修改时间#大小 -> 块大小
+    private final LinkedHashMap<String, int[]> blockSizes = new LinkedHashMap<>(64, 0.75f, true);
+
+    @PostConstruct
+    public void init() {
+        windows = new WindowCoalescer(maxMergePixels);
+        register("info", infoFlights, SingleFlight::getCalls, SingleFlight::getExecutions);
+        register("statistics", statisticsFlights, SingleFlight::getCalls, SingleFlight::getExecutions);
+        register("pixels", windows, WindowCoalescer::getRequests, WindowCoalescer::getReads);
+        FunctionCounter.builder("raster.coalesce.pixels.requested", windows, WindowCoalescer::getPixelsRequested)
+                .description("像素请求的像素数").register(meterRegistry);
+        FunctionCounter.builder("raster.coalesce.pixels.read", windows, WindowCoalescer::getPixelsRead)
+                .description("实际读取的像素数（含块对齐扩展）").register(meterRegistry);
+    }
+
+    private <T> void register(String operation, T source, ToDoubleFunction<T> requests, ToDoubleFunction<T> executions) {
+        FunctionCounter.builder("raster.coalesce.requests", source, requests).tag("operation", operation)
+                .description("进入合并层的请求数").register(meterRegistry);
+        FunctionCounter.builder("raster.coalesce.executions", source, executions).tag("operation", operation)
+                .description("实际执行的读取或计算次数").register(meterRegistry);
+        Gauge.builder("raster.coalesce.ratio", source, s -> ratio(requests.applyAsDouble(s), executions.applyAsDouble(s)))
+                .tag("operation", operation).description("共享他人结果的请求占比").register(meterRegistry);
+    }
+
+    private static double ratio(double requests, double executions) {
+        return requests == 0 ? 0 : (requests - executions) / requests;
+    }
+
+    public RasterInfo readRasterInfo(String filePath) {
+        if (!enabled) {
+            return rasterReaderService.readRasterInfo(filePath);
+        }
+        return infoFlights.execute(filePath, () -> rasterReaderService.readRasterInfo(filePath));
+    }
+
+    public Map<String, Double> getRasterStatistics(String filePath, int bandIndex) {
+        if (!enabled) {
+            return nativeOperations.getRasterStatistics(filePath, bandIndex);
+        }
+        return statisticsFlights.execute(filePath + "#" + bandIndex,
+                () -> nativeOperations.getRasterStatistics(filePath, bandIndex));
+    }
+
+    public double[] readPixelValues(String filePath, int bandIndex, int x, int y, int width, int height) {
+        if (!enabled) {
+            return nativeOperations.readPixelValues(filePath, bandIndex, x, y, width, height);
+        }
+        RasterInfo info;
+        try {
+            info = readRasterInfo(filePath);
+        } catch (RuntimeException e) {
+            info = null;
+        }
+        // 越界等非法请求不参与合并，由底层给出原有的错误信息
+        if (info == null || bandIndex < 1 || bandIndex > info.getBandCount() || width <= 0 || height <= 0
+                || x < 0 || y < 0 || x + width > info.getWidth() || y + height > info.getHeight()) {
+            return nativeOperations.readPixelValues(filePath, bandIndex, x, y, width, height);
+        }
+        return windows.read(filePath + "#" + bandIndex, new int[]{x, y, width, height}, blockSize(filePath, bandIndex),
+                new int[]{info.getWidth(), info.getHeight()},
+                (rx, ry, rw, rh) -> nativeOperations.readPixelValues(filePath, bandIndex, rx, ry, rw, rh));
+    }
+
+    private int[] blockSize(String filePath, int bandIndex) {
+        long[] fingerprint = RasterInfoCache.fingerprint(filePath);
+        String key = filePath + "#" + bandIndex + (fingerprint == null ? "" : "#" + fingerprint[0] + "#" + fingerprint[1]);
+        synchronized (blockSizes) {
+            int[] cached = blockSizes.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        int[] size;
+        try (WindowReader reader = rasterReaderService.openWindowReader(filePath, null)) {
+            size = reader.blockSize(bandIndex);
+        } catch (RuntimeException e) {
+            size = new int[]{256, 256};
+        }
+        synchronized (blockSizes) {
+            blockSizes.put(key, size);
+            while (blockSizes.size() > MAX_BLOCK_SIZES) {
+                blockSizes.remove(blockSizes.keySet().iterator().next());
+            }
+        }
+        return size;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("info", counts(infoFlights.getCalls(), infoFlights.getExecutions()));
+        stats.put("statistics", counts(statisticsFlights.getCalls(), statisticsFlights.getExecutions()));
+        Map<String, Object> pixels = counts(windows.getRequests(), windows.getReads());
+        pixels.put("pixelsRequested", windows.getPixelsRequested());
+        pixels.put("pixelsRead", windows.getPixelsRead());
+        stats.put("pixels", pixels);
+        return stats;
+    }
+
+    private static Map<String, Object> counts(long requests, long executions) {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("requests", requests);
+        counts.put("executions", executions);
+        counts.put("ratio", ratio(requests, executions));
+        return counts;
+    }
+}
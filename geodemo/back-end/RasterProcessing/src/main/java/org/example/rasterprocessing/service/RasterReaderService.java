@@ -1,14 +1,26 @@
 package org.example.rasterprocessing.service;
 
+import org.example.rasterprocessing.model.GdalIoStats;
 import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.util.FileTypeDetector;
+import org.example.rasterprocessing.util.GeoTiffInfoReader;
+import org.example.rasterprocessing.util.RasterBuffer;
 import org.gdal.gdal.Band;
 import org.gdal.gdal.Dataset;
 import org.gdal.gdal.gdal;
 import org.gdal.gdalconst.gdalconst;
+import org.gdal.osr.SpatialReference;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * 栅格数据读取服务
@@ -16,15 +28,110 @@ import java.util.Map;
 @Service
 public class RasterReaderService {
 
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private MappedTiffReader mappedTiffReader;
+
+    @Autowired
+    private RasterInfoCache rasterInfoCache;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
+
+    // EPSG 代码 -> WKT，解析失败记为空串
+    private final Map<Integer, String> epsgWktCache = new ConcurrentHashMap<>();
+
     /**
      * 读取栅格数据的详细信息
+     * 优先命中缓存；GeoTIFF 只解析文件头，其他格式才打开 GDAL 数据集
      * @param filePath 栅格文件路径
      * @return 栅格信息对象
      */
     public RasterInfo readRasterInfo(String filePath) {
+        long[] fingerprint = RasterInfoCache.fingerprint(filePath);
+        RasterInfo cached = rasterInfoCache.get(filePath, fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+
+        RasterInfo rasterInfo = null;
+        if (fingerprint != null && isTiff(filePath)) {
+            try {
+                rasterInfo = GeoTiffInfoReader.read(Paths.get(filePath), this::epsgToWkt);
+            } catch (IOException e) {
+                rasterInfo = null; // 交给 GDAL 给出准确的错误信息
+            }
+        }
+        if (rasterInfo != null) {
+            rasterInfo.setFileName(filePath);
+        } else {
+            rasterInfo = readRasterInfoWithGdal(filePath);
+        }
+        rasterInfoCache.put(filePath, fingerprint, rasterInfo);
+        return rasterInfo;
+    }
+
+    /**
+     * 批量读取栅格信息，结果顺序与请求一致，单个文件失败不影响其他文件
+     * @param filePaths 文件路径列表
+     * @return 每个文件的结果
+     */
+    public List<Map<String, Object>> readRasterInfoBatch(List<String> filePaths) {
+        return filePaths.parallelStream().map(filePath -> {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("filePath", filePath);
+            try {
+                result.put("success", true);
+                result.put("info", readRasterInfo(filePath));
+            } catch (Exception e) {
+                result.put("success", false);
+                result.put("message", e.getMessage());
+            }
+            return result;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * 打开一个窗口读取句柄，供单个工作线程使用
+     * @param filePath 文件路径
+     * @param stats 记账归属的请求统计，可为 null
+     */
+    public WindowReader openWindowReader(String filePath, GdalIoStats stats) {
+        if (!mappedTiffReader.supports(filePath)) {
+            nativeLibraryLoader.ensureGdal();
+        }
+        return new WindowReader(filePath, mappedTiffReader, gdalIoAccounting, stats);
+    }
+
+    private static boolean isTiff(String filePath) {
+        String lower = filePath.toLowerCase();
+        return FileTypeDetector.isRasterFormat(filePath) && (lower.endsWith(".tif") || lower.endsWith(".tiff"));
+    }
+
+    private String epsgToWkt(int code) {
+        String wkt = epsgWktCache.computeIfAbsent(code, c -> {
+            SpatialReference srs = new SpatialReference();
+            try {
+                return srs.ImportFromEPSG(c) == 0 ? srs.ExportToWkt() : "";
+            } catch (RuntimeException e) {
+                return "";
+            } finally {
+                srs.delete();
+            }
+        });
+        return wkt.isEmpty() ? null : wkt;
+    }
+
+    /**
+     * 通过 GDAL 读取栅格数据的详细信息
+     */
+    private RasterInfo readRasterInfoWithGdal(String filePath) {
         Dataset dataset = null;
         try {
             // 打开栅格数据集
+            nativeLibraryLoader.ensureGdal();
             dataset = gdal.Open(filePath, gdalconst.GA_ReadOnly);
             if (dataset == null) {
                 throw new RuntimeException("无法打开栅格文件: " + filePath);
@@ -100,8 +207,17 @@ public class RasterReaderService {
      * @return 像素值数组
      */
     public double[] readPixelValues(String filePath, int bandIndex, int x, int y, int width, int height) {
+        if ((long) width * height > RasterBuffer.MAX_ARRAY_LENGTH) {
+            throw new RuntimeException("读取窗口过大: " + (long) width * height + " 像素，请改用 readPixelBuffer");
+        }
         Dataset dataset = null;
         try {
+            // 未压缩 TIFF 直接从内存映射读取
+            if (mappedTiffReader.supports(filePath)) {
+                return mappedTiffReader.readWindow(filePath, bandIndex, x, y, width, height);
+            }
+
+            nativeLibraryLoader.ensureGdal();
             dataset = gdal.Open(filePath, gdalconst.GA_ReadOnly);
             if (dataset == null) {
                 throw new RuntimeException("无法打开栅格文件: " + filePath);
@@ -112,6 +228,7 @@ public class RasterReaderService {
                 throw new RuntimeException("无法获取波段: " + bandIndex);
             }
 
+            gdalIoAccounting.recordRead(filePath, band, bandIndex, x, y, width, height);
             double[] buffer = new double[width * height];
             int result = band.ReadRaster(x, y, width, height, width, height, 
                                        gdalconst.GDT_Float64, buffer);
@@ -131,6 +248,63 @@ public class RasterReaderService {
         }
     }
 
+    /**
+     * 读取像素值到堆外缓冲，窗口大小不受 Java 数组长度限制
+     * GDAL 按缓冲的分块直接写入（ReadRaster_Direct），不经过堆上数组；调用方负责关闭返回的缓冲
+     */
+    public RasterBuffer readPixelBuffer(String filePath, int bandIndex, int x, int y, int width, int height) {
+        RasterBuffer buffer = RasterBuffer.allocate(width, height);
+        try {
+            readPixelBuffer(filePath, bandIndex, x, y, buffer);
+            return buffer;
+        } catch (RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 把从 (x, y) 开始、与缓冲同样大小的窗口读入已有缓冲，用于分段复用同一块缓冲
+     */
+    public void readPixelBuffer(String filePath, int bandIndex, int x, int y, RasterBuffer buffer) {
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        Dataset dataset = null;
+        try {
+            if (mappedTiffReader.supports(filePath)) {
+                mappedTiffReader.readWindow(filePath, bandIndex, x, y, buffer);
+                return;
+            }
+
+            nativeLibraryLoader.ensureGdal();
+            dataset = gdal.Open(filePath, gdalconst.GA_ReadOnly);
+            if (dataset == null) {
+                throw new RuntimeException("无法打开栅格文件: " + filePath);
+            }
+            Band band = dataset.GetRasterBand(bandIndex);
+            if (band == null) {
+                throw new RuntimeException("无法获取波段: " + bandIndex);
+            }
+
+            gdalIoAccounting.recordRead(filePath, band, bandIndex, x, y, width, height);
+            for (int c = 0; c < buffer.chunkCount(); c++) {
+                int rows = buffer.chunkRows(c);
+                int result = band.ReadRaster_Direct(x, y + buffer.chunkFirstRow(c), width, rows, width, rows,
+                        gdalconst.GDT_Float64, buffer.chunk(c));
+                if (result != gdalconst.CE_None) {
+                    throw new RuntimeException("读取像素数据失败");
+                }
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException("读取像素值失败: " + e.getMessage(), e);
+        } finally {
+            if (dataset != null) {
+                dataset.delete();
+            }
+        }
+    }
+
     /**
      * 获取栅格数据的统计信息
      * @param filePath 文件路径
@@ -140,6 +314,11 @@ public class RasterReaderService {
     public Map<String, Double> getRasterStatistics(String filePath, int bandIndex) {
         Dataset dataset = null;
         try {
+            if (mappedTiffReader.supports(filePath)) {
+                return mappedTiffReader.statistics(filePath, bandIndex);
+            }
+
+            nativeLibraryLoader.ensureGdal();
             dataset = gdal.Open(filePath, gdalconst.GA_ReadOnly);
             if (dataset == null) {
                 throw new RuntimeException("无法打开栅格文件: " + filePath);
@@ -156,6 +335,7 @@ public class RasterReaderService {
             double[] mean = new double[1];
             double[] stddev = new double[1];
             
+            gdalIoAccounting.recordRead(filePath, band, bandIndex, 0, 0, band.getXSize(), band.getYSize());
             band.GetStatistics(0, 1, min, max, mean, stddev);
 
             Map<String, Double> statistics = new HashMap<>();
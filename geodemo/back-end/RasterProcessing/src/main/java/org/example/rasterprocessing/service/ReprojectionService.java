@@ -0,0 +1,297 @@
+package org.example.rasterprocessing.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.rasterprocessing.util.HandlePool;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.WarpOptions;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重投影读取服务
+ * 每个 (文件, 目标坐标系, 分辨率, 重采样方法) 生成一次 Warped VRT 定义（XML）并全局缓存；
+ * 由定义打开的数据集连同其中的坐标转换器放在全局句柄池中，按（定义, 文件修改时间, 大小）借出复用，
+ * 预热后的窗口读取只剩重采样本身的开销；文件变化后旧句柄在下次借用时关闭，池有上限并在关闭应用时释放
+ */
+@Service
+public class ReprojectionService {
+
+    private static final List<String> RESAMPLING = Arrays.asList(
+            "near", "bilinear", "cubic", "cubicspline", "lanczos", "average", "mode");
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
+
+    @Value("${raster.warp.num-threads:ALL_CPUS}")
+    private String numThreads;
+
+    @Value("${raster.warp.max-definitions:256}")
+    private int maxDefinitions;
+
+    @Value("${raster.warp.max-handles:32}")
+    private int maxHandles;
+
+    @Value("${raster.warp.max-pixels:16777216}")
+    private long maxPixels;
+
+    private final LinkedHashMap<String, Definition> definitions = new LinkedHashMap<>(64, 0.75f, true);
+
+    private HandlePool<Dataset> handles;
+
+    private final AtomicLong definitionHits = new AtomicLong();
+    private final AtomicLong definitionMisses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        handles = new HandlePool<>(maxHandles, Dataset::delete);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        handles.close();
+    }
+
+    /**
+     * 在目标坐标系下读取窗口
+     * @param filePath 文件路径
+     * @param crs 目标坐标系（如 EPSG:3857）
+     * @param resolution 目标分辨率（目标坐标系单位），为空则由 GDAL 自动估算
+     * @param bbox 目标坐标系下的范围 {minX, minY, maxX, maxY}，为空表示整个栅格；按目标网格外扩对齐
+     * @param bandIndex 波段索引（从1开始）
+     * @param resampling 重采样方法
+     * @return 像素值及窗口的地理参考
+     */
+    public Map<String, Object> readWindow(String filePath, String crs, Double resolution, double[] bbox,
+                                          int bandIndex, String resampling) {
+        long startTime = System.currentTimeMillis();
+        if (crs == null || crs.isEmpty()) {
+            throw new RuntimeException("目标坐标系不能为空");
+        }
+        if (resolution != null && !(resolution > 0)) {
+            throw new RuntimeException("分辨率必须大于 0");
+        }
+        String method = resampling == null ? "near" : resampling.toLowerCase();
+        if (!RESAMPLING.contains(method)) {
+            throw new RuntimeException("不支持的重采样方法: " + resampling + "，可选: " + RESAMPLING);
+        }
+
+        long[] fingerprint = RasterInfoCache.fingerprint(filePath);
+        if (fingerprint == null) {
+            throw new RuntimeException("无法访问栅格文件: " + filePath);
+        }
+        String key = filePath + "|" + crs + "|" + (resolution == null ? "auto" : resolution) + "|" + method;
+        Definition definition = definition(key, fingerprint, filePath, crs, resolution, method);
+
+        int[] window = window(definition, bbox);
+        long pixels = (long) window[2] * window[3];
+        if (pixels > maxPixels) {
+            throw new RuntimeException("请求窗口过大: " + window[2] + "x" + window[3] + "，上限 " + maxPixels + " 像素");
+        }
+        String version = definition.version();
+        Dataset dataset = handles.borrow(key, version, () -> open(definition));
+        boolean broken = true;
+        double[] values = new double[(int) pixels];
+        Double[] noData = new Double[1];
+        try {
+            Band band = dataset.GetRasterBand(bandIndex);
+            if (band == null) {
+                broken = false;
+                throw new RuntimeException("无法获取波段: " + bandIndex);
+            }
+            gdalIoAccounting.recordRead(key, band, bandIndex, window[0], window[1], window[2], window[3]);
+            int result = band.ReadRaster(window[0], window[1], window[2], window[3],
+                    window[2], window[3], gdalconst.GDT_Float64, values);
+            if (result != gdalconst.CE_None) {
+                throw new RuntimeException("重投影读取失败: " + gdal.GetLastErrorMsg());
+            }
+            band.GetNoDataValue(noData);
+            broken = false;
+        } finally {
+            handles.release(key, version, dataset, broken);
+        }
+
+        double[] gt = definition.geoTransform;
+        double[] windowGt = {gt[0] + window[0] * gt[1], gt[1], 0, gt[3] + window[1] * gt[5], 0, gt[5]};
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("filePath", filePath);
+        response.put("crs", crs);
+        response.put("bandIndex", bandIndex);
+        response.put("resampling", method);
+        response.put("width", window[2]);
+        response.put("height", window[3]);
+        response.put("geoTransform", windowGt);
+        response.put("bounds", new double[]{windowGt[0], windowGt[3] + window[3] * gt[5],
+                windowGt[0] + window[2] * gt[1], windowGt[3]});
+        response.put("noDataValue", noData[0]);
+        response.put("values", values);
+        response.put("processingTime", System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (definitions) {
+            stats.put("definitions", definitions.size());
+        }
+        stats.put("maxDefinitions", maxDefinitions);
+        stats.put("definitionHits", definitionHits.get());
+        stats.put("definitionMisses", definitionMisses.get());
+        stats.put("handles", handles.idleCount());
+        stats.put("maxHandles", maxHandles);
+        stats.put("handleHits", handles.getHits());
+        stats.put("handleMisses", handles.getMisses());
+        stats.put("handleEvictions", handles.getEvictions());
+        stats.put("numThreads", numThreads);
+        return stats;
+    }
+
+    /**
+     * 取有效的 Warped VRT 定义，文件变化或未缓存时重新生成
+     */
+    private Definition definition(String key, long[] fingerprint, String filePath, String crs,
+                                  Double resolution, String method) {
+        synchronized (definitions) {
+            Definition cached = definitions.get(key);
+            if (cached != null && cached.mtime == fingerprint[0] && cached.size == fingerprint[1]) {
+                definitionHits.incrementAndGet();
+                return cached;
+            }
+        }
+        definitionMisses.incrementAndGet();
+        Definition created = createDefinition(filePath, crs, resolution, method, fingerprint);
+        synchronized (definitions) {
+            definitions.put(key, created);
+            while (definitions.size() > Math.max(1, maxDefinitions)) {
+                definitions.remove(definitions.keySet().iterator().next());
+            }
+        }
+        return created;
+    }
+
+    private Definition createDefinition(String filePath, String crs, Double resolution, String method, long[] fingerprint) {
+        nativeLibraryLoader.ensureGdal();
+        Dataset source = gdal.Open(Paths.get(filePath).toAbsolutePath().toString(), gdalconst.GA_ReadOnly);
+        if (source == null) {
+            throw new RuntimeException("无法打开栅格文件: " + filePath);
+        }
+        Dataset warped = null;
+        WarpOptions options = null;
+        try {
+            Vector<String> args = new Vector<>();
+            args.add("-of");
+            args.add("VRT");
+            args.add("-t_srs");
+            args.add(crs);
+            args.add("-r");
+            args.add(method);
+            if (resolution != null) {
+                args.add("-tr");
+                args.add(String.valueOf(resolution));
+                args.add(String.valueOf(resolution));
+                args.add("-tap");
+            }
+            args.add("-wo");
+            args.add("NUM_THREADS=" + numThreads);
+            options = new WarpOptions(args);
+            warped = gdal.Warp("", new Dataset[]{source}, options);
+            if (warped == null) {
+                throw new RuntimeException("生成重投影定义失败: " + gdal.GetLastErrorMsg());
+            }
+            Vector<?> xml = warped.GetMetadata_List("xml:VRT");
+            if (xml == null || xml.isEmpty()) {
+                throw new RuntimeException("无法获取 Warped VRT 定义");
+            }
+            StringBuilder vrt = new StringBuilder();
+            for (Object line : xml) {
+                vrt.append(line);
+            }
+            double[] gt = new double[6];
+            warped.GetGeoTransform(gt);
+            return new Definition(fingerprint[0], fingerprint[1], vrt.toString(), gt,
+                    warped.getRasterXSize(), warped.getRasterYSize());
+        } finally {
+            if (warped != null) {
+                warped.delete();
+            }
+            if (options != null) {
+                options.delete();
+            }
+            source.delete();
+        }
+    }
+
+    /**
+     * 由定义打开数据集
+     */
+    private static Dataset open(Definition definition) {
+        Dataset dataset = gdal.Open(definition.vrtXml, gdalconst.GA_ReadOnly);
+        if (dataset == null) {
+            throw new RuntimeException("无法打开重投影数据集: " + gdal.GetLastErrorMsg());
+        }
+        return dataset;
+    }
+
+    /**
+     * 目标坐标范围换算为 VRT 像素窗口 {x, y, width, height}，向外取整并裁剪到栅格范围
+     */
+    static int[] window(Definition definition, double[] bbox) {
+        if (bbox == null) {
+            return new int[]{0, 0, definition.width, definition.height};
+        }
+        double[] gt = definition.geoTransform;
+        double eps = 1e-6;
+        double c0 = (bbox[0] - gt[0]) / gt[1];
+        double c1 = (bbox[2] - gt[0]) / gt[1];
+        double r0 = (bbox[3] - gt[3]) / gt[5];
+        double r1 = (bbox[1] - gt[3]) / gt[5];
+        int x0 = (int) Math.max(0, Math.floor(Math.min(c0, c1) + eps));
+        int x1 = (int) Math.min(definition.width, Math.ceil(Math.max(c0, c1) - eps));
+        int y0 = (int) Math.max(0, Math.floor(Math.min(r0, r1) + eps));
+        int y1 = (int) Math.min(definition.height, Math.ceil(Math.max(r0, r1) - eps));
+        if (x0 >= x1 || y0 >= y1) {
+            throw new RuntimeException("请求范围与栅格不相交");
+        }
+        return new int[]{x0, y0, x1 - x0, y1 - y0};
+    }
+
+    static class Definition {
+        final long mtime;
+        final long size;
+        final String vrtXml;
+        final double[] geoTransform;
+        final int width;
+        final int height;
+
+        Definition(long mtime, long size, String vrtXml, double[] geoTransform, int width, int height) {
+            this.mtime = mtime;
+            this.size = size;
+            this.vrtXml = vrtXml;
+            this.geoTransform = geoTransform;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * 句柄的版本：源文件的修改时间与大小
+         */
+        String version() {
+            return mtime + ":" + size;
+        }
+    }
+}
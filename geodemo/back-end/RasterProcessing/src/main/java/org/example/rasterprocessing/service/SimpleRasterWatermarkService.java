@@ -1,13 +1,24 @@
 package org.example.rasterprocessing.service;
 
+import org.example.rasterprocessing.util.BlockJournal;
+import org.example.rasterprocessing.util.RasterBuffer;
+import org.example.rasterprocessing.util.WatermarkVerification;
 import org.gdal.gdal.Dataset;
 import org.gdal.gdal.gdal;
 import org.gdal.gdalconst.gdalconst;
 import org.opencv.core.*;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * 简化的栅格水印服务 - 专门处理TIFF等栅格数据
@@ -19,15 +30,51 @@ public class SimpleRasterWatermarkService {
     private static final int BLOCK_SIZE = 8;
     private static final double STRENGTH = 10.0;   // 大幅提高栅格数据的强度
     private static final int REPEAT_TIMES = 9;     // 9次重复（奇数便于投票）
+
+    // 8x8 正交 DCT 中系数 (2,3) 对应的基函数：系数改变 delta 等价于块内像素叠加 delta * BASIS
+    private static final double[] BASIS = new double[BLOCK_SIZE * BLOCK_SIZE];
+    static {
+        for (int y = 0; y < BLOCK_SIZE; y++) {
+            for (int x = 0; x < BLOCK_SIZE; x++) {
+                BASIS[y * BLOCK_SIZE + x] = 0.25 * Math.cos((2 * y + 1) * 2 * Math.PI / 16)
+                        * Math.cos((2 * x + 1) * 3 * Math.PI / 16);
+            }
+        }
+    }
+
+    // 同一文件的原地更新、回滚与提取互斥（进程内）；跨进程的更新与回滚由 BlockJournal.lock 的文件锁互斥
+    private final ReentrantReadWriteLock[] fileLocks = new ReentrantReadWriteLock[64];
+    {
+        for (int i = 0; i < fileLocks.length; i++) {
+            fileLocks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
     
     /**
      * 嵌入水印到栅格数据
      */
     public void embedWatermark(String inputPath, String outputPath, String watermark) {
+        embedWatermark(inputPath, outputPath, watermark, false);
+    }
+
+    /**
+     * 嵌入水印，verify 为 true 时在写出前按输出数据类型取整、截断后的最终像素直接解码水印块并返回校验报告
+     * @return 校验报告，verify 为 false 时为 null
+     */
+    public Map<String, Object> embedWatermark(String inputPath, String outputPath, String watermark, boolean verify) {
         Dataset inputDataset = null;
         Dataset outputDataset = null;
         
         try {
+            nativeLibraryLoader.ensureGdal();
+            nativeLibraryLoader.ensureOpenCv();
+
             // 1. 打开输入栅格
             inputDataset = gdal.Open(inputPath, gdalconst.GA_ReadOnly);
             if (inputDataset == null) {
@@ -44,29 +91,40 @@ public class SimpleRasterWatermarkService {
             // 3. 获取第一个波段进行处理
             org.gdal.gdal.Band band = outputDataset.GetRasterBand(1);
             int width = band.getXSize();
-            int height = band.getYSize();
-            
-            // 4. 读取数据
-            float[] data = new float[width * height];
-            band.ReadRaster(0, 0, width, height, data);
-            
-            // 5. 转换为OpenCV Mat进行DCT处理
-            Mat image = new Mat(height, width, CvType.CV_32F);
-            image.put(0, 0, data);
-            
-            // 6. 准备水印数据
+
+            // 4. 准备水印数据；水印只占前若干块行，其余像素已由 CreateCopy 原样复制
             List<Integer> bits = prepareWatermarkBits(watermark);
+            int height = payloadRows(bits.size(), width, band.getYSize());
+            int cols = width / BLOCK_SIZE;
+            double[] range = integerRange(gdal.GetDataTypeName(band.getDataType()));
+            double[] coefficients = new double[Math.min(bits.size(), cols * (height / BLOCK_SIZE))];
+            long verifyNanos = 0;
+
+            // 5. 按块行读取、做 DCT 嵌入并写回，缓冲只有一个块行
+            if (height > 0) {
+                gdalIoAccounting.recordRead(outputPath, band, 1, 0, 0, width, height);
+                float[] strip = new float[stripLength(width)];
+                for (int y = 0; y < height; y += BLOCK_SIZE) {
+                    band.ReadRaster(0, y, width, BLOCK_SIZE, strip);
+                    Mat image = new Mat(BLOCK_SIZE, width, CvType.CV_32F);
+                    image.put(0, 0, strip);
+                    int firstBlock = y / BLOCK_SIZE * cols;
+                    embedBitsIntoMat(image, bits, firstBlock);
+                    image.get(0, 0, strip);
+                    image.release();
+                    band.WriteRaster(0, y, width, BLOCK_SIZE, strip);
+                    if (verify) {
+                        long start = System.nanoTime();
+                        stripCoefficients(strip, width, firstBlock, range, coefficients);
+                        verifyNanos += System.nanoTime() - start;
+                    }
+                }
+            }
             
-            // 7. 嵌入水印
-            embedBitsIntoMat(image, bits);
-            
-            // 8. 写回数据
-            float[] modifiedData = new float[width * height];
-            image.get(0, 0, modifiedData);
-            band.WriteRaster(0, 0, width, height, modifiedData);
-            
-            // 9. 刷新并保存
+            // 6. 刷新并保存
             outputDataset.FlushCache();
+
+            return verify ? verifyEmbedded(coefficients, band.getDataType(), bits, verifyNanos) : null;
             
         } catch (Exception e) {
             throw new RuntimeException("栅格水印嵌入失败: " + e.getMessage(), e);
@@ -76,49 +134,452 @@ public class SimpleRasterWatermarkService {
         }
     }
     
+    /**
+     * 只对水印所在的块求系数：像素先按 GDAL 写入输出类型的方式取整、截断，判位规则与提取一致（系数 >= 0 为 1）
+     * @param strip 一个块行的最终像素，firstBlock 为其中第一个块的序号
+     */
+    private static void stripCoefficients(float[] strip, int width, int firstBlock, double[] range, double[] coefficients) {
+        int cols = width / BLOCK_SIZE;
+        for (int c = 0; c < cols && firstBlock + c < coefficients.length; c++) {
+            double coeff = 0;
+            for (int y = 0; y < BLOCK_SIZE; y++) {
+                for (int x = 0; x < BLOCK_SIZE; x++) {
+                    coeff += WatermarkVerification.quantize(strip[y * width + c * BLOCK_SIZE + x], range) * BASIS[y * BLOCK_SIZE + x];
+                }
+            }
+            coefficients[firstBlock + c] = coeff;
+        }
+    }
+
+    private Map<String, Object> verifyEmbedded(double[] coefficients, int dataType, List<Integer> bits, long nanos) {
+        long start = System.nanoTime();
+        Map<String, Object> report = WatermarkVerification.evaluate(bits, coefficients, true, REPEAT_TIMES);
+        report.put("dataType", gdal.GetDataTypeName(dataType));
+        report.put("coverage", "只模拟按输出数据类型取整、截断；输出格式或创建选项带来的有损压缩（如 COMPRESS=JPEG）不在校验范围内");
+        report.put("verifyTimeMs", (nanos + System.nanoTime() - start) / 1_000_000.0);
+        return report;
+    }
+
+    /**
+     * 一个块行的像素数。OpenCV Mat 与 Java 数组都以 int 为下标，超出时明确报错而不是让乘积静默溢出
+     */
+    static int stripLength(int width) {
+        long length = (long) width * BLOCK_SIZE;
+        if (length > RasterBuffer.MAX_ARRAY_LENGTH) {
+            throw new RuntimeException("栅格过宽: 一个块行 " + length + " 像素，超过数组上限 " + RasterBuffer.MAX_ARRAY_LENGTH);
+        }
+        return (int) length;
+    }
+
+    /**
+     * 容纳 blocks 个水印块所需的像素行数（整块行，不超过栅格高度），不足一块时为 0
+     */
+    static int payloadRows(long blocks, int width, int height) {
+        int cols = width / BLOCK_SIZE;
+        int blockRows = height / BLOCK_SIZE;
+        if (cols == 0 || blockRows == 0) {
+            return 0;
+        }
+        return (int) Math.min(blockRows, (blocks + cols - 1) / cols) * BLOCK_SIZE;
+    }
+
+    /**
+     * 整数数据类型的取值范围，浮点类型返回 null。按 GDAL 类型名判断：Int8、Int64、UInt64 在较旧的 Java 绑定中没有对应常量
+     */
+    static double[] integerRange(String dataTypeName) {
+        switch (dataTypeName) {
+            case "Byte":
+                return new double[]{0, 255};
+            case "Int8":
+                return new double[]{Byte.MIN_VALUE, Byte.MAX_VALUE};
+            case "UInt16":
+                return new double[]{0, 65535};
+            case "Int16":
+                return new double[]{Short.MIN_VALUE, Short.MAX_VALUE};
+            case "UInt32":
+                return new double[]{0, 4294967295.0};
+            case "Int32":
+                return new double[]{Integer.MIN_VALUE, Integer.MAX_VALUE};
+            case "UInt64":
+                return new double[]{0, 18446744073709551615.0};
+            case "Int64":
+                return new double[]{Long.MIN_VALUE, Long.MAX_VALUE};
+            default:
+                return null;
+        }
+    }
+
     /**
      * 从栅格数据提取水印
      */
     public String extractWatermark(String filePath, int expectedLength) {
         Dataset dataset = null;
+        ReentrantReadWriteLock.ReadLock readLock = fileLock(filePath).readLock();
+        boolean locked = false;
         
         try {
+            nativeLibraryLoader.ensureGdal();
+            nativeLibraryLoader.ensureOpenCv();
+            recoverJournal(filePath);
+            readLock.lock();
+            locked = true;
+
             // 1. 打开栅格文件
             dataset = gdal.Open(filePath, gdalconst.GA_ReadOnly);
             if (dataset == null) {
                 throw new RuntimeException("无法打开栅格文件: " + filePath);
             }
             
-            // 2. 读取第一个波段
+            // 2. 读取第一个波段中水印所在的块行
             org.gdal.gdal.Band band = dataset.GetRasterBand(1);
             int width = band.getXSize();
-            int height = band.getYSize();
-            
-            float[] data = new float[width * height];
-            band.ReadRaster(0, 0, width, height, data);
-            
-            // 3. 转换为OpenCV Mat
-            Mat image = new Mat(height, width, CvType.CV_32F);
-            image.put(0, 0, data);
-            
-            // 4. 提取位序列
-            List<Integer> extractedBits = extractBitsFromMat(image, expectedLength);
+            int maxBits = (8 + Math.max(0, expectedLength) * 8) * REPEAT_TIMES;
+            int height = payloadRows(maxBits, width, band.getYSize());
+
+            // 3. 按块行读取并提取位序列，缓冲只有一个块行
+            List<Integer> extractedBits = new ArrayList<>();
+            if (height > 0) {
+                gdalIoAccounting.recordRead(filePath, band, 1, 0, 0, width, height);
+                float[] strip = new float[stripLength(width)];
+                for (int y = 0; y < height; y += BLOCK_SIZE) {
+                    band.ReadRaster(0, y, width, BLOCK_SIZE, strip);
+                    Mat image = new Mat(BLOCK_SIZE, width, CvType.CV_32F);
+                    image.put(0, 0, strip);
+                    extractBitsFromMat(image, maxBits, extractedBits);
+                    image.release();
+                }
+            }
             
-            // 5. 解码为字符串
+            // 4. 解码为字符串
             return decodeBits(extractedBits);
             
         } catch (Exception e) {
             throw new RuntimeException("栅格水印提取失败: " + e.getMessage(), e);
         } finally {
             if (dataset != null) dataset.delete();
+            if (locked) readLock.unlock();
         }
     }
     
+    /**
+     * 原地更新栅格水印（GA_Update）
+     * 只改写新旧水印位不同的 8x8 块：DCT 是线性变换，把系数 (2,3) 调整 delta 等价于在块上叠加 delta 倍的基函数，
+     * 因此读写量只与水印长度有关，也不需要 OpenCV。改写前先写回滚日志，中途崩溃后下次访问该文件时自动回滚。
+     * 整个过程持有文件锁，其他线程或工作进程的回滚会等待本次更新结束
+     * @param filePath 已嵌入水印的栅格文件
+     * @param watermark 新的水印文本
+     * @param currentText 文件中现有的水印文本，为空时从文件中解码
+     * @return 更新结果
+     */
+    public Map<String, Object> updateWatermark(String filePath, String watermark, String currentText) {
+        long startTime = System.currentTimeMillis();
+        nativeLibraryLoader.ensureGdal();
+        ReentrantReadWriteLock.WriteLock writeLock = fileLock(filePath).writeLock();
+        writeLock.lock();
+        try (BlockJournal.Lock fileLock = lockFile(filePath)) {
+            rollback(filePath);
+            Path journal = BlockJournal.pathFor(filePath);
+            Dataset dataset = null;
+            try {
+                dataset = gdal.Open(filePath, gdalconst.GA_Update);
+                if (dataset == null) {
+                    throw new RuntimeException("无法以更新模式打开栅格文件: " + filePath);
+                }
+                org.gdal.gdal.Band band = dataset.GetRasterBand(1);
+                int cols = band.getXSize() / BLOCK_SIZE;
+                int rows = band.getYSize() / BLOCK_SIZE;
+                long capacity = (long) cols * rows;
+
+                byte[] oldBytes = currentText != null ? truncate(currentText.getBytes(StandardCharsets.UTF_8))
+                        : decodePayload(filePath, band, cols, capacity);
+                if (oldBytes == null) {
+                    throw new RuntimeException("未检测到有效的现有水印，请提供 currentText 或使用完整嵌入");
+                }
+                List<Integer> oldBits = payloadBits(oldBytes);
+                List<Integer> newBits = prepareWatermarkBits(watermark);
+                if (newBits.size() > capacity) {
+                    throw new RuntimeException("栅格尺寸不足以容纳水印: 需要 " + newBits.size() + " 个块，实际 " + capacity);
+                }
+
+                // 每个块的系数调整量：新位贡献 - 旧位贡献（未嵌入为 0）
+                int payloadBlocks = Math.max(oldBits.size(), newBits.size());
+                double[] deltas = new double[payloadBlocks];
+                TreeMap<Integer, int[]> rowRanges = new TreeMap<>();
+                int changedBlocks = 0;
+                for (int i = 0; i < payloadBlocks; i++) {
+                    double before = i < oldBits.size() ? (oldBits.get(i) == 1 ? STRENGTH : -STRENGTH) : 0;
+                    double after = i < newBits.size() ? (newBits.get(i) == 1 ? STRENGTH : -STRENGTH) : 0;
+                    deltas[i] = after - before;
+                    if (deltas[i] != 0) {
+                        changedBlocks++;
+                        int[] range = rowRanges.computeIfAbsent(i / cols, k -> new int[]{Integer.MAX_VALUE, -1});
+                        range[0] = Math.min(range[0], i % cols);
+                        range[1] = Math.max(range[1], i % cols);
+                    }
+                }
+
+                // 读取并记录将被改写的窗口（每个块行一个窗口）
+                List<BlockJournal.Window> originals = new ArrayList<>();
+                for (Map.Entry<Integer, int[]> entry : rowRanges.entrySet()) {
+                    int x = entry.getValue()[0] * BLOCK_SIZE;
+                    int y = entry.getKey() * BLOCK_SIZE;
+                    int w = (entry.getValue()[1] - entry.getValue()[0] + 1) * BLOCK_SIZE;
+                    originals.add(new BlockJournal.Window(x, y, w, BLOCK_SIZE, readWindow(filePath, band, x, y, w, BLOCK_SIZE)));
+                }
+                if (!originals.isEmpty()) {
+                    BlockJournal.write(journal, originals);
+                }
+
+                long bytesWritten = 0;
+                for (BlockJournal.Window original : originals) {
+                    double[] data = original.data.clone();
+                    int blockRow = original.y / BLOCK_SIZE;
+                    for (int c = original.x / BLOCK_SIZE; c < (original.x + original.width) / BLOCK_SIZE; c++) {
+                        double delta = deltas[blockRow * cols + c];
+                        if (delta != 0) {
+                            addBasis(data, original.width, c * BLOCK_SIZE - original.x, delta);
+                        }
+                    }
+                    int result = band.WriteRaster(original.x, original.y, original.width, original.height,
+                            original.width, original.height, gdalconst.GDT_Float64, data);
+                    if (result != gdalconst.CE_None) {
+                        throw new RuntimeException("写入像素数据失败: " + gdal.GetLastErrorMsg());
+                    }
+                    bytesWritten += (long) data.length * 8;
+                }
+                dataset.FlushCache();
+                dataset.delete();
+                dataset = null;
+                if (!originals.isEmpty()) {
+                    syncFile(filePath);
+                    Files.deleteIfExists(journal);
+                }
+
+                String written = new String(truncate(watermark.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+                byte[] verifyBytes = verifyPayload(filePath);
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("filePath", filePath);
+                response.put("previousText", new String(oldBytes, StandardCharsets.UTF_8));
+                response.put("watermarkText", written);
+                response.put("payloadBlocks", payloadBlocks);
+                response.put("changedBlocks", changedBlocks);
+                response.put("windowsWritten", originals.size());
+                response.put("bytesWritten", bytesWritten);
+                response.put("verified", verifyBytes != null && written.equals(new String(verifyBytes, StandardCharsets.UTF_8)));
+                response.put("processingTime", System.currentTimeMillis() - startTime);
+                return response;
+            } catch (Exception e) {
+                if (dataset != null) {
+                    dataset.delete();
+                    dataset = null;
+                }
+                try {
+                    rollback(filePath);
+                } catch (RuntimeException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw new RuntimeException("栅格水印更新失败: " + e.getMessage(), e);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 存在未完成的更新日志时按日志恢复原始像素。持有与更新相同的锁，正在进行的更新（包括其他工作进程中的）结束后
+     * 日志已被删除，此时不做任何事；只有更新进程崩溃后遗留的日志才会被回滚
+     * @return 是否执行了回滚
+     */
+    public boolean recoverJournal(String filePath) {
+        if (!Files.exists(BlockJournal.pathFor(filePath))) {
+            return false;
+        }
+        ReentrantReadWriteLock.WriteLock writeLock = fileLock(filePath).writeLock();
+        writeLock.lock();
+        try (BlockJournal.Lock fileLock = lockFile(filePath)) {
+            return rollback(filePath);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private ReentrantReadWriteLock fileLock(String filePath) {
+        return fileLocks[Math.floorMod(Paths.get(filePath).toAbsolutePath().normalize().hashCode(), fileLocks.length)];
+    }
+
+    private static BlockJournal.Lock lockFile(String filePath) {
+        try {
+            return BlockJournal.lock(filePath);
+        } catch (IOException e) {
+            throw new RuntimeException("无法锁定栅格文件: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按日志回滚，调用方须持有文件锁
+     */
+    private boolean rollback(String filePath) {
+        Path journal = BlockJournal.pathFor(filePath);
+        if (!Files.exists(journal)) {
+            return false;
+        }
+        Dataset dataset = null;
+        try {
+            List<BlockJournal.Window> windows = BlockJournal.read(journal);
+            boolean restored = false;
+            if (windows != null && !windows.isEmpty()) {
+                dataset = gdal.Open(filePath, gdalconst.GA_Update);
+                if (dataset == null) {
+                    throw new RuntimeException("无法以更新模式打开栅格文件: " + filePath);
+                }
+                org.gdal.gdal.Band band = dataset.GetRasterBand(1);
+                for (BlockJournal.Window w : windows) {
+                    band.WriteRaster(w.x, w.y, w.width, w.height, w.width, w.height, gdalconst.GDT_Float64, w.data);
+                }
+                dataset.FlushCache();
+                dataset.delete();
+                dataset = null;
+                syncFile(filePath);
+                restored = true;
+                System.out.println("已按日志回滚未完成的水印更新: " + filePath);
+            }
+            // 不完整的日志说明改写尚未开始
+            Files.deleteIfExists(journal);
+            return restored;
+        } catch (IOException e) {
+            throw new RuntimeException("回滚水印更新失败: " + e.getMessage(), e);
+        } finally {
+            if (dataset != null) dataset.delete();
+        }
+    }
+
+    /**
+     * 只读取水印所在的前若干块，解码出原始字节；长度不合理时返回 null
+     */
+    private byte[] decodePayload(String filePath, org.gdal.gdal.Band band, int cols, long capacity) {
+        int headerBlocks = 8 * REPEAT_TIMES;
+        if (capacity < headerBlocks) {
+            return null;
+        }
+        List<Integer> header = readPayloadBits(filePath, band, headerBlocks, cols);
+        int length = voteByte(header, 0);
+        if (length <= 0 || length > 100) {
+            return null;
+        }
+        int totalBlocks = (8 + length * 8) * REPEAT_TIMES;
+        if (totalBlocks > capacity) {
+            return null;
+        }
+        List<Integer> bits = readPayloadBits(filePath, band, totalBlocks, cols);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) voteByte(bits, (8 + i * 8) * REPEAT_TIMES);
+        }
+        return bytes;
+    }
+
+    private byte[] verifyPayload(String filePath) {
+        Dataset dataset = gdal.Open(filePath, gdalconst.GA_ReadOnly);
+        if (dataset == null) {
+            return null;
+        }
+        try {
+            org.gdal.gdal.Band band = dataset.GetRasterBand(1);
+            int cols = band.getXSize() / BLOCK_SIZE;
+            return decodePayload(filePath, band, cols, (long) cols * (band.getYSize() / BLOCK_SIZE));
+        } finally {
+            dataset.delete();
+        }
+    }
+
+    /**
+     * 读取前 count 个块覆盖的窗口，按系数 (2,3) 的符号取位
+     */
+    private List<Integer> readPayloadBits(String filePath, org.gdal.gdal.Band band, int count, int cols) {
+        int blockRows = (count + cols - 1) / cols;
+        int width = Math.min(cols, count) * BLOCK_SIZE;
+        double[] window = readWindow(filePath, band, 0, 0, width, blockRows * BLOCK_SIZE);
+        List<Integer> bits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int offset = (i / cols) * BLOCK_SIZE * width + (i % cols) * BLOCK_SIZE;
+            bits.add(coefficient(window, width, offset) >= 0 ? 1 : 0);
+        }
+        return bits;
+    }
+
+    private double[] readWindow(String filePath, org.gdal.gdal.Band band, int x, int y, int width, int height) {
+        if ((long) width * height > RasterBuffer.MAX_ARRAY_LENGTH) {
+            throw new RuntimeException("读取窗口过大: " + (long) width * height + " 像素，超过数组上限 " + RasterBuffer.MAX_ARRAY_LENGTH);
+        }
+        gdalIoAccounting.recordRead(filePath, band, 1, x, y, width, height);
+        double[] data = new double[width * height];
+        int result = band.ReadRaster(x, y, width, height, width, height, gdalconst.GDT_Float64, data);
+        if (result != gdalconst.CE_None) {
+            throw new RuntimeException("读取像素数据失败: " + gdal.GetLastErrorMsg());
+        }
+        return data;
+    }
+
+    /**
+     * 块的 DCT 系数 (2,3)，offset 为块左上角像素下标
+     */
+    static double coefficient(double[] data, int stride, int offset) {
+        double coeff = 0;
+        for (int y = 0; y < BLOCK_SIZE; y++) {
+            for (int x = 0; x < BLOCK_SIZE; x++) {
+                coeff += data[offset + y * stride + x] * BASIS[y * BLOCK_SIZE + x];
+            }
+        }
+        return coeff;
+    }
+
+    static void addBasis(double[] data, int stride, int offsetX, double delta) {
+        for (int y = 0; y < BLOCK_SIZE; y++) {
+            for (int x = 0; x < BLOCK_SIZE; x++) {
+                data[y * stride + offsetX + x] += delta * BASIS[y * BLOCK_SIZE + x];
+            }
+        }
+    }
+
+    private static void syncFile(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static byte[] truncate(byte[] bytes) {
+        return bytes.length > 255 ? Arrays.copyOf(bytes, 255) : bytes;
+    }
+
+    /**
+     * 多数表决出从 start 开始的一个字节（每位重复 REPEAT_TIMES 次）
+     */
+    private static int voteByte(List<Integer> bits, int start) {
+        int value = 0;
+        for (int i = 0; i < 8; i++) {
+            int vote = 0;
+            for (int r = 0; r < REPEAT_TIMES; r++) {
+                int index = start + i * REPEAT_TIMES + r;
+                if (index < bits.size()) {
+                    vote += bits.get(index);
+                }
+            }
+            value = (value << 1) | (vote > REPEAT_TIMES / 2 ? 1 : 0);
+        }
+        return value;
+    }
+
     /**
      * 准备水印位数据
      */
     private List<Integer> prepareWatermarkBits(String watermark) {
-        byte[] utf8Bytes = watermark.getBytes(StandardCharsets.UTF_8);
+        return payloadBits(truncate(watermark.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 长度字节加数据字节，每位重复 REPEAT_TIMES 次
+     */
+    private List<Integer> payloadBits(byte[] utf8Bytes) {
         List<Integer> bits = new ArrayList<>();
         
         // 添加长度标记
@@ -145,12 +606,12 @@ public class SimpleRasterWatermarkService {
     }
     
     /**
-     * 将位序列嵌入到Mat中
+     * 将位序列嵌入到Mat中，从第 firstBit 位开始
      */
-    private void embedBitsIntoMat(Mat image, List<Integer> bits) {
+    private void embedBitsIntoMat(Mat image, List<Integer> bits, int firstBit) {
         int rows = image.rows() / BLOCK_SIZE;
         int cols = image.cols() / BLOCK_SIZE;
-        int bitIndex = 0;
+        int bitIndex = firstBit;
         
         for (int r = 0; r < rows && bitIndex < bits.size(); r++) {
             for (int c = 0; c < cols && bitIndex < bits.size(); c++) {
@@ -186,14 +647,11 @@ public class SimpleRasterWatermarkService {
     }
     
     /**
-     * 从Mat中提取位序列
+     * 从Mat中提取位序列，追加到 bits 直到满 maxBits 位
      */
-    private List<Integer> extractBitsFromMat(Mat image, int expectedLength) {
+    private void extractBitsFromMat(Mat image, int maxBits, List<Integer> bits) {
         int rows = image.rows() / BLOCK_SIZE;
         int cols = image.cols() / BLOCK_SIZE;
-        List<Integer> bits = new ArrayList<>();
-        
-        int maxBits = (8 + expectedLength * 8) * REPEAT_TIMES;
         
         for (int r = 0; r < rows && bits.size() < maxBits; r++) {
             for (int c = 0; c < cols && bits.size() < maxBits; c++) {
@@ -224,8 +682,6 @@ public class SimpleRasterWatermarkService {
                 dctBlock.release();
             }
         }
-        
-        return bits;
     }
     
     /**
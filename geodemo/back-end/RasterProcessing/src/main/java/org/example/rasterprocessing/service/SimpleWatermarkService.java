@@ -1,11 +1,15 @@
 package org.example.rasterprocessing.service;
 
+import org.example.rasterprocessing.util.WatermarkVerification;
 import org.opencv.core.*;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -19,12 +23,25 @@ public class SimpleWatermarkService {
     private static final int BLOCK_SIZE = 8;
     private static final double STRENGTH = 50.0;  // 极强信号
     private static final int REPEAT_TIMES = 9;    // 9次重复（奇数便于投票）
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
     
     /**
      * 嵌入水印 - 简化版本
      */
     public void embedWatermark(String inputPath, String outputPath, String watermark) {
+        embedWatermark(inputPath, outputPath, watermark, false);
+    }
+
+    /**
+     * 嵌入水印，verify 为 true 时直接从写出的最终像素（8 位 BGR，有损格式为编码后再解码的像素）解码水印块并返回校验报告
+     * @return 校验报告，verify 为 false 时为 null
+     */
+    public Map<String, Object> embedWatermark(String inputPath, String outputPath, String watermark, boolean verify) {
         try {
+            nativeLibraryLoader.ensureOpenCv();
+
             // 1. 读取图像
             Mat image = Imgcodecs.imread(inputPath, Imgcodecs.IMREAD_COLOR);
             if (image.empty()) {
@@ -71,7 +88,24 @@ public class SimpleWatermarkService {
             Mat result = new Mat();
             Imgproc.cvtColor(yuv, result, Imgproc.COLOR_YUV2BGR);
             
-            Imgcodecs.imwrite(outputPath, result);
+            Map<String, Object> report = null;
+            if (verify && isLossy(outputPath)) {
+                // 有损格式落盘的是编码后的像素：在内存中编码一次，写出同一份字节并解码校验
+                MatOfByte encoded = new MatOfByte();
+                if (!Imgcodecs.imencode(outputPath.substring(outputPath.lastIndexOf('.')), result, encoded)) {
+                    throw new RuntimeException("图像编码失败: " + outputPath);
+                }
+                Files.write(Paths.get(outputPath), encoded.toArray());
+                Mat decoded = Imgcodecs.imdecode(encoded, Imgcodecs.IMREAD_COLOR);
+                report = verifyEmbedded(decoded, bits, "encoded");
+                decoded.release();
+                encoded.release();
+            } else {
+                Imgcodecs.imwrite(outputPath, result);
+                if (verify) {
+                    report = verifyEmbedded(result, bits, "uint8");
+                }
+            }
             
             // 清理资源
             image.release();
@@ -79,17 +113,61 @@ public class SimpleWatermarkService {
             yChannel.release();
             result.release();
             for (Mat ch : channels) ch.release();
+
+            return report;
             
         } catch (Exception e) {
             throw new RuntimeException("水印嵌入失败: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * 只对水印所在的块行做颜色转换和 DCT，判位规则与提取一致（系数 > 0 为 1）
+     */
+    private Map<String, Object> verifyEmbedded(Mat bgr, List<Integer> bits, String quantization) {
+        long start = System.nanoTime();
+        int cols = bgr.cols() / BLOCK_SIZE;
+        int capacity = cols * (bgr.rows() / BLOCK_SIZE);
+        double[] coefficients = new double[Math.min(bits.size(), capacity)];
+        if (coefficients.length > 0) {
+            int blockRows = (coefficients.length + cols - 1) / cols;
+            Mat region = new Mat(bgr, new Rect(0, 0, cols * BLOCK_SIZE, blockRows * BLOCK_SIZE));
+            Mat yuv = new Mat();
+            Imgproc.cvtColor(region, yuv, Imgproc.COLOR_BGR2YUV);
+            List<Mat> channels = new ArrayList<>();
+            Core.split(yuv, channels);
+            Mat yChannel = channels.get(0);
+            for (int i = 0; i < coefficients.length; i++) {
+                Mat block = new Mat(yChannel, new Rect((i % cols) * BLOCK_SIZE, (i / cols) * BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE));
+                Mat floatBlock = new Mat();
+                block.convertTo(floatBlock, CvType.CV_32F);
+                Mat dctBlock = new Mat();
+                Core.dct(floatBlock, dctBlock);
+                coefficients[i] = dctBlock.get(2, 3)[0];
+                floatBlock.release();
+                dctBlock.release();
+            }
+            yuv.release();
+            for (Mat ch : channels) ch.release();
+        }
+        Map<String, Object> report = WatermarkVerification.evaluate(bits, coefficients, false, REPEAT_TIMES);
+        report.put("quantization", quantization);
+        report.put("verifyTimeMs", (System.nanoTime() - start) / 1_000_000.0);
+        return report;
+    }
+
+    private static boolean isLossy(String outputPath) {
+        String lower = outputPath.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+
     /**
      * 提取水印 - 简化版本
      */
     public String extractWatermark(String imagePath, int expectedLength) {
         try {
+            nativeLibraryLoader.ensureOpenCv();
+
             // 1. 读取图像并转换
             Mat image = Imgcodecs.imread(imagePath, Imgcodecs.IMREAD_COLOR);
             if (image.empty()) {
@@ -0,0 +1,466 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.model.TemporalStatisticsRequest;
+import org.example.rasterprocessing.util.FileTypeDetector;
+import org.example.rasterprocessing.util.PixelStackStatistics;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.Driver;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.gdal.osr.SpatialReference;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 时间序列叠加统计
+ * 成员为一组对齐的栅格（同一区域的逐日影像），或 NetCDF 变量的各个时间步。按输出瓦片推进：
+ * 每个任务依次读取所有成员在同一瓦片的窗口，逐像素累加到可合并的统计量中（见 PixelStackStatistics），
+ * 瓦片数少于线程数时把成员序列切成几段分给不同线程，再按 Chan 公式合并。
+ * 每个线程同时只持有一个瓦片的读取缓冲和统计量，内存与影像大小、成员数都无关
+ */
+@Service
+public class TemporalStatisticsService {
+
+    private static final double ALIGNMENT_TOLERANCE = 1e-6;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    @Autowired
+    private CoordinateTransformService coordinateTransformService;
+
+    @Autowired
+    private ParallelRasterExecutor parallelRasterExecutor;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Value("${raster.temporal.tile-size:256}")
+    private int tileSize;
+
+    @Value("${raster.temporal.max-members:10000}")
+    private int maxMembers;
+
+    /**
+     * 叠加中的一景：文件（或 NetCDF 子数据集）中的一个波段
+     */
+    private static class Member {
+        String path;
+        int band;
+        Double noData;
+        String label;
+    }
+
+    /**
+     * 已校验的叠加统计
+     */
+    public static class Plan {
+        private final String source;
+        private final List<Member> members;
+        private final List<String> statistics;
+        private final int width;
+        private final int height;
+        private final double[] geoTransform;
+        private final String projection;
+        private final boolean float64;
+        private final double noDataValue;
+
+        Plan(String source, List<Member> members, List<String> statistics, int width, int height,
+             double[] geoTransform, String projection, boolean float64, double noDataValue) {
+            this.source = source;
+            this.members = members;
+            this.statistics = statistics;
+            this.width = width;
+            this.height = height;
+            this.geoTransform = geoTransform;
+            this.projection = projection;
+            this.float64 = float64;
+            this.noDataValue = noDataValue;
+        }
+
+        public int getMemberCount() {
+            return members.size();
+        }
+    }
+
+    /**
+     * 一个瓦片上一段成员 [from, to) 的累加任务
+     */
+    private static class Task {
+        final int[] tile;
+        final int from;
+        final int to;
+        PixelStackStatistics result;
+
+        Task(int[] tile, int from, int to) {
+            this.tile = tile;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    public Plan prepare(TemporalStatisticsRequest request) {
+        List<String> statistics = PixelStackStatistics.parse(request.getStatistics());
+        String dataType = request.getDataType() == null ? "Float32" : request.getDataType();
+        if (!"Float32".equalsIgnoreCase(dataType) && !"Float64".equalsIgnoreCase(dataType)) {
+            throw new IllegalArgumentException("输出数据类型只支持 Float32 / Float64");
+        }
+        boolean float64 = "Float64".equalsIgnoreCase(dataType);
+        double noDataValue = request.getNoDataValue() == null ? -9999 : request.getNoDataValue();
+        boolean netcdf = request.getNetcdfPath() != null && !request.getNetcdfPath().isEmpty();
+        boolean fileSet = (request.getFiles() != null && !request.getFiles().isEmpty())
+                || (request.getDirectory() != null && !request.getDirectory().isEmpty());
+        if (netcdf == fileSet) {
+            throw new IllegalArgumentException("netcdfPath 与 files/directory 须给出且只能给出一种");
+        }
+        return netcdf ? prepareNetcdf(request, statistics, float64, noDataValue)
+                : prepareFiles(request, statistics, float64, noDataValue);
+    }
+
+    private Plan prepareFiles(TemporalStatisticsRequest request, List<String> statistics, boolean float64, double noDataValue) {
+        List<String> paths = new ArrayList<>();
+        if (request.getFiles() != null) {
+            paths.addAll(request.getFiles());
+        }
+        if (request.getDirectory() != null && !request.getDirectory().isEmpty()) {
+            String glob = request.getPattern() == null || request.getPattern().isEmpty() ? "*.tif" : request.getPattern();
+            List<String> matched = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(request.getDirectory()), glob)) {
+                for (Path file : stream) {
+                    if (Files.isRegularFile(file) && FileTypeDetector.isRasterFormat(file.toString())) {
+                        matched.add(file.toString());
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("无法读取目录: " + request.getDirectory());
+            }
+            // 按文件名排序，日期命名的影像即按时间排序
+            Collections.sort(matched);
+            paths.addAll(matched);
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("没有匹配的栅格文件");
+        }
+        if (paths.size() > maxMembers) {
+            throw new IllegalArgumentException("成员数超过上限: " + maxMembers);
+        }
+        int bandIndex = request.getBandIndex() == null ? 1 : request.getBandIndex();
+
+        List<Map<String, Object>> infos = rasterReaderService.readRasterInfoBatch(paths);
+        List<Member> members = new ArrayList<>(paths.size());
+        RasterInfo first = null;
+        for (Map<String, Object> result : infos) {
+            String path = (String) result.get("filePath");
+            if (!Boolean.TRUE.equals(result.get("success"))) {
+                throw new RuntimeException("无法读取成员 " + path + ": " + result.get("message"));
+            }
+            RasterInfo info = (RasterInfo) result.get("info");
+            if (bandIndex < 1 || bandIndex > info.getBandCount()) {
+                throw new IllegalArgumentException("波段索引超出范围: " + bandIndex + "，" + path + " 共 " + info.getBandCount() + " 个波段");
+            }
+            if (first == null) {
+                first = info;
+            } else if (info.getWidth() != first.getWidth() || info.getHeight() != first.getHeight()) {
+                throw new RuntimeException("成员尺寸不一致: " + path + " 为 " + info.getWidth() + "x" + info.getHeight()
+                        + "，应为 " + first.getWidth() + "x" + first.getHeight());
+            } else if (!aligned(first.getGeoTransform(), info.getGeoTransform())) {
+                throw new RuntimeException("成员地理变换不一致（未对齐）: " + path);
+            } else if (!sameProjection(first.getProjection(), info.getProjection())) {
+                throw new RuntimeException("成员坐标系不一致: " + path);
+            }
+            Member member = new Member();
+            member.path = Paths.get(path).toAbsolutePath().toString();
+            member.band = bandIndex;
+            member.noData = info.getNoDataValue();
+            member.label = Paths.get(path).getFileName().toString();
+            members.add(member);
+        }
+        return new Plan("files", members, statistics, first.getWidth(), first.getHeight(), first.getGeoTransform(),
+                first.getProjection(), float64, noDataValue);
+    }
+
+    /**
+     * NetCDF 变量作为子数据集打开，每个波段是一个时间步
+     */
+    private Plan prepareNetcdf(TemporalStatisticsRequest request, List<String> statistics, boolean float64, double noDataValue) {
+        String variable = request.getVariable();
+        if (variable == null || !variable.matches("[A-Za-z0-9_.\\-]+")) {
+            throw new IllegalArgumentException("无效的 NetCDF 变量名: " + variable);
+        }
+        String file = Paths.get(request.getNetcdfPath()).toAbsolutePath().toString();
+        if (!Files.isRegularFile(Paths.get(file))) {
+            throw new IllegalArgumentException("文件不存在: " + request.getNetcdfPath());
+        }
+        nativeLibraryLoader.ensureGdal();
+        String subdataset = "NETCDF:\"" + file + "\":" + variable;
+        Dataset dataset = gdal.Open(subdataset, gdalconst.GA_ReadOnly);
+        if (dataset == null) {
+            throw new RuntimeException("无法打开 NetCDF 变量: " + variable + "（" + gdal.GetLastErrorMsg() + "）");
+        }
+        try {
+            int count = dataset.getRasterCount();
+            if (count == 0) {
+                throw new RuntimeException("NetCDF 变量没有时间步: " + variable);
+            }
+            if (count > maxMembers) {
+                throw new IllegalArgumentException("成员数超过上限: " + maxMembers);
+            }
+            List<Member> members = new ArrayList<>(count);
+            for (int b = 1; b <= count; b++) {
+                Band band = dataset.GetRasterBand(b);
+                Double[] noData = new Double[1];
+                band.GetNoDataValue(noData);
+                Member member = new Member();
+                member.path = subdataset;
+                member.band = b;
+                member.noData = noData[0];
+                String time = band.GetMetadataItem("NETCDF_DIM_time");
+                member.label = time != null ? time : "band " + b;
+                members.add(member);
+            }
+            double[] geoTransform = new double[6];
+            dataset.GetGeoTransform(geoTransform);
+            return new Plan("netcdf", members, statistics, dataset.getRasterXSize(), dataset.getRasterYSize(),
+                    geoTransform, dataset.GetProjection(), float64, noDataValue);
+        } finally {
+            dataset.delete();
+        }
+    }
+
+    /**
+     * 计算并写出多波段 GeoTIFF，波段顺序与 statistics 一致，波段描述为统计量名称
+     */
+    public Map<String, Object> run(Plan plan, String outputPath) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        if (outputPath == null || outputPath.isEmpty()) {
+            throw new IllegalArgumentException("outputPath 不能为空");
+        }
+        nativeLibraryLoader.ensureGdal();
+        int tile = Math.max(16, tileSize / 16 * 16);
+        List<int[]> tiles = new ArrayList<>();
+        for (int ty = 0; ty < plan.height; ty += tile) {
+            for (int tx = 0; tx < plan.width; tx += tile) {
+                tiles.add(new int[]{tx, ty, Math.min(tile, plan.width - tx), Math.min(tile, plan.height - ty)});
+            }
+        }
+        int parallelism = Math.max(1, parallelRasterExecutor.parallelism());
+        int memberCount = plan.members.size();
+        // 瓦片不够分给所有线程时，把成员序列切段并行累加
+        int segments = tiles.size() >= parallelism ? 1 : Math.min(memberCount, Math.max(1, parallelism / tiles.size()));
+        int tilesPerWave = Math.max(1, parallelism / segments);
+        long tilePixels = (long) tile * tile;
+        // 每个任务：统计量 + 读取缓冲；另加写出时的一个转换缓冲
+        long workspaceBytes = (long) tilesPerWave * segments * tilePixels * (PixelStackStatistics.BYTES_PER_PIXEL + Double.BYTES)
+                + tilePixels * Double.BYTES * 2;
+
+        String output = Paths.get(outputPath).toAbsolutePath().toString();
+        Driver driver = gdal.GetDriverByName("GTiff");
+        Dataset dataset = driver.Create(output, plan.width, plan.height, plan.statistics.size(),
+                plan.float64 ? gdalconst.GDT_Float64 : gdalconst.GDT_Float32,
+                new String[]{"TILED=YES", "BLOCKXSIZE=" + tile, "BLOCKYSIZE=" + tile, "INTERLEAVE=BAND",
+                        "COMPRESS=DEFLATE", "BIGTIFF=IF_SAFER"});
+        if (dataset == null) {
+            throw new RuntimeException("无法创建输出文件: " + gdal.GetLastErrorMsg());
+        }
+        long observations = 0;
+        long emptyPixels = 0;
+        boolean ok = false;
+        try {
+            if (plan.geoTransform != null) {
+                dataset.SetGeoTransform(plan.geoTransform);
+            }
+            if (plan.projection != null && !plan.projection.isEmpty()) {
+                dataset.SetProjection(plan.projection);
+            }
+            dataset.SetMetadataItem("TEMPORAL_MEMBERS", String.valueOf(memberCount));
+            dataset.SetMetadataItem("TEMPORAL_FIRST", plan.members.get(0).label);
+            dataset.SetMetadataItem("TEMPORAL_LAST", plan.members.get(memberCount - 1).label);
+            for (int b = 0; b < plan.statistics.size(); b++) {
+                Band band = dataset.GetRasterBand(b + 1);
+                band.SetDescription(plan.statistics.get(b));
+                // GeoTIFF 的 nodata 对所有波段生效，count 波段的 0 不受影响
+                band.SetNoDataValue(plan.noDataValue);
+            }
+
+            GdalIoStats stats = gdalIoAccounting.current();
+            MemoryBudget.Reservation reservation = memoryBudget.isEnabled() ? memoryBudget.acquire("temporal", workspaceBytes) : null;
+            try {
+                double[] values = new double[(int) tilePixels];
+                for (int from = 0; from < tiles.size(); from += tilesPerWave) {
+                    List<Task> tasks = new ArrayList<>();
+                    for (int[] t : tiles.subList(from, Math.min(tiles.size(), from + tilesPerWave))) {
+                        for (int s = 0; s < segments; s++) {
+                            tasks.add(new Task(t, (int) ((long) memberCount * s / segments),
+                                    (int) ((long) memberCount * (s + 1) / segments)));
+                        }
+                    }
+                    List<Task> done = parallelRasterExecutor.mapPartitions(tasks, parallelism, slice -> {
+                        for (Task task : slice) {
+                            task.result = accumulate(plan, task, stats);
+                        }
+                        return slice;
+                    });
+                    for (int i = 0; i < done.size(); i += segments) {
+                        Task task = done.get(i);
+                        PixelStackStatistics merged = task.result;
+                        for (int s = 1; s < segments; s++) {
+                            merged.merge(done.get(i + s).result);
+                            done.get(i + s).result = null;
+                        }
+                        observations += merged.observations();
+                        for (int b = 0; b < plan.statistics.size(); b++) {
+                            int empty = merged.write(plan.statistics.get(b), values, plan.noDataValue);
+                            if (b == 0) {
+                                emptyPixels += empty;
+                            }
+                            write(dataset.GetRasterBand(b + 1), task.tile, values, plan.float64);
+                        }
+                        task.result = null;
+                    }
+                }
+            } finally {
+                if (reservation != null) {
+                    reservation.close();
+                }
+            }
+            dataset.FlushCache();
+            ok = true;
+        } finally {
+            dataset.delete();
+            if (!ok) {
+                driver.Delete(output);
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("outputPath", outputPath);
+        summary.put("source", plan.source);
+        summary.put("members", memberCount);
+        summary.put("firstMember", plan.members.get(0).label);
+        summary.put("lastMember", plan.members.get(memberCount - 1).label);
+        summary.put("statistics", plan.statistics);
+        summary.put("width", plan.width);
+        summary.put("height", plan.height);
+        summary.put("dataType", plan.float64 ? "Float64" : "Float32");
+        summary.put("noDataValue", plan.noDataValue);
+        summary.put("tileSize", tile);
+        summary.put("tiles", tiles.size());
+        summary.put("segmentsPerTile", segments);
+        summary.put("observations", observations);
+        summary.put("emptyPixels", emptyPixels);
+        summary.put("processingTime", elapsed);
+        summary.put("megapixelsPerSecond", elapsed == 0 ? null
+                : (double) plan.width * plan.height * memberCount / 1000.0 / elapsed);
+        return summary;
+    }
+
+    /**
+     * 依次读取一段成员在瓦片上的窗口并累加；相邻成员来自同一文件（NetCDF 时间步）时复用句柄
+     */
+    private PixelStackStatistics accumulate(Plan plan, Task task, GdalIoStats stats) {
+        int[] t = task.tile;
+        PixelStackStatistics acc = new PixelStackStatistics(t[2] * t[3]);
+        WindowReader reader = null;
+        String open = null;
+        try {
+            for (int m = task.from; m < task.to; m++) {
+                Member member = plan.members.get(m);
+                if (!member.path.equals(open)) {
+                    if (reader != null) {
+                        reader.close();
+                        reader = null;
+                    }
+                    reader = rasterReaderService.openWindowReader(member.path, stats);
+                    open = member.path;
+                }
+                double noData = member.noData == null ? Double.NaN : member.noData;
+                if (reader.getDataset() != null) {
+                    // GDAL 读取时按波段取 nodata（非 GeoTIFF 的各波段可能不同）
+                    Double[] bandNoData = new Double[1];
+                    reader.getDataset().GetRasterBand(member.band).GetNoDataValue(bandNoData);
+                    noData = bandNoData[0] == null ? Double.NaN : bandNoData[0];
+                }
+                acc.add(reader.read(member.band, t[0], t[1], t[2], t[3]), noData);
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        return acc;
+    }
+
+    private static void write(Band band, int[] t, double[] values, boolean float64) {
+        int n = t[2] * t[3];
+        int result;
+        if (float64) {
+            double[] data = n == values.length ? values : Arrays.copyOf(values, n);
+            result = band.WriteRaster(t[0], t[1], t[2], t[3], gdalconst.GDT_Float64, data);
+        } else {
+            float[] data = new float[n];
+            for (int i = 0; i < n; i++) {
+                data[i] = (float) values[i];
+            }
+            result = band.WriteRaster(t[0], t[1], t[2], t[3], gdalconst.GDT_Float32, data);
+        }
+        if (result != gdalconst.CE_None) {
+            throw new RuntimeException("写入输出失败: " + gdal.GetLastErrorMsg());
+        }
+    }
+
+    /**
+     * 像元大小一致，原点偏差不超过像元的百万分之一
+     */
+    private static boolean aligned(double[] a, double[] b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        double tolerance = ALIGNMENT_TOLERANCE * Math.max(Math.abs(a[1]), Math.abs(a[5]));
+        for (int i = 0; i < 6; i++) {
+            if (Math.abs(a[i] - b[i]) > tolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean sameProjection(String a, String b) {
+        if (a == null || a.isEmpty() || b == null || b.isEmpty()) {
+            return (a == null || a.isEmpty()) == (b == null || b.isEmpty());
+        }
+        if (a.equals(b)) {
+            return true;
+        }
+        SpatialReference sa = coordinateTransformService.parseCrs(a);
+        SpatialReference sb = coordinateTransformService.parseCrs(b);
+        try {
+            return sa.IsSame(sb) == 1;
+        } finally {
+            sa.delete();
+            sb.delete();
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.util.TerrainKernel;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.Driver;
+import org.gdal.gdal.TranslateOptions;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.gdal.osr.SpatialReference;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * 地形分析服务（坡度、坡向、晕渲）
+ * DEM 按瓦片读取，每块四周多读一个像素作为光晕，瓦片在工作线程上并行计算；写文件时按波次并行计算、
+ * 在调用线程上顺序写出，内存只与并行度和瓦片大小有关，与 DEM 大小无关。
+ * 像元间距由地理变换和坐标系换算为米：投影坐标系乘以线性单位，地理坐标系按每行纬度换算
+ */
+@Service
+public class TerrainService {
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    @Autowired
+    private CoordinateTransformService coordinateTransformService;
+
+    @Autowired
+    private ParallelRasterExecutor parallelRasterExecutor;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private NativeLibraryLoader nativeLibraryLoader;
+
+    @Value("${raster.terrain.tile-size:512}")
+    private int tileSize;
+
+    @Value("${raster.terrain.max-pixels:16777216}")
+    private long maxPixels;
+
+    /**
+     * 一次地形计算的参数
+     */
+    public static class Plan {
+        private final String filePath;
+        private final int bandIndex;
+        private final TerrainKernel kernel;
+        private final int width;
+        private final int height;
+        private final double[] geoTransform;
+        private final String projection;
+        private final Double noData;
+        // 地理坐标系为 null，否则为线性单位（米/单位）
+        private final Double linearUnits;
+
+        Plan(String filePath, int bandIndex, TerrainKernel kernel, RasterInfo info, Double linearUnits) {
+            this.filePath = filePath;
+            this.bandIndex = bandIndex;
+            this.kernel = kernel;
+            this.width = info.getWidth();
+            this.height = info.getHeight();
+            this.geoTransform = info.getGeoTransform();
+            this.projection = info.getProjection();
+            this.noData = info.getNoDataValue();
+            this.linearUnits = linearUnits;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public double getNoDataValue() {
+            return kernel.noDataValue();
+        }
+
+        /**
+         * 第 row 行的 {东西向, 南北向} 像元间距（米）
+         */
+        double[] spacing(int row) {
+            double[] gt = geoTransform;
+            double resX = Math.hypot(gt[1], gt[4]);
+            double resY = Math.hypot(gt[2], gt[5]);
+            if (linearUnits != null) {
+                return new double[]{resX * linearUnits, resY * linearUnits};
+            }
+            double lat = gt[3] + (row + 0.5) * gt[5];
+            double[] meters = TerrainKernel.metersPerDegree(Math.max(-89.9, Math.min(89.9, lat)));
+            return new double[]{resX * meters[0], resY * meters[1]};
+        }
+    }
+
+    /**
+     * 计算结果的一个瓦片
+     */
+    private static class Tile {
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        double[] values;
+
+        Tile(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public Plan prepare(String filePath, String operator, int bandIndex, double zFactor, boolean percent,
+                        double azimuth, double altitude) {
+        TerrainKernel kernel = TerrainKernel.of(operator, zFactor, percent, azimuth, altitude);
+        RasterInfo info = rasterReaderService.readRasterInfo(filePath);
+        if (bandIndex < 1 || bandIndex > info.getBandCount()) {
+            throw new IllegalArgumentException("波段索引超出范围: " + bandIndex);
+        }
+        double[] gt = info.getGeoTransform();
+        if (gt == null || (gt[1] == 0 && gt[2] == 0)) {
+            throw new IllegalArgumentException("栅格缺少地理变换，无法计算像元间距");
+        }
+        Double linearUnits = 1.0;
+        String projection = info.getProjection();
+        if (projection != null && !projection.isEmpty()) {
+            SpatialReference srs = coordinateTransformService.parseCrs(projection);
+            try {
+                linearUnits = srs.IsGeographic() == 1 ? null : srs.GetLinearUnits();
+            } finally {
+                srs.delete();
+            }
+        }
+        return new Plan(filePath, bandIndex, kernel, info, linearUnits);
+    }
+
+    /**
+     * 计算一个窗口，供像素接口直接返回
+     */
+    public Map<String, Object> readWindow(Plan plan, int x, int y, int width, int height) {
+        long startTime = System.currentTimeMillis();
+        if (width <= 0 || height <= 0 || x < 0 || y < 0 || x + width > plan.width || y + height > plan.height) {
+            throw new IllegalArgumentException("窗口超出栅格范围 " + plan.width + "x" + plan.height);
+        }
+        if ((long) width * height > maxPixels) {
+            throw new IllegalArgumentException("请求窗口过大，上限 " + maxPixels + " 像素");
+        }
+        List<Tile> tiles = tiles(x, y, width, height);
+        GdalIoStats stats = gdalIoAccounting.current();
+        List<Tile> computed = parallelRasterExecutor.mapPartitions(tiles, slice -> compute(plan, slice, stats));
+        double[] values = new double[width * height];
+        for (Tile tile : computed) {
+            for (int row = 0; row < tile.height; row++) {
+                System.arraycopy(tile.values, row * tile.width, values, (tile.y - y + row) * width + tile.x - x, tile.width);
+            }
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("operator", plan.kernel.getOperator().name().toLowerCase());
+        response.put("x", x);
+        response.put("y", y);
+        response.put("width", width);
+        response.put("height", height);
+        response.put("noDataValue", plan.kernel.noDataValue());
+        response.put("values", values);
+        response.put("processingTime", System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    /**
+     * 计算整个栅格并写成 COG；没有 COG 驱动的 GDAL 版本退化为带概视图的分块 GeoTIFF
+     */
+    public Map<String, Object> writeCog(Plan plan, String outputPath) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        nativeLibraryLoader.ensureGdal();
+        Path output = Paths.get(outputPath).toAbsolutePath();
+        Path temp = output.resolveSibling("." + output.getFileName() + ".tmp.tif");
+        boolean hillshade = plan.kernel.getOperator() == TerrainKernel.Operator.HILLSHADE;
+        int dataType = hillshade ? gdalconst.GDT_Byte : gdalconst.GDT_Float32;
+        Driver driver = gdal.GetDriverByName("GTiff");
+        Dataset dataset = driver.Create(temp.toString(), plan.width, plan.height, 1, dataType,
+                new String[]{"TILED=YES", "BLOCKXSIZE=" + tileSize, "BLOCKYSIZE=" + tileSize, "BIGTIFF=IF_SAFER"});
+        if (dataset == null) {
+            throw new RuntimeException("无法创建输出文件: " + gdal.GetLastErrorMsg());
+        }
+        long noDataCount = 0;
+        boolean ok = false;
+        try {
+            dataset.SetGeoTransform(plan.geoTransform);
+            if (plan.projection != null && !plan.projection.isEmpty()) {
+                dataset.SetProjection(plan.projection);
+            }
+            Band band = dataset.GetRasterBand(1);
+            band.SetNoDataValue(plan.kernel.noDataValue());
+
+            List<Tile> tiles = tiles(0, 0, plan.width, plan.height);
+            int parallelism = Math.max(1, parallelRasterExecutor.parallelism());
+            // 每个线程：带光晕的输入 + 输出
+            long workspaceBytes = (long) parallelism * (tileSize + 2) * (tileSize + 2) * Double.BYTES * 2;
+            GdalIoStats stats = gdalIoAccounting.current();
+            MemoryBudget.Reservation reservation = memoryBudget.isEnabled() ? memoryBudget.acquire("terrain", workspaceBytes) : null;
+            try {
+                for (int from = 0; from < tiles.size(); from += parallelism) {
+                    List<Tile> wave = tiles.subList(from, Math.min(tiles.size(), from + parallelism));
+                    for (Tile tile : parallelRasterExecutor.mapPartitions(wave, parallelism, slice -> compute(plan, slice, stats))) {
+                        int result = hillshade
+                                ? band.WriteRaster(tile.x, tile.y, tile.width, tile.height, gdalconst.GDT_Byte, toBytes(tile.values))
+                                : band.WriteRaster(tile.x, tile.y, tile.width, tile.height, gdalconst.GDT_Float32, toFloats(tile.values));
+                        if (result != gdalconst.CE_None) {
+                            throw new RuntimeException("写入输出失败: " + gdal.GetLastErrorMsg());
+                        }
+                        double noData = plan.kernel.noDataValue();
+                        for (double v : tile.values) {
+                            noDataCount += v == noData ? 1 : 0;
+                        }
+                        tile.values = null;
+                    }
+                }
+            } finally {
+                if (reservation != null) {
+                    reservation.close();
+                }
+            }
+            dataset.FlushCache();
+            ok = true;
+        } finally {
+            dataset.delete();
+            if (!ok) {
+                driver.Delete(temp.toString());
+            }
+        }
+
+        String format = finish(temp, output, hillshade);
+        long elapsed = System.currentTimeMillis() - startTime;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("operator", plan.kernel.getOperator().name().toLowerCase());
+        summary.put("outputPath", outputPath);
+        summary.put("format", format);
+        summary.put("width", plan.width);
+        summary.put("height", plan.height);
+        summary.put("noDataValue", plan.kernel.noDataValue());
+        summary.put("noDataCount", noDataCount);
+        summary.put("processingTime", elapsed);
+        summary.put("megapixelsPerSecond", elapsed == 0 ? null : (double) plan.width * plan.height / 1000.0 / elapsed);
+        return summary;
+    }
+
+    /**
+     * 分块临时文件转成最终输出：COG 驱动负责重排瓦片并生成概视图
+     */
+    private String finish(Path temp, Path output, boolean hillshade) {
+        Vector<String> args = new Vector<>();
+        String format;
+        if (gdal.GetDriverByName("COG") != null) {
+            format = "COG";
+            args.addAll(Arrays.asList("-of", "COG", "-co", "COMPRESS=DEFLATE", "-co", "BLOCKSIZE=" + tileSize,
+                    "-co", "BIGTIFF=IF_SAFER", "-co", "NUM_THREADS=ALL_CPUS"));
+            if (!hillshade) {
+                args.addAll(Arrays.asList("-co", "PREDICTOR=YES"));
+            }
+        } else {
+            format = "GTiff";
+            Dataset source = gdal.Open(temp.toString(), gdalconst.GA_Update);
+            if (source != null) {
+                source.BuildOverviews(hillshade ? "AVERAGE" : "NEAREST", new int[]{2, 4, 8, 16, 32});
+                source.delete();
+            }
+            args.addAll(Arrays.asList("-of", "GTiff", "-co", "TILED=YES", "-co", "COPY_SRC_OVERVIEWS=YES",
+                    "-co", "COMPRESS=DEFLATE", "-co", "BIGTIFF=IF_SAFER"));
+        }
+        Dataset source = gdal.Open(temp.toString(), gdalconst.GA_ReadOnly);
+        TranslateOptions options = new TranslateOptions(args);
+        try {
+            if (source == null) {
+                throw new RuntimeException("无法打开临时文件: " + gdal.GetLastErrorMsg());
+            }
+            Dataset result = gdal.Translate(output.toString(), source, options);
+            if (result == null) {
+                throw new RuntimeException("生成 " + format + " 失败: " + gdal.GetLastErrorMsg());
+            }
+            result.delete();
+        } finally {
+            options.delete();
+            if (source != null) {
+                source.delete();
+            }
+            try {
+                Files.deleteIfExists(temp);
+            } catch (java.io.IOException e) {
+                System.err.println("删除临时文件失败: " + temp);
+            }
+        }
+        return format;
+    }
+
+    private List<Tile> tiles(int x, int y, int width, int height) {
+        List<Tile> tiles = new ArrayList<>();
+        for (int ty = y; ty < y + height; ty += tileSize) {
+            for (int tx = x; tx < x + width; tx += tileSize) {
+                tiles.add(new Tile(tx, ty, Math.min(tileSize, x + width - tx), Math.min(tileSize, y + height - ty)));
+            }
+        }
+        return tiles;
+    }
+
+    private List<Tile> compute(Plan plan, List<Tile> slice, GdalIoStats stats) {
+        try (WindowReader reader = rasterReaderService.openWindowReader(plan.filePath, stats)) {
+            for (Tile tile : slice) {
+                tile.values = computeTile(plan, reader, tile);
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * 读取带一像素光晕的窗口（栅格外部分为 NaN）并计算瓦片
+     */
+    private double[] computeTile(Plan plan, WindowReader reader, Tile tile) {
+        int x0 = Math.max(0, tile.x - 1);
+        int y0 = Math.max(0, tile.y - 1);
+        int x1 = Math.min(plan.width, tile.x + tile.width + 1);
+        int y1 = Math.min(plan.height, tile.y + tile.height + 1);
+        double[] read = reader.read(plan.bandIndex, x0, y0, x1 - x0, y1 - y0);
+
+        int stride = tile.width + 2;
+        double[] in = new double[stride * (tile.height + 2)];
+        Arrays.fill(in, Double.NaN);
+        Double noData = plan.noData;
+        int readWidth = x1 - x0;
+        for (int row = 0; row < y1 - y0; row++) {
+            int dst = (y0 - tile.y + 1 + row) * stride + (x0 - tile.x + 1);
+            int src = row * readWidth;
+            for (int col = 0; col < readWidth; col++) {
+                double v = read[src + col];
+                in[dst + col] = noData != null && v == noData ? Double.NaN : v;
+            }
+        }
+
+        double[] rowDx = new double[tile.height];
+        double[] rowDy = new double[tile.height];
+        for (int row = 0; row < tile.height; row++) {
+            double[] spacing = plan.spacing(tile.y + row);
+            rowDx[row] = spacing[0];
+            rowDy[row] = spacing[1];
+        }
+        double[] out = new double[tile.width * tile.height];
+        plan.kernel.apply(in, tile.width, tile.height, rowDx, rowDy, out);
+        return out;
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] out = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = (float) values[i];
+        }
+        return out;
+    }
+
+    private static byte[] toBytes(double[] values) {
+        byte[] out = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = (byte) (int) values[i];
+        }
+        return out;
+    }
+}
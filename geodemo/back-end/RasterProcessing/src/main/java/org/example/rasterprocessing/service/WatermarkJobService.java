@@ -0,0 +1,331 @@
+package org.example.rasterprocessing.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.rasterprocessing.util.FileTypeDetector;
+import org.example.rasterprocessing.util.SpoolQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 水印任务队列：任务存放在多个节点共享的 spool 目录中，每个节点按配置的并发数拉取执行
+ * 认领、租约与过期回收见 SpoolQueue；嵌入结果先写到输出目录下的临时文件，确认仍持有租约后再原子重命名为目标文件，
+ * 被判定失联的节点即使之后完成也不会覆盖新认领者的输出
+ */
+@Service
+public class WatermarkJobService {
+
+    public static final String TYPE_EMBED = "embed";
+    public static final String TYPE_EXTRACT = "extract";
+
+    @Autowired
+    private NativeOperations nativeOperations;
+
+    @Autowired
+    private WatermarkResultCache watermarkResultCache;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private MemoryCostEstimator memoryCostEstimator;
+
+    @Value("${raster.jobs.enabled:false}")
+    private boolean enabled;
+
+    @Value("${raster.jobs.spool-dir:./data/spool}")
+    private String spoolDir;
+
+    @Value("${raster.jobs.node-id:}")
+    private String nodeId;
+
+    @Value("${raster.jobs.concurrency:2}")
+    private int concurrency;
+
+    @Value("${raster.jobs.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    @Value("${raster.jobs.lease-ms:30000}")
+    private long leaseMs;
+
+    @Value("${raster.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${raster.jobs.retention-ms:604800000}")
+    private long retentionMs;
+
+    @Value("${raster.jobs.release-delay-ms:5000}")
+    private long releaseDelayMs;
+
+    private volatile SpoolQueue queue;
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+    private final Set<SpoolQueue.Claim> held = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong leaseLost = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        queue = new SpoolQueue(Paths.get(spoolDir), nodeId == null || nodeId.trim().isEmpty() ? defaultNodeId() : nodeId.trim());
+        running = true;
+        scheduler = Executors.newScheduledThreadPool(1 + Math.max(0, concurrency), r -> {
+            Thread t = new Thread(r, "watermark-job");
+            t.setDaemon(true);
+            return t;
+        });
+        long heartbeat = Math.max(100, leaseMs / 3);
+        scheduler.scheduleWithFixedDelay(this::maintain, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < concurrency; i++) {
+            scheduler.execute(this::workLoop);
+        }
+        System.out.println("水印任务队列已启动: 节点 " + queue.getNodeId() + ", 并发 " + concurrency + ", 目录 " + spoolDir);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交嵌入任务
+     */
+    public String submitEmbed(String inputPath, String outputPath, String watermarkText) throws IOException {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("inputPath", inputPath);
+        payload.put("outputPath", outputPath);
+        payload.put("watermarkText", watermarkText);
+        return requireQueue().submit(TYPE_EMBED, payload);
+    }
+
+    /**
+     * 提交提取任务
+     */
+    public String submitExtract(String filePath, int watermarkLength) throws IOException {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("filePath", filePath);
+        payload.put("watermarkLength", watermarkLength);
+        return requireQueue().submit(TYPE_EXTRACT, payload);
+    }
+
+    /**
+     * 查询任务，不存在返回 null
+     */
+    public Map<String, Object> find(String jobId) throws IOException {
+        return requireQueue().find(jobId);
+    }
+
+    public Map<String, Object> status() throws IOException {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        if (queue == null) {
+            return status;
+        }
+        status.put("nodeId", queue.getNodeId());
+        status.put("spoolDir", spoolDir);
+        status.put("concurrency", concurrency);
+        status.put("leaseMs", leaseMs);
+        status.put("active", held.size());
+        status.put("queue", queue.counts());
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("completed", completed.get());
+        node.put("failed", failed.get());
+        node.put("leaseLost", leaseLost.get());
+        node.put("requeuedExpired", requeued.get());
+        node.put("released", released.get());
+        status.put("node", node);
+        return status;
+    }
+
+    private SpoolQueue requireQueue() {
+        if (queue == null) {
+            throw new RuntimeException("任务队列未启用（raster.jobs.enabled=false）");
+        }
+        return queue;
+    }
+
+    private void workLoop() {
+        while (running) {
+            SpoolQueue.Claim claim = null;
+            try {
+                claim = queue.claim();
+                if (claim == null) {
+                    // 加随机抖动，避免多个节点同步轮询
+                    Thread.sleep(pollIntervalMs + ThreadLocalRandom.current().nextLong(pollIntervalMs / 2 + 1));
+                    continue;
+                }
+                held.add(claim);
+                execute(claim);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("任务队列处理异常: " + e.getMessage());
+            } finally {
+                if (claim != null) {
+                    held.remove(claim);
+                }
+            }
+        }
+    }
+
+    private void execute(SpoolQueue.Claim claim) throws IOException, InterruptedException {
+        Map<String, Object> payload = claim.getPayload();
+        long startTime = System.currentTimeMillis();
+        MemoryBudget.Reservation reservation = null;
+        try {
+            if (memoryBudget.isEnabled()) {
+                try {
+                    long cost = TYPE_EMBED.equals(claim.getType())
+                            ? memoryCostEstimator.embed(String.valueOf(payload.get("inputPath")),
+                                    String.valueOf(payload.get("watermarkText")))
+                            : memoryCostEstimator.extract(String.valueOf(payload.get("filePath")),
+                                    ((Number) payload.get("watermarkLength")).intValue());
+                    reservation = memoryBudget.acquire("job-" + claim.getType(), cost);
+                } catch (MemoryBudget.RejectedException e) {
+                    // 本节点内存紧张，交给其他节点；推迟一段时间再允许认领，避免各节点反复认领又拒绝
+                    if (queue.release(claim, releaseDelayMs + ThreadLocalRandom.current().nextLong(releaseDelayMs / 2 + 1))) {
+                        released.incrementAndGet();
+                    } else {
+                        leaseLost.incrementAndGet();
+                    }
+                    return;
+                }
+            }
+            Map<String, Object> result = TYPE_EMBED.equals(claim.getType()) ? embed(claim, payload) : extract(payload);
+            if (result == null) {
+                leaseLost.incrementAndGet();
+                return;
+            }
+            result.put("node", queue.getNodeId());
+            result.put("processingTime", System.currentTimeMillis() - startTime);
+            if (queue.complete(claim, result)) {
+                completed.incrementAndGet();
+            } else {
+                leaseLost.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            String message = e.getMessage() == null ? e.toString() : e.getMessage();
+            // 文件格式或内容错误重试也不会成功，只有 I/O 错误才放回队列
+            if (!queue.fail(claim, message, e instanceof IOException, maxAttempts)) {
+                leaseLost.incrementAndGet();
+            }
+        } finally {
+            if (reservation != null) {
+                reservation.close();
+            }
+        }
+    }
+
+    /**
+     * @return 租约已丢失时返回 null
+     */
+    private Map<String, Object> embed(SpoolQueue.Claim claim, Map<String, Object> payload) throws IOException {
+        String inputPath = String.valueOf(payload.get("inputPath"));
+        Path output = Paths.get(String.valueOf(payload.get("outputPath")));
+        String watermarkText = String.valueOf(payload.get("watermarkText"));
+        if (!FileTypeDetector.isSupportedFormat(inputPath)) {
+            throw new RuntimeException("不支持的文件格式: " + inputPath);
+        }
+        // 保留扩展名，GDAL/OpenCV 按扩展名选择输出格式
+        Path temp = output.resolveSibling("." + claim.getJobId() + "-" + claim.getAttempt() + "." + output.getFileName());
+        try {
+            String tempPath = temp.toString();
+            boolean cached;
+            if (FileTypeDetector.isImageFormat(inputPath)) {
+                cached = watermarkResultCache.embed(inputPath, tempPath, watermarkText, "image",
+                        () -> nativeOperations.embedImageWatermark(inputPath, tempPath, watermarkText));
+            } else {
+                cached = watermarkResultCache.embed(inputPath, tempPath, watermarkText, "raster",
+                        () -> nativeOperations.embedRasterWatermark(inputPath, tempPath, watermarkText));
+            }
+            if (!queue.owns(claim)) {
+                return null;
+            }
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("outputPath", output.toString());
+            result.put("cached", cached);
+            return result;
+        } finally {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(temp.resolveSibling(temp.getFileName() + ".aux.xml"));
+        }
+    }
+
+    private Map<String, Object> extract(Map<String, Object> payload) {
+        String filePath = String.valueOf(payload.get("filePath"));
+        int watermarkLength = ((Number) payload.get("watermarkLength")).intValue();
+        WatermarkResultCache.Extraction extracted;
+        if (FileTypeDetector.isImageFormat(filePath)) {
+            extracted = watermarkResultCache.extract(filePath, watermarkLength, "image",
+                    () -> nativeOperations.extractImageWatermark(filePath, watermarkLength));
+        } else if (FileTypeDetector.isRasterFormat(filePath)) {
+            extracted = watermarkResultCache.extract(filePath, watermarkLength, "raster",
+                    () -> nativeOperations.extractRasterWatermark(filePath, watermarkLength));
+        } else {
+            throw new RuntimeException("不支持的文件格式: " + filePath);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("watermarkText", extracted.getText());
+        result.put("cached", extracted.isCached());
+        return result;
+    }
+
+    /**
+     * 心跳续租、回收过期租约、清理旧记录
+     */
+    private void maintain() {
+        try {
+            for (SpoolQueue.Claim claim : held) {
+                if (!queue.renew(claim)) {
+                    System.err.println("任务租约已丢失: " + claim.getJobId());
+                }
+            }
+            requeued.addAndGet(queue.requeueExpired(leaseMs, maxAttempts));
+            if (ThreadLocalRandom.current().nextInt(100) == 0) {
+                queue.purge(retentionMs);
+            }
+        } catch (Exception e) {
+            System.err.println("任务队列维护失败: " + e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+        return host + "-" + ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+    }
+}
@@ -0,0 +1,492 @@
+package org.example.rasterprocessing.service;
+
+import jakarta.annotation.PostConstruct;
+import org.example.rasterprocessing.util.ContentHasher;
+import org.example.rasterprocessing.util.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 水印结果缓存 - 以输入文件内容哈希加操作参数为键
+ * 提取结果存放在有界的内存 LRU 中；嵌入结果文件存放在按总大小限制、LRU 淘汰的磁盘目录中。
+ * 相同键的并发请求只计算一次，其余请求等待并共享结果
+ */
+@Service
+public class WatermarkResultCache {
+
+    // 算法参数变化时递增，使旧结果失效
+    private static final String ALGORITHM_VERSION = "v1";
+    private static final int MAX_HASH_ENTRIES = 10000;
+
+    @Value("${raster.watermark-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${raster.watermark-cache.dir:./data/watermark-cache}")
+    private String dir;
+
+    @Value("${raster.watermark-cache.max-size:2GB}")
+    private String maxSize;
+
+    @Value("${raster.watermark-cache.max-extract-entries:10000}")
+    private int maxExtractEntries;
+
+    private Path storeDir;
+    private long maxBytes;
+
+    // 存储文件名 -> 大小，访问顺序即 LRU 顺序
+    private final LinkedHashMap<String, Long> store = new LinkedHashMap<>(256, 0.75f, true);
+    private long storeBytes;
+
+    private final LinkedHashMap<String, String> extractResults = new LinkedHashMap<>(256, 0.75f, true);
+
+    // 嵌入结果文件名 -> 嵌入时的校验报告
+    private final LinkedHashMap<String, Map<String, Object>> verifications = new LinkedHashMap<>(256, 0.75f, true);
+
+    // 路径 -> {mtime, size, hash}，文件未变化时不重复计算哈希
+    private final LinkedHashMap<String, Object[]> hashes = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final AtomicLong embedHits = new AtomicLong();
+    private final AtomicLong embedMisses = new AtomicLong();
+    private final AtomicLong extractHits = new AtomicLong();
+    private final AtomicLong extractMisses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        maxBytes = GdalConfigService.parseCacheSize(maxSize);
+        if (!enabled) {
+            return;
+        }
+        storeDir = Paths.get(dir);
+        try {
+            Files.createDirectories(storeDir);
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> list = Files.list(storeDir)) {
+                list.filter(Files::isRegularFile).forEach(files::add);
+            }
+            // 按修改时间恢复 LRU 顺序（命中时会刷新修改时间）
+            files.sort(Comparator.comparingLong(WatermarkResultCache::lastModified));
+            synchronized (store) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    long size = Files.size(file);
+                    store.put(name, size);
+                    storeBytes += size;
+                }
+                evict();
+            }
+        } catch (IOException e) {
+            System.err.println("水印结果缓存目录不可用，已禁用: " + e.getMessage());
+            enabled = false;
+        }
+    }
+
+    /**
+     * 嵌入：命中时直接把缓存的结果文件复制到 outputPath，否则执行 compute（写出 outputPath）并存入缓存
+     * @param type 处理类型（image / raster），不同算法的结果互不复用
+     * @return 是否命中缓存
+     */
+    public boolean embed(String inputPath, String outputPath, String watermark, String type, Runnable compute) {
+        if (!enabled) {
+            compute.run();
+            return false;
+        }
+        String name = embedName(inputPath, outputPath, watermark, type);
+        Path target = Paths.get(outputPath);
+
+        Path cached = lookup(name);
+        if (cached != null && tryCopy(cached, target)) {
+            embedHits.incrementAndGet();
+            return true;
+        }
+        boolean[] computed = {false};
+        Path stored = singleFlight.execute("embed:" + name, () -> {
+            Path again = lookup(name);
+            if (again != null) {
+                return again;
+            }
+            embedMisses.incrementAndGet();
+            compute.run();
+            computed[0] = true;
+            return save(name, target);
+        });
+        if (computed[0]) {
+            return false;
+        }
+        if (tryCopy(stored, target)) {
+            return true;
+        }
+        // 等待期间共享的结果文件已被淘汰，自行重新计算
+        embedMisses.incrementAndGet();
+        compute.run();
+        save(name, target);
+        return false;
+    }
+
+    /**
+     * 带校验报告的嵌入结果及是否来自缓存
+     */
+    public static class VerifiedEmbedding {
+        private final Map<String, Object> report;
+        private final boolean cached;
+
+        VerifiedEmbedding(Map<String, Object> report, boolean cached) {
+            this.report = report;
+            this.cached = cached;
+        }
+
+        public Map<String, Object> getReport() {
+            return report;
+        }
+
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    /**
+     * 嵌入并校验：校验报告随结果文件一起缓存（内存中，与提取结果共用条数上限）。
+     * 结果文件与报告都在时才算命中；报告缺失（如重启后）时重新嵌入，保证报告对应的正是写出的文件
+     * @param compute 写出 outputPath 并返回校验报告
+     */
+    public VerifiedEmbedding embedVerified(String inputPath, String outputPath, String watermark, String type,
+                                           Supplier<Map<String, Object>> compute) {
+        if (!enabled) {
+            return new VerifiedEmbedding(compute.get(), false);
+        }
+        String name = embedName(inputPath, outputPath, watermark, type);
+        Path target = Paths.get(outputPath);
+
+        Map<String, Object> known = verification(name);
+        Path cached = known == null ? null : lookup(name);
+        if (cached != null && tryCopy(cached, target)) {
+            embedHits.incrementAndGet();
+            return new VerifiedEmbedding(known, true);
+        }
+        boolean[] computed = {false};
+        Object[] result = singleFlight.execute("verify:" + name, () -> {
+            Map<String, Object> report = verification(name);
+            Path again = report == null ? null : lookup(name);
+            if (again != null) {
+                return new Object[]{again, report};
+            }
+            embedMisses.incrementAndGet();
+            report = compute.get();
+            computed[0] = true;
+            Path stored = save(name, target);
+            remember(name, report);
+            return new Object[]{stored, report};
+        });
+        @SuppressWarnings("unchecked")
+        Map<String, Object> report = (Map<String, Object>) result[1];
+        if (computed[0]) {
+            return new VerifiedEmbedding(report, false);
+        }
+        if (tryCopy((Path) result[0], target)) {
+            return new VerifiedEmbedding(report, true);
+        }
+        // 等待期间共享的结果文件已被淘汰，自行重新计算，报告也随之更新
+        embedMisses.incrementAndGet();
+        report = compute.get();
+        save(name, target);
+        remember(name, report);
+        return new VerifiedEmbedding(report, false);
+    }
+
+    private void remember(String name, Map<String, Object> report) {
+        synchronized (verifications) {
+            verifications.put(name, report);
+            while (verifications.size() > Math.max(1, maxExtractEntries)) {
+                verifications.remove(verifications.keySet().iterator().next());
+            }
+        }
+    }
+
+    private Map<String, Object> verification(String name) {
+        synchronized (verifications) {
+            return verifications.get(name);
+        }
+    }
+
+    /**
+     * 提取结果及是否来自缓存
+     */
+    public static class Extraction {
+        private final String text;
+        private final boolean cached;
+
+        Extraction(String text, boolean cached) {
+            this.text = text;
+            this.cached = cached;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    /**
+     * 提取：命中时直接返回缓存的文本
+     */
+    public Extraction extract(String filePath, int length, String type, Supplier<String> compute) {
+        if (!enabled) {
+            return new Extraction(compute.get(), false);
+        }
+        String key = extractKey(filePath, length, type);
+        synchronized (extractResults) {
+            String cached = extractResults.get(key);
+            if (cached != null) {
+                extractHits.incrementAndGet();
+                return new Extraction(cached, true);
+            }
+        }
+        boolean[] computed = {false};
+        String text = singleFlight.execute("extract:" + key, () -> {
+            synchronized (extractResults) {
+                String again = extractResults.get(key);
+                if (again != null) {
+                    return again;
+                }
+            }
+            extractMisses.incrementAndGet();
+            String result = compute.get();
+            computed[0] = true;
+            synchronized (extractResults) {
+                extractResults.put(key, result);
+                while (extractResults.size() > Math.max(1, maxExtractEntries)) {
+                    extractResults.remove(extractResults.keySet().iterator().next());
+                }
+            }
+            return result;
+        });
+        return new Extraction(text, !computed[0]);
+    }
+
+    /**
+     * 嵌入结果是否已在缓存中（verify 时还要求有校验报告）。供准入控制在预留内存之前探测，
+     * 不计入命中统计也不刷新 LRU 顺序；输入文件不可读时返回 false
+     */
+    public boolean containsEmbedding(String inputPath, String outputPath, String watermark, String type, boolean verify) {
+        if (!enabled) {
+            return false;
+        }
+        String name;
+        try {
+            name = embedName(inputPath, outputPath, watermark, type);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (verify) {
+            synchronized (verifications) {
+                if (!verifications.containsKey(name)) {
+                    return false;
+                }
+            }
+        }
+        synchronized (store) {
+            return store.containsKey(name);
+        }
+    }
+
+    /**
+     * 提取结果是否已在缓存中，用法同 containsEmbedding
+     */
+    public boolean containsExtraction(String filePath, int length, String type) {
+        if (!enabled) {
+            return false;
+        }
+        String key;
+        try {
+            key = extractKey(filePath, length, type);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        synchronized (extractResults) {
+            return extractResults.containsKey(key);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (store) {
+            stats.put("storedFiles", store.size());
+            stats.put("storedBytes", storeBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        synchronized (extractResults) {
+            stats.put("extractEntries", extractResults.size());
+        }
+        synchronized (verifications) {
+            stats.put("verificationEntries", verifications.size());
+        }
+        stats.put("embedHits", embedHits.get());
+        stats.put("embedMisses", embedMisses.get());
+        stats.put("extractHits", extractHits.get());
+        stats.put("extractMisses", extractMisses.get());
+        stats.put("coalesced", singleFlight.getShared());
+        return stats;
+    }
+
+    private String embedName(String inputPath, String outputPath, String watermark, String type) {
+        return ContentHasher.hash(String.join("\n", ALGORITHM_VERSION, "embed", type,
+                contentHash(inputPath), watermark)) + extension(outputPath);
+    }
+
+    private String extractKey(String filePath, int length, String type) {
+        return ContentHasher.hash(String.join("\n", ALGORITHM_VERSION, "extract", type,
+                contentHash(filePath), String.valueOf(length)));
+    }
+
+    private String contentHash(String filePath) {
+        Path path = Paths.get(filePath);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long mtime = attributes.lastModifiedTime().toMillis();
+            long size = attributes.size();
+            synchronized (hashes) {
+                Object[] entry = hashes.get(filePath);
+                if (entry != null && (long) entry[0] == mtime && (long) entry[1] == size) {
+                    return (String) entry[2];
+                }
+            }
+            String hash = ContentHasher.hash(path);
+            synchronized (hashes) {
+                hashes.put(filePath, new Object[]{mtime, size, hash});
+                while (hashes.size() > MAX_HASH_ENTRIES) {
+                    hashes.remove(hashes.keySet().iterator().next());
+                }
+            }
+            return hash;
+        } catch (IOException e) {
+            throw new RuntimeException("无法读取文件: " + filePath, e);
+        }
+    }
+
+    private Path lookup(String name) {
+        synchronized (store) {
+            if (store.get(name) == null) {
+                return null;
+            }
+        }
+        Path file = storeDir.resolve(name);
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return file;
+        } catch (IOException e) {
+            // 文件已被外部删除
+            synchronized (store) {
+                Long size = store.remove(name);
+                if (size != null) {
+                    storeBytes -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 把刚生成的结果文件存入缓存目录（先写临时文件再原子改名），超过上限的单个文件不缓存
+     */
+    private Path save(String name, Path output) {
+        try {
+            long size = Files.size(output);
+            if (size > maxBytes) {
+                return output;
+            }
+            Path tmp = storeDir.resolve(name + ".tmp");
+            Files.copy(output, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Path file = storeDir.resolve(name);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (store) {
+                Long old = store.put(name, size);
+                storeBytes += size - (old == null ? 0 : old);
+                evict();
+            }
+            return file;
+        } catch (IOException e) {
+            System.err.println("写入水印结果缓存失败: " + e.getMessage());
+            return output;
+        }
+    }
+
+    private void evict() {
+        while (storeBytes > maxBytes && !store.isEmpty()) {
+            String eldest = store.keySet().iterator().next();
+            storeBytes -= store.remove(eldest);
+            try {
+                Files.deleteIfExists(storeDir.resolve(eldest));
+            } catch (IOException e) {
+                System.err.println("删除缓存文件失败: " + eldest);
+            }
+        }
+    }
+
+    /**
+     * 复制缓存文件，文件恰好被淘汰时返回 false
+     */
+    private static boolean tryCopy(Path source, Path target) {
+        try {
+            copy(source, target);
+            return true;
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof java.nio.file.NoSuchFileException) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static void copy(Path source, Path target) {
+        try {
+            if (source.toAbsolutePath().normalize().equals(target.toAbsolutePath().normalize())) {
+                return;
+            }
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("写出结果文件失败: " + target, e);
+        }
+    }
+
+    private static String extension(String path) {
+        String name = Paths.get(path).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot).toLowerCase() : "";
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+
+/**
+ * 单线程使用的窗口读取句柄
+ * 未压缩 TIFF 走内存映射，其余格式持有一个独立的 GDAL 数据集；由 RasterReaderService.openWindowReader 创建，用完须关闭
+ */
+public class WindowReader implements AutoCloseable {
+
+    private final String filePath;
+    private final MappedTiffReader mappedTiffReader;
+    private final GdalIoAccounting gdalIoAccounting;
+    private final GdalIoStats stats;
+    private final boolean mapped;
+    private Dataset dataset;
+
+    WindowReader(String filePath, MappedTiffReader mappedTiffReader, GdalIoAccounting gdalIoAccounting, GdalIoStats stats) {
+        this.filePath = filePath;
+        this.mappedTiffReader = mappedTiffReader;
+        this.gdalIoAccounting = gdalIoAccounting;
+        this.stats = stats;
+        this.mapped = mappedTiffReader.supports(filePath);
+        if (!mapped) {
+            dataset = gdal.Open(filePath, gdalconst.GA_ReadOnly);
+            if (dataset == null) {
+                throw new RuntimeException("无法打开栅格文件: " + filePath);
+            }
+        }
+    }
+
+    /**
+     * 读取窗口像素值（GDT_Float64）
+     */
+    public double[] read(int bandIndex, int x, int y, int width, int height) {
+        if (mapped) {
+            return mappedTiffReader.readWindow(filePath, bandIndex, x, y, width, height);
+        }
+        Band band = band(bandIndex);
+        gdalIoAccounting.recordRead(stats, filePath, band, bandIndex, x, y, width, height);
+        double[] buffer = new double[width * height];
+        int result = band.ReadRaster(x, y, width, height, width, height, gdalconst.GDT_Float64, buffer);
+        if (result != gdalconst.CE_None) {
+            throw new RuntimeException("读取像素数据失败: " + filePath);
+        }
+        return buffer;
+    }
+
+    /**
+     * 波段的块大小 {宽, 高}
+     */
+    public int[] blockSize(int bandIndex) {
+        if (mapped) {
+            return mappedTiffReader.blockSize(filePath);
+        }
+        Band band = band(bandIndex);
+        return new int[]{Math.max(1, band.GetBlockXSize()), Math.max(1, band.GetBlockYSize())};
+    }
+
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * 底层 GDAL 数据集，内存映射模式下为 null
+     */
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    private Band band(int bandIndex) {
+        Band band = dataset.GetRasterBand(bandIndex);
+        if (band == null) {
+            throw new RuntimeException("无法获取波段: " + bandIndex);
+        }
+        return band;
+    }
+
+    @Override
+    public void close() {
+        if (dataset != null) {
+            dataset.delete();
+            dataset = null;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.example.rasterprocessing.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.model.ZarrExportRequest;
+import org.example.rasterprocessing.util.ZarrLayout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Zarr 导出服务
+ * 把栅格的指定波段和窗口写成 Zarr v2/v3 目录存储。块经 RasterReaderService 的窗口读取路径并行读取、编码，
+ * 产出后立即写盘，工作内存只与并行度和块大小有关。
+ * 输出目录下的清单记录源文件指纹、布局签名和每个块未压缩内容的摘要：再次导出时源文件未变直接返回，
+ * 布局未变则只重写摘要变化的块；全为 fill_value 的块不写出（已有的删除）
+ */
+@Service
+public class ZarrExportService {
+
+    private static final String MANIFEST = ".raster-export.json";
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    @Autowired
+    private ParallelRasterExecutor parallelRasterExecutor;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${raster.zarr.chunk-size:512}")
+    private int defaultChunkSize;
+
+    @Value("${raster.zarr.max-chunk-pixels:4194304}")
+    private long maxChunkPixels;
+
+    // 同一输出目录同时只允许一个导出
+    private final Set<Path> exporting = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 单个块的处理结果
+     */
+    private static class ChunkResult {
+        final String key;
+        final String digest; // 全为 fill_value 时为 null
+        final boolean written;
+        final long bytes;
+
+        ChunkResult(String key, String digest, boolean written, long bytes) {
+            this.key = key;
+            this.digest = digest;
+            this.written = written;
+            this.bytes = bytes;
+        }
+    }
+
+    public Map<String, Object> export(ZarrExportRequest request) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        String filePath = request.getFilePath();
+        if (filePath == null || filePath.isEmpty() || request.getOutputPath() == null || request.getOutputPath().isEmpty()) {
+            throw new IllegalArgumentException("filePath 和 outputPath 不能为空");
+        }
+        String arrayName = request.getArrayName() == null || request.getArrayName().isEmpty() ? "data" : request.getArrayName();
+        if (!arrayName.matches("[A-Za-z0-9_-]{1,64}")) {
+            throw new IllegalArgumentException("数组名称只能包含字母、数字、下划线和连字符");
+        }
+        long[] fingerprint = RasterInfoCache.fingerprint(filePath);
+        RasterInfo info = rasterReaderService.readRasterInfo(filePath);
+
+        int x = request.getX() == null ? 0 : request.getX();
+        int y = request.getY() == null ? 0 : request.getY();
+        int width = request.getWidth() == null ? info.getWidth() - x : request.getWidth();
+        int height = request.getHeight() == null ? info.getHeight() - y : request.getHeight();
+        if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > info.getWidth() || y + height > info.getHeight()) {
+            throw new IllegalArgumentException("导出窗口超出栅格范围 " + info.getWidth() + "x" + info.getHeight());
+        }
+        List<Integer> bands = request.getBands() == null || request.getBands().isEmpty() ? null : request.getBands();
+        if (bands == null) {
+            bands = new ArrayList<>();
+            for (int b = 1; b <= info.getBandCount(); b++) {
+                bands.add(b);
+            }
+        }
+        for (int band : bands) {
+            if (band < 1 || band > info.getBandCount()) {
+                throw new IllegalArgumentException("波段索引超出范围: " + band);
+            }
+        }
+        int chunkRows = defaultChunkSize;
+        int chunkCols = defaultChunkSize;
+        if (request.getChunks() != null && !request.getChunks().isEmpty()) {
+            if (request.getChunks().size() != 2) {
+                throw new IllegalArgumentException("chunks 格式应为 [行, 列]");
+            }
+            chunkRows = request.getChunks().get(0);
+            chunkCols = request.getChunks().get(1);
+        }
+        chunkRows = Math.min(chunkRows, height);
+        chunkCols = Math.min(chunkCols, width);
+        if ((long) chunkRows * chunkCols > maxChunkPixels) {
+            throw new IllegalArgumentException("块过大，上限 " + maxChunkPixels + " 像素");
+        }
+        ZarrLayout layout = ZarrLayout.of(request.getZarrFormat(), info.getDataType(), bands.size(), height, width,
+                chunkRows, chunkCols, request.getCompressor(), request.getLevel(), info.getNoDataValue());
+
+        Path root = Paths.get(request.getOutputPath()).toAbsolutePath().normalize();
+        if (!exporting.add(root)) {
+            throw new IllegalStateException("该目录正在导出: " + root);
+        }
+        try {
+            return run(request, filePath, fingerprint, info, layout, bands, new int[]{x, y, width, height}, root, arrayName, startTime);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入 Zarr 失败: " + e.getMessage(), e);
+        } finally {
+            exporting.remove(root);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> run(ZarrExportRequest request, String filePath, long[] fingerprint, RasterInfo info,
+                                    ZarrLayout layout, List<Integer> bands, int[] window, Path root, String arrayName,
+                                    long startTime) throws IOException, InterruptedException {
+        String signature = layout.signature() + "|" + bands + "|" + Arrays.toString(window) + "|" + arrayName;
+        Map<String, Object> manifest = readManifest(root);
+        Map<String, String> previous = new HashMap<>();
+        if (manifest != null && signature.equals(manifest.get("signature"))) {
+            if (fingerprint != null && Arrays.toString(fingerprint).equals(manifest.get("fingerprint"))
+                    && filePath.equals(manifest.get("source"))) {
+                Map<String, Object> summary = summary(request, layout, root, arrayName, startTime);
+                summary.put("sourceUnchanged", true);
+                summary.put("chunksWritten", 0);
+                return summary;
+            }
+            previous = (Map<String, String>) manifest.get("chunks");
+        } else if (manifest != null) {
+            // 布局变了，旧块全部作废；格式版本可能也变了，根组元数据一并重写
+            deleteTree(root.resolve((String) manifest.get("arrayName")));
+            Files.deleteIfExists(root.resolve(".zgroup"));
+            Files.deleteIfExists(root.resolve("zarr.json"));
+        }
+
+        Files.createDirectories(root.resolve(arrayName));
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        double[] gt = info.getGeoTransform();
+        if (gt != null) {
+            attributes.put("geoTransform", new double[]{gt[0] + window[0] * gt[1] + window[1] * gt[2], gt[1], gt[2],
+                    gt[3] + window[0] * gt[4] + window[1] * gt[5], gt[4], gt[5]});
+        }
+        attributes.put("crs", info.getProjection());
+        attributes.put("bands", bands);
+        attributes.put("source", filePath);
+        for (Map.Entry<String, Object> file : layout.groupMetadata().entrySet()) {
+            writeAtomically(root.resolve(file.getKey()), objectMapper.writeValueAsBytes(file.getValue()));
+        }
+        for (Map.Entry<String, Object> file : layout.arrayMetadata(attributes).entrySet()) {
+            writeAtomically(root.resolve(arrayName).resolve(file.getKey()), objectMapper.writeValueAsBytes(file.getValue()));
+        }
+
+        List<int[]> chunks = new ArrayList<>();
+        for (int b = 0; b < bands.size(); b++) {
+            for (int r = 0; r < layout.rowChunks(); r++) {
+                for (int c = 0; c < layout.colChunks(); c++) {
+                    chunks.add(new int[]{b, r, c});
+                }
+            }
+        }
+        int parallelism = Math.max(1, parallelRasterExecutor.parallelism());
+        // 每个线程：double 窗口 + 未压缩块 + 压缩输出
+        long workspaceBytes = (long) parallelism * layout.getChunkRows() * layout.getChunkCols()
+                * (Double.BYTES + 2L * layout.getElementSize());
+        GdalIoStats stats = gdalIoAccounting.current();
+        Path arrayDir = root.resolve(arrayName);
+        Map<String, String> known = previous;
+        List<ChunkResult> results;
+        MemoryBudget.Reservation reservation = memoryBudget.isEnabled() ? memoryBudget.acquire("zarr", workspaceBytes) : null;
+        try {
+            // 分区是连续的块区间，每个线程沿行扫过一段条带，源文件的块缓存命中率高
+            results = parallelRasterExecutor.mapPartitions(chunks, parallelism, slice -> {
+                List<ChunkResult> done = new ArrayList<>(slice.size());
+                MessageDigest sha = sha256();
+                try (WindowReader reader = rasterReaderService.openWindowReader(filePath, stats)) {
+                    for (int[] chunk : slice) {
+                        done.add(writeChunk(reader, layout, bands, window, arrayDir, known, chunk, sha));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("写入 Zarr 块失败: " + e.getMessage(), e);
+                }
+                return done;
+            });
+        } finally {
+            if (reservation != null) {
+                reservation.close();
+            }
+        }
+
+        Map<String, String> digests = new LinkedHashMap<>();
+        int written = 0;
+        int empty = 0;
+        long bytes = 0;
+        for (ChunkResult result : results) {
+            if (result.digest == null) {
+                empty++;
+            } else {
+                digests.put(result.key, result.digest);
+            }
+            written += result.written ? 1 : 0;
+            bytes += result.bytes;
+        }
+        // 导出期间源文件被改写时不记录指纹，下次导出会重新比对全部块
+        long[] after = RasterInfoCache.fingerprint(filePath);
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("source", filePath);
+        record.put("fingerprint", fingerprint != null && Arrays.equals(fingerprint, after) ? Arrays.toString(fingerprint) : null);
+        record.put("signature", signature);
+        record.put("arrayName", arrayName);
+        record.put("exportedAt", System.currentTimeMillis());
+        record.put("chunks", digests);
+        writeAtomically(root.resolve(MANIFEST), objectMapper.writeValueAsBytes(record));
+
+        Map<String, Object> summary = summary(request, layout, root, arrayName, startTime);
+        summary.put("sourceUnchanged", false);
+        summary.put("chunksTotal", chunks.size());
+        summary.put("chunksWritten", written);
+        summary.put("chunksUnchanged", chunks.size() - written - empty);
+        summary.put("chunksEmpty", empty);
+        summary.put("bytesWritten", bytes);
+        long elapsed = System.currentTimeMillis() - startTime;
+        summary.put("megapixelsPerSecond", elapsed == 0 ? null : (double) window[2] * window[3] * bands.size() / 1000.0 / elapsed);
+        summary.put("processingTime", elapsed);
+        return summary;
+    }
+
+    private ChunkResult writeChunk(WindowReader reader, ZarrLayout layout, List<Integer> bands, int[] window,
+                                   Path arrayDir, Map<String, String> previous, int[] chunk,
+                                   MessageDigest sha) throws IOException {
+        int cx = chunk[2] * layout.getChunkCols();
+        int cy = chunk[1] * layout.getChunkRows();
+        int w = Math.min(layout.getChunkCols(), window[2] - cx);
+        int h = Math.min(layout.getChunkRows(), window[3] - cy);
+        String key = layout.chunkKey(chunk[0], chunk[1], chunk[2]);
+        Path file = arrayDir.resolve(key);
+
+        double[] values = reader.read(bands.get(chunk[0]), window[0] + cx, window[1] + cy, w, h);
+        if (layout.isFill(values, w * h)) {
+            boolean deleted = Files.deleteIfExists(file);
+            return new ChunkResult(key, null, deleted, 0);
+        }
+        byte[] raw = layout.encode(values, w, h);
+        String digest = hex(sha.digest(raw));
+        if (digest.equals(previous.get(key)) && Files.exists(file)) {
+            return new ChunkResult(key, digest, false, 0);
+        }
+        byte[] encoded = layout.compress(raw);
+        Files.createDirectories(file.getParent());
+        writeAtomically(file, encoded);
+        return new ChunkResult(key, digest, true, encoded.length);
+    }
+
+    private Map<String, Object> summary(ZarrExportRequest request, ZarrLayout layout, Path root, String arrayName, long startTime) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("filePath", request.getFilePath());
+        summary.put("outputPath", root.toString());
+        summary.put("arrayName", arrayName);
+        summary.put("zarrFormat", request.getZarrFormat());
+        summary.put("chunks", new int[]{1, layout.getChunkRows(), layout.getChunkCols()});
+        summary.put("processingTime", System.currentTimeMillis() - startTime);
+        return summary;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readManifest(Path root) throws IOException {
+        if (Files.isRegularFile(root)) {
+            throw new IllegalArgumentException("输出路径是文件: " + root);
+        }
+        Path manifest = root.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            return objectMapper.readValue(manifest.toFile(), Map.class);
+        }
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> entries = Files.list(root)) {
+                if (entries.findAny().isPresent()) {
+                    throw new IllegalArgumentException("输出目录非空且不是本服务导出的 Zarr: " + root);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path temp = target.resolveSibling("." + target.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+        Files.write(temp, data);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,318 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.model.ZonalStatisticsRequest;
+import org.example.rasterprocessing.util.GeoJsonPolygons;
+import org.example.rasterprocessing.util.PolygonRasterizer;
+import org.example.rasterprocessing.util.RunningStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 分区统计服务
+ * 每个区域只在自己的外包窗口内栅格化为行区间；只读取与区域实际相交的数据块，
+ * 多个区域共享的块只读一次，块按分区在工作线程上并行累加后再合并
+ */
+@Service
+public class ZonalStatisticsService {
+
+    private static final int MAX_ZONES = 10_000;
+    private static final int MAX_BINS = 1_000;
+    // 每个工作线程为相交的区域各持有一个直方图，区域数 x 分箱数不超过该值（每份约 8MB）
+    private static final long MAX_HISTOGRAM_CELLS = 1_000_000;
+    // 跨坐标系时区域的边按外包矩形对角线的 1/64 加密
+    private static final int DENSIFY_SEGMENTS = 64;
+
+    @Autowired
+    private RasterReaderService rasterReaderService;
+
+    @Autowired
+    private CoordinateTransformService coordinateTransformService;
+
+    @Autowired
+    private ParallelRasterExecutor parallelRasterExecutor;
+
+    @Autowired
+    private GdalIoAccounting gdalIoAccounting;
+
+    /**
+     * 计算分区统计
+     * @param request 统计请求
+     * @return 每个区域的 count/min/max/mean/stddev/sum（及直方图），顺序与请求一致
+     */
+    public Map<String, Object> compute(ZonalStatisticsRequest request) {
+        long startTime = System.currentTimeMillis();
+        String filePath = request.getFilePath();
+        if (filePath == null || filePath.isEmpty()) {
+            throw new RuntimeException("文件路径不能为空");
+        }
+        List<GeoJsonPolygons.Zone> zones = new ArrayList<>();
+        if (request.getGeojson() != null) {
+            zones.addAll(GeoJsonPolygons.parse(request.getGeojson()));
+        }
+        if (request.getBboxes() != null) {
+            for (double[] bbox : request.getBboxes()) {
+                zones.add(GeoJsonPolygons.fromBounds(bbox));
+            }
+        }
+        if (zones.isEmpty()) {
+            throw new RuntimeException("至少需要一个统计区域");
+        }
+        if (zones.size() > MAX_ZONES) {
+            throw new RuntimeException("统计区域数量超过上限: " + MAX_ZONES);
+        }
+        int bins = request.getBins();
+        double[] range = histogramRange(bins, zones.size(), request.getHistogramMin(), request.getHistogramMax());
+
+        RasterInfo info = rasterReaderService.readRasterInfo(filePath);
+        int bandIndex = request.getBandIndex();
+        if (bandIndex < 1 || bandIndex > info.getBandCount()) {
+            throw new RuntimeException("波段索引超出范围: " + bandIndex);
+        }
+        Double noData = info.getNoDataValue();
+
+        // 区域 -> 像素坐标下的行区间掩膜
+        List<PolygonRasterizer.Mask> masks = parallelRasterExecutor.mapPartitions(zones,
+                partition -> rasterizeZones(partition, request.getCrs(), info));
+
+        GdalIoStats stats = gdalIoAccounting.current();
+        int[] blockSize;
+        try (WindowReader reader = rasterReaderService.openWindowReader(filePath, stats)) {
+            blockSize = reader.blockSize(bandIndex);
+        }
+        List<Map.Entry<Long, List<Integer>>> blocks = new ArrayList<>(
+                blockZones(masks, blockSize, info.getWidth(), info.getHeight()).entrySet());
+
+        int blocksAcross = (info.getWidth() + blockSize[0] - 1) / blockSize[0];
+
+        List<RunningStatistics[]> partials = parallelRasterExecutor.mapPartitions(blocks, partition -> {
+            RunningStatistics[] local = new RunningStatistics[masks.size()];
+            try (WindowReader reader = rasterReaderService.openWindowReader(filePath, stats)) {
+                for (Map.Entry<Long, List<Integer>> block : partition) {
+                    long key = block.getKey();
+                    int bx = (int) (key % blocksAcross) * blockSize[0];
+                    int by = (int) (key / blocksAcross) * blockSize[1];
+                    int bw = Math.min(blockSize[0], info.getWidth() - bx);
+                    int bh = Math.min(blockSize[1], info.getHeight() - by);
+                    accumulateBlock(reader, bandIndex, bx, by, bw, bh, block.getValue(), masks, local,
+                            noData, bins, range);
+                }
+            }
+            return Collections.singletonList(local);
+        });
+
+        RunningStatistics[] totals = new RunningStatistics[masks.size()];
+        for (int z = 0; z < totals.length; z++) {
+            totals[z] = new RunningStatistics(bins, range[0], range[1]);
+        }
+        for (RunningStatistics[] partial : partials) {
+            for (int z = 0; z < totals.length; z++) {
+                if (partial[z] != null) {
+                    totals[z].merge(partial[z]);
+                }
+            }
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(zones.size());
+        for (int z = 0; z < zones.size(); z++) {
+            GeoJsonPolygons.Zone zone = zones.get(z);
+            RunningStatistics s = totals[z];
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", z);
+            if (zone.getId() != null) {
+                result.put("id", zone.getId());
+            }
+            if (!zone.getProperties().isEmpty()) {
+                result.put("properties", zone.getProperties());
+            }
+            result.put("pixelCount", masks.get(z).pixelCount);
+            result.put("count", s.getCount());
+            result.put("min", nullIfNaN(s.getMin()));
+            result.put("max", nullIfNaN(s.getMax()));
+            result.put("mean", nullIfNaN(s.getMean()));
+            result.put("stddev", nullIfNaN(s.getStddev()));
+            result.put("sum", s.getSum());
+            if (bins > 0) {
+                result.put("histogram", s.getHistogram());
+            }
+            results.add(result);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("filePath", filePath);
+        response.put("bandIndex", bandIndex);
+        response.put("noDataValue", noData);
+        if (bins > 0) {
+            response.put("histogramMin", range[0]);
+            response.put("histogramMax", range[1]);
+            response.put("bins", bins);
+        }
+        response.put("zoneCount", zones.size());
+        response.put("blocksRead", blocks.size());
+        response.put("zones", results);
+        response.put("processingTime", System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    private List<PolygonRasterizer.Mask> rasterizeZones(List<GeoJsonPolygons.Zone> zones, String crs, RasterInfo info) {
+        double[] gt = info.getGeoTransform() != null ? info.getGeoTransform() : new double[]{0, 1, 0, 0, 0, 1};
+        double[] inv = CoordinateTransformService.invertGeoTransform(gt);
+        String projection = info.getProjection();
+        boolean reproject = crs != null && !crs.isEmpty() && projection != null && !projection.isEmpty();
+
+        List<PolygonRasterizer.Mask> masks = new ArrayList<>(zones.size());
+        for (GeoJsonPolygons.Zone zone : zones) {
+            List<double[][]> pixelRings = new ArrayList<>(zone.getRings().size());
+            for (double[][] ring : zone.getRings()) {
+                double[][] points = new double[ring.length][];
+                for (int i = 0; i < ring.length; i++) {
+                    points[i] = new double[]{ring[i][0], ring[i][1]};
+                }
+                if (reproject) {
+                    points = GeoJsonPolygons.densify(points, maxSegment(zone));
+                    coordinateTransformService.transform(crs, projection, points);
+                }
+                for (double[] p : points) {
+                    double gx = p[0];
+                    double gy = p[1];
+                    p[0] = inv[0] + gx * inv[1] + gy * inv[2];
+                    p[1] = inv[3] + gx * inv[4] + gy * inv[5];
+                }
+                pixelRings.add(points);
+            }
+            masks.add(PolygonRasterizer.rasterize(pixelRings, info.getWidth(), info.getHeight()));
+        }
+        return masks;
+    }
+
+    /**
+     * 块号（行优先）-> 与之相交的区域，按块号排序以保持读取的局部性
+     */
+    private static TreeMap<Long, List<Integer>> blockZones(List<PolygonRasterizer.Mask> masks, int[] blockSize,
+                                                           int width, int height) {
+        int blocksAcross = (width + blockSize[0] - 1) / blockSize[0];
+        TreeMap<Long, List<Integer>> blocks = new TreeMap<>();
+        for (int z = 0; z < masks.size(); z++) {
+            PolygonRasterizer.Mask mask = masks.get(z);
+            if (mask.isEmpty()) {
+                continue;
+            }
+            int bxFrom = mask.x0 / blockSize[0];
+            int bxTo = (mask.x0 + mask.width - 1) / blockSize[0];
+            int byFrom = mask.y0 / blockSize[1];
+            int byTo = (mask.y0 + mask.height - 1) / blockSize[1];
+            for (int by = byFrom; by <= byTo; by++) {
+                for (int bx = bxFrom; bx <= bxTo; bx++) {
+                    int x = bx * blockSize[0];
+                    int y = by * blockSize[1];
+                    if (mask.intersects(x, y, Math.min(blockSize[0], width - x), Math.min(blockSize[1], height - y))) {
+                        blocks.computeIfAbsent((long) by * blocksAcross + bx, k -> new ArrayList<>()).add(z);
+                    }
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * 读取一个块内所有相关区域覆盖的最小窗口，并累加到各区域的统计量
+     */
+    private static void accumulateBlock(WindowReader reader, int bandIndex, int bx, int by, int bw, int bh,
+                                        List<Integer> zoneIds, List<PolygonRasterizer.Mask> masks,
+                                        RunningStatistics[] local, Double noData, int bins, double[] range) {
+        int wx0 = bx + bw;
+        int wy0 = by + bh;
+        int wx1 = bx;
+        int wy1 = by;
+        for (int z : zoneIds) {
+            PolygonRasterizer.Mask mask = masks.get(z);
+            wx0 = Math.min(wx0, Math.max(bx, mask.x0));
+            wy0 = Math.min(wy0, Math.max(by, mask.y0));
+            wx1 = Math.max(wx1, Math.min(bx + bw, mask.x0 + mask.width));
+            wy1 = Math.max(wy1, Math.min(by + bh, mask.y0 + mask.height));
+        }
+        int ww = wx1 - wx0;
+        double[] window = reader.read(bandIndex, wx0, wy0, ww, wy1 - wy0);
+        boolean hasNoData = noData != null;
+        double noDataValue = hasNoData ? noData : 0;
+
+        for (int z : zoneIds) {
+            PolygonRasterizer.Mask mask = masks.get(z);
+            RunningStatistics s = local[z];
+            if (s == null) {
+                s = new RunningStatistics(bins, range[0], range[1]);
+                local[z] = s;
+            }
+            int rowFrom = Math.max(wy0, mask.y0);
+            int rowTo = Math.min(wy1, mask.y0 + mask.height);
+            for (int row = rowFrom; row < rowTo; row++) {
+                int[] spans = mask.spans[row - mask.y0];
+                int offset = (row - wy0) * ww - wx0;
+                for (int k = 0; k < spans.length; k += 2) {
+                    int from = Math.max(spans[k], wx0);
+                    int to = Math.min(spans[k + 1], wx1);
+                    for (int col = from; col < to; col++) {
+                        double v = window[offset + col];
+                        if (v != v || (hasNoData && v == noDataValue)) {
+                            continue;
+                        }
+                        s.add(v);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 校验直方图参数；需要直方图时必须给出范围，避免为取波段最小/最大值再完整扫描一遍
+     */
+    static double[] histogramRange(int bins, int zoneCount, Double min, Double max) {
+        if (bins < 0 || bins > MAX_BINS) {
+            throw new RuntimeException("直方图分箱数应在 0 到 " + MAX_BINS + " 之间");
+        }
+        if (bins == 0) {
+            return new double[]{0, 0};
+        }
+        if ((long) bins * zoneCount > MAX_HISTOGRAM_CELLS) {
+            throw new RuntimeException("区域数与直方图分箱数的乘积超过上限 " + MAX_HISTOGRAM_CELLS + "，请减少分箱数或分批请求");
+        }
+        if (min == null || max == null) {
+            throw new RuntimeException("统计直方图时须给出 histogramMin 和 histogramMax");
+        }
+        if (!(max >= min)) {
+            throw new RuntimeException("直方图范围错误: [" + min + ", " + max + "]");
+        }
+        return new double[]{min, max};
+    }
+
+    /**
+     * 区域加密的最大边长：所有环外包矩形对角线的 1/DENSIFY_SEGMENTS
+     */
+    private static double maxSegment(GeoJsonPolygons.Zone zone) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (double[][] ring : zone.getRings()) {
+            for (double[] p : ring) {
+                minX = Math.min(minX, p[0]);
+                minY = Math.min(minY, p[1]);
+                maxX = Math.max(maxX, p[0]);
+                maxY = Math.max(maxY, p[1]);
+            }
+        }
+        return Math.hypot(maxX - minX, maxY - minY) / DENSIFY_SEGMENTS;
+    }
+
+    private static Double nullIfNaN(double v) {
+        return Double.isNaN(v) ? null : v;
+    }
+}
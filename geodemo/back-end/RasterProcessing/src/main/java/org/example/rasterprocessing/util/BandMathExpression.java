@@ -0,0 +1,523 @@
+package org.example.rasterprocessing.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 波段运算表达式
+ * 语法：+ - * / ^、比较运算 &lt; &lt;= &gt; &gt;= == !=（结果为 1/0）、括号、数字常量，
+ * 函数 abs sqrt log log10 exp floor ceil min max pow where(条件, 真值, 假值)；
+ * 波段引用写作 b4（第一个输入的第 4 波段）或 alias.b4（指定输入）
+ *
+ * 表达式只解析一次，编译为按寄存器排列的算子序列：每个算子是对整块数组执行的一个独立 lambda，
+ * 循环体内没有分支和虚调用，由 JIT 各自编译（可向量化）；全为常量的子表达式在编译期折叠
+ */
+public class BandMathExpression {
+
+    /**
+     * 对整块数组执行的算子，r 为寄存器，n 为本块像素数
+     */
+    private interface Kernel {
+        void run(double[][] r, int n);
+    }
+
+    /**
+     * 引用的输入波段
+     */
+    public static class BandRef {
+        private final String alias;
+        private final int band;
+
+        BandRef(String alias, int band) {
+            this.alias = alias;
+            this.band = band;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        public int getBand() {
+            return band;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BandRef && ((BandRef) o).alias.equals(alias) && ((BandRef) o).band == band;
+        }
+
+        @Override
+        public int hashCode() {
+            return alias.hashCode() * 31 + band;
+        }
+
+        @Override
+        public String toString() {
+            return alias + ".b" + band;
+        }
+    }
+
+    private final String source;
+    private final List<BandRef> inputs = new ArrayList<>();
+    private final List<Kernel> kernels = new ArrayList<>();
+    // {寄存器, 值}
+    private final List<double[]> constants = new ArrayList<>();
+    private int registers;
+    private int result;
+
+    private BandMathExpression(String source) {
+        this.source = source;
+    }
+
+    /**
+     * 解析并编译表达式
+     * @param expression 表达式
+     * @param aliases 可引用的输入别名，不带别名的波段引用指向第一个
+     */
+    public static BandMathExpression compile(String expression, List<String> aliases) {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new RuntimeException("表达式不能为空");
+        }
+        if (aliases.isEmpty()) {
+            throw new RuntimeException("没有输入栅格");
+        }
+        BandMathExpression compiled = new BandMathExpression(expression);
+        Node root = new Parser(expression, aliases, compiled.inputs).parse();
+        compiled.registers = compiled.inputs.size();
+        compiled.result = compiled.emit(root);
+        return compiled;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 表达式引用的输入波段，按寄存器顺序排列，evaluate 的 bands 参数与之一一对应
+     */
+    public List<BandRef> getInputs() {
+        return Collections.unmodifiableList(inputs);
+    }
+
+    /**
+     * 求值器的数组个数（输入、中间结果与常量），用于估算内存
+     */
+    public int getRegisterCount() {
+        return registers;
+    }
+
+    /**
+     * 创建求值器，每个线程各用一个
+     * @param capacity 单块最大像素数
+     */
+    public Evaluator evaluator(int capacity) {
+        return new Evaluator(capacity);
+    }
+
+    /**
+     * 持有中间结果寄存器的求值器，非线程安全
+     */
+    public class Evaluator {
+        private final double[][] regs;
+        private final boolean[] invalid;
+        private final int capacity;
+
+        Evaluator(int capacity) {
+            this.capacity = capacity;
+            regs = new double[registers][];
+            for (int i = inputs.size(); i < registers; i++) {
+                regs[i] = new double[capacity];
+            }
+            for (double[] constant : constants) {
+                Arrays.fill(regs[(int) constant[0]], constant[1]);
+            }
+            invalid = new boolean[capacity];
+        }
+
+        /**
+         * 对一块像素求值；任一输入为 nodata/NaN，或结果不是有限数的像素输出 outNoData
+         * @param bands 与 getInputs() 对应的输入数组
+         * @param noData 每个输入的 nodata 值，NaN 表示没有
+         * @param n 像素数
+         * @param out 输出
+         * @return 输出为 nodata 的像素数
+         */
+        public int evaluate(double[][] bands, double[] noData, int n, double[] out, double outNoData) {
+            if (n > capacity) {
+                throw new IllegalArgumentException("块大小超过求值器容量: " + n);
+            }
+            System.arraycopy(bands, 0, regs, 0, inputs.size());
+            for (Kernel kernel : kernels) {
+                kernel.run(regs, n);
+            }
+            Arrays.fill(invalid, 0, n, false);
+            for (int s = 0; s < inputs.size(); s++) {
+                double[] x = bands[s];
+                double nd = noData[s];
+                if (Double.isNaN(nd)) {
+                    for (int i = 0; i < n; i++) {
+                        invalid[i] |= x[i] != x[i];
+                    }
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        invalid[i] |= x[i] == nd || x[i] != x[i];
+                    }
+                }
+            }
+            double[] value = regs[result];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                double v = value[i];
+                boolean bad = invalid[i] || Double.isNaN(v) || Double.isInfinite(v);
+                out[i] = bad ? outNoData : v;
+                count += bad ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    // ---- 编译 ----
+
+    /**
+     * 生成计算 node 的算子，返回结果所在寄存器
+     */
+    private int emit(Node node) {
+        if (node instanceof Ref) {
+            return ((Ref) node).slot;
+        }
+        if (node instanceof Num) {
+            return constant(((Num) node).value);
+        }
+        Call call = (Call) node;
+        int[] args = new int[call.args.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = emit(call.args[i]);
+        }
+        int out = registers++;
+        kernels.add(kernel(call.op, args, out));
+        return out;
+    }
+
+    /**
+     * 常量占用一个寄存器，在求值器创建时一次填满
+     */
+    private int constant(double value) {
+        int slot = registers++;
+        constants.add(new double[]{slot, value});
+        return slot;
+    }
+
+    private static Kernel kernel(String op, int[] args, int o) {
+        int a = args[0];
+        int b = args.length > 1 ? args[1] : 0;
+        int c = args.length > 2 ? args[2] : 0;
+        switch (op) {
+            case "+":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] + y[i]; };
+            case "-":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] - y[i]; };
+            case "*":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] * y[i]; };
+            case "/":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] / y[i]; };
+            case "^":
+            case "pow":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.pow(x[i], y[i]); };
+            case "min":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.min(x[i], y[i]); };
+            case "max":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.max(x[i], y[i]); };
+            case "<":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] < y[i] ? 1 : 0; };
+            case "<=":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] <= y[i] ? 1 : 0; };
+            case ">":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] > y[i] ? 1 : 0; };
+            case ">=":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] >= y[i] ? 1 : 0; };
+            case "==":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] == y[i] ? 1 : 0; };
+            case "!=":
+                return (r, n) -> { double[] x = r[a], y = r[b], z = r[o]; for (int i = 0; i < n; i++) z[i] = x[i] != y[i] ? 1 : 0; };
+            case "neg":
+                return (r, n) -> { double[] x = r[a], z = r[o]; for (int i = 0; i < n; i++) z[i] = -x[i]; };
+            case "abs":
+                return (r, n) -> { double[] x = r[a], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.abs(x[i]); };
+            case "sqrt":
+                return (r, n) -> { double[] x = r[a], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.sqrt(x[i]); };
+            case "log":
+                return (r, n) -> { double[] x = r[a], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.log(x[i]); };
+            case "log10":
+                return (r, n) -> { double[] x = r[a], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.log10(x[i]); };
+            case "exp":
+                return (r, n) -> { double[] x = r[a], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.exp(x[i]); };
+            case "floor":
+                return (r, n) -> { double[] x = r[a], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.floor(x[i]); };
+            case "ceil":
+                return (r, n) -> { double[] x = r[a], z = r[o]; for (int i = 0; i < n; i++) z[i] = Math.ceil(x[i]); };
+            case "where":
+                return (r, n) -> { double[] w = r[a], x = r[b], y = r[c], z = r[o]; for (int i = 0; i < n; i++) z[i] = w[i] != 0 ? x[i] : y[i]; };
+            default:
+                throw new IllegalStateException(op);
+        }
+    }
+
+    // ---- 语法树 ----
+
+    private interface Node {
+    }
+
+    private static class Num implements Node {
+        final double value;
+
+        Num(double value) {
+            this.value = value;
+        }
+    }
+
+    private static class Ref implements Node {
+        final int slot;
+
+        Ref(int slot) {
+            this.slot = slot;
+        }
+    }
+
+    private static class Call implements Node {
+        final String op;
+        final Node[] args;
+
+        Call(String op, Node... args) {
+            this.op = op;
+            this.args = args;
+        }
+    }
+
+    /**
+     * 对全为常量的参数在编译期求值
+     */
+    private static Node fold(String op, Node... args) {
+        for (Node arg : args) {
+            if (!(arg instanceof Num)) {
+                return new Call(op, args);
+            }
+        }
+        double[][] r = new double[args.length + 1][1];
+        int[] slots = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            r[i][0] = ((Num) args[i]).value;
+            slots[i] = i;
+        }
+        kernel(op, slots, args.length).run(r, 1);
+        return new Num(r[args.length][0]);
+    }
+
+    private static class Parser {
+        private static final List<String> UNARY = Arrays.asList("abs", "sqrt", "log", "log10", "exp", "floor", "ceil");
+        private static final List<String> BINARY = Arrays.asList("min", "max", "pow");
+
+        private final String text;
+        private final List<String> aliases;
+        private final List<BandRef> inputs;
+        private int pos;
+
+        Parser(String text, List<String> aliases, List<BandRef> inputs) {
+            this.text = text;
+            this.aliases = aliases;
+            this.inputs = inputs;
+        }
+
+        Node parse() {
+            Node node = comparison();
+            skipSpaces();
+            if (pos < text.length()) {
+                throw error("多余的字符 '" + text.charAt(pos) + "'");
+            }
+            if (inputs.isEmpty()) {
+                throw error("表达式没有引用任何波段");
+            }
+            return node;
+        }
+
+        private Node comparison() {
+            Node left = additive();
+            for (String op : new String[]{"<=", ">=", "==", "!=", "<", ">"}) {
+                if (accept(op)) {
+                    return fold(op, left, additive());
+                }
+            }
+            return left;
+        }
+
+        private Node additive() {
+            Node node = term();
+            while (true) {
+                if (accept("+")) {
+                    node = fold("+", node, term());
+                } else if (accept("-")) {
+                    node = fold("-", node, term());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node term() {
+            Node node = unary();
+            while (true) {
+                if (accept("*")) {
+                    node = fold("*", node, unary());
+                } else if (accept("/")) {
+                    node = fold("/", node, unary());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node unary() {
+            if (accept("-")) {
+                return fold("neg", unary());
+            }
+            if (accept("+")) {
+                return unary();
+            }
+            Node base = primary();
+            if (accept("^")) {
+                return fold("^", base, unary());
+            }
+            return base;
+        }
+
+        private Node primary() {
+            skipSpaces();
+            if (pos >= text.length()) {
+                throw error("表达式不完整");
+            }
+            char ch = text.charAt(pos);
+            if (accept("(")) {
+                Node node = comparison();
+                expect(")");
+                return node;
+            }
+            if (Character.isDigit(ch) || ch == '.') {
+                return number();
+            }
+            if (Character.isLetter(ch) || ch == '_') {
+                int start = pos;
+                String name = identifier();
+                if (accept("(")) {
+                    return function(name.toLowerCase(), start);
+                }
+                if (accept(".")) {
+                    if (!aliases.contains(name)) {
+                        throw error("未知的输入别名 '" + name + "'，可用: " + aliases, start);
+                    }
+                    int bandStart = pos;
+                    return band(name, identifier(), bandStart);
+                }
+                return band(aliases.get(0), name, start);
+            }
+            throw error("无法识别的字符 '" + ch + "'");
+        }
+
+        private Node function(String name, int start) {
+            List<Node> args = new ArrayList<>();
+            if (!accept(")")) {
+                do {
+                    args.add(comparison());
+                } while (accept(","));
+                expect(")");
+            }
+            int expected = UNARY.contains(name) ? 1 : BINARY.contains(name) ? 2 : "where".equals(name) ? 3 : -1;
+            if (expected < 0) {
+                throw error("未知函数 '" + name + "'", start);
+            }
+            if (args.size() != expected) {
+                throw error("函数 " + name + " 需要 " + expected + " 个参数", start);
+            }
+            return fold(name, args.toArray(new Node[0]));
+        }
+
+        private Node band(String alias, String name, int start) {
+            if (!name.matches("[bB][0-9]+")) {
+                throw error("无法识别的标识符 '" + name + "'，波段写作 b1 或 别名.b1", start);
+            }
+            int band = Integer.parseInt(name.substring(1));
+            if (band < 1) {
+                throw error("波段从 1 开始", start);
+            }
+            BandRef ref = new BandRef(alias, band);
+            int slot = inputs.indexOf(ref);
+            if (slot < 0) {
+                inputs.add(ref);
+                slot = inputs.size() - 1;
+            }
+            return new Ref(slot);
+        }
+
+        private Node number() {
+            int start = pos;
+            while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                pos++;
+            }
+            if (pos < text.length() && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+                pos++;
+                if (pos < text.length() && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                    pos++;
+                }
+                while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                    pos++;
+                }
+            }
+            try {
+                return new Num(Double.parseDouble(text.substring(start, pos)));
+            } catch (NumberFormatException e) {
+                throw error("无效的数字 '" + text.substring(start, pos) + "'", start);
+            }
+        }
+
+        private String identifier() {
+            skipSpaces();
+            int start = pos;
+            while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("缺少标识符");
+            }
+            return text.substring(start, pos);
+        }
+
+        private boolean accept(String token) {
+            skipSpaces();
+            if (text.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw error("缺少 '" + token + "'");
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private RuntimeException error(String message) {
+            return error(message, pos);
+        }
+
+        private RuntimeException error(String message, int at) {
+            return new RuntimeException("表达式错误（位置 " + (at + 1) + "）: " + message);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.rasterprocessing.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 原地改写栅格时的回滚日志
+ * 改写前把将被覆盖的窗口原始像素写入同目录下的 .wmjournal 文件并落盘；改写完成并落盘后删除。
+ * 日志末尾带 CRC 校验，不完整的日志说明栅格尚未被改动，可直接丢弃。
+ * 改写与回滚都须持有 {@link #lock} 返回的操作系统文件锁，避免另一个进程把正在进行的改写当作中断的改写回滚
+ */
+public class BlockJournal {
+
+    private static final int MAGIC = 0x574D4A31; // "WMJ1"
+    private static final String SUFFIX = ".wmjournal";
+    private static final String LOCK_SUFFIX = ".wmlock";
+
+    private BlockJournal() {}
+
+    /**
+     * 一个被改写的像素窗口及其原始值（GDT_Float64，行优先）
+     */
+    public static class Window {
+        public final int x;
+        public final int y;
+        public final int width;
+        public final int height;
+        public final double[] data;
+
+        public Window(int x, int y, int width, int height, double[] data) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.data = data;
+        }
+    }
+
+    public static Path pathFor(String filePath) {
+        return Paths.get(filePath + SUFFIX);
+    }
+
+    /**
+     * 获取栅格文件的独占锁（阻塞等待），持有进程退出或崩溃时由操作系统释放。
+     * 锁加在同目录下的 .wmlock 文件上而不是栅格或日志本身：日志会被删除重建，
+     * 而 POSIX 记录锁在进程关闭同一文件的任意描述符（例如 GDAL 关闭数据集）时就会失效。
+     * 同一 JVM 内的线程之间不能靠它互斥，调用方须先持有进程内的锁
+     */
+    public static Lock lock(String filePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath + LOCK_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            return new Lock(channel, channel.lock());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 已持有的文件锁，关闭即释放；锁文件保留，删除它会让等待中的进程锁住已脱离目录的文件
+     */
+    public static class Lock implements AutoCloseable {
+        private final FileChannel channel;
+        private final FileLock lock;
+
+        private Lock(FileChannel channel, FileLock lock) {
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        public boolean isValid() {
+            return lock.isValid();
+        }
+
+        @Override
+        public void close() {
+            try {
+                // 关闭通道即释放锁
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("释放文件锁失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 写入日志并强制落盘
+     */
+    public static void write(Path journal, List<Window> windows) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(journal.toFile())) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(windows.size());
+            for (Window w : windows) {
+                out.writeInt(w.x);
+                out.writeInt(w.y);
+                out.writeInt(w.width);
+                out.writeInt(w.height);
+                for (double v : w.data) {
+                    out.writeDouble(v);
+                }
+            }
+            out.flush();
+            // CRC 不计入自身
+            DataOutputStream trailer = new DataOutputStream(file);
+            trailer.writeLong(crc.getValue());
+            trailer.flush();
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * 读取日志
+     * @return 窗口列表；日志不完整或校验失败时返回 null
+     */
+    public static List<Window> read(Path journal) throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(journal))) {
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                return null;
+            }
+            List<Window> windows = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int x = in.readInt();
+                int y = in.readInt();
+                int width = in.readInt();
+                int height = in.readInt();
+                if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE / 8) {
+                    return null;
+                }
+                double[] data = new double[width * height];
+                for (int k = 0; k < data.length; k++) {
+                    data[k] = in.readDouble();
+                }
+                windows.add(new Window(x, y, width, height, data));
+            }
+            long expected = crc.getValue();
+            long stored = new DataInputStream(file).readLong();
+            return stored == expected ? windows : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.rasterprocessing.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.stream.IntStream;
+
+/**
+ * 文件内容哈希
+ * 按 8MB 分段并行计算 SHA-256，再对文件长度和各段摘要整体求一次摘要（树哈希），
+ * 结果只取决于文件内容，大文件可用满多个核
+ */
+public class ContentHasher {
+
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private ContentHasher() {}
+
+    /**
+     * 计算文件内容哈希（64 位十六进制字符串）
+     */
+    public static String hash(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            byte[][] digests = new byte[chunks][];
+            try {
+                IntStream.range(0, chunks).parallel().forEach(i -> {
+                    long start = (long) i * CHUNK_SIZE;
+                    digests[i] = digestRange(channel, start, Math.min(CHUNK_SIZE, size - start));
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            MessageDigest root = sha256();
+            root.update(ByteBuffer.allocate(8).putLong(size).array());
+            for (byte[] digest : digests) {
+                root.update(digest);
+            }
+            return hex(root.digest());
+        }
+    }
+
+    /**
+     * 字符串的 SHA-256（十六进制），用于把多个参数组合成定长键
+     */
+    public static String hash(String text) {
+        return hex(sha256().digest(text.getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] digestRange(FileChannel channel, long start, long length) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(1, length)));
+        long position = start;
+        long end = start + length;
+        try {
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int n = channel.read(buffer, position);
+                if (n < 0) {
+                    throw new IOException("文件在读取过程中被截断");
+                }
+                position += n;
+                digest.update(buffer.array(), 0, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.rasterprocessing.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * 直接 ByteBuffer 实现：每块一个直接缓冲，关闭时通过 Unsafe.invokeCleaner 立即释放，
+ * 不可用时退回等待 GC 回收
+ */
+final class DirectRasterBuffer extends RasterBuffer {
+
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private ByteBuffer[] chunks;
+    private DoubleBuffer[] views;
+
+    DirectRasterBuffer(int width, int height, long maxChunkBytes) {
+        super(width, height, maxChunkBytes);
+        int count = chunkCount();
+        chunks = new ByteBuffer[count];
+        views = new DoubleBuffer[count];
+        try {
+            for (int c = 0; c < count; c++) {
+                chunks[c] = ByteBuffer.allocateDirect(chunkRows(c) * width * Double.BYTES).order(ByteOrder.nativeOrder());
+                views[c] = chunks[c].asDoubleBuffer();
+            }
+        } catch (OutOfMemoryError e) {
+            close();
+            throw new IllegalStateException("堆外内存不足，无法分配 " + byteSize() + " 字节（见 -XX:MaxDirectMemorySize）", e);
+        }
+    }
+
+    @Override
+    public String getBackend() {
+        return "direct";
+    }
+
+    @Override
+    public ByteBuffer chunk(int chunk) {
+        return open()[chunk].duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    protected DoubleBuffer view(int chunk) {
+        return views[chunk];
+    }
+
+    private ByteBuffer[] open() {
+        ByteBuffer[] current = chunks;
+        if (current == null) {
+            throw new IllegalStateException("缓冲已关闭");
+        }
+        return current;
+    }
+
+    @Override
+    public void close() {
+        ByteBuffer[] current = chunks;
+        if (current == null) {
+            return;
+        }
+        chunks = null;
+        views = null;
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        for (ByteBuffer buffer : current) {
+            if (buffer != null) {
+                try {
+                    INVOKE_CLEANER.invokeExact(buffer);
+                } catch (Throwable e) {
+                    // 交给 GC 回收
+                }
+            }
+        }
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
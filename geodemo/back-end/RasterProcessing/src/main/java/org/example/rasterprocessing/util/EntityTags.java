@@ -0,0 +1,26 @@
+package org.example.rasterprocessing.util;
+
+/**
+ * HTTP 条件请求的 ETag 比较
+ */
+public class EntityTags {
+
+    private EntityTags() {}
+
+    /**
+     * If-None-Match 使用弱比较，允许 * 与逗号分隔的多个 ETag
+     */
+    public static boolean matchesAny(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
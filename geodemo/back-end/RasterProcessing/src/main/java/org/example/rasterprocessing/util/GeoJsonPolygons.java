@@ -0,0 +1,173 @@
+package org.example.rasterprocessing.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从 Jackson 解析出的 GeoJSON（Map/List 结构）中提取面要素
+ * 支持 FeatureCollection、Feature、Polygon、MultiPolygon 和 GeometryCollection，非面几何被忽略
+ */
+public class GeoJsonPolygons {
+
+    private GeoJsonPolygons() {}
+
+    /**
+     * 一个统计区域：所有环（含内环）按奇偶规则组成的面
+     */
+    public static class Zone {
+        private final Object id;
+        private final Map<String, Object> properties;
+        private final List<double[][]> rings;
+
+        public Zone(Object id, Map<String, Object> properties, List<double[][]> rings) {
+            this.id = id;
+            this.properties = properties;
+            this.rings = rings;
+        }
+
+        public Object getId() {
+            return id;
+        }
+
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+
+        public List<double[][]> getRings() {
+            return rings;
+        }
+    }
+
+    /**
+     * 解析 GeoJSON 对象
+     * @return 区域列表；FeatureCollection 中每个 Feature 一个区域，顺序不变
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Zone> parse(Object geojson) {
+        List<Zone> zones = new ArrayList<>();
+        if (!(geojson instanceof Map)) {
+            throw new RuntimeException("GeoJSON 格式错误");
+        }
+        Map<String, Object> object = (Map<String, Object>) geojson;
+        String type = String.valueOf(object.get("type"));
+        switch (type) {
+            case "FeatureCollection":
+                Object features = object.get("features");
+                if (features instanceof List) {
+                    for (Object feature : (List<Object>) features) {
+                        zones.addAll(parse(feature));
+                    }
+                }
+                break;
+            case "Feature":
+                Object properties = object.get("properties");
+                zones.add(new Zone(object.get("id"),
+                        properties instanceof Map ? (Map<String, Object>) properties : Collections.emptyMap(),
+                        rings(object.get("geometry"))));
+                break;
+            default:
+                zones.add(new Zone(null, Collections.emptyMap(), rings(object)));
+                break;
+        }
+        return zones;
+    }
+
+    /**
+     * 外包矩形 {minX, minY, maxX, maxY} 转为区域
+     */
+    public static Zone fromBounds(double[] bbox) {
+        if (bbox == null || bbox.length < 4) {
+            throw new RuntimeException("外包矩形格式错误，应为 [minX, minY, maxX, maxY]");
+        }
+        double[][] ring = {{bbox[0], bbox[1]}, {bbox[2], bbox[1]}, {bbox[2], bbox[3]}, {bbox[0], bbox[3]}};
+        List<double[][]> rings = new ArrayList<>();
+        rings.add(ring);
+        return new Zone(null, Collections.emptyMap(), rings);
+    }
+
+    /**
+     * 在环的每条边上插入点，使相邻两点的距离不超过 maxSegment；跨坐标系转换前调用，直边在曲线投影下才能变成曲线
+     * @param ring 环（首尾是否重复均可，结果不重复首点）
+     * @param maxSegment 最大边长，不大于 0 时原样返回
+     */
+    public static double[][] densify(double[][] ring, double maxSegment) {
+        if (!(maxSegment > 0) || ring.length < 2) {
+            return ring;
+        }
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < ring.length; i++) {
+            double[] a = ring[i];
+            double[] b = ring[(i + 1) % ring.length];
+            if (i == ring.length - 1 && a[0] == ring[0][0] && a[1] == ring[0][1]) {
+                break; // 闭合点
+            }
+            points.add(new double[]{a[0], a[1]});
+            int steps = (int) Math.min(10_000, Math.ceil(Math.hypot(b[0] - a[0], b[1] - a[1]) / maxSegment));
+            for (int k = 1; k < steps; k++) {
+                double t = (double) k / steps;
+                points.add(new double[]{a[0] + (b[0] - a[0]) * t, a[1] + (b[1] - a[1]) * t});
+            }
+        }
+        return points.toArray(new double[0][]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<double[][]> rings(Object geometry) {
+        List<double[][]> rings = new ArrayList<>();
+        if (!(geometry instanceof Map)) {
+            return rings;
+        }
+        Map<String, Object> g = (Map<String, Object>) geometry;
+        Object coordinates = g.get("coordinates");
+        switch (String.valueOf(g.get("type"))) {
+            case "Polygon":
+                addPolygon(rings, coordinates);
+                break;
+            case "MultiPolygon":
+                if (coordinates instanceof List) {
+                    for (Object polygon : (List<Object>) coordinates) {
+                        addPolygon(rings, polygon);
+                    }
+                }
+                break;
+            case "GeometryCollection":
+                Object geometries = g.get("geometries");
+                if (geometries instanceof List) {
+                    for (Object child : (List<Object>) geometries) {
+                        rings.addAll(rings(child));
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        return rings;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addPolygon(List<double[][]> rings, Object polygon) {
+        if (!(polygon instanceof List)) {
+            throw new RuntimeException("Polygon 坐标格式错误");
+        }
+        for (Object ring : (List<Object>) polygon) {
+            if (!(ring instanceof List)) {
+                throw new RuntimeException("Polygon 坐标格式错误");
+            }
+            List<Object> positions = (List<Object>) ring;
+            double[][] points = new double[positions.size()][];
+            for (int i = 0; i < points.length; i++) {
+                Object position = positions.get(i);
+                if (!(position instanceof List) || ((List<Object>) position).size() < 2) {
+                    throw new RuntimeException("坐标格式错误，应为 [x, y]");
+                }
+                List<Object> xy = (List<Object>) position;
+                points[i] = new double[]{((Number) xy.get(0)).doubleValue(), ((Number) xy.get(1)).doubleValue()};
+            }
+            if (points.length >= 3) {
+                rings.add(points);
+            }
+        }
+    }
+}
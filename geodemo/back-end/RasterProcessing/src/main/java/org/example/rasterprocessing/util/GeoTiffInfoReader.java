@@ -0,0 +1,216 @@
+package org.example.rasterprocessing.util;
+
+import org.example.rasterprocessing.model.RasterInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 只解析 GeoTIFF 头（IFD、GeoKeys、GDAL 标签）来填充 RasterInfo，不打开 GDAL 数据集
+ * 结果与 GDAL GTiff 驱动的 readRasterInfo 输出保持一致；无法等价处理的文件返回 null，由调用方回退到 GDAL
+ */
+public class GeoTiffInfoReader {
+
+    // GeoKey
+    private static final int GT_MODEL_TYPE = 1024;
+    private static final int GT_RASTER_TYPE = 1025;
+    private static final int GEOGRAPHIC_TYPE = 2048;
+    private static final int PROJECTED_CS_TYPE = 3072;
+
+    private static final int MODEL_TYPE_PROJECTED = 1;
+    private static final int MODEL_TYPE_GEOGRAPHIC = 2;
+    private static final int RASTER_PIXEL_IS_POINT = 2;
+    private static final int USER_DEFINED = 32767;
+
+    // GDAL 以 TIFFTAG_* 形式暴露在默认元数据域中的标签
+    private static final int[] TIFFTAG_CODES = {269, 270, 305, 306, 315, 316, 33432, 282, 283, 296};
+    private static final String[] TIFFTAG_NAMES = {"TIFFTAG_DOCUMENTNAME", "TIFFTAG_IMAGEDESCRIPTION",
+            "TIFFTAG_SOFTWARE", "TIFFTAG_DATETIME", "TIFFTAG_ARTIST", "TIFFTAG_HOSTCOMPUTER",
+            "TIFFTAG_COPYRIGHT", "TIFFTAG_XRESOLUTION", "TIFFTAG_YRESOLUTION", "TIFFTAG_RESOLUTIONUNIT"};
+
+    // GDAL 会读取的同名旁路文件，存在时其内容可能覆盖 TIFF 头中的信息
+    private static final String[] SIDECAR_SUFFIXES = {".aux.xml", ".tfw", ".tifw", ".wld", ".prj", ".imd", ".rpb"};
+
+    // GDAL_METADATA 中的数据集级条目（不带 sample/domain 属性）
+    private static final Pattern METADATA_ITEM = Pattern.compile("<Item\\s+name=\"([^\"]*)\"\\s*>(.*?)</Item>", Pattern.DOTALL);
+
+    private GeoTiffInfoReader() {}
+
+    /**
+     * 读取 GeoTIFF 信息
+     * @param path 文件路径
+     * @param epsgToWkt EPSG 代码到 WKT 的解析函数
+     * @return 栅格信息；不适用快速路径时返回 null
+     */
+    public static RasterInfo read(Path path, IntFunction<String> epsgToWkt) throws IOException {
+        if (hasSidecar(path)) {
+            return null;
+        }
+        TiffDirectory dir = TiffParser.parse(path, false);
+        String dataType = dataTypeName(dir);
+        if (dataType == null || !dir.hasUniformBitsPerSample() || dir.getWidth() <= 0 || dir.getHeight() <= 0) {
+            return null;
+        }
+
+        int[] geoKeys = geoKeys(dir);
+        String projection = null;
+        if (geoKeys != null) {
+            int modelType = geoKey(geoKeys, GT_MODEL_TYPE);
+            int code = modelType == MODEL_TYPE_PROJECTED ? geoKey(geoKeys, PROJECTED_CS_TYPE)
+                    : modelType == MODEL_TYPE_GEOGRAPHIC ? geoKey(geoKeys, GEOGRAPHIC_TYPE) : -1;
+            if (code <= 0 || code == USER_DEFINED) {
+                return null;
+            }
+            projection = epsgToWkt.apply(code);
+            if (projection == null) {
+                return null;
+            }
+        }
+        boolean pixelIsPoint = geoKeys != null && geoKey(geoKeys, GT_RASTER_TYPE) == RASTER_PIXEL_IS_POINT;
+
+        double[] geoTransform = geoTransform(dir, pixelIsPoint);
+        if (geoTransform == null) {
+            return null;
+        }
+
+        RasterInfo info = new RasterInfo();
+        info.setFileName(path.toString());
+        info.setWidth(dir.getWidth());
+        info.setHeight(dir.getHeight());
+        info.setBandCount(dir.getSamplesPerPixel());
+        info.setDriver("GTiff");
+        info.setProjection(projection);
+        info.setGeoTransform(geoTransform);
+        info.setDataType(dataType);
+        info.setNoDataValue(dir.getNoData());
+        info.setMetadata(metadata(dir, pixelIsPoint));
+        return info;
+    }
+
+    private static boolean hasSidecar(Path path) {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+        for (String suffix : SIDECAR_SUFFIXES) {
+            if (Files.exists(path.resolveSibling(fileName + suffix)) || Files.exists(path.resolveSibling(stem + suffix))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String dataTypeName(TiffDirectory dir) {
+        int bits = dir.getBitsPerSample();
+        switch (dir.getSampleFormat()) {
+            case TiffDirectory.SAMPLE_FORMAT_UINT:
+                return bits == 8 ? "Byte" : bits == 16 ? "UInt16" : bits == 32 ? "UInt32" : null;
+            case TiffDirectory.SAMPLE_FORMAT_INT:
+                return bits == 8 ? "Int8" : bits == 16 ? "Int16" : bits == 32 ? "Int32" : null;
+            case TiffDirectory.SAMPLE_FORMAT_FLOAT:
+                return bits == 32 ? "Float32" : bits == 64 ? "Float64" : null;
+            default:
+                return null;
+        }
+    }
+
+    private static int[] geoKeys(TiffDirectory dir) {
+        long[] raw = dir.getLongs(TiffDirectory.GEO_KEY_DIRECTORY);
+        if (raw == null || raw.length < 4) {
+            return null;
+        }
+        int[] keys = new int[raw.length];
+        for (int i = 0; i < raw.length; i++) {
+            keys[i] = (int) raw[i];
+        }
+        return keys;
+    }
+
+    /**
+     * 取直接存放在目录中的 SHORT 型 GeoKey 值，不存在返回 -1
+     */
+    private static int geoKey(int[] keys, int id) {
+        int count = keys[3];
+        for (int i = 0; i < count && 4 + i * 4 + 3 < keys.length; i++) {
+            int base = 4 + i * 4;
+            if (keys[base] == id) {
+                return keys[base + 1] == 0 ? keys[base + 3] : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static double[] geoTransform(TiffDirectory dir, boolean pixelIsPoint) {
+        double[] gt;
+        double[] matrix = dir.getDoubles(TiffDirectory.MODEL_TRANSFORMATION);
+        double[] tiepoint = dir.getDoubles(TiffDirectory.MODEL_TIEPOINT);
+        double[] scale = dir.getDoubles(TiffDirectory.MODEL_PIXEL_SCALE);
+        if (matrix != null && matrix.length >= 16) {
+            gt = new double[]{matrix[3], matrix[0], matrix[1], matrix[7], matrix[4], matrix[5]};
+        } else if (tiepoint != null && tiepoint.length >= 6 && scale != null && scale.length >= 2) {
+            if (tiepoint.length > 6) {
+                return null; // 多控制点（GCP）交给 GDAL
+            }
+            gt = new double[]{tiepoint[3] - tiepoint[0] * scale[0], scale[0], 0,
+                    tiepoint[4] + tiepoint[1] * scale[1], 0, -scale[1]};
+        } else {
+            return new double[]{0, 1, 0, 0, 0, 1};
+        }
+        if (pixelIsPoint) {
+            // 与 GDAL 默认行为一致：像素中心对齐转换为左上角对齐
+            gt[0] -= gt[1] * 0.5 + gt[2] * 0.5;
+            gt[3] -= gt[4] * 0.5 + gt[5] * 0.5;
+        }
+        return gt;
+    }
+
+    private static Map<String, String> metadata(TiffDirectory dir, boolean pixelIsPoint) {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("AREA_OR_POINT", pixelIsPoint ? "Point" : "Area");
+        for (int i = 0; i < TIFFTAG_CODES.length; i++) {
+            int tag = TIFFTAG_CODES[i];
+            String ascii = dir.getAscii(tag);
+            if (ascii != null) {
+                metadata.put(TIFFTAG_NAMES[i], ascii);
+            } else if (dir.has(tag)) {
+                double[] values = dir.getDoubles(tag);
+                if (values != null && values.length > 0) {
+                    metadata.put(TIFFTAG_NAMES[i], tag == 296 ? resolutionUnit((int) values[0]) : formatNumber(values[0]));
+                }
+            }
+        }
+        String gdalMetadata = dir.getAscii(TiffDirectory.GDAL_METADATA);
+        if (gdalMetadata != null) {
+            Matcher m = METADATA_ITEM.matcher(gdalMetadata);
+            while (m.find()) {
+                metadata.put(unescape(m.group(1)), unescape(m.group(2)));
+            }
+        }
+        return metadata;
+    }
+
+    private static String resolutionUnit(int unit) {
+        switch (unit) {
+            case 2:
+                return "2 (pixels/inch)";
+            case 3:
+                return "3 (pixels/cm)";
+            default:
+                return unit + " (unitless)";
+        }
+    }
+
+    private static String formatNumber(double v) {
+        return v == Math.rint(v) ? String.valueOf((long) v) : String.valueOf(v);
+    }
+
+    private static String unescape(String s) {
+        return s.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+}
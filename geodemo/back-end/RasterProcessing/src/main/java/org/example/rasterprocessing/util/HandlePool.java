@@ -0,0 +1,163 @@
+package org.example.rasterprocessing.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 跨线程共享的句柄池，用于 GDAL 数据集这类不能并发使用、打开又有开销的对象
+ * 句柄借出期间由借用线程独占，归还后进入空闲队列供任意线程复用；版本（如文件修改时间）不一致的空闲句柄在下次借用时关闭，
+ * 空闲句柄总数超过上限时关闭最久未用的，关闭池时关闭全部空闲句柄，之后归还的句柄直接关闭
+ */
+public class HandlePool<V> implements AutoCloseable {
+
+    private final int maxIdle;
+    private final Consumer<V> closer;
+
+    // 最久未用的在前
+    private final Deque<Idle<V>> idle = new ArrayDeque<>();
+    private boolean closed;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxIdle 空闲句柄上限
+     * @param closer 关闭句柄的函数
+     */
+    public HandlePool(int maxIdle, Consumer<V> closer) {
+        this.maxIdle = Math.max(1, maxIdle);
+        this.closer = closer;
+    }
+
+    /**
+     * 借出一个与版本一致的空闲句柄，没有时用 opener 打开新句柄；用完须调用 release 归还
+     */
+    public V borrow(String key, Object version, Supplier<V> opener) {
+        List<V> stale = new ArrayList<>();
+        V found = null;
+        synchronized (idle) {
+            if (closed) {
+                throw new IllegalStateException("句柄池已关闭");
+            }
+            Iterator<Idle<V>> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                Idle<V> entry = it.next();
+                if (!entry.key.equals(key)) {
+                    continue;
+                }
+                if (!Objects.equals(entry.version, version)) {
+                    it.remove();
+                    stale.add(entry.value);
+                } else if (found == null) {
+                    it.remove();
+                    found = entry.value;
+                }
+            }
+        }
+        closeAll(stale);
+        if (found != null) {
+            hits.incrementAndGet();
+            return found;
+        }
+        misses.incrementAndGet();
+        return opener.get();
+    }
+
+    /**
+     * 归还句柄
+     * @param broken 句柄已不可用（例如读取出错）时为 true，直接关闭
+     */
+    public void release(String key, Object version, V value, boolean broken) {
+        List<V> evicted = new ArrayList<>();
+        synchronized (idle) {
+            if (closed || broken) {
+                evicted.add(value);
+            } else {
+                idle.addLast(new Idle<>(key, version, value));
+                while (idle.size() > maxIdle) {
+                    evicted.add(idle.removeFirst().value);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+        closeAll(evicted);
+    }
+
+    /**
+     * 关闭某个键的全部空闲句柄
+     */
+    public void invalidate(String key) {
+        List<V> removed = new ArrayList<>();
+        synchronized (idle) {
+            idle.removeIf(entry -> {
+                if (entry.key.equals(key)) {
+                    removed.add(entry.value);
+                    return true;
+                }
+                return false;
+            });
+        }
+        closeAll(removed);
+    }
+
+    public int idleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public void close() {
+        List<V> all = new ArrayList<>();
+        synchronized (idle) {
+            closed = true;
+            for (Idle<V> entry : idle) {
+                all.add(entry.value);
+            }
+            idle.clear();
+        }
+        closeAll(all);
+    }
+
+    private void closeAll(List<V> values) {
+        for (V value : values) {
+            try {
+                closer.accept(value);
+            } catch (RuntimeException e) {
+                System.err.println("关闭句柄失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Idle<V> {
+        final String key;
+        final Object version;
+        final V value;
+
+        Idle(String key, Object version, V value) {
+            this.key = key;
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.example.rasterprocessing.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 两幅对齐影像单个波段的失真度量：MSE / PSNR、最大绝对误差与窗口 SSIM，可按瓦片累加后合并
+ * SSIM 取 8x8 窗口、步长 4（与水印的 8x8 块对齐），逐窗口按 Wang 等 (2004) 的公式计算后取均值；
+ * 窗口按左上角归属瓦片，瓦片读取时向右、向下多读 STRIDE 个像素，结果与瓦片划分无关。
+ * 原图为 NaN 或 nodata 的像素不计入误差，含这类像素的窗口不计入 SSIM。实例不是线程安全的
+ */
+public final class ImageQualityMetrics {
+
+    public static final int WINDOW = 8;
+    public static final int STRIDE = 4;
+
+    private final double dynamicRange;
+    private final double c1;
+    private final double c2;
+
+    private long pixels;
+    private long changedPixels;
+    private double sumSquaredError;
+    private double maxAbsError;
+    private long windows;
+    private double ssimSum;
+    private double minSsim = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param dynamicRange 像素取值范围 L（8 位影像为 255），决定 PSNR 的峰值与 SSIM 的稳定常数
+     */
+    public ImageQualityMetrics(double dynamicRange) {
+        if (!(dynamicRange > 0)) {
+            throw new IllegalArgumentException("无效的动态范围: " + dynamicRange);
+        }
+        this.dynamicRange = dynamicRange;
+        this.c1 = (0.01 * dynamicRange) * (0.01 * dynamicRange);
+        this.c2 = (0.03 * dynamicRange) * (0.03 * dynamicRange);
+    }
+
+    /**
+     * 累加一个瓦片
+     * @param original 原图窗口（行优先，含右、下方的重叠像素）
+     * @param modified 处理后窗口，与 original 同尺寸
+     * @param width 窗口宽度
+     * @param height 窗口高度
+     * @param ownWidth 瓦片本身的宽度，误差只统计 [0, ownWidth) x [0, ownHeight)
+     * @param ownHeight 瓦片本身的高度
+     * @param noData 原图的 nodata，没有时传 NaN
+     */
+    public void add(double[] original, double[] modified, int width, int height, int ownWidth, int ownHeight,
+                    double noData) {
+        boolean hasNoData = noData == noData;
+        for (int y = 0; y < ownHeight; y++) {
+            int row = y * width;
+            for (int x = 0; x < ownWidth; x++) {
+                double a = original[row + x];
+                if (a != a || (hasNoData && a == noData)) {
+                    continue;
+                }
+                double diff = modified[row + x] - a;
+                if (diff != diff) {
+                    // 处理后出现 NaN 视为最大失真
+                    diff = dynamicRange;
+                }
+                double abs = Math.abs(diff);
+                pixels++;
+                if (abs != 0) {
+                    changedPixels++;
+                }
+                sumSquaredError += diff * diff;
+                if (abs > maxAbsError) {
+                    maxAbsError = abs;
+                }
+            }
+        }
+        for (int y = 0; y < ownHeight && y + WINDOW <= height; y += STRIDE) {
+            for (int x = 0; x < ownWidth && x + WINDOW <= width; x += STRIDE) {
+                addWindow(original, modified, width, y * width + x, hasNoData, noData);
+            }
+        }
+    }
+
+    private void addWindow(double[] original, double[] modified, int width, int offset, boolean hasNoData,
+                           double noData) {
+        double sa = 0, sb = 0, saa = 0, sbb = 0, sab = 0;
+        for (int y = 0; y < WINDOW; y++) {
+            int row = offset + y * width;
+            for (int x = 0; x < WINDOW; x++) {
+                double a = original[row + x];
+                double b = modified[row + x];
+                if (a != a || b != b || (hasNoData && a == noData)) {
+                    return;
+                }
+                sa += a;
+                sb += b;
+                saa += a * a;
+                sbb += b * b;
+                sab += a * b;
+            }
+        }
+        double n = WINDOW * WINDOW;
+        double muA = sa / n;
+        double muB = sb / n;
+        double varA = Math.max(0, saa / n - muA * muA);
+        double varB = Math.max(0, sbb / n - muB * muB);
+        double cov = sab / n - muA * muB;
+        double ssim = ((2 * muA * muB + c1) * (2 * cov + c2)) / ((muA * muA + muB * muB + c1) * (varA + varB + c2));
+        windows++;
+        ssimSum += ssim;
+        if (ssim < minSsim) {
+            minSsim = ssim;
+        }
+    }
+
+    /**
+     * 合并另一部分瓦片的结果（动态范围须相同）
+     */
+    public void merge(ImageQualityMetrics other) {
+        pixels += other.pixels;
+        changedPixels += other.changedPixels;
+        sumSquaredError += other.sumSquaredError;
+        maxAbsError = Math.max(maxAbsError, other.maxAbsError);
+        windows += other.windows;
+        ssimSum += other.ssimSum;
+        minSsim = Math.min(minSsim, other.minSsim);
+    }
+
+    public long getPixels() {
+        return pixels;
+    }
+
+    public double getMse() {
+        return pixels == 0 ? Double.NaN : sumSquaredError / pixels;
+    }
+
+    /**
+     * PSNR（dB），两幅影像完全相同时为正无穷
+     */
+    public double getPsnr() {
+        double mse = getMse();
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(dynamicRange * dynamicRange / mse);
+    }
+
+    public double getSsim() {
+        return windows == 0 ? Double.NaN : ssimSum / windows;
+    }
+
+    public double getMaxAbsError() {
+        return maxAbsError;
+    }
+
+    /**
+     * 报告；无穷大与 NaN 记为 null
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        double mse = getMse();
+        report.put("pixels", pixels);
+        report.put("changedPixels", changedPixels);
+        report.put("mse", finite(mse));
+        report.put("rmse", finite(Math.sqrt(mse)));
+        report.put("psnr", finite(getPsnr()));
+        report.put("identical", pixels > 0 && changedPixels == 0);
+        report.put("maxAbsError", maxAbsError);
+        report.put("ssim", finite(getSsim()));
+        report.put("minSsim", windows == 0 ? null : minSsim);
+        report.put("ssimWindows", windows);
+        report.put("dynamicRange", dynamicRange);
+        return report;
+    }
+
+    private static Double finite(double value) {
+        return Double.isFinite(value) ? value : null;
+    }
+}
@@ -0,0 +1,159 @@
+package org.example.rasterprocessing.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 逐像素的可合并统计量（时间序列叠加统计用）
+ * 每个像素一组 个数/均值/M2/最小/最大值：逐景累加用 Welford 递推，同一窗口的两段（如时间序列的前后两半）
+ * 用 Chan 并行公式合并，因此一个窗口可以拆给多个线程再合并。实例本身不是线程安全的
+ */
+public final class PixelStackStatistics {
+
+    /** 支持的统计量，同时是输出波段的描述 */
+    public static final List<String> STATISTICS = List.of("mean", "min", "max", "stddev", "count");
+
+    /** 每个像素占用的字节数 */
+    public static final int BYTES_PER_PIXEL = Integer.BYTES + 4 * Double.BYTES;
+
+    private final int size;
+    private final int[] count;
+    private final double[] mean;
+    private final double[] m2;
+    private final double[] min;
+    private final double[] max;
+
+    public PixelStackStatistics(int size) {
+        this.size = size;
+        this.count = new int[size];
+        this.mean = new double[size];
+        this.m2 = new double[size];
+        this.min = new double[size];
+        this.max = new double[size];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * 校验并规范化统计量列表，为空时返回全部
+     */
+    public static List<String> parse(List<String> statistics) {
+        if (statistics == null || statistics.isEmpty()) {
+            return STATISTICS;
+        }
+        List<String> parsed = new ArrayList<>();
+        for (String s : statistics) {
+            String name = s == null ? "" : s.trim().toLowerCase();
+            if (!STATISTICS.contains(name)) {
+                throw new IllegalArgumentException("不支持的统计量: " + s + "，可选 " + String.join("、", STATISTICS));
+            }
+            if (!parsed.contains(name)) {
+                parsed.add(name);
+            }
+        }
+        return parsed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 累加一景的窗口，NaN 与 noData 不计入
+     * @param noData 该景的 nodata，没有时传 NaN
+     */
+    public void add(double[] values, double noData) {
+        boolean hasNoData = noData == noData;
+        for (int i = 0; i < size; i++) {
+            double v = values[i];
+            if (v != v || (hasNoData && v == noData)) {
+                continue;
+            }
+            int n = ++count[i];
+            double delta = v - mean[i];
+            mean[i] += delta / n;
+            m2[i] += delta * (v - mean[i]);
+            if (v < min[i]) {
+                min[i] = v;
+            }
+            if (v > max[i]) {
+                max[i] = v;
+            }
+        }
+    }
+
+    /**
+     * 合并同一窗口的另一段统计量
+     */
+    public void merge(PixelStackStatistics other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("窗口大小不一致: " + other.size + " / " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            int nb = other.count[i];
+            if (nb == 0) {
+                continue;
+            }
+            int na = count[i];
+            if (na == 0) {
+                count[i] = nb;
+                mean[i] = other.mean[i];
+                m2[i] = other.m2[i];
+                min[i] = other.min[i];
+                max[i] = other.max[i];
+                continue;
+            }
+            double n = (double) na + nb;
+            double delta = other.mean[i] - mean[i];
+            mean[i] += delta * nb / n;
+            m2[i] += other.m2[i] + delta * delta * na * nb / n;
+            count[i] = na + nb;
+            min[i] = Math.min(min[i], other.min[i]);
+            max[i] = Math.max(max[i], other.max[i]);
+        }
+    }
+
+    /**
+     * 取出一个统计量；没有有效观测的像素为 noDataValue（count 为 0）
+     * @return 有效观测数为 0 的像素数
+     */
+    public int write(String statistic, double[] out, double noDataValue) {
+        int empty = 0;
+        for (int i = 0; i < size; i++) {
+            int n = count[i];
+            if (n == 0) {
+                empty++;
+            }
+            switch (statistic) {
+                case "count":
+                    out[i] = n;
+                    break;
+                case "mean":
+                    out[i] = n == 0 ? noDataValue : mean[i];
+                    break;
+                case "min":
+                    out[i] = n == 0 ? noDataValue : min[i];
+                    break;
+                case "max":
+                    out[i] = n == 0 ? noDataValue : max[i];
+                    break;
+                case "stddev":
+                    // 总体标准差，与 RunningStatistics、GDAL 一致
+                    out[i] = n == 0 ? noDataValue : Math.sqrt(Math.max(0, m2[i] / n));
+                    break;
+                default:
+                    throw new IllegalArgumentException("不支持的统计量: " + statistic);
+            }
+        }
+        return empty;
+    }
+
+    public long observations() {
+        long total = 0;
+        for (int n : count) {
+            total += n;
+        }
+        return total;
+    }
+}
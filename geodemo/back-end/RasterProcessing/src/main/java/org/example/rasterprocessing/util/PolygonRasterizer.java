@@ -0,0 +1,138 @@
+package org.example.rasterprocessing.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 多边形扫描线栅格化
+ * 输入为像素坐标系下的环（外环与内环一起按奇偶规则处理），像素中心落在多边形内即视为覆盖；
+ * 结果只在多边形外包窗口内按行保存列区间，不生成整幅掩膜
+ */
+public class PolygonRasterizer {
+
+    private PolygonRasterizer() {}
+
+    /**
+     * 栅格化结果：第 row 行覆盖的列区间为 spans[row - y0] 中成对的 [起, 止)
+     */
+    public static class Mask {
+        public final int x0;
+        public final int y0;
+        public final int width;
+        public final int height;
+        public final int[][] spans;
+        public final long pixelCount;
+
+        Mask(int x0, int y0, int width, int height, int[][] spans, long pixelCount) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.width = width;
+            this.height = height;
+            this.spans = spans;
+            this.pixelCount = pixelCount;
+        }
+
+        public boolean isEmpty() {
+            return pixelCount == 0;
+        }
+
+        /**
+         * 掩膜在窗口 [x, x+w) × [y, y+h) 内是否有覆盖像素
+         */
+        public boolean intersects(int x, int y, int w, int h) {
+            int from = Math.max(y, y0);
+            int to = Math.min(y + h, y0 + height);
+            for (int row = from; row < to; row++) {
+                int[] s = spans[row - y0];
+                for (int k = 0; k < s.length; k += 2) {
+                    if (s[k] < x + w && s[k + 1] > x) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 栅格化
+     * @param rings 像素坐标下的环，每个环为 [[col, row], ...]，首尾是否重复均可
+     * @param rasterWidth 栅格宽度，用于裁剪
+     * @param rasterHeight 栅格高度，用于裁剪
+     */
+    public static Mask rasterize(List<double[][]> rings, int rasterWidth, int rasterHeight) {
+        List<double[]> edges = new ArrayList<>(); // {yMin, yMax, xAtYMin, dx/dy}
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (double[][] ring : rings) {
+            for (int i = 0; i < ring.length; i++) {
+                double[] a = ring[i];
+                double[] b = ring[(i + 1) % ring.length];
+                if (Double.isNaN(a[0]) || Double.isNaN(a[1]) || Double.isNaN(b[0]) || Double.isNaN(b[1])) {
+                    continue;
+                }
+                minX = Math.min(minX, a[0]);
+                maxX = Math.max(maxX, a[0]);
+                minY = Math.min(minY, a[1]);
+                maxY = Math.max(maxY, a[1]);
+                if (a[1] == b[1]) {
+                    continue; // 水平边不产生交点
+                }
+                double[] lo = a[1] < b[1] ? a : b;
+                double[] hi = a[1] < b[1] ? b : a;
+                edges.add(new double[]{lo[1], hi[1], lo[0], (hi[0] - lo[0]) / (hi[1] - lo[1])});
+            }
+        }
+
+        int x0 = (int) Math.max(0, Math.floor(minX));
+        int y0 = (int) Math.max(0, Math.floor(minY));
+        int x1 = (int) Math.min(rasterWidth, Math.ceil(maxX));
+        int y1 = (int) Math.min(rasterHeight, Math.ceil(maxY));
+        if (edges.isEmpty() || x0 >= x1 || y0 >= y1) {
+            return new Mask(0, 0, 0, 0, new int[0][], 0);
+        }
+
+        edges.sort((e1, e2) -> Double.compare(e1[0], e2[0]));
+        int[][] spans = new int[y1 - y0][];
+        List<double[]> active = new ArrayList<>();
+        double[] crossings = new double[16];
+        int next = 0;
+        long pixelCount = 0;
+        for (int row = y0; row < y1; row++) {
+            double yc = row + 0.5;
+            while (next < edges.size() && edges.get(next)[0] <= yc) {
+                active.add(edges.get(next++));
+            }
+            active.removeIf(e -> e[1] <= yc);
+
+            int n = 0;
+            for (double[] e : active) {
+                if (e[0] <= yc) {
+                    if (n == crossings.length) {
+                        crossings = Arrays.copyOf(crossings, n * 2);
+                    }
+                    crossings[n++] = e[2] + (yc - e[0]) * e[3];
+                }
+            }
+            Arrays.sort(crossings, 0, n);
+
+            int[] rowSpans = new int[n - n % 2];
+            int m = 0;
+            for (int k = 0; k + 1 < n; k += 2) {
+                // 像素中心 col + 0.5 落在 [xa, xb) 内
+                int from = (int) Math.max(x0, Math.ceil(crossings[k] - 0.5));
+                int to = (int) Math.min(x1, Math.ceil(crossings[k + 1] - 0.5));
+                if (from < to) {
+                    rowSpans[m++] = from;
+                    rowSpans[m++] = to;
+                    pixelCount += to - from;
+                }
+            }
+            spans[row - y0] = m == rowSpans.length ? rowSpans : Arrays.copyOf(rowSpans, m);
+        }
+        return new Mask(x0, y0, x1 - x0, y1 - y0, spans, pixelCount);
+    }
+}
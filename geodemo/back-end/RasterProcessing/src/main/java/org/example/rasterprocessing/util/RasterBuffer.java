@@ -0,0 +1,216 @@
+package org.example.rasterprocessing.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 堆外的 Float64 栅格窗口缓冲，按 long 下标访问，用完须显式关闭
+ * Java 数组以 int 为下标，超过约 2.68 亿个 double 的窗口无法分配，大数组还会触发 G1 的巨型对象分配停顿；
+ * 堆外内存不经过 GC。缓冲按整行切成若干块（每块不超过 1GB），每块是一个本地字节序的 ByteBuffer，
+ * GDAL 可以直接读入（ReadRaster_Direct）。默认实现为直接 ByteBuffer；以 java22 profile 构建并在 Java 22+ 上运行时
+ * 改用 Foreign Memory API 的 MemorySegment。实例不是线程安全的，关闭后不能再访问
+ */
+public abstract class RasterBuffer implements AutoCloseable {
+
+    public static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    /** 堆上 double[] 能容纳的最大长度 */
+    public static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private static final Constructor<? extends RasterBuffer> SEGMENT_BACKEND = segmentBackend();
+
+    protected final int width;
+    protected final int height;
+    protected final int rowsPerChunk;
+    protected final long chunkElements;
+
+    protected RasterBuffer(int width, int height, long maxChunkBytes) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("无效的缓冲尺寸: " + width + "x" + height);
+        }
+        long rowBytes = (long) width * Double.BYTES;
+        if (rowBytes > maxChunkBytes) {
+            throw new IllegalArgumentException("单行过宽: " + width + " 像素");
+        }
+        this.width = width;
+        this.height = height;
+        this.rowsPerChunk = (int) Math.min(height, maxChunkBytes / rowBytes);
+        this.chunkElements = (long) rowsPerChunk * width;
+    }
+
+    /**
+     * 分配 width x height 的缓冲，内容初始为 0
+     */
+    public static RasterBuffer allocate(int width, int height) {
+        if (SEGMENT_BACKEND != null) {
+            try {
+                return SEGMENT_BACKEND.newInstance(width, height);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return new DirectRasterBuffer(width, height, MAX_CHUNK_BYTES);
+    }
+
+    private static Constructor<? extends RasterBuffer> segmentBackend() {
+        if (Runtime.version().feature() < 22) {
+            return null;
+        }
+        try {
+            return Class.forName("org.example.rasterprocessing.util.SegmentRasterBuffer")
+                    .asSubclass(RasterBuffer.class).getConstructor(int.class, int.class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // 未以 java22 profile 构建
+            return null;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long size() {
+        return (long) width * height;
+    }
+
+    public long byteSize() {
+        return size() * Double.BYTES;
+    }
+
+    /**
+     * 实现方式：direct / segment
+     */
+    public abstract String getBackend();
+
+    public int chunkCount() {
+        return (height + rowsPerChunk - 1) / rowsPerChunk;
+    }
+
+    public int chunkFirstRow(int chunk) {
+        return chunk * rowsPerChunk;
+    }
+
+    public int chunkRows(int chunk) {
+        return Math.min(rowsPerChunk, height - chunk * rowsPerChunk);
+    }
+
+    /**
+     * 第 chunk 块的字节视图（本地字节序，position 为 0，容量为 chunkRows * width 个 double），供 GDAL 直接读写
+     */
+    public abstract ByteBuffer chunk(int chunk);
+
+    /**
+     * 第 chunk 块的 double 视图
+     */
+    protected abstract DoubleBuffer view(int chunk);
+
+    public double get(long index) {
+        return view((int) (index / chunkElements)).get((int) (index % chunkElements));
+    }
+
+    public void set(long index, double value) {
+        view((int) (index / chunkElements)).put((int) (index % chunkElements), value);
+    }
+
+    /**
+     * 从 index 开始读出 length 个值，可跨块
+     */
+    public void get(long index, double[] dst, int offset, int length) {
+        checkRange(index, length);
+        while (length > 0) {
+            int c = (int) (index / chunkElements);
+            int pos = (int) (index % chunkElements);
+            int n = (int) Math.min(length, (long) chunkRows(c) * width - pos);
+            view(c).get(pos, dst, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 从 index 开始写入 length 个值，可跨块
+     */
+    public void put(long index, double[] src, int offset, int length) {
+        checkRange(index, length);
+        while (length > 0) {
+            int c = (int) (index / chunkElements);
+            int pos = (int) (index % chunkElements);
+            int n = (int) Math.min(length, (long) chunkRows(c) * width - pos);
+            view(c).put(pos, src, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 复制到堆上的数组，只用于能放进 Java 数组的小窗口
+     */
+    public double[] toArray() {
+        if (size() > MAX_ARRAY_LENGTH) {
+            throw new IllegalStateException("窗口过大，无法复制到 Java 数组: " + size() + " 像素");
+        }
+        double[] out = new double[(int) size()];
+        get(0, out, 0, out.length);
+        return out;
+    }
+
+    /**
+     * 按行优先、小端序写入输出流；本地字节序为小端时直接从堆外块写出
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        boolean littleEndian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+        ByteBuffer row = littleEndian ? null : ByteBuffer.allocate(width * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int c = 0; c < chunkCount(); c++) {
+            ByteBuffer chunk = chunk(c);
+            if (littleEndian) {
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                continue;
+            }
+            DoubleBuffer values = chunk.asDoubleBuffer();
+            for (int r = 0; r < chunkRows(c); r++) {
+                row.clear();
+                for (int i = 0; i < width; i++) {
+                    row.putDouble(values.get());
+                }
+                row.flip();
+                while (row.hasRemaining()) {
+                    channel.write(row);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private void checkRange(long index, int length) {
+        if (index < 0 || length < 0 || index + length > size()) {
+            throw new IndexOutOfBoundsException("越界: [" + index + ", " + (index + length) + ") / " + size());
+        }
+    }
+
+    /**
+     * 立即释放堆外内存，重复调用无副作用
+     */
+    @Override
+    public abstract void close();
+}
@@ -0,0 +1,123 @@
+package org.example.rasterprocessing.util;
+
+/**
+ * 可合并的流式统计量：个数、最小/最大值、均值、总体标准差，可选定宽直方图
+ * 累加时以首个值为偏移做平移求和以减小舍入误差，合并时使用 Chan 并行公式；实例本身不是线程安全的
+ */
+public class RunningStatistics {
+
+    private long count;
+    private double shift = Double.NaN;
+    private double s1;
+    private double s2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private final long[] histogram;
+    private final double histogramMin;
+    private final double histogramMax;
+    private final double binScale;
+
+    public RunningStatistics() {
+        this(0, 0, 0);
+    }
+
+    /**
+     * @param bins 直方图分箱数，0 表示不统计直方图
+     * @param histogramMin 直方图下界（含）
+     * @param histogramMax 直方图上界（含），超出范围的值只参与统计量不计入直方图
+     */
+    public RunningStatistics(int bins, double histogramMin, double histogramMax) {
+        this.histogram = bins > 0 ? new long[bins] : null;
+        this.histogramMin = histogramMin;
+        this.histogramMax = histogramMax;
+        this.binScale = bins > 0 && histogramMax > histogramMin ? bins / (histogramMax - histogramMin) : 0;
+    }
+
+    public void add(double v) {
+        if (count == 0) {
+            shift = v;
+        }
+        double d = v - shift;
+        s1 += d;
+        s2 += d * d;
+        count++;
+        if (v < min) {
+            min = v;
+        }
+        if (v > max) {
+            max = v;
+        }
+        if (histogram != null && v >= histogramMin && v <= histogramMax) {
+            int bin = (int) ((v - histogramMin) * binScale);
+            histogram[Math.min(bin, histogram.length - 1)]++;
+        }
+    }
+
+    /**
+     * 合并另一组统计量（直方图分箱须一致）
+     */
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (histogram != null && other.histogram != null) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += other.histogram[i];
+            }
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (count == 0) {
+            count = other.count;
+            shift = other.shift;
+            s1 = other.s1;
+            s2 = other.s2;
+            return;
+        }
+        double n = count + other.count;
+        double meanA = getMean();
+        double meanB = other.getMean();
+        double delta = meanB - meanA;
+        double m2 = getM2() + other.getM2() + delta * delta * count * other.count / n;
+        count += other.count;
+        shift = meanA + delta * other.count / n;
+        s1 = 0;
+        s2 = m2;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : shift + s1 / count;
+    }
+
+    public double getSum() {
+        return count == 0 ? 0 : shift * count + s1;
+    }
+
+    /**
+     * 总体标准差，与 GDAL GetStatistics 一致
+     */
+    public double getStddev() {
+        return count == 0 ? Double.NaN : Math.sqrt(getM2() / count);
+    }
+
+    public long[] getHistogram() {
+        return histogram;
+    }
+
+    private double getM2() {
+        return Math.max(0, s2 - s1 * s1 / count);
+    }
+}
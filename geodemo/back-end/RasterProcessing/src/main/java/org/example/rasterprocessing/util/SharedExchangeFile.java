@@ -0,0 +1,78 @@
+package org.example.rasterprocessing.util;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 主进程与工作进程之间交换大块数据的内存映射文件
+ * 双方各自映射同一文件（MAP_SHARED），写方按需扩容后写入，读方发现文件变大时重新映射；
+ * 同一时刻只有一个请求使用该文件，读写顺序由控制通道上的请求/响应保证
+ */
+public class SharedExchangeFile implements AutoCloseable {
+
+    private static final long GROW_STEP = 16L * 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer mapped;
+
+    public SharedExchangeFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 写入 double 数组（本机字节序），返回写入的元素个数
+     */
+    public int writeDoubles(double[] values) throws IOException {
+        long bytes = (long) values.length * Double.BYTES;
+        if (channel.size() < bytes) {
+            // 只增不减：对方可能仍映射着旧长度，截断会让其访问越界
+            long size = (bytes + GROW_STEP - 1) / GROW_STEP * GROW_STEP;
+            channel.write(java.nio.ByteBuffer.wrap(new byte[1]), size - 1);
+        }
+        DoubleBuffer out = map(bytes).asDoubleBuffer();
+        out.put(values);
+        return values.length;
+    }
+
+    /**
+     * 读出对方写入的 count 个 double
+     */
+    public double[] readDoubles(int count) throws IOException {
+        long bytes = (long) count * Double.BYTES;
+        if (channel.size() < bytes) {
+            throw new IOException("交换文件长度不足: " + channel.size() + " < " + bytes);
+        }
+        double[] values = new double[count];
+        map(bytes).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapped = null;
+        channel.close();
+    }
+
+    private java.nio.ByteBuffer map(long bytes) throws IOException {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("单次交换数据超过 2GB: " + bytes);
+        }
+        if (mapped == null || mapped.capacity() < bytes) {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+        }
+        java.nio.ByteBuffer view = mapped.duplicate().order(ByteOrder.nativeOrder());
+        view.position(0).limit((int) bytes);
+        return view;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.rasterprocessing.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并：相同键同一时刻只允许一个线程执行计算，其余线程等待并共享同一结果；异常同样传递给所有等待者。
+ * 只合并正在进行的计算，完成后不保留结果
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> compute) {
+        calls.incrementAndGet();
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inflight.putIfAbsent(key, mine);
+        if (existing != null) {
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        executions.incrementAndGet();
+        try {
+            T result = compute.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, mine);
+        }
+    }
+
+    /**
+     * 调用次数
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * 实际执行计算的次数
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * 共享了其他线程结果的调用次数
+     */
+    public long getShared() {
+        return calls.get() - executions.get();
+    }
+}
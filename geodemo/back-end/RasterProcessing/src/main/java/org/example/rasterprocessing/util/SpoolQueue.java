@@ -0,0 +1,403 @@
+package org.example.rasterprocessing.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 基于共享目录的任务队列，多个节点指向同一目录即可共同消费
+ * 目录结构：pending/ 待处理、running/ 处理中、done/ 完成、failed/ 失败、tmp/ 原子写入的临时文件与迁移中的任务
+ *
+ * 状态迁移全部通过同一文件系统内的原子重命名完成，同一任务只有一个节点能重命名成功：
+ * 认领 = pending/{id}.json → running/{id}.{认领标记}.json，标记含节点名且每次认领都不同，
+ * 之前的持有者（租约已被回收）按旧文件名找不到任务，owns/renew/finish 都会失败；租约 = running 中文件的修改时间，
+ * 持有者定期刷新。离开 running 时（完成、失败、放回、租约过期回收）先把文件原子重命名到 tmp/ 下本次操作独有的名字，
+ * 再改写内容并移入目标目录，改写不会在 running 中重新生成已被别人拿走的文件；迁移中途崩溃遗留在 tmp/ 的任务按租约过期回收。
+ * pending 中文件的修改时间是最早可认领时刻，放回时可推迟。
+ * 语义为至少一次：停顿超过租约的节点可能与新认领者重复执行，提交前须用 owns 确认仍持有租约
+ */
+public class SpoolQueue {
+
+    private static final String SUFFIX = ".json";
+    private static final int CLAIM_WINDOW = 8;
+
+    private final Path pending;
+    private final Path running;
+    private final Path done;
+    private final Path failed;
+    private final Path tmp;
+    private final String nodeId;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * 已认领的任务
+     */
+    public static class Claim {
+        private final String jobId;
+        private final String fileName;
+        private final int attempt;
+        private final Map<String, Object> record;
+
+        Claim(String jobId, String fileName, int attempt, Map<String, Object> record) {
+            this.jobId = jobId;
+            this.fileName = fileName;
+            this.attempt = attempt;
+            this.record = record;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public int getAttempt() {
+            return attempt;
+        }
+
+        public String getType() {
+            return (String) record.get("type");
+        }
+
+        @SuppressWarnings("unchecked")
+        public Map<String, Object> getPayload() {
+            return (Map<String, Object>) record.get("payload");
+        }
+    }
+
+    public SpoolQueue(Path root, String nodeId) throws IOException {
+        this.pending = Files.createDirectories(root.resolve("pending"));
+        this.running = Files.createDirectories(root.resolve("running"));
+        this.done = Files.createDirectories(root.resolve("done"));
+        this.failed = Files.createDirectories(root.resolve("failed"));
+        this.tmp = Files.createDirectories(root.resolve("tmp"));
+        this.nodeId = nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 提交任务，任务 ID 以提交时间开头，按文件名排序即先来先服务
+     */
+    public String submit(String type, Map<String, Object> payload) throws IOException {
+        String jobId = String.format("%013d-%s", System.currentTimeMillis(), UUID.randomUUID().toString().substring(0, 8));
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("id", jobId);
+        record.put("type", type);
+        record.put("payload", payload);
+        record.put("submittedAt", System.currentTimeMillis());
+        record.put("submittedBy", nodeId);
+        record.put("attempt", 0);
+        writeAtomically(pending.resolve(jobId + SUFFIX), record);
+        return jobId;
+    }
+
+    /**
+     * 认领一个待处理任务
+     * @return 没有可认领的任务时返回 null
+     */
+    public Claim claim() throws IOException {
+        List<Path> candidates = oldestReady(pending, CLAIM_WINDOW);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        // 各节点从最早的几个任务中随机起点尝试，减少同时抢同一个文件
+        int start = ThreadLocalRandom.current().nextInt(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            Path source = candidates.get((start + i) % candidates.size());
+            String jobId = jobId(source);
+            Path target = running.resolve(jobId + "." + newToken() + SUFFIX);
+            try {
+                // 先刷新修改时间，避免刚移入 running 就被判定为租约过期
+                Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis()));
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException | FileAlreadyExistsException e) {
+                continue; // 被其他节点抢先
+            }
+            Map<String, Object> record = read(target);
+            int attempt = ((Number) record.getOrDefault("attempt", 0)).intValue() + 1;
+            record.put("attempt", attempt);
+            record.put("owner", nodeId);
+            record.put("claimedAt", System.currentTimeMillis());
+            record.remove("notBefore");
+            writeAtomically(target, record);
+            return new Claim(jobId, target.getFileName().toString(), attempt, record);
+        }
+        return null;
+    }
+
+    /**
+     * 是否仍持有租约：认领时的文件仍在 running 中
+     */
+    public boolean owns(Claim claim) {
+        return Files.isRegularFile(running.resolve(claim.fileName));
+    }
+
+    /**
+     * 续租（心跳）
+     * @return 租约已丢失时返回 false
+     */
+    public boolean renew(Claim claim) {
+        try {
+            Files.setLastModifiedTime(running.resolve(claim.fileName), FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 完成任务
+     * @return 租约已丢失时返回 false，结果不写入
+     */
+    public boolean complete(Claim claim, Map<String, Object> result) throws IOException {
+        Map<String, Object> record = new LinkedHashMap<>(claim.record);
+        record.put("result", result);
+        record.put("completedAt", System.currentTimeMillis());
+        return finish(claim, record, done, 0);
+    }
+
+    /**
+     * 任务失败
+     * @param retry 为 true 且未达到最大尝试次数时放回 pending
+     * @return 租约已丢失时返回 false
+     */
+    public boolean fail(Claim claim, String error, boolean retry, int maxAttempts) throws IOException {
+        Map<String, Object> record = new LinkedHashMap<>(claim.record);
+        record.put("error", error);
+        boolean requeue = retry && claim.attempt < maxAttempts;
+        if (!requeue) {
+            record.put("completedAt", System.currentTimeMillis());
+        }
+        if (requeue) {
+            record.remove("owner");
+        }
+        return finish(claim, record, requeue ? pending : failed, 0);
+    }
+
+    /**
+     * 放回 pending 且不计入尝试次数（本节点暂时无法处理，例如内存预算不足）
+     * @param delayMs 推迟多久后才能再被认领，避免立即被重新认领又被拒绝的空转
+     */
+    public boolean release(Claim claim, long delayMs) throws IOException {
+        Map<String, Object> record = new LinkedHashMap<>(claim.record);
+        record.put("attempt", claim.attempt - 1);
+        record.remove("owner");
+        long notBefore = System.currentTimeMillis() + Math.max(0, delayMs);
+        if (delayMs > 0) {
+            record.put("notBefore", notBefore);
+        }
+        return finish(claim, record, pending, notBefore);
+    }
+
+    /**
+     * 把租约过期的任务（包括迁移中途崩溃遗留在 tmp/ 的任务）移回 pending 并清除 owner，超过最大尝试次数的移入 failed
+     * @return 处理的任务数
+     */
+    public int requeueExpired(long leaseMs, int maxAttempts) throws IOException {
+        long cutoff = System.currentTimeMillis() - leaseMs;
+        int count = 0;
+        List<Path> files = list(running);
+        files.addAll(list(tmp));
+        for (Path file : files) {
+            try {
+                if (Files.getLastModifiedTime(file).toMillis() >= cutoff) {
+                    continue;
+                }
+            } catch (NoSuchFileException e) {
+                continue; // 已被续租后完成，或被其他节点处理
+            }
+            Path staged = take(file);
+            if (staged == null) {
+                continue;
+            }
+            Map<String, Object> record = read(staged);
+            int attempt = ((Number) record.getOrDefault("attempt", 0)).intValue();
+            Object owner = record.remove("owner");
+            record.remove("claimedAt");
+            if (attempt >= maxAttempts) {
+                record.put("error", "租约过期（节点 " + owner + " 无响应），已达最大尝试次数");
+                record.put("completedAt", System.currentTimeMillis());
+                install(staged, record, failed, 0);
+            } else {
+                install(staged, record, pending, 0);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 删除早于 retentionMs 的完成/失败记录和残留临时文件
+     */
+    public int purge(long retentionMs) throws IOException {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        int count = 0;
+        for (Path dir : new Path[]{done, failed, tmp}) {
+            // tmp/ 中的 .json 是迁移中的任务，由 requeueExpired 回收
+            for (Path file : list(dir, dir == tmp ? "*.tmp" : "*" + SUFFIX)) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoff && Files.deleteIfExists(file)) {
+                        count++;
+                    }
+                } catch (NoSuchFileException e) {
+                    // 已被其他节点删除
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 查询任务状态
+     * @return 记录及 state 字段；不存在时返回 null
+     */
+    public Map<String, Object> find(String jobId) throws IOException {
+        if (!jobId.matches("[0-9A-Za-z-]+")) {
+            return null;
+        }
+        String[] states = {"pending", "running", "running", "done", "failed"};
+        Path[] dirs = {pending, running, tmp, done, failed};
+        for (int i = 0; i < dirs.length; i++) {
+            List<Path> files = dirs[i] == running || dirs[i] == tmp
+                    ? list(dirs[i], jobId + ".*" + SUFFIX)
+                    : Collections.singletonList(dirs[i].resolve(jobId + SUFFIX));
+            for (Path file : files) {
+                try {
+                    Map<String, Object> record = read(file);
+                    record.put("state", states[i]);
+                    return record;
+                } catch (NoSuchFileException e) {
+                    // 查找下一个状态；迁移中的任务可能短暂都找不到
+                }
+            }
+        }
+        return null;
+    }
+
+    public Map<String, Object> counts() throws IOException {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("pending", list(pending).size());
+        counts.put("running", list(running).size());
+        counts.put("done", list(done).size());
+        counts.put("failed", list(failed).size());
+        return counts;
+    }
+
+    /**
+     * 从 running 中取走认领时的文件再写入新内容并移入目标目录；文件已被回收时返回 false，不留下任何文件
+     */
+    private boolean finish(Claim claim, Map<String, Object> record, Path targetDir, long notBefore) throws IOException {
+        Path staged = take(running.resolve(claim.fileName));
+        if (staged == null) {
+            return false;
+        }
+        install(staged, record, targetDir, notBefore);
+        return true;
+    }
+
+    /**
+     * 把文件原子重命名到 tmp/ 下本次操作独有的名字，之后只有调用方能改动它；
+     * 先刷新修改时间，避免刚移入就被其他节点当作崩溃遗留回收
+     * @return 文件已被其他节点取走时返回 null
+     */
+    private Path take(Path file) throws IOException {
+        Path staged = tmp.resolve(jobId(file) + "." + newToken() + SUFFIX);
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            Files.move(file, staged, StandardCopyOption.ATOMIC_MOVE);
+            return staged;
+        } catch (NoSuchFileException | FileAlreadyExistsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 改写已取走的文件并移入目标状态目录
+     * @param notBefore 移入 pending 时的最早可认领时刻，0 表示立即
+     */
+    private void install(Path staged, Map<String, Object> record, Path targetDir, long notBefore) throws IOException {
+        writeAtomically(staged, record);
+        if (notBefore > 0) {
+            Files.setLastModifiedTime(staged, FileTime.fromMillis(notBefore));
+        }
+        Files.move(staged, targetDir.resolve(jobId(staged) + SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 认领或迁移标记：节点名加随机数，每次都不同
+     */
+    private String newToken() {
+        return nodeId.replaceAll("[^0-9A-Za-z-]", "_") + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private void writeAtomically(Path target, Map<String, Object> record) throws IOException {
+        Path temp = tmp.resolve(newToken() + ".tmp");
+        try {
+            mapper.writeValue(temp.toFile(), record);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> read(Path file) throws IOException {
+        return mapper.readValue(Files.readAllBytes(file), LinkedHashMap.class);
+    }
+
+    /**
+     * 文件名中第一个点之前的部分（任务 ID 不含点）
+     */
+    private static String jobId(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.indexOf('.'));
+    }
+
+    /**
+     * 已到可认领时刻的最早 limit 个任务
+     */
+    private static List<Path> oldestReady(Path dir, int limit) throws IOException {
+        long now = System.currentTimeMillis();
+        List<Path> files = new ArrayList<>();
+        for (Path file : list(dir)) {
+            try {
+                if (Files.getLastModifiedTime(file).toMillis() <= now) {
+                    files.add(file);
+                }
+            } catch (NoSuchFileException e) {
+                // 已被其他节点认领
+            }
+        }
+        Collections.sort(files);
+        return files.size() > limit ? new ArrayList<>(files.subList(0, limit)) : files;
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        return list(dir, "*" + SUFFIX);
+    }
+
+    private static List<Path> list(Path dir, String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+}
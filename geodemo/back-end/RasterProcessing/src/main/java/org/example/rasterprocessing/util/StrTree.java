@@ -0,0 +1,149 @@
+package org.example.rasterprocessing.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 用 STR（Sort-Tile-Recursive）批量装填的只读 R 树
+ * 构建后不可修改，数据变化时整体重建并替换引用即可，查询无需加锁
+ */
+public class StrTree<T> {
+
+    private static final int DEFAULT_NODE_CAPACITY = 16;
+
+    private final Node root;
+    private final int size;
+
+    private StrTree(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 空索引
+     */
+    public static <T> StrTree<T> empty() {
+        return new StrTree<>(null, 0);
+    }
+
+    /**
+     * 批量构建
+     * @param items 条目
+     * @param envelope 取条目外包矩形 {minX, minY, maxX, maxY} 的函数
+     */
+    public static <T> StrTree<T> build(List<T> items, java.util.function.Function<T, double[]> envelope) {
+        return build(items, envelope, DEFAULT_NODE_CAPACITY);
+    }
+
+    public static <T> StrTree<T> build(List<T> items, java.util.function.Function<T, double[]> envelope, int nodeCapacity) {
+        if (items.isEmpty()) {
+            return empty();
+        }
+        List<Node> level = new ArrayList<>(items.size());
+        for (T item : items) {
+            double[] e = envelope.apply(item);
+            level.add(new Node(e[0], e[1], e[2], e[3], item, null));
+        }
+        while (level.size() > 1) {
+            level = packLevel(level, nodeCapacity);
+        }
+        return new StrTree<>(level.get(0), items.size());
+    }
+
+    /**
+     * 将一层节点按 STR 规则打包成上一层
+     */
+    private static List<Node> packLevel(List<Node> nodes, int capacity) {
+        int parentCount = (nodes.size() + capacity - 1) / capacity;
+        int sliceCount = (int) Math.ceil(Math.sqrt(parentCount));
+        int sliceSize = sliceCount * capacity;
+
+        List<Node> sorted = new ArrayList<>(nodes);
+        sorted.sort(Comparator.comparingDouble(Node::centerX));
+
+        List<Node> parents = new ArrayList<>(parentCount);
+        for (int start = 0; start < sorted.size(); start += sliceSize) {
+            List<Node> slice = new ArrayList<>(sorted.subList(start, Math.min(start + sliceSize, sorted.size())));
+            slice.sort(Comparator.comparingDouble(Node::centerY));
+            for (int i = 0; i < slice.size(); i += capacity) {
+                List<Node> children = slice.subList(i, Math.min(i + capacity, slice.size()));
+                parents.add(Node.parentOf(new ArrayList<>(children)));
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * 查询与矩形相交的所有条目
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> query(double minX, double minY, double maxX, double maxY) {
+        List<T> result = new ArrayList<>();
+        if (root == null) {
+            return result;
+        }
+        ArrayList<Node> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            if (!node.intersects(minX, minY, maxX, maxY)) {
+                continue;
+            }
+            if (node.children == null) {
+                result.add((T) node.item);
+            } else {
+                stack.addAll(node.children);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static class Node {
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        final Object item;
+        final List<Node> children;
+
+        Node(double minX, double minY, double maxX, double maxY, Object item, List<Node> children) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.item = item;
+            this.children = children;
+        }
+
+        static Node parentOf(List<Node> children) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (Node c : children) {
+                minX = Math.min(minX, c.minX);
+                minY = Math.min(minY, c.minY);
+                maxX = Math.max(maxX, c.maxX);
+                maxY = Math.max(maxY, c.maxY);
+            }
+            return new Node(minX, minY, maxX, maxY, null, children);
+        }
+
+        double centerX() {
+            return (minX + maxX) / 2;
+        }
+
+        double centerY() {
+            return (minY + maxY) / 2;
+        }
+
+        boolean intersects(double qMinX, double qMinY, double qMaxX, double qMaxY) {
+            return minX <= qMaxX && maxX >= qMinX && minY <= qMaxY && maxY >= qMinY;
+        }
+    }
+}
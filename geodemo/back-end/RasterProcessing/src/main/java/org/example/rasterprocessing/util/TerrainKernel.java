@@ -0,0 +1,149 @@
+package org.example.rasterprocessing.util;
+
+/**
+ * 地形因子 3x3 核（Horn 方法，与 gdaldem 一致）
+ * 输入为四周各带一个像素光晕的窗口，nodata 须预先置为 NaN；中心为 NaN 的像素输出 nodata，
+ * 邻域中的 NaN（含栅格外的光晕）用中心值代替，因此栅格边缘和 nodata 边界也能算出结果。
+ * 像元间距按行给出（单位米），地理坐标系下随纬度变化
+ */
+public final class TerrainKernel {
+
+    public enum Operator {
+        SLOPE, ASPECT, HILLSHADE
+    }
+
+    private final Operator operator;
+    private final double zFactor;
+    private final boolean percent;
+    private final double sinAltitude;
+    private final double cosAltitude;
+    private final double azimuthMath;
+
+    private TerrainKernel(Operator operator, double zFactor, boolean percent, double azimuth, double altitude) {
+        this.operator = operator;
+        this.zFactor = zFactor;
+        this.percent = percent;
+        double zenith = Math.toRadians(90 - altitude);
+        this.sinAltitude = Math.cos(zenith);
+        this.cosAltitude = Math.sin(zenith);
+        this.azimuthMath = Math.toRadians((360.0 - azimuth + 90.0) % 360.0);
+    }
+
+    /**
+     * @param operator slope / aspect / hillshade
+     * @param zFactor 高程单位换算到米的系数
+     * @param percent 坡度以百分比而不是度输出
+     * @param azimuth 光源方位角（度，北为 0 顺时针）
+     * @param altitude 光源高度角（度）
+     */
+    public static TerrainKernel of(String operator, double zFactor, boolean percent, double azimuth, double altitude) {
+        Operator op;
+        try {
+            op = Operator.valueOf(operator == null ? "" : operator.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不支持的地形因子: " + operator + "，可选 slope、aspect、hillshade");
+        }
+        if (!(zFactor > 0) || Double.isInfinite(zFactor)) {
+            throw new IllegalArgumentException("zFactor 必须为正数");
+        }
+        if (altitude < 0 || altitude > 90) {
+            throw new IllegalArgumentException("光源高度角应在 0-90 度之间");
+        }
+        return new TerrainKernel(op, zFactor, percent, azimuth, altitude);
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * 输出 nodata：坡度、坡向为 -9999，晕渲（Byte，1-255）为 0
+     */
+    public double noDataValue() {
+        return operator == Operator.HILLSHADE ? 0 : -9999;
+    }
+
+    /**
+     * @param in (width + 2) x (height + 2) 的输入窗口，行优先
+     * @param width 输出宽度
+     * @param height 输出高度
+     * @param rowDx 每个输出行的东西向像元间距（米）
+     * @param rowDy 每个输出行的南北向像元间距（米）
+     * @param out 输出，长度至少 width * height
+     * @return 输出为 nodata 的像素数
+     */
+    public int apply(double[] in, int width, int height, double[] rowDx, double[] rowDy, double[] out) {
+        int stride = width + 2;
+        double noData = noDataValue();
+        int noDataCount = 0;
+        for (int row = 0; row < height; row++) {
+            double sx = zFactor / (8 * rowDx[row]);
+            double sy = zFactor / (8 * rowDy[row]);
+            int up = row * stride;
+            int mid = up + stride;
+            int down = mid + stride;
+            int o = row * width;
+            for (int col = 0; col < width; col++) {
+                double e = in[mid + col + 1];
+                if (e != e) {
+                    out[o + col] = noData;
+                    noDataCount++;
+                    continue;
+                }
+                double a = or(in[up + col], e);
+                double b = or(in[up + col + 1], e);
+                double c = or(in[up + col + 2], e);
+                double d = or(in[mid + col], e);
+                double f = or(in[mid + col + 2], e);
+                double g = or(in[down + col], e);
+                double h = or(in[down + col + 1], e);
+                double i = or(in[down + col + 2], e);
+                // x 向东为正，y 向南为正
+                double dzdx = ((c + 2 * f + i) - (a + 2 * d + g)) * sx;
+                double dzdy = ((g + 2 * h + i) - (a + 2 * b + c)) * sy;
+                double value = evaluate(dzdx, dzdy);
+                if (value == noData) {
+                    noDataCount++;
+                }
+                out[o + col] = value;
+            }
+        }
+        return noDataCount;
+    }
+
+    private double evaluate(double dzdx, double dzdy) {
+        double gradient = Math.sqrt(dzdx * dzdx + dzdy * dzdy);
+        switch (operator) {
+            case SLOPE:
+                return percent ? gradient * 100 : Math.toDegrees(Math.atan(gradient));
+            case ASPECT: {
+                if (dzdx == 0 && dzdy == 0) {
+                    return -9999; // 平地没有坡向
+                }
+                double aspect = Math.toDegrees(Math.atan2(dzdy, -dzdx));
+                double compass = aspect > 90 ? 450 - aspect : 90 - aspect;
+                return compass >= 360 ? compass - 360 : compass;
+            }
+            default: {
+                double slope = Math.atan(gradient);
+                double aspect = Math.atan2(dzdy, -dzdx);
+                double shade = sinAltitude * Math.cos(slope) + cosAltitude * Math.sin(slope) * Math.cos(azimuthMath - aspect);
+                return 1 + Math.round(254 * Math.max(0, shade));
+            }
+        }
+    }
+
+    private static double or(double v, double fallback) {
+        return v != v ? fallback : v;
+    }
+
+    /**
+     * WGS84 椭球上纬度 lat 处一度经度、一度纬度的长度（米）
+     */
+    public static double[] metersPerDegree(double lat) {
+        double phi = Math.toRadians(lat);
+        double lon = 111412.84 * Math.cos(phi) - 93.5 * Math.cos(3 * phi) + 0.118 * Math.cos(5 * phi);
+        double latitude = 111132.954 - 559.822 * Math.cos(2 * phi) + 1.175 * Math.cos(4 * phi);
+        return new double[]{lon, latitude};
+    }
+}
@@ -0,0 +1,207 @@
+package org.example.rasterprocessing.util;
+
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TIFF/BigTIFF 第一个图像目录（IFD）的解析结果
+ */
+public class TiffDirectory {
+
+    // 常用标签
+    public static final int IMAGE_WIDTH = 256;
+    public static final int IMAGE_LENGTH = 257;
+    public static final int BITS_PER_SAMPLE = 258;
+    public static final int COMPRESSION = 259;
+    public static final int PHOTOMETRIC = 262;
+    public static final int IMAGE_DESCRIPTION = 270;
+    public static final int STRIP_OFFSETS = 273;
+    public static final int SAMPLES_PER_PIXEL = 277;
+    public static final int ROWS_PER_STRIP = 278;
+    public static final int STRIP_BYTE_COUNTS = 279;
+    public static final int PLANAR_CONFIGURATION = 284;
+    public static final int SOFTWARE = 305;
+    public static final int DATE_TIME = 306;
+    public static final int PREDICTOR = 317;
+    public static final int TILE_WIDTH = 322;
+    public static final int TILE_LENGTH = 323;
+    public static final int TILE_OFFSETS = 324;
+    public static final int TILE_BYTE_COUNTS = 325;
+    public static final int SAMPLE_FORMAT = 339;
+    public static final int MODEL_PIXEL_SCALE = 33550;
+    public static final int MODEL_TIEPOINT = 33922;
+    public static final int MODEL_TRANSFORMATION = 34264;
+    public static final int GEO_KEY_DIRECTORY = 34735;
+    public static final int GEO_DOUBLE_PARAMS = 34736;
+    public static final int GEO_ASCII_PARAMS = 34737;
+    public static final int GDAL_METADATA = 42112;
+    public static final int GDAL_NODATA = 42113;
+
+    // SampleFormat 取值
+    public static final int SAMPLE_FORMAT_UINT = 1;
+    public static final int SAMPLE_FORMAT_INT = 2;
+    public static final int SAMPLE_FORMAT_FLOAT = 3;
+
+    private final ByteOrder byteOrder;
+    private final boolean bigTiff;
+    private final Map<Integer, long[]> longValues = new HashMap<>();
+    private final Map<Integer, double[]> doubleValues = new HashMap<>();
+    private final Map<Integer, String> asciiValues = new HashMap<>();
+    private int ifdCount = 1;
+
+    public TiffDirectory(ByteOrder byteOrder, boolean bigTiff) {
+        this.byteOrder = byteOrder;
+        this.bigTiff = bigTiff;
+    }
+
+    void putLongs(int tag, long[] values) {
+        longValues.put(tag, values);
+    }
+
+    void putDoubles(int tag, double[] values) {
+        doubleValues.put(tag, values);
+    }
+
+    void putAscii(int tag, String value) {
+        asciiValues.put(tag, value);
+    }
+
+    void setIfdCount(int ifdCount) {
+        this.ifdCount = ifdCount;
+    }
+
+    public boolean has(int tag) {
+        return longValues.containsKey(tag) || doubleValues.containsKey(tag) || asciiValues.containsKey(tag);
+    }
+
+    public long[] getLongs(int tag) {
+        return longValues.get(tag);
+    }
+
+    public double[] getDoubles(int tag) {
+        double[] values = doubleValues.get(tag);
+        if (values == null && longValues.containsKey(tag)) {
+            long[] longs = longValues.get(tag);
+            values = new double[longs.length];
+            for (int i = 0; i < longs.length; i++) {
+                values[i] = longs[i];
+            }
+        }
+        return values;
+    }
+
+    public String getAscii(int tag) {
+        return asciiValues.get(tag);
+    }
+
+    public long getLong(int tag, long defaultValue) {
+        long[] values = longValues.get(tag);
+        return values == null || values.length == 0 ? defaultValue : values[0];
+    }
+
+    // 图像结构
+    public int getWidth() {
+        return (int) getLong(IMAGE_WIDTH, 0);
+    }
+
+    public int getHeight() {
+        return (int) getLong(IMAGE_LENGTH, 0);
+    }
+
+    public int getSamplesPerPixel() {
+        return (int) getLong(SAMPLES_PER_PIXEL, 1);
+    }
+
+    public int getBitsPerSample() {
+        return (int) getLong(BITS_PER_SAMPLE, 1);
+    }
+
+    /**
+     * 所有样本位深一致时返回 true
+     */
+    public boolean hasUniformBitsPerSample() {
+        long[] bits = longValues.get(BITS_PER_SAMPLE);
+        if (bits == null) {
+            return true;
+        }
+        for (long b : bits) {
+            if (b != bits[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getSampleFormat() {
+        return (int) getLong(SAMPLE_FORMAT, SAMPLE_FORMAT_UINT);
+    }
+
+    public int getCompression() {
+        return (int) getLong(COMPRESSION, 1);
+    }
+
+    public int getPlanarConfiguration() {
+        return (int) getLong(PLANAR_CONFIGURATION, 1);
+    }
+
+    public boolean isTiled() {
+        return has(TILE_WIDTH) && has(TILE_LENGTH);
+    }
+
+    /**
+     * 数据块（瓦片或条带）宽度
+     */
+    public int getChunkWidth() {
+        return isTiled() ? (int) getLong(TILE_WIDTH, 0) : getWidth();
+    }
+
+    /**
+     * 数据块（瓦片或条带）高度
+     */
+    public int getChunkHeight() {
+        if (isTiled()) {
+            return (int) getLong(TILE_LENGTH, 0);
+        }
+        long rowsPerStrip = getLong(ROWS_PER_STRIP, getHeight());
+        return (int) Math.min(rowsPerStrip, getHeight());
+    }
+
+    public long[] getChunkOffsets() {
+        return longValues.get(isTiled() ? TILE_OFFSETS : STRIP_OFFSETS);
+    }
+
+    public long[] getChunkByteCounts() {
+        return longValues.get(isTiled() ? TILE_BYTE_COUNTS : STRIP_BYTE_COUNTS);
+    }
+
+    /**
+     * GDAL_NODATA 标签中的 NoData 值
+     */
+    public Double getNoData() {
+        String value = asciiValues.get(GDAL_NODATA);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return "nan".equalsIgnoreCase(value.trim()) ? Double.NaN : null;
+        }
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    public boolean isBigTiff() {
+        return bigTiff;
+    }
+
+    /**
+     * 文件中 IFD 的总数（主图像 + 内部概视图/掩膜）
+     */
+    public int getIfdCount() {
+        return ifdCount;
+    }
+}
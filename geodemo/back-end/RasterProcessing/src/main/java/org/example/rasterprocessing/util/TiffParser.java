@@ -0,0 +1,227 @@
+package org.example.rasterprocessing.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 纯 Java 的 TIFF/BigTIFF 头解析工具，只读取 IFD 及其引用的标签值，不解码像素
+ */
+public class TiffParser {
+
+    private static final int MAX_IFDS = 64;
+
+    private TiffParser() {}
+
+    /**
+     * 解析文件的第一个 IFD
+     * @param path 文件路径
+     * @param includeChunkLayout 是否读取条带/瓦片的偏移与长度表（仅读元数据时可跳过）
+     */
+    public static TiffDirectory parse(Path path, boolean includeChunkLayout) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return parse(channel, includeChunkLayout);
+        }
+    }
+
+    public static TiffDirectory parse(FileChannel channel, boolean includeChunkLayout) throws IOException {
+        ByteBuffer header = read(channel, 0, 16, ByteOrder.LITTLE_ENDIAN);
+        ByteOrder order;
+        if (header.get(0) == 'I' && header.get(1) == 'I') {
+            order = ByteOrder.LITTLE_ENDIAN;
+        } else if (header.get(0) == 'M' && header.get(1) == 'M') {
+            order = ByteOrder.BIG_ENDIAN;
+        } else {
+            throw new IOException("不是TIFF文件");
+        }
+        header.order(order);
+        int version = header.getShort(2) & 0xFFFF;
+        boolean bigTiff;
+        long ifdOffset;
+        if (version == 42) {
+            bigTiff = false;
+            ifdOffset = header.getInt(4) & 0xFFFFFFFFL;
+        } else if (version == 43) {
+            bigTiff = true;
+            if ((header.getShort(4) & 0xFFFF) != 8) {
+                throw new IOException("不支持的BigTIFF偏移量大小");
+            }
+            ifdOffset = header.getLong(8);
+        } else {
+            throw new IOException("未知的TIFF版本: " + version);
+        }
+
+        TiffDirectory directory = new TiffDirectory(order, bigTiff);
+        long nextIfd = readIfd(channel, directory, ifdOffset, includeChunkLayout);
+
+        // 只数后续 IFD 的个数（内部概视图等），不解析其内容
+        int ifdCount = 1;
+        while (nextIfd != 0 && ifdCount < MAX_IFDS) {
+            nextIfd = skipIfd(channel, order, bigTiff, nextIfd);
+            ifdCount++;
+        }
+        directory.setIfdCount(ifdCount);
+        return directory;
+    }
+
+    private static long readIfd(FileChannel channel, TiffDirectory directory, long offset,
+                                boolean includeChunkLayout) throws IOException {
+        ByteOrder order = directory.getByteOrder();
+        boolean bigTiff = directory.isBigTiff();
+        int countSize = bigTiff ? 8 : 2;
+        int entrySize = bigTiff ? 20 : 12;
+        int inlineSize = bigTiff ? 8 : 4;
+
+        ByteBuffer countBuffer = read(channel, offset, countSize, order);
+        long entryCount = bigTiff ? countBuffer.getLong(0) : countBuffer.getShort(0) & 0xFFFF;
+        if (entryCount <= 0 || entryCount > 4096) {
+            throw new IOException("IFD条目数异常: " + entryCount);
+        }
+        ByteBuffer entries = read(channel, offset + countSize, (int) entryCount * entrySize + inlineSize, order);
+
+        for (int i = 0; i < entryCount; i++) {
+            int base = i * entrySize;
+            int tag = entries.getShort(base) & 0xFFFF;
+            int type = entries.getShort(base + 2) & 0xFFFF;
+            long count = bigTiff ? entries.getLong(base + 4) : entries.getInt(base + 4) & 0xFFFFFFFFL;
+            int valuePos = base + (bigTiff ? 12 : 8);
+            int typeSize = typeSize(type);
+            if (typeSize == 0 || count <= 0) {
+                continue;
+            }
+            if (!includeChunkLayout && isChunkLayoutTag(tag)) {
+                continue;
+            }
+            long byteLength = count * typeSize;
+            if (byteLength > Integer.MAX_VALUE) {
+                throw new IOException("标签值过大: " + tag);
+            }
+            ByteBuffer value;
+            if (byteLength <= inlineSize) {
+                value = entries.duplicate().order(order);
+                value.position(valuePos);
+                value = value.slice().order(order);
+            } else {
+                long valueOffset = bigTiff ? entries.getLong(valuePos) : entries.getInt(valuePos) & 0xFFFFFFFFL;
+                value = read(channel, valueOffset, (int) byteLength, order);
+            }
+            decode(directory, tag, type, (int) count, value);
+        }
+
+        int nextPos = (int) entryCount * entrySize;
+        return bigTiff ? entries.getLong(nextPos) : entries.getInt(nextPos) & 0xFFFFFFFFL;
+    }
+
+    private static long skipIfd(FileChannel channel, ByteOrder order, boolean bigTiff, long offset) throws IOException {
+        int countSize = bigTiff ? 8 : 2;
+        int entrySize = bigTiff ? 20 : 12;
+        ByteBuffer countBuffer = read(channel, offset, countSize, order);
+        long entryCount = bigTiff ? countBuffer.getLong(0) : countBuffer.getShort(0) & 0xFFFF;
+        long nextPos = offset + countSize + entryCount * entrySize;
+        ByteBuffer next = read(channel, nextPos, bigTiff ? 8 : 4, order);
+        return bigTiff ? next.getLong(0) : next.getInt(0) & 0xFFFFFFFFL;
+    }
+
+    private static void decode(TiffDirectory directory, int tag, int type, int count, ByteBuffer value) {
+        switch (type) {
+            case 2: { // ASCII，去掉结尾的 NUL
+                byte[] bytes = new byte[count];
+                value.get(0, bytes);
+                int end = count;
+                while (end > 0 && bytes[end - 1] == 0) {
+                    end--;
+                }
+                directory.putAscii(tag, new String(bytes, 0, end, StandardCharsets.ISO_8859_1));
+                break;
+            }
+            case 5:
+            case 10: { // RATIONAL / SRATIONAL
+                double[] values = new double[count];
+                for (int i = 0; i < count; i++) {
+                    double num = type == 5 ? value.getInt(i * 8) & 0xFFFFFFFFL : value.getInt(i * 8);
+                    double den = type == 5 ? value.getInt(i * 8 + 4) & 0xFFFFFFFFL : value.getInt(i * 8 + 4);
+                    values[i] = den == 0 ? 0 : num / den;
+                }
+                directory.putDoubles(tag, values);
+                break;
+            }
+            case 11:
+            case 12: { // FLOAT / DOUBLE
+                double[] values = new double[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = type == 11 ? value.getFloat(i * 4) : value.getDouble(i * 8);
+                }
+                directory.putDoubles(tag, values);
+                break;
+            }
+            default: { // 整数类型
+                long[] values = new long[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = readInteger(value, type, i);
+                }
+                directory.putLongs(tag, values);
+                break;
+            }
+        }
+    }
+
+    private static long readInteger(ByteBuffer value, int type, int i) {
+        switch (type) {
+            case 1:
+            case 7:
+                return value.get(i) & 0xFF;
+            case 6:
+                return value.get(i);
+            case 3:
+                return value.getShort(i * 2) & 0xFFFF;
+            case 8:
+                return value.getShort(i * 2);
+            case 4:
+            case 13:
+                return value.getInt(i * 4) & 0xFFFFFFFFL;
+            case 9:
+                return value.getInt(i * 4);
+            default: // 16 LONG8, 17 SLONG8, 18 IFD8
+                return value.getLong(i * 8);
+        }
+    }
+
+    private static int typeSize(int type) {
+        switch (type) {
+            case 1: case 2: case 6: case 7:
+                return 1;
+            case 3: case 8:
+                return 2;
+            case 4: case 9: case 11: case 13:
+                return 4;
+            case 5: case 10: case 12: case 16: case 17: case 18:
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean isChunkLayoutTag(int tag) {
+        return tag == TiffDirectory.STRIP_OFFSETS || tag == TiffDirectory.STRIP_BYTE_COUNTS
+                || tag == TiffDirectory.TILE_OFFSETS || tag == TiffDirectory.TILE_BYTE_COUNTS;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length, ByteOrder order) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                // 仅文件头允许不足（由魔数校验兜底），其余位置说明文件被截断
+                if (position != 0) {
+                    throw new IOException("TIFF文件被截断");
+                }
+                break;
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+}
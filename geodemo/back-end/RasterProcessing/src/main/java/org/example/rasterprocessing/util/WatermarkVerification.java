@@ -0,0 +1,107 @@
+package org.example.rasterprocessing.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 嵌入即校验
+ * 嵌入时已经得到写出的最终像素（按输出数据类型取整、截断之后），只需对水印所在的块求系数 (2,3) 并按提取规则判位，
+ * 与期望位比较即可得到误码情况，不必重新打开文件、整幅读取和 DCT。
+ * 报告两级结果：逐块的原始误码率，以及每个有效位多数表决后的误码数与表决余量（同意票 - 反对票）
+ */
+public final class WatermarkVerification {
+
+    private WatermarkVerification() {
+    }
+
+    /**
+     * @param expected 期望的逐块位（长度字节加数据字节，每位重复 repeat 次）
+     * @param coefficients 对应块在最终像素上的系数 (2,3)；长度小于 expected 时其余块未能嵌入，按错误计
+     * @param zeroIsOne 系数为 0 时判为 1（栅格提取）还是 0（图像提取）
+     * @param repeat 每个有效位的重复次数
+     */
+    public static Map<String, Object> evaluate(List<Integer> expected, double[] coefficients, boolean zeroIsOne, int repeat) {
+        int blocks = expected.size();
+        int available = Math.min(blocks, coefficients.length);
+        int payloadBits = blocks / repeat;
+        int[] margins = new int[payloadBits];
+        int[] voted = new int[payloadBits];
+        int blockErrors = 0;
+        double minCoefficientMargin = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < blocks; i++) {
+            int want = expected.get(i);
+            boolean agree;
+            if (i < available) {
+                double coeff = coefficients[i];
+                int got = coeff > 0 || (coeff == 0 && zeroIsOne) ? 1 : 0;
+                agree = got == want;
+                minCoefficientMargin = Math.min(minCoefficientMargin, want == 1 ? coeff : -coeff);
+            } else {
+                agree = false;
+            }
+            if (!agree) {
+                blockErrors++;
+            }
+            if (i / repeat < payloadBits) {
+                margins[i / repeat] += agree ? 1 : -1;
+            }
+        }
+        int payloadBitErrors = 0;
+        int minVoteMargin = repeat;
+        for (int b = 0; b < payloadBits; b++) {
+            int want = expected.get(b * repeat);
+            if (margins[b] <= 0) {
+                payloadBitErrors++;
+            }
+            voted[b] = margins[b] > 0 ? want : 1 - want;
+            minVoteMargin = Math.min(minVoteMargin, margins[b]);
+        }
+
+        int length = payloadBits >= 8 ? byteAt(voted, 0) : 0;
+        int available8 = Math.max(0, Math.min(length, (payloadBits - 8) / 8));
+        byte[] bytes = new byte[available8];
+        for (int i = 0; i < available8; i++) {
+            bytes[i] = (byte) byteAt(voted, 8 + i * 8);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("blocks", blocks);
+        report.put("missingBlocks", blocks - available);
+        report.put("blockErrors", blockErrors);
+        report.put("bitErrorRate", blocks == 0 ? 0.0 : (double) blockErrors / blocks);
+        report.put("payloadBits", payloadBits);
+        report.put("payloadBitErrors", payloadBitErrors);
+        report.put("minVoteMargin", payloadBits == 0 ? 0 : minVoteMargin);
+        report.put("voteMargins", margins);
+        report.put("minCoefficientMargin", available == 0 ? 0.0 : minCoefficientMargin);
+        report.put("decodedLength", length);
+        report.put("decodedText", new String(bytes, StandardCharsets.UTF_8));
+        report.put("passed", payloadBits > 0 && payloadBitErrors == 0);
+        return report;
+    }
+
+    private static int byteAt(int[] bits, int start) {
+        int value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 1) | (start + i < bits.length ? bits[start + i] : 0);
+        }
+        return value;
+    }
+
+    /**
+     * GDAL 把浮点写入整数波段时的取值：四舍五入（远离零）后截断到类型范围，NaN 写为 0
+     * @param range 整数类型的 {最小值, 最大值}，浮点类型传 null 表示原样保存
+     */
+    public static double quantize(double value, double[] range) {
+        if (range == null) {
+            return value;
+        }
+        if (value != value) {
+            return 0;
+        }
+        double rounded = value >= 0 ? Math.floor(value + 0.5) : Math.ceil(value - 0.5);
+        return Math.max(range[0], Math.min(range[1], rounded));
+    }
+}
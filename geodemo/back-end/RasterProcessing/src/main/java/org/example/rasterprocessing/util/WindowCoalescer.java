@@ -0,0 +1,281 @@
+package org.example.rasterprocessing.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 像素窗口合并读取
+ * 同一 (文件, 波段) 的请求排在一条通道上：空闲时请求立即读取自己的窗口，不增加延迟；
+ * 已有读取在进行时，被进行中的读取范围覆盖的请求直接等待并切片，其余请求排队，
+ * 由排在最前的请求等当前读取结束后一次取走整批，按块对齐合并相互重叠的窗口，每组只读一次再分别切片。
+ * 合并后的范围超过 maxMergePixels 时该组退回逐个读取
+ */
+public class WindowCoalescer {
+
+    /**
+     * 实际的窗口读取
+     */
+    public interface Reader {
+        double[] read(int x, int y, int width, int height);
+    }
+
+    private static class Pending {
+        final int[] window;
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        Pending(int[] window) {
+            this.window = window;
+        }
+    }
+
+    private static class Flight {
+        final int[] box;
+        final CompletableFuture<double[]> data = new CompletableFuture<>();
+
+        Flight(int[] box) {
+            this.box = box;
+        }
+    }
+
+    private static class Lane {
+        List<Pending> queue = new ArrayList<>();
+        final List<Flight> flights = new ArrayList<>();
+        boolean leaderWaiting;
+    }
+
+    private final long maxMergePixels;
+    private final ConcurrentHashMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong pixelsRequested = new AtomicLong();
+    private final AtomicLong pixelsRead = new AtomicLong();
+
+    public WindowCoalescer(long maxMergePixels) {
+        this.maxMergePixels = maxMergePixels;
+    }
+
+    /**
+     * @param key 通道键，通常为 文件#波段
+     * @param window 请求窗口 {x, y, 宽, 高}，须在栅格范围内
+     * @param blockSize 波段块大小 {宽, 高}
+     * @param rasterSize 栅格尺寸 {宽, 高}
+     */
+    public double[] read(String key, int[] window, int[] blockSize, int[] rasterSize, Reader reader) {
+        requests.incrementAndGet();
+        pixelsRequested.addAndGet((long) window[2] * window[3]);
+        Lane lane = lanes.computeIfAbsent(key, k -> new Lane());
+        Pending me = new Pending(window);
+        Flight covering = null;
+        boolean leader;
+        synchronized (lane) {
+            for (Flight flight : lane.flights) {
+                if (contains(flight.box, window)) {
+                    covering = flight;
+                    break;
+                }
+            }
+            leader = false;
+            if (covering == null) {
+                lane.queue.add(me);
+                if (!lane.leaderWaiting) {
+                    lane.leaderWaiting = true;
+                    leader = true;
+                }
+            }
+        }
+        if (covering != null) {
+            return slice(join(covering.data), covering.box, window);
+        }
+        if (leader) {
+            lead(key, lane, blockSize, rasterSize, reader);
+        }
+        return join(me.result);
+    }
+
+    /**
+     * 等当前读取结束（期间到达的请求都进入本批），取走整批合并读取
+     */
+    private void lead(String key, Lane lane, int[] blockSize, int[] rasterSize, Reader reader) {
+        List<Pending> batch;
+        boolean interrupted = false;
+        synchronized (lane) {
+            while (!lane.flights.isEmpty()) {
+                try {
+                    lane.wait();
+                } catch (InterruptedException e) {
+                    // 排队的请求都在等本线程读取，不能中途放弃
+                    interrupted = true;
+                }
+            }
+            batch = lane.queue;
+            lane.queue = new ArrayList<>();
+            lane.leaderWaiting = false;
+        }
+        List<Flight> flights = new ArrayList<>();
+        Map<Flight, List<Pending>> members = new HashMap<>();
+        for (List<Pending> group : group(batch, blockSize, rasterSize)) {
+            if (group.size() == 1) {
+                Flight flight = new Flight(group.get(0).window);
+                flights.add(flight);
+                members.put(flight, group);
+                continue;
+            }
+            int[] box = align(union(group), blockSize, rasterSize);
+            if ((long) box[2] * box[3] <= maxMergePixels) {
+                Flight flight = new Flight(box);
+                flights.add(flight);
+                members.put(flight, group);
+            } else {
+                for (Pending pending : group) {
+                    Flight flight = new Flight(pending.window);
+                    flights.add(flight);
+                    members.put(flight, List.of(pending));
+                }
+            }
+        }
+        synchronized (lane) {
+            lane.flights.addAll(flights);
+        }
+        try {
+            for (Flight flight : flights) {
+                try {
+                    reads.incrementAndGet();
+                    pixelsRead.addAndGet((long) flight.box[2] * flight.box[3]);
+                    double[] data = reader.read(flight.box[0], flight.box[1], flight.box[2], flight.box[3]);
+                    flight.data.complete(data);
+                    for (Pending pending : members.get(flight)) {
+                        pending.result.complete(slice(data, flight.box, pending.window));
+                    }
+                } catch (RuntimeException | Error e) {
+                    flight.data.completeExceptionally(e);
+                    for (Pending pending : members.get(flight)) {
+                        pending.result.completeExceptionally(e);
+                    }
+                }
+            }
+        } finally {
+            synchronized (lane) {
+                lane.flights.removeAll(flights);
+                lane.notifyAll();
+                if (lane.flights.isEmpty() && lane.queue.isEmpty() && !lane.leaderWaiting) {
+                    lanes.remove(key, lane);
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 按块对齐后的范围是否相交把窗口分组
+     */
+    static List<List<Pending>> group(List<Pending> batch, int[] blockSize, int[] rasterSize) {
+        int n = batch.size();
+        int[] parent = new int[n];
+        int[][] aligned = new int[n][];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            aligned[i] = align(batch.get(i).window, blockSize, rasterSize);
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (intersects(aligned[i], aligned[j])) {
+                    parent[find(parent, i)] = find(parent, j);
+                }
+            }
+        }
+        Map<Integer, List<Pending>> groups = new java.util.LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            groups.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(batch.get(i));
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static int[] union(List<Pending> group) {
+        int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+        for (Pending pending : group) {
+            int[] w = pending.window;
+            x0 = Math.min(x0, w[0]);
+            y0 = Math.min(y0, w[1]);
+            x1 = Math.max(x1, w[0] + w[2]);
+            y1 = Math.max(y1, w[1] + w[3]);
+        }
+        return new int[]{x0, y0, x1 - x0, y1 - y0};
+    }
+
+    /**
+     * 把窗口向外扩展到块边界，并裁剪到栅格范围
+     */
+    static int[] align(int[] window, int[] blockSize, int[] rasterSize) {
+        int bw = Math.max(1, blockSize[0]);
+        int bh = Math.max(1, blockSize[1]);
+        int x0 = window[0] / bw * bw;
+        int y0 = window[1] / bh * bh;
+        int x1 = Math.min(rasterSize[0], (window[0] + window[2] + bw - 1) / bw * bw);
+        int y1 = Math.min(rasterSize[1], (window[1] + window[3] + bh - 1) / bh * bh);
+        return new int[]{x0, y0, x1 - x0, y1 - y0};
+    }
+
+    static boolean contains(int[] box, int[] window) {
+        return window[0] >= box[0] && window[1] >= box[1]
+                && window[0] + window[2] <= box[0] + box[2] && window[1] + window[3] <= box[1] + box[3];
+    }
+
+    private static boolean intersects(int[] a, int[] b) {
+        return a[0] < b[0] + b[2] && b[0] < a[0] + a[2] && a[1] < b[1] + b[3] && b[1] < a[1] + a[3];
+    }
+
+    static double[] slice(double[] data, int[] box, int[] window) {
+        if (box[0] == window[0] && box[1] == window[1] && box[2] == window[2] && box[3] == window[3]) {
+            return data.clone();
+        }
+        double[] out = new double[window[2] * window[3]];
+        for (int row = 0; row < window[3]; row++) {
+            System.arraycopy(data, (window[1] - box[1] + row) * box[2] + window[0] - box[0], out, row * window[2], window[2]);
+        }
+        return out;
+    }
+
+    private static double[] join(CompletableFuture<double[]> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getReads() {
+        return reads.get();
+    }
+
+    public long getPixelsRequested() {
+        return pixelsRequested.get();
+    }
+
+    public long getPixelsRead() {
+        return pixelsRead.get();
+    }
+}
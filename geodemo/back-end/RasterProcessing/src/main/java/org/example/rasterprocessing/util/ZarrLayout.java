@@ -0,0 +1,320 @@
+package org.example.rasterprocessing.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Zarr 数组布局
+ * 描述一个 (波段, 行, 列) 三维数组在 Zarr v2/v3 目录存储中的元数据、块键和块编码。
+ * 每个块只含一个波段，边缘块按 Zarr 规范补足到完整块大小并填充 fill_value；数据一律按小端序写出。
+ * 压缩器只支持 JDK 自带实现的 zlib（仅 v2）与 gzip
+ */
+public final class ZarrLayout {
+
+    private final int zarrFormat;
+    private final String dataType;
+    private final int elementSize;
+    private final boolean floating;
+    private final long[] shape;
+    private final int chunkRows;
+    private final int chunkCols;
+    private final String compressor;
+    private final int level;
+    private final double fill;
+
+    private ZarrLayout(int zarrFormat, String dataType, long[] shape, int chunkRows, int chunkCols,
+                       String compressor, int level, double fill) {
+        this.zarrFormat = zarrFormat;
+        this.dataType = dataType;
+        this.elementSize = elementSize(dataType);
+        this.floating = dataType.startsWith("Float");
+        this.shape = shape;
+        this.chunkRows = chunkRows;
+        this.chunkCols = chunkCols;
+        this.compressor = compressor;
+        this.level = level;
+        this.fill = fill;
+    }
+
+    /**
+     * @param zarrFormat 2 或 3
+     * @param gdalDataType GDAL 数据类型名，如 Byte、UInt16、Float32
+     * @param bands 波段数
+     * @param height 行数
+     * @param width 列数
+     * @param chunkRows 块行数
+     * @param chunkCols 块列数
+     * @param compressor zlib、gzip 或 none
+     * @param level 压缩级别 0-9
+     * @param noData nodata 值，作为 fill_value；为空时浮点型为 NaN，整型为 0
+     */
+    public static ZarrLayout of(int zarrFormat, String gdalDataType, int bands, int height, int width,
+                                int chunkRows, int chunkCols, String compressor, int level, Double noData) {
+        if (zarrFormat != 2 && zarrFormat != 3) {
+            throw new IllegalArgumentException("zarrFormat 只能为 2 或 3");
+        }
+        if (elementSize(gdalDataType) == 0) {
+            throw new IllegalArgumentException("不支持导出的数据类型: " + gdalDataType);
+        }
+        if (chunkRows <= 0 || chunkCols <= 0) {
+            throw new IllegalArgumentException("块大小必须为正数");
+        }
+        String codec = compressor == null || compressor.isEmpty() ? "zlib" : compressor.toLowerCase();
+        if (!codec.equals("zlib") && !codec.equals("gzip") && !codec.equals("none")) {
+            throw new IllegalArgumentException("不支持的压缩器: " + compressor + "，可选 zlib、gzip、none");
+        }
+        if (zarrFormat == 3 && codec.equals("zlib")) {
+            throw new IllegalArgumentException("Zarr v3 没有 zlib 编解码器，请使用 gzip 或 none");
+        }
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("压缩级别应在 0-9 之间");
+        }
+        double fill = noData != null ? noData : gdalDataType.startsWith("Float") ? Double.NaN : 0;
+        return new ZarrLayout(zarrFormat, gdalDataType, new long[]{bands, height, width},
+                chunkRows, chunkCols, codec, level, fill);
+    }
+
+    static int elementSize(String dataType) {
+        if (dataType == null) {
+            return 0;
+        }
+        switch (dataType) {
+            case "Byte":
+            case "Int8":
+                return 1;
+            case "UInt16":
+            case "Int16":
+                return 2;
+            case "UInt32":
+            case "Int32":
+            case "Float32":
+                return 4;
+            case "Float64":
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 决定元数据与块内容的全部参数，任一变化都意味着已有块不能复用
+     */
+    public String signature() {
+        return "v" + zarrFormat + "|" + dataType + "|" + Arrays.toString(shape) + "|" + chunkRows + "x" + chunkCols
+                + "|" + compressor + ":" + level + "|" + fill;
+    }
+
+    public int getChunkRows() {
+        return chunkRows;
+    }
+
+    public int getChunkCols() {
+        return chunkCols;
+    }
+
+    public int getElementSize() {
+        return elementSize;
+    }
+
+    public int rowChunks() {
+        return (int) ((shape[1] + chunkRows - 1) / chunkRows);
+    }
+
+    public int colChunks() {
+        return (int) ((shape[2] + chunkCols - 1) / chunkCols);
+    }
+
+    /**
+     * 块在数组目录下的相对路径；v2 使用 "/" 分隔符，v3 使用默认键编码
+     */
+    public String chunkKey(int band, int row, int col) {
+        String key = band + "/" + row + "/" + col;
+        return zarrFormat == 3 ? "c/" + key : key;
+    }
+
+    /**
+     * 根组的元数据文件名与内容
+     */
+    public Map<String, Object> groupMetadata() {
+        Map<String, Object> files = new LinkedHashMap<>();
+        if (zarrFormat == 2) {
+            files.put(".zgroup", Map.of("zarr_format", 2));
+        } else {
+            Map<String, Object> group = new LinkedHashMap<>();
+            group.put("zarr_format", 3);
+            group.put("node_type", "group");
+            group.put("attributes", Map.of());
+            files.put("zarr.json", group);
+        }
+        return files;
+    }
+
+    /**
+     * 数组目录下的元数据文件名与内容
+     * @param attributes 自定义属性（地理变换、坐标系等）
+     */
+    public Map<String, Object> arrayMetadata(Map<String, Object> attributes) {
+        List<String> dimensions = Arrays.asList("band", "y", "x");
+        List<Long> shapeList = new ArrayList<>();
+        for (long s : shape) {
+            shapeList.add(s);
+        }
+        List<Integer> chunkList = Arrays.asList(1, chunkRows, chunkCols);
+        Object fillValue = Double.isNaN(fill) ? "NaN" : floating ? (Object) fill : (Object) (long) fill;
+        Map<String, Object> files = new LinkedHashMap<>();
+        if (zarrFormat == 2) {
+            Map<String, Object> array = new LinkedHashMap<>();
+            array.put("zarr_format", 2);
+            array.put("shape", shapeList);
+            array.put("chunks", chunkList);
+            array.put("dtype", numpyType());
+            array.put("compressor", compressor.equals("none") ? null : Map.of("id", compressor, "level", level));
+            array.put("fill_value", fillValue);
+            array.put("order", "C");
+            array.put("filters", null);
+            array.put("dimension_separator", "/");
+            files.put(".zarray", array);
+            Map<String, Object> attrs = new LinkedHashMap<>();
+            attrs.put("_ARRAY_DIMENSIONS", dimensions);
+            attrs.putAll(attributes);
+            files.put(".zattrs", attrs);
+        } else {
+            List<Object> codecs = new ArrayList<>();
+            codecs.add(Map.of("name", "bytes", "configuration", Map.of("endian", "little")));
+            if (compressor.equals("gzip")) {
+                codecs.add(Map.of("name", "gzip", "configuration", Map.of("level", level)));
+            }
+            Map<String, Object> array = new LinkedHashMap<>();
+            array.put("zarr_format", 3);
+            array.put("node_type", "array");
+            array.put("shape", shapeList);
+            array.put("data_type", dataType.equals("Byte") ? "uint8" : dataType.toLowerCase());
+            array.put("chunk_grid", Map.of("name", "regular", "configuration", Map.of("chunk_shape", chunkList)));
+            array.put("chunk_key_encoding", Map.of("name", "default", "configuration", Map.of("separator", "/")));
+            array.put("fill_value", fillValue);
+            array.put("codecs", codecs);
+            array.put("dimension_names", dimensions);
+            array.put("attributes", attributes);
+            files.put("zarr.json", array);
+        }
+        return files;
+    }
+
+    private String numpyType() {
+        switch (dataType) {
+            case "Byte":
+                return "|u1";
+            case "Int8":
+                return "|i1";
+            case "UInt16":
+                return "<u2";
+            case "Int16":
+                return "<i2";
+            case "UInt32":
+                return "<u4";
+            case "Int32":
+                return "<i4";
+            case "Float32":
+                return "<f4";
+            default:
+                return "<f8";
+        }
+    }
+
+    /**
+     * 窗口是否全为 fill_value（或 NaN），这样的块不必写出，读取端按 fill_value 补齐
+     */
+    public boolean isFill(double[] values, int count) {
+        boolean fillIsNaN = Double.isNaN(fill);
+        for (int i = 0; i < count; i++) {
+            double v = values[i];
+            if (v != fill && !(v != v && (fillIsNaN || !floating))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把 width x height 的窗口编码为一个完整块（未压缩），超出窗口的部分填充 fill_value
+     */
+    public byte[] encode(double[] values, int width, int height) {
+        ByteBuffer buffer = ByteBuffer.allocate(chunkRows * chunkCols * elementSize).order(ByteOrder.LITTLE_ENDIAN);
+        for (int row = 0; row < chunkRows; row++) {
+            for (int col = 0; col < chunkCols; col++) {
+                double v = row < height && col < width ? values[row * width + col] : fill;
+                if (v != v && !floating) {
+                    v = fill;
+                }
+                put(buffer, v);
+            }
+        }
+        return buffer.array();
+    }
+
+    private void put(ByteBuffer buffer, double v) {
+        switch (dataType) {
+            case "Byte":
+            case "Int8":
+                buffer.put((byte) (long) v);
+                break;
+            case "UInt16":
+            case "Int16":
+                buffer.putShort((short) (long) v);
+                break;
+            case "UInt32":
+            case "Int32":
+                buffer.putInt((int) (long) v);
+                break;
+            case "Float32":
+                buffer.putFloat((float) v);
+                break;
+            default:
+                buffer.putDouble(v);
+        }
+    }
+
+    /**
+     * 按配置的压缩器压缩块
+     */
+    public byte[] compress(byte[] raw) {
+        if (compressor.equals("none")) {
+            return raw;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+        if (compressor.equals("zlib")) {
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                byte[] buffer = new byte[64 * 1024];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } finally {
+                deflater.end();
+            }
+            return out.toByteArray();
+        }
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
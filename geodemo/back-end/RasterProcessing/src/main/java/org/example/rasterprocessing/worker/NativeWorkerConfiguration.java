@@ -0,0 +1,26 @@
+package org.example.rasterprocessing.worker;
+
+import org.example.rasterprocessing.config.GdalProperties;
+import org.example.rasterprocessing.config.NativeLibraryProperties;
+import org.example.rasterprocessing.service.GdalConfigService;
+import org.example.rasterprocessing.service.GdalIoAccounting;
+import org.example.rasterprocessing.service.MappedTiffReader;
+import org.example.rasterprocessing.service.NativeLibraryLoader;
+import org.example.rasterprocessing.service.RasterInfoCache;
+import org.example.rasterprocessing.service.RasterReaderService;
+import org.example.rasterprocessing.service.SimpleRasterWatermarkService;
+import org.example.rasterprocessing.service.SimpleWatermarkService;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 工作进程的 Spring 上下文：只包含本地库加载、GDAL 配置和实际执行 GDAL/OpenCV 操作的服务，
+ * 不启动 Web、JPA 和目录扫描
+ * 未标注 @Configuration，主应用的组件扫描不会加载它
+ */
+@EnableConfigurationProperties
+@Import({GdalProperties.class, NativeLibraryProperties.class, NativeLibraryLoader.class, GdalConfigService.class,
+        GdalIoAccounting.class, MappedTiffReader.class, RasterInfoCache.class, RasterReaderService.class,
+        SimpleRasterWatermarkService.class, SimpleWatermarkService.class})
+public class NativeWorkerConfiguration {
+}
@@ -0,0 +1,145 @@
+package org.example.rasterprocessing.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.rasterprocessing.service.NativeLibraryLoader;
+import org.example.rasterprocessing.service.NativeWorkerPool;
+import org.example.rasterprocessing.service.RasterReaderService;
+import org.example.rasterprocessing.service.SimpleRasterWatermarkService;
+import org.example.rasterprocessing.service.SimpleWatermarkService;
+import org.example.rasterprocessing.util.SharedExchangeFile;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 本地库工作进程入口，由 NativeWorkerPool 启动
+ * 控制通道为标准输入/输出上的单行 JSON（输出行带固定前缀），像素数组等大块结果写入共享的内存映射交换文件；
+ * 一次只处理一个请求，本地代码崩溃时只有当前请求失败，由主进程负责重启
+ *
+ * 参数：交换文件路径，其余参数原样传给 Spring（--key=value 形式的配置）
+ */
+public class NativeWorkerMain {
+
+    public static void main(String[] args) throws Exception {
+        // 标准输出专用于控制通道，服务中的日志输出改到标准错误
+        PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(NativeWorkerConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .run(Arrays.copyOfRange(args, 1, args.length));
+
+        // 预热：启动阶段完成本地库加载与驱动注册，首个请求不再承担这部分开销
+        NativeLibraryLoader loader = context.getBean(NativeLibraryLoader.class);
+        loader.ensureGdal();
+        try {
+            loader.ensureOpenCv();
+        } catch (Throwable e) {
+            System.err.println("工作进程 OpenCV 加载失败，水印请求将报错: " + e.getMessage());
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        try (SharedExchangeFile exchange = new SharedExchangeFile(Paths.get(args[0]));
+             BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            Handler handler = new Handler(context, exchange);
+            protocol.println(NativeWorkerPool.PROTOCOL_PREFIX + "{\"ready\":true}");
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                Map<String, Object> response = new LinkedHashMap<>();
+                try {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> request = mapper.readValue(line, Map.class);
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> arguments = (Map<String, Object>) request.get("args");
+                    response.put("ok", true);
+                    handler.handle((String) request.get("op"), arguments, response);
+                } catch (Exception e) {
+                    response.clear();
+                    response.put("ok", false);
+                    response.put("error", e.getMessage() == null ? e.toString() : e.getMessage());
+                }
+                protocol.println(NativeWorkerPool.PROTOCOL_PREFIX + mapper.writeValueAsString(response));
+            }
+        }
+        // 主进程关闭了标准输入
+        context.close();
+        System.exit(0);
+    }
+
+    /**
+     * 按操作名分派到对应服务
+     */
+    private static class Handler {
+        private final SimpleRasterWatermarkService rasterWatermarkService;
+        private final SimpleWatermarkService imageWatermarkService;
+        private final RasterReaderService rasterReaderService;
+        private final SharedExchangeFile exchange;
+
+        Handler(ConfigurableApplicationContext context, SharedExchangeFile exchange) {
+            this.rasterWatermarkService = context.getBean(SimpleRasterWatermarkService.class);
+            this.imageWatermarkService = context.getBean(SimpleWatermarkService.class);
+            this.rasterReaderService = context.getBean(RasterReaderService.class);
+            this.exchange = exchange;
+        }
+
+        void handle(String op, Map<String, Object> args, Map<String, Object> response) throws Exception {
+            switch (op) {
+                case "ping":
+                    response.put("result", "pong");
+                    break;
+                case "embedRaster":
+                    response.put("result", rasterWatermarkService.embedWatermark(str(args, "inputPath"),
+                            str(args, "outputPath"), str(args, "watermarkText"), Boolean.TRUE.equals(args.get("verify"))));
+                    break;
+                case "embedImage":
+                    response.put("result", imageWatermarkService.embedWatermark(str(args, "inputPath"),
+                            str(args, "outputPath"), str(args, "watermarkText"), Boolean.TRUE.equals(args.get("verify"))));
+                    break;
+                case "extractRaster":
+                    response.put("result", rasterWatermarkService.extractWatermark(str(args, "filePath"), num(args, "watermarkLength")));
+                    break;
+                case "extractImage":
+                    response.put("result", imageWatermarkService.extractWatermark(str(args, "filePath"), num(args, "watermarkLength")));
+                    break;
+                case "updateRaster":
+                    response.put("result", rasterWatermarkService.updateWatermark(str(args, "filePath"),
+                            str(args, "watermarkText"), str(args, "currentText")));
+                    break;
+                case "statistics":
+                    response.put("result", rasterReaderService.getRasterStatistics(str(args, "filePath"), num(args, "bandIndex")));
+                    break;
+                case "pixels":
+                    double[] pixels = rasterReaderService.readPixelValues(str(args, "filePath"), num(args, "bandIndex"),
+                            num(args, "x"), num(args, "y"), num(args, "width"), num(args, "height"));
+                    response.put("doubles", exchange.writeDoubles(pixels));
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的工作进程操作: " + op);
+            }
+        }
+
+        private static String str(Map<String, Object> args, String key) {
+            Object value = args.get(key);
+            return value == null ? null : value.toString();
+        }
+
+        private static int num(Map<String, Object> args, String key) {
+            return ((Number) args.get(key)).intValue();
+        }
+    }
+}
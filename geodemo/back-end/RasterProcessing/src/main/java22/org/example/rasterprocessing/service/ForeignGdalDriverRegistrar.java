@@ -0,0 +1,52 @@
+package org.example.rasterprocessing.service;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.Optional;
+
+/**
+ * 用 FFM 直接调用 GDAL 的 GDALRegister_xxx（java22 profile）；内置驱动没有该符号时，用 GDALRegisterPlugin（GDAL 3.8+）按名注册插件。
+ * GDAL 的 JNI 库由 gdal 类按本加载器加载，libgdal 是它的依赖，加载器的符号查找即可解析 GDAL 的导出函数。
+ * 运行时需要 --enable-native-access=ALL-UNNAMED，否则 JVM 会对受限方法给出警告
+ */
+public final class ForeignGdalDriverRegistrar implements GdalDriverRegistrar {
+
+    private final Linker linker = Linker.nativeLinker();
+    private final SymbolLookup lookup = SymbolLookup.loaderLookup();
+    private final MethodHandle registerPlugin;
+
+    public ForeignGdalDriverRegistrar() {
+        if (lookup.find("GDALAllRegister").isEmpty()) {
+            throw new IllegalStateException("当前加载器中找不到 GDAL 的导出符号");
+        }
+        this.registerPlugin = lookup.find("GDALRegisterPlugin")
+                .map(symbol -> linker.downcallHandle(symbol,
+                        FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS)))
+                .orElse(null);
+    }
+
+    @Override
+    public boolean register(String driverName) {
+        Optional<MemorySegment> symbol = lookup.find("GDALRegister_" + driverName);
+        try {
+            if (symbol.isPresent()) {
+                linker.downcallHandle(symbol.get(), FunctionDescriptor.ofVoid()).invokeExact();
+                return true;
+            }
+            if (registerPlugin == null) {
+                return false;
+            }
+            try (Arena arena = Arena.ofConfined()) {
+                // CE_None
+                return (int) registerPlugin.invokeExact(arena.allocateFrom(driverName)) == 0;
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException("注册 GDAL 驱动失败: " + driverName, e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.rasterprocessing.util;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * MemorySegment 实现（java22 profile）：整个窗口是一段连续内存，单值访问直接用 long 下标，
+ * 分块视图只为 GDAL 与批量复制服务；关闭 Arena 即释放，关闭后的访问抛 IllegalStateException 而不是读到已释放内存
+ */
+public final class SegmentRasterBuffer extends RasterBuffer {
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final DoubleBuffer[] views;
+
+    public SegmentRasterBuffer(int width, int height) {
+        super(width, height, MAX_CHUNK_BYTES);
+        this.arena = Arena.ofShared();
+        try {
+            this.segment = arena.allocate(byteSize(), Double.BYTES);
+        } catch (OutOfMemoryError e) {
+            arena.close();
+            throw new IllegalStateException("堆外内存不足，无法分配 " + byteSize() + " 字节", e);
+        }
+        this.views = new DoubleBuffer[chunkCount()];
+        for (int c = 0; c < views.length; c++) {
+            views[c] = chunk(c).asDoubleBuffer();
+        }
+    }
+
+    @Override
+    public String getBackend() {
+        return "segment";
+    }
+
+    @Override
+    public ByteBuffer chunk(int chunk) {
+        long offset = (long) chunkFirstRow(chunk) * width * Double.BYTES;
+        long length = (long) chunkRows(chunk) * width * Double.BYTES;
+        return segment.asSlice(offset, length).asByteBuffer().order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    protected DoubleBuffer view(int chunk) {
+        return views[chunk];
+    }
+
+    @Override
+    public double get(long index) {
+        return segment.getAtIndex(ValueLayout.JAVA_DOUBLE, index);
+    }
+
+    @Override
+    public void set(long index, double value) {
+        segment.setAtIndex(ValueLayout.JAVA_DOUBLE, index, value);
+    }
+
+    @Override
+    public void close() {
+        if (arena.scope().isAlive()) {
+            arena.close();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.example.rasterprocessing.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 端到端压测：在独立 JVM 中以随机端口启动完整应用，用合成栅格按固定到达率混合发送像素读取、统计、水印嵌入与提取请求，
+ * 输出吞吐、p50/p95/p99/max 延迟、错误率和服务端峰值 RSS 的 JSON 报告，便于不同版本之间对比。
+ * 设置 loadtest.target 时改为压测已运行的服务（须在同一台机器上，能访问合成数据的临时目录），
+ * 此时由 loadtest.server-pid 指定服务进程号以采样 RSS
+ *
+ * 默认构建不执行，运行方式：
+ * ./mvnw -Ploadtest test -Dloadtest.rate=50 -Dloadtest.duration=60 -Dloadtest.mix=pixels=40,statistics=20,embed=10,extract=20,info=10
+ */
+@Tag("loadtest")
+class ApiLoadTest {
+
+    private static final String WATERMARK = "LOADTEST-2024";
+    private static final int PIXEL_WINDOW = 64;
+
+    private static Path workDir;
+    private static Path geoTiff;
+    private static Path png;
+    private static Path watermarkedPng;
+    private static int rasterSize;
+
+    private static ServerProcess server;
+    private static String baseUrl;
+    private static long serverPid;
+    private static List<String> serverJvmArgs;
+
+    @BeforeAll
+    static void prepareData() throws IOException, InterruptedException {
+        rasterSize = Integer.getInteger("loadtest.raster-size", 1024);
+        workDir = Files.createTempDirectory("raster-loadtest");
+        geoTiff = SyntheticRasters.writeGeoTiff(workDir.resolve("synthetic.tif"), rasterSize, rasterSize, 42);
+        png = SyntheticRasters.writePng(workDir.resolve("synthetic.png"), rasterSize, rasterSize, 7);
+        watermarkedPng = workDir.resolve("synthetic_wm.png");
+        Files.createDirectories(workDir.resolve("out"));
+
+        String target = System.getProperty("loadtest.target");
+        if (target != null && !target.isBlank()) {
+            baseUrl = target.replaceAll("/+$", "");
+            serverPid = Long.getLong("loadtest.server-pid", -1L);
+            serverJvmArgs = null;
+            return;
+        }
+        serverJvmArgs = ServerProcess.splitArgs(System.getProperty("loadtest.server-jvm-args", ""));
+        server = ServerProcess.start(serverJvmArgs, Arrays.asList(
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--raster.catalog.scan-on-startup=false",
+                "--raster.catalog.roots=",
+                "--raster.native.warmup=false",
+                "--raster.watermark-cache.enabled=" + Boolean.getBoolean("loadtest.watermark-cache"),
+                "--raster.watermark-cache.dir=" + workDir.resolve("cache")),
+                workDir.resolve("server.log"),
+                Duration.ofSeconds(Long.getLong("loadtest.startup-timeout", 120)));
+        baseUrl = server.baseUrl();
+        serverPid = server.pid();
+    }
+
+    @AfterAll
+    static void cleanUp() throws IOException, InterruptedException {
+        if (server != null) {
+            server.close();
+        }
+        try (Stream<Path> files = Files.walk(workDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    void runLoad() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "20"));
+        Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup", 10));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration", 30));
+        Duration timeout = Duration.ofSeconds(Long.getLong("loadtest.timeout", 30));
+        int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 256);
+        long seed = Long.getLong("loadtest.seed", 1L);
+        String mix = System.getProperty("loadtest.mix", "info=10,pixels=40,statistics=20,embed=10,extract=20");
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        // 提取请求需要一份已嵌入水印的文件，压测开始前准备好
+        HttpResponse<String> prepared = client.send(
+                post("/api/watermark/embed?inputPath=" + enc(png) + "&outputPath=" + enc(watermarkedPng)
+                        + "&watermarkText=" + enc(WATERMARK)), HttpResponse.BodyHandlers.ofString());
+        assertTrue(prepared.body().contains("\"success\":true"), "准备水印文件失败: " + prepared.body());
+
+        List<LoadGenerator.Operation> operations = LoadGenerator.operations(availableOperations(), mix);
+        LoadGenerator generator = new LoadGenerator(client, operations, maxInFlight, seed);
+        System.out.println("压测开始: rate=" + rate + "/s, warmup=" + warmup + ", duration=" + duration + ", mix=" + mix);
+        Map<String, Object> results = generator.run(rate, warmup, duration, timeout, serverPid);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", LocalDateTime.now().toString());
+        report.put("host", host());
+        Map<String, Object> serverInfo = new LinkedHashMap<>();
+        serverInfo.put("baseUrl", baseUrl);
+        serverInfo.put("pid", serverPid);
+        serverInfo.put("external", server == null);
+        serverInfo.put("jvmArgs", serverJvmArgs);
+        report.put("server", serverInfo);
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("rate", rate);
+        config.put("warmupSeconds", warmup.getSeconds());
+        config.put("durationSeconds", duration.getSeconds());
+        config.put("timeoutSeconds", timeout.getSeconds());
+        config.put("maxInFlight", maxInFlight);
+        config.put("seed", seed);
+        config.put("mix", mix);
+        config.put("rasterSize", rasterSize);
+        config.put("watermarkCache", Boolean.getBoolean("loadtest.watermark-cache"));
+        report.put("config", config);
+        report.put("results", results);
+
+        Path output = Paths.get(System.getProperty("loadtest.output", "target/loadtest/report-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json"));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output.toFile(), report);
+        System.out.println("压测报告已写入: " + output.toAbsolutePath());
+        System.out.println("总计: " + results.get("total"));
+    }
+
+    private Map<String, LoadGenerator.Operation> availableOperations() {
+        Predicate<HttpResponse<String>> ok = r -> r.statusCode() == 200;
+        Predicate<HttpResponse<String>> succeeded = r -> r.statusCode() == 200 && r.body().contains("\"success\":true");
+        int maxOffset = Math.max(1, rasterSize - PIXEL_WINDOW);
+
+        Map<String, LoadGenerator.Operation> ops = new LinkedHashMap<>();
+        ops.put("info", new LoadGenerator.Operation("info", 1,
+                id -> get("/api/raster/info?filePath=" + enc(geoTiff)), ok));
+        ops.put("pixels", new LoadGenerator.Operation("pixels", 1, id -> {
+            // 按请求序号散列窗口位置，覆盖不同的条带
+            long h = id * 0x9E3779B97F4A7C15L;
+            int x = (int) Math.floorMod(h, (long) maxOffset);
+            int y = (int) Math.floorMod(h >>> 21, (long) maxOffset);
+            return get("/api/raster/pixels?filePath=" + enc(geoTiff) + "&x=" + x + "&y=" + y
+                    + "&width=" + PIXEL_WINDOW + "&height=" + PIXEL_WINDOW);
+        }, ok));
+        ops.put("statistics", new LoadGenerator.Operation("statistics", 1,
+                id -> get("/api/raster/statistics?filePath=" + enc(geoTiff)), ok));
+        ops.put("embed", new LoadGenerator.Operation("embed", 1, id -> {
+            Path out = workDir.resolve("out").resolve("embed_" + id + ".png");
+            return post("/api/watermark/embed?inputPath=" + enc(png) + "&outputPath=" + enc(out)
+                    + "&watermarkText=" + enc(WATERMARK + "-" + (id % 16)));
+        }, r -> {
+            boolean success = succeeded.test(r);
+            deleteOutput(r);
+            return success;
+        }));
+        ops.put("extract", new LoadGenerator.Operation("extract", 1,
+                id -> get("/api/watermark/extract?filePath=" + enc(watermarkedPng)
+                        + "&watermarkLength=" + WATERMARK.length()), succeeded));
+        return ops;
+    }
+
+    /**
+     * 嵌入结果只用于计时，收到响应后立即删除，避免长时间压测占满磁盘
+     */
+    private static void deleteOutput(HttpResponse<String> response) {
+        String query = response.request().uri().getRawQuery();
+        for (String param : query.split("&")) {
+            if (param.startsWith("outputPath=")) {
+                try {
+                    Files.deleteIfExists(Paths.get(java.net.URLDecoder.decode(
+                            param.substring("outputPath=".length()), StandardCharsets.UTF_8)));
+                } catch (IOException e) {
+                    // 忽略
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> host() {
+        Map<String, Object> host = new LinkedHashMap<>();
+        host.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        host.put("arch", System.getProperty("os.arch"));
+        host.put("processors", Runtime.getRuntime().availableProcessors());
+        host.put("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        return host;
+    }
+
+    private HttpRequest get(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + pathAndQuery)).GET().build();
+    }
+
+    private HttpRequest post(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + pathAndQuery))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private static String enc(Path path) {
+        return enc(path.toAbsolutePath().toString());
+    }
+
+    private static String enc(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
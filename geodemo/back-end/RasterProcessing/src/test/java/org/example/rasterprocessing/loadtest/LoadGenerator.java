@@ -0,0 +1,278 @@
+package org.example.rasterprocessing.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * 固定到达率（开放模型）的 HTTP 压测驱动
+ * 请求按计划时刻发出，延迟从计划时刻算起，服务端变慢时排队时间计入延迟，不会因协调遗漏而低估尾延迟；
+ * 操作按权重用固定种子抽取，同一配置的请求序列可复现
+ */
+final class LoadGenerator {
+
+    /**
+     * 一类请求
+     */
+    static final class Operation {
+        final String name;
+        final int weight;
+        final LongFunction<HttpRequest> request;
+        final Predicate<HttpResponse<String>> success;
+
+        Operation(String name, int weight, LongFunction<HttpRequest> request, Predicate<HttpResponse<String>> success) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+            this.success = success;
+        }
+    }
+
+    private final HttpClient client;
+    private final List<Operation> operations;
+    private final int maxInFlight;
+    private final long seed;
+
+    LoadGenerator(HttpClient client, List<Operation> operations, int maxInFlight, long seed) {
+        this.client = client;
+        this.operations = operations;
+        this.maxInFlight = maxInFlight;
+        this.seed = seed;
+    }
+
+    /**
+     * 以 rate 次/秒运行 warmup + duration，只统计计划时刻落在预热之后的请求
+     * @param serverPid 被测服务进程号，用于采样其 RSS；未知时传 -1
+     * @return 操作名 -> 统计结果，另含 "total"
+     */
+    Map<String, Object> run(double rate, Duration warmup, Duration duration, Duration timeout, long serverPid)
+            throws InterruptedException {
+        int totalWeight = operations.stream().mapToInt(o -> o.weight).sum();
+        if (totalWeight <= 0 || rate <= 0) {
+            throw new IllegalArgumentException("请求权重与到达率必须大于 0");
+        }
+        Map<String, Recorder> recorders = new LinkedHashMap<>();
+        for (Operation op : operations) {
+            recorders.put(op.name, new Recorder());
+        }
+        Recorder total = new Recorder();
+
+        Random random = new Random(seed);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Map<Long, CompletableFuture<?>> pending = new ConcurrentHashMap<>();
+        RssSampler rss = new RssSampler(serverPid);
+        rss.start();
+
+        long intervalNanos = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long measureStartWall = 0;
+        for (long k = 0; ; k++) {
+            long intended = start + k * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = intended >= measureFrom;
+            if (measured && measureStartWall == 0) {
+                measureStartWall = intended;
+            }
+            Operation op = pick(random, totalWeight);
+            Recorder recorder = recorders.get(op.name);
+            if (!inFlight.tryAcquire()) {
+                // 并发上限已满，计为失败而不是阻塞发压线程
+                if (measured) {
+                    recorder.fail(0, true);
+                    total.fail(0, true);
+                }
+                continue;
+            }
+            long id = k;
+            CompletableFuture<?> future = client.sendAsync(HttpRequest.newBuilder(op.request.apply(id), (name, value) -> true).timeout(timeout).build(),
+                            HttpResponse.BodyHandlers.ofString())
+                    .handle((response, error) -> {
+                        long latency = System.nanoTime() - intended;
+                        boolean ok = error == null && op.success.test(response);
+                        if (measured) {
+                            if (ok) {
+                                recorder.ok(latency);
+                                total.ok(latency);
+                            } else {
+                                recorder.fail(latency, false);
+                                total.fail(latency, false);
+                            }
+                        }
+                        inFlight.release();
+                        pending.remove(id);
+                        return null;
+                    });
+            pending.put(id, future);
+        }
+        CompletableFuture.allOf(pending.values().toArray(new CompletableFuture[0]))
+                .completeOnTimeout(null, timeout.toMillis() + 1000, TimeUnit.MILLISECONDS).join();
+        rss.stop();
+        double seconds = Math.max(1e-9, (System.nanoTime() - Math.max(measureStartWall, measureFrom)) / 1e9);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Recorder> e : recorders.entrySet()) {
+            results.put(e.getKey(), e.getValue().summary(seconds));
+        }
+        Map<String, Object> totalSummary = total.summary(seconds);
+        totalSummary.put("targetRate", rate);
+        totalSummary.put("serverPeakRssBytes", rss.peakBytes());
+        totalSummary.put("serverProcessPeakRssBytes", RssSampler.read(serverPid, "VmHWM:"));
+        results.put("total", totalSummary);
+        return results;
+    }
+
+    private Operation pick(Random random, int totalWeight) {
+        int r = random.nextInt(totalWeight);
+        for (Operation op : operations) {
+            r -= op.weight;
+            if (r < 0) {
+                return op;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    /**
+     * 单类请求的延迟记录
+     */
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        private long rejected;
+
+        synchronized void ok(long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+
+        synchronized void fail(long latencyNanos, boolean rejectedLocally) {
+            errors++;
+            if (rejectedLocally) {
+                rejected++;
+            }
+        }
+
+        synchronized Map<String, Object> summary(double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            long requests = count + errors;
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("requests", requests);
+            s.put("successes", (long) count);
+            s.put("errors", errors);
+            s.put("rejectedByClient", rejected);
+            s.put("errorRate", requests == 0 ? 0.0 : (double) errors / requests);
+            s.put("throughput", count / seconds);
+            s.put("p50Ms", percentile(sorted, 0.50));
+            s.put("p95Ms", percentile(sorted, 0.95));
+            s.put("p99Ms", percentile(sorted, 0.99));
+            s.put("maxMs", sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6);
+            return s;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+        }
+    }
+
+    /**
+     * 每 200ms 采样一次被测进程 /proc/<pid>/status 中的 VmRSS，记录压测期间的峰值（仅 Linux，读不到时为 -1）
+     */
+    static final class RssSampler {
+        private final long pid;
+        private final AtomicLong peak = new AtomicLong(-1);
+        private volatile boolean running;
+        private Thread thread;
+
+        RssSampler(long pid) {
+            this.pid = pid;
+        }
+
+        void start() {
+            running = true;
+            thread = new Thread(() -> {
+                while (running) {
+                    long rss = read(pid, "VmRSS:");
+                    peak.accumulateAndGet(rss, Math::max);
+                    LockSupport.parkNanos(200_000_000L);
+                }
+            }, "rss-sampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        long peakBytes() {
+            return peak.get();
+        }
+
+        static long read(long pid, String field) {
+            if (pid <= 0) {
+                return -1;
+            }
+            try {
+                for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+                    if (line.startsWith(field)) {
+                        String[] parts = line.substring(field.length()).trim().split("\\s+");
+                        return Long.parseLong(parts[0]) * 1024;
+                    }
+                }
+            } catch (Exception e) {
+                // 非 Linux 或进程已退出
+            }
+            return -1;
+        }
+    }
+
+    static List<Operation> operations(Map<String, Operation> available, String mix) {
+        List<Operation> selected = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            Operation template = available.get(kv[0].trim());
+            if (template == null) {
+                throw new IllegalArgumentException("未知的压测操作: " + kv[0] + "，可选: " + available.keySet());
+            }
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+            if (weight > 0) {
+                selected.add(new Operation(template.name, weight, template.request, template.success));
+            }
+        }
+        return selected;
+    }
+}
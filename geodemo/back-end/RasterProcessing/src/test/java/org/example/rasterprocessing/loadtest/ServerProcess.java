@@ -0,0 +1,119 @@
+package org.example.rasterprocessing.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在独立 JVM 中启动被测应用，使压测报告中的 RSS 只包含服务端而不包含压测驱动本身。
+ * 子进程沿用测试类路径与 application.properties，额外的 JVM 参数（如 -Xmx）由调用方给出
+ */
+final class ServerProcess implements AutoCloseable {
+
+    private static final String MAIN_CLASS = "org.example.rasterprocessing.RasterProcessingApplication";
+
+    private final Process process;
+    private final String baseUrl;
+    private final Path log;
+
+    private ServerProcess(Process process, String baseUrl, Path log) {
+        this.process = process;
+        this.baseUrl = baseUrl;
+        this.log = log;
+    }
+
+    /**
+     * 启动应用并等待 /actuator/health 返回 200
+     * @param jvmArgs 子进程 JVM 参数
+     * @param appArgs Spring 配置参数（--key=value）
+     * @param log 子进程标准输出与错误输出写入的文件
+     */
+    static ServerProcess start(List<String> jvmArgs, List<String> appArgs, Path log, Duration startupTimeout)
+            throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(MAIN_CLASS);
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        ServerProcess server = new ServerProcess(process, "http://localhost:" + port, log);
+        try {
+            server.awaitReady(startupTimeout);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+        return server;
+    }
+
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    long pid() {
+        return process.pid();
+    }
+
+    private void awaitReady(Duration timeout) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        HttpRequest health = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health"))
+                .timeout(Duration.ofSeconds(5)).GET().build();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("被测应用启动失败，退出码 " + process.exitValue() + "，日志: " + log);
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // 端口尚未监听
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("被测应用 " + timeout.getSeconds() + " 秒内未就绪，日志: " + log);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * 按空白拆分 JVM 参数
+     */
+    static List<String> splitArgs(String args) {
+        List<String> result = new ArrayList<>();
+        if (args != null && !args.isBlank()) {
+            result.addAll(Arrays.asList(args.trim().split("\\s+")));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+}
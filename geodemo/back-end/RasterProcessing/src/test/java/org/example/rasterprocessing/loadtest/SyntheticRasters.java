@@ -0,0 +1,106 @@
+package org.example.rasterprocessing.loadtest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * 压测用的合成数据：带 EPSG:4326 地理参考的未压缩 UInt16 GeoTIFF 和 PNG
+ * 像素由固定种子生成，不同机器上的输入完全一致
+ */
+final class SyntheticRasters {
+
+    private static final int ROWS_PER_STRIP = 16;
+
+    private SyntheticRasters() {}
+
+    /**
+     * 写单波段 UInt16 GeoTIFF，左上角 (116, 40)，像元大小 0.0001 度
+     */
+    static Path writeGeoTiff(Path file, int width, int height, long seed) throws IOException {
+        int strips = (height + ROWS_PER_STRIP - 1) / ROWS_PER_STRIP;
+        long dataBytes = (long) width * height * 2;
+        if (dataBytes > Integer.MAX_VALUE - 4096) {
+            throw new IllegalArgumentException("合成栅格过大: " + width + "x" + height);
+        }
+        int entryCount = 13;
+        int ifdOffset = 8 + (int) dataBytes;
+        int extraOffset = ifdOffset + 2 + entryCount * 12 + 4;
+        int stripOffsetsAt = extraOffset;
+        int stripCountsAt = stripOffsetsAt + strips * 4;
+        int pixelScaleAt = stripCountsAt + strips * 4;
+        int tiepointAt = pixelScaleAt + 3 * 8;
+        int geoKeysAt = tiepointAt + 6 * 8;
+        short[] geoKeys = {1, 1, 0, 3, 1024, 0, 1, 2, 1025, 0, 1, 1, 2048, 0, 1, 4326};
+
+        ByteBuffer buf = ByteBuffer.allocate(geoKeysAt + geoKeys.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(ifdOffset);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // 平滑趋势加噪声，DCT 水印和统计都有意义
+                int v = 1000 + (x * 7 + y * 3) % 2000 + random.nextInt(64);
+                buf.putShort((short) v);
+            }
+        }
+        buf.putShort((short) entryCount);
+        putEntry(buf, 256, 4, 1, width);
+        putEntry(buf, 257, 4, 1, height);
+        putEntry(buf, 258, 3, 1, 16);
+        putEntry(buf, 259, 3, 1, 1);
+        putEntry(buf, 262, 3, 1, 1);
+        putEntry(buf, 273, 4, strips, stripOffsetsAt);
+        putEntry(buf, 277, 3, 1, 1);
+        putEntry(buf, 278, 4, 1, ROWS_PER_STRIP);
+        putEntry(buf, 279, 4, strips, stripCountsAt);
+        putEntry(buf, 339, 3, 1, 1);
+        putEntry(buf, 33550, 12, 3, pixelScaleAt);
+        putEntry(buf, 33922, 12, 6, tiepointAt);
+        putEntry(buf, 34735, 3, geoKeys.length, geoKeysAt);
+        buf.putInt(0);
+        for (int s = 0; s < strips; s++) {
+            buf.putInt(8 + s * ROWS_PER_STRIP * width * 2);
+        }
+        for (int s = 0; s < strips; s++) {
+            buf.putInt(Math.min(ROWS_PER_STRIP, height - s * ROWS_PER_STRIP) * width * 2);
+        }
+        buf.putDouble(0.0001).putDouble(0.0001).putDouble(0);
+        buf.putDouble(0).putDouble(0).putDouble(0).putDouble(116).putDouble(40).putDouble(0);
+        for (short k : geoKeys) {
+            buf.putShort(k);
+        }
+        return Files.write(file, buf.array());
+    }
+
+    /**
+     * 写 RGB PNG
+     */
+    static Path writePng(Path file, int width, int height, long seed) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(16)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(16)) & 0xFF;
+                int b = ((x + y) & 0x7F) + random.nextInt(16);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    private static void putEntry(ByteBuffer buf, int tag, int type, int count, int value) {
+        buf.putShort((short) tag).putShort((short) type).putInt(count);
+        if (type == 3 && count == 1) {
+            buf.putShort((short) value).putShort((short) 0);
+        } else {
+            buf.putInt(value);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.rasterprocessing.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDownloadServiceTests {
+
+    private static FileDownloadService newService(Path root) {
+        FileDownloadService service = new FileDownloadService();
+        ReflectionTestUtils.setField(service, "roots", root.toString());
+        service.init();
+        return service;
+    }
+
+    /** 100 字节的文件，第 i 个字节为 i */
+    private static Path sample(Path dir) throws Exception {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return Files.write(dir.resolve("out.tif"), bytes);
+    }
+
+    @Test
+    void resolvesOnlyInsideRoots() throws Exception {
+        Path root = Files.createTempDirectory("download-root");
+        Path outside = Files.createTempFile("download-outside", ".tif");
+        FileDownloadService service = newService(root);
+        Path file = sample(root);
+        Files.createDirectory(root.resolve("sub"));
+
+        assertEquals(file.toRealPath(), service.resolve(root + "/sub/../out.tif"));
+        // 越界与不存在的结果相同，不泄露目录之外的文件是否存在
+        assertThrows(NoSuchFileException.class, () -> service.resolve(outside.toString()));
+        assertThrows(NoSuchFileException.class, () -> service.resolve(root + "/../" + outside.getFileName()));
+        assertThrows(NoSuchFileException.class, () -> service.resolve(outside + ".missing"));
+        Path link = Files.createSymbolicLink(root.resolve("link.tif"), outside);
+        assertThrows(NoSuchFileException.class, () -> service.resolve(link.toString()));
+        assertThrows(NoSuchFileException.class, () -> service.resolve(root.resolve("missing.tif").toString()));
+        assertThrows(NoSuchFileException.class, () -> service.resolve(root.toString()));
+    }
+
+    @Test
+    void plansRangesForResumedDownloads() throws Exception {
+        Path root = Files.createTempDirectory("download-root");
+        FileDownloadService service = newService(root);
+        Path file = sample(root);
+
+        FileDownloadService.Download full = service.plan(file, null, null, -1, null);
+        assertEquals(200, full.getStatus());
+        assertEquals(100, full.getLength());
+
+        FileDownloadService.Download middle = service.plan(file, "bytes=10-19", null, -1, null);
+        assertEquals(206, middle.getStatus());
+        assertEquals(10, middle.getStart());
+        assertEquals(10, middle.getLength());
+        assertEquals("bytes 10-19/100", middle.getContentRange());
+
+        assertEquals("bytes 60-99/100", service.plan(file, "bytes=60-", null, -1, null).getContentRange());
+        assertEquals("bytes 95-99/100", service.plan(file, "bytes=-5", null, -1, null).getContentRange());
+        assertEquals("bytes 90-99/100", service.plan(file, "bytes=90-500", null, -1, null).getContentRange());
+
+        FileDownloadService.Download beyond = service.plan(file, "bytes=100-", null, -1, null);
+        assertEquals(416, beyond.getStatus());
+        assertEquals("bytes */100", beyond.getContentRange());
+
+        // 多段与语法错误的 Range 返回整个文件
+        assertEquals(200, service.plan(file, "bytes=0-1,5-6", null, -1, null).getStatus());
+        assertEquals(200, service.plan(file, "items=0-1", null, -1, null).getStatus());
+
+        // If-Range 与当前版本不一致时重新下载整个文件
+        assertEquals(206, service.plan(file, "bytes=10-", null, -1, full.getEtag()).getStatus());
+        assertEquals(200, service.plan(file, "bytes=10-", null, -1, "\"stale\"").getStatus());
+        assertEquals(200, service.plan(file, "bytes=10-", null, -1, "W/" + full.getEtag()).getStatus());
+    }
+
+    @Test
+    void answersConditionalRequests() throws Exception {
+        Path root = Files.createTempDirectory("download-root");
+        FileDownloadService service = newService(root);
+        Path file = sample(root);
+        FileDownloadService.Download full = service.plan(file, null, null, -1, null);
+
+        assertEquals(304, service.plan(file, null, full.getEtag(), -1, null).getStatus());
+        assertEquals(304, service.plan(file, "bytes=0-9", "\"other\", W/" + full.getEtag(), -1, null).getStatus());
+        assertEquals(200, service.plan(file, null, "\"other\"", full.getLastModified(), null).getStatus());
+        assertEquals(304, service.plan(file, null, null, full.getLastModified(), null).getStatus());
+        assertEquals(200, service.plan(file, null, null, full.getLastModified() - 5000, null).getStatus());
+    }
+
+    @Test
+    void transfersRequestedSlice() throws Exception {
+        Path root = Files.createTempDirectory("download-root");
+        FileDownloadService service = newService(root);
+        Path file = sample(root);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileDownloadService.Download slice = service.plan(file, "bytes=40-49", null, -1, null);
+        assertEquals(10, service.transfer(slice, out));
+        assertArrayEquals(Arrays.copyOfRange(Files.readAllBytes(file), 40, 50), out.toByteArray());
+    }
+}
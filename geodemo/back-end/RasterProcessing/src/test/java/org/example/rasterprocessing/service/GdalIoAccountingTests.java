@@ -0,0 +1,52 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.GdalIoStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GdalIoAccountingTests {
+
+    @Test
+    void countsBlocksCoveredByWindow() {
+        // 256x256 块
+        assertEquals(1, GdalIoAccounting.blocksTouched(256, 256, 0, 0, 256, 256));
+        assertEquals(4, GdalIoAccounting.blocksTouched(256, 256, 255, 255, 2, 2));
+        assertEquals(6, GdalIoAccounting.blocksTouched(256, 256, 100, 0, 600, 300));
+        // 条带布局（一行一块）
+        assertEquals(10, GdalIoAccounting.blocksTouched(1000, 1, 0, 5, 1000, 10));
+        assertEquals(0, GdalIoAccounting.blocksTouched(256, 256, 0, 0, 0, 10));
+    }
+
+    @Test
+    void recordsRequestAndBlockBytes() {
+        GdalIoAccounting accounting = new GdalIoAccounting();
+        GdalIoStats stats = accounting.begin("test");
+        assertSame(stats, accounting.current());
+
+        // Float32 窗口 10x10，跨 2x1 个 64x64 块
+        accounting.record(stats, 64, 64, 4, 60, 0, 10, 10);
+        accounting.record(stats, 64, 64, 4, 0, 0, 0, 10);
+        assertEquals(1, stats.getReads());
+        assertEquals(2, stats.getBlocksTouched());
+        assertEquals(2L * 64 * 64 * 4, stats.getBlockBytes());
+        assertEquals(10L * 10 * 4, stats.getBytesRequested());
+        assertEquals(-1, stats.getCacheUsedBytes());
+
+        // 没有请求上下文时只计入全局汇总
+        accounting.record(null, 64, 64, 4, 0, 0, 64, 64);
+        assertEquals(1, stats.getReads());
+    }
+
+    @Test
+    void parsesProcessIoCounters() {
+        Map<String, Long> counters = GdalIoAccounting.parseIoCounters(Arrays.asList(
+                "rchar: 12345", "wchar: 10", "read_bytes: 4096", "cancelled_write_bytes: 0", "garbage"));
+        assertEquals(Long.valueOf(12345), counters.get("rchar"));
+        assertEquals(Long.valueOf(4096), counters.get("read_bytes"));
+        assertEquals(4, counters.size());
+    }
+}
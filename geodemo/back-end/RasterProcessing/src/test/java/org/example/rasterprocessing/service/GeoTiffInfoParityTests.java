@@ -0,0 +1,131 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.config.NativeLibraryProperties;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.util.GeoTiffInfoReader;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.Driver;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.gdal.osr.SpatialReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 同一文件分别走文件头解析与 GDAL，两条路径的 RasterInfo 须一致；没有 GDAL 本地库时跳过
+ */
+class GeoTiffInfoParityTests {
+
+    @TempDir
+    Path tempDir;
+
+    private static RasterReaderService newService() {
+        NativeLibraryLoader loader = new NativeLibraryLoader();
+        ReflectionTestUtils.setField(loader, "properties", new NativeLibraryProperties());
+        try {
+            loader.ensureGdal();
+        } catch (RuntimeException | LinkageError e) {
+            assumeTrue(false, "GDAL 不可用: " + e.getMessage());
+        }
+        RasterReaderService service = new RasterReaderService();
+        ReflectionTestUtils.setField(service, "nativeLibraryLoader", loader);
+        return service;
+    }
+
+    private static String wkt(int epsg) {
+        SpatialReference srs = new SpatialReference();
+        try {
+            srs.ImportFromEPSG(epsg);
+            return srs.ExportToWkt();
+        } finally {
+            srs.delete();
+        }
+    }
+
+    private Path create(String name, int bands, int type, Integer epsg, double[] geoTransform, Double noData,
+                        String... metadata) {
+        Path file = tempDir.resolve(name);
+        Driver driver = gdal.GetDriverByName("GTiff");
+        Dataset dataset = driver.Create(file.toString(), 40, 30, bands, type);
+        try {
+            if (epsg != null) {
+                dataset.SetProjection(wkt(epsg));
+            }
+            if (geoTransform != null) {
+                dataset.SetGeoTransform(geoTransform);
+            }
+            for (int b = 1; b <= bands; b++) {
+                Band band = dataset.GetRasterBand(b);
+                if (noData != null) {
+                    band.SetNoDataValue(noData);
+                }
+                band.Fill(b);
+            }
+            for (int i = 0; i + 1 < metadata.length; i += 2) {
+                dataset.SetMetadataItem(metadata[i], metadata[i + 1]);
+            }
+        } finally {
+            dataset.delete();
+        }
+        return file;
+    }
+
+    private static void assertSameInfo(RasterReaderService service, Path file) throws Exception {
+        RasterInfo fast = GeoTiffInfoReader.read(file,
+                code -> ReflectionTestUtils.invokeMethod(service, "epsgToWkt", code));
+        assertNotNull(fast, "文件头解析不应回退: " + file.getFileName());
+        RasterInfo expected = ReflectionTestUtils.invokeMethod(service, "readRasterInfoWithGdal", file.toString());
+
+        assertEquals(expected.getWidth(), fast.getWidth());
+        assertEquals(expected.getHeight(), fast.getHeight());
+        assertEquals(expected.getBandCount(), fast.getBandCount());
+        assertEquals(expected.getDriver(), fast.getDriver());
+        assertEquals(expected.getDataType(), fast.getDataType());
+        assertEquals(expected.getNoDataValue(), fast.getNoDataValue());
+        assertArrayEquals(expected.getGeoTransform(), fast.getGeoTransform(), 1e-9);
+        if (expected.getProjection() == null || expected.getProjection().isEmpty()) {
+            assertNull(fast.getProjection());
+        } else {
+            SpatialReference a = new SpatialReference(expected.getProjection());
+            SpatialReference b = new SpatialReference(fast.getProjection());
+            try {
+                assertEquals(1, a.IsSame(b));
+            } finally {
+                a.delete();
+                b.delete();
+            }
+        }
+        assertEquals(expected.getMetadata(), fast.getMetadata());
+    }
+
+    @Test
+    void geographicByteImageMatchesGdal() throws Exception {
+        RasterReaderService service = newService();
+        Path file = create("geographic.tif", 3, gdalconst.GDT_Byte, 4326,
+                new double[]{116.0, 0.001, 0, 40.0, 0, -0.001}, 0.0,
+                "TIFFTAG_SOFTWARE", "parity-test", "SENSOR", "GF-2", "NOTE", "a < b & c");
+        assertSameInfo(service, file);
+    }
+
+    @Test
+    void projectedPixelIsPointFloatImageMatchesGdal() throws Exception {
+        RasterReaderService service = newService();
+        Path file = create("projected.tif", 1, gdalconst.GDT_Float32, 32650,
+                new double[]{500000, 30, 0, 4400000, 0, -30}, -9999.0, "AREA_OR_POINT", "Point");
+        assertSameInfo(service, file);
+    }
+
+    @Test
+    void ungeoreferencedImageMatchesGdal() throws Exception {
+        RasterReaderService service = newService();
+        Path file = create("plain.tif", 2, gdalconst.GDT_Int16, null, null, null);
+        assertSameInfo(service, file);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.rasterprocessing.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTiffReaderTests {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 写一个小端、按 4 行分条带的单波段 UInt16 TIFF，像素值 = x + y * 100
+     */
+    static Path writeStripedTiff(Path file, int width, int height) throws Exception {
+        int rowsPerStrip = 4;
+        int strips = (height + rowsPerStrip - 1) / rowsPerStrip;
+        int dataBytes = width * height * 2;
+        int ifdOffset = 8 + dataBytes;
+        int entryCount = 9;
+        int arraysOffset = ifdOffset + 2 + entryCount * 12 + 4;
+
+        ByteBuffer buf = ByteBuffer.allocate(arraysOffset + strips * 8).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(ifdOffset);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                buf.putShort((short) (x + y * 100));
+            }
+        }
+        buf.putShort((short) entryCount);
+        putEntry(buf, 256, 4, 1, width);
+        putEntry(buf, 257, 4, 1, height);
+        putEntry(buf, 258, 3, 1, 16);
+        putEntry(buf, 259, 3, 1, 1);
+        putEntry(buf, 262, 3, 1, 1);
+        putEntry(buf, 273, 4, strips, arraysOffset);
+        putEntry(buf, 277, 3, 1, 1);
+        putEntry(buf, 278, 4, 1, rowsPerStrip);
+        putEntry(buf, 279, 4, strips, arraysOffset + strips * 4);
+        buf.putInt(0);
+        for (int s = 0; s < strips; s++) {
+            buf.putInt(8 + s * rowsPerStrip * width * 2);
+        }
+        for (int s = 0; s < strips; s++) {
+            buf.putInt(Math.min(rowsPerStrip, height - s * rowsPerStrip) * width * 2);
+        }
+        return Files.write(file, buf.array());
+    }
+
+    private static void putEntry(ByteBuffer buf, int tag, int type, int count, int value) {
+        buf.putShort((short) tag).putShort((short) type).putInt(count);
+        if (type == 3 && count == 1) {
+            buf.putShort((short) value).putShort((short) 0);
+        } else {
+            buf.putInt(value);
+        }
+    }
+
+    private MappedTiffReader newReader() {
+        MappedTiffReader reader = new MappedTiffReader();
+        ReflectionTestUtils.setField(reader, "enabled", true);
+        ReflectionTestUtils.setField(reader, "maxOpenFiles", 4);
+        return reader;
+    }
+
+    @Test
+    void readsWindowAcrossStrips() throws Exception {
+        Path file = writeStripedTiff(tempDir.resolve("striped.tif"), 20, 10);
+        MappedTiffReader reader = newReader();
+
+        assertTrue(reader.supports(file.toString()));
+        double[] pixels = reader.readWindow(file.toString(), 1, 3, 2, 5, 6);
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 5; x++) {
+                assertEquals((3 + x) + (2 + y) * 100, pixels[y * 5 + x], 0.0);
+            }
+        }
+    }
+
+    @Test
+    void computesBandStatistics() throws Exception {
+        Path file = writeStripedTiff(tempDir.resolve("stats.tif"), 20, 10);
+        Map<String, Double> stats = newReader().statistics(file.toString(), 1);
+
+        assertEquals(0.0, stats.get("min"), 0.0);
+        assertEquals(19 + 9 * 100, stats.get("max"), 0.0);
+        assertEquals(9.5 + 4.5 * 100, stats.get("mean"), 1e-9);
+    }
+
+    @Test
+    void rejectsNonTiffFiles() throws Exception {
+        Path file = Files.write(tempDir.resolve("fake.tif"), new byte[]{1, 2, 3});
+        assertFalse(newReader().supports(file.toString()));
+    }
+}
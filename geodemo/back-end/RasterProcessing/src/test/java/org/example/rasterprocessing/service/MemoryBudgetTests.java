@@ -0,0 +1,72 @@
+package org.example.rasterprocessing.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTests {
+
+    private MemoryBudget newBudget(String budget, int maxQueue, long maxWaitMs) {
+        MemoryBudget memoryBudget = new MemoryBudget();
+        ReflectionTestUtils.setField(memoryBudget, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(memoryBudget, "enabled", true);
+        ReflectionTestUtils.setField(memoryBudget, "budget", budget);
+        ReflectionTestUtils.setField(memoryBudget, "maxQueue", maxQueue);
+        ReflectionTestUtils.setField(memoryBudget, "maxWaitMs", maxWaitMs);
+        memoryBudget.init();
+        return memoryBudget;
+    }
+
+    @Test
+    void queuedRequestIsAdmittedAfterRelease() throws Exception {
+        MemoryBudget budget = newBudget("100KB", 4, 5000);
+        MemoryBudget.Reservation first = budget.acquire("embed", 80 * 1024);
+
+        CompletableFuture<MemoryBudget.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return budget.acquire("embed", 50 * 1024);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (((Number) budget.status().get("queued")).intValue() == 0) {
+            Thread.sleep(5);
+        }
+        assertFalse(second.isDone());
+
+        first.close();
+        first.close();
+        MemoryBudget.Reservation admitted = second.get(5, TimeUnit.SECONDS);
+        assertEquals(50 * 1024, ((Number) budget.status().get("reservedBytes")).longValue());
+        admitted.close();
+        assertEquals(0, ((Number) budget.status().get("reservedBytes")).longValue());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFullOrWaitTimesOut() throws Exception {
+        MemoryBudget noQueue = newBudget("1MB", 0, 5000);
+        try (MemoryBudget.Reservation held = noQueue.acquire("extract", 1024 * 1024)) {
+            assertThrows(MemoryBudget.RejectedException.class, () -> noQueue.acquire("extract", 1));
+        }
+
+        MemoryBudget shortWait = newBudget("1MB", 4, 50);
+        try (MemoryBudget.Reservation held = shortWait.acquire("extract", 1024 * 1024)) {
+            assertThrows(MemoryBudget.RejectedException.class, () -> shortWait.acquire("extract", 1));
+        }
+        assertEquals(1L, shortWait.status().get("rejected"));
+        assertEquals(0, ((Number) shortWait.status().get("queued")).intValue());
+    }
+
+    @Test
+    void oversizedRequestRunsAlone() throws Exception {
+        MemoryBudget budget = newBudget("1MB", 4, 5000);
+        try (MemoryBudget.Reservation reservation = budget.acquire("embed", 10L * 1024 * 1024)) {
+            assertEquals(1024 * 1024, reservation.getBytes());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.rasterprocessing.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryCostEstimatorTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rasterWatermarkCostIsOneBlockRow() throws Exception {
+        // 80x4000：每块行 10 个块，共 500 个块行
+        String file = MappedTiffReaderTests.writeStripedTiff(tempDir.resolve("tall.tif"), 80, 4000).toString();
+        MemoryCostEstimator estimator = newEstimator();
+
+        // 水印按块行逐条处理：无论水印长短，峰值都是一个块行（80 x 8 像素，每像素 8 字节）
+        assertEquals(8L * 80 * 8, estimator.embed(file, "abc"));
+        assertEquals(8L * 80 * 8, estimator.extract(file, 3));
+        assertEquals(8L * 80 * 8, estimator.embed(file, null));
+        // 放不下一个块时不读取像素
+        String narrow = MappedTiffReaderTests.writeStripedTiff(tempDir.resolve("narrow.tif"), 7, 4000).toString();
+        assertEquals(0L, estimator.extract(narrow, 255));
+    }
+
+    private static MemoryCostEstimator newEstimator() {
+        RasterInfoCache rasterInfoCache = new RasterInfoCache();
+        ReflectionTestUtils.setField(rasterInfoCache, "maxEntries", 16);
+        RasterReaderService rasterReaderService = new RasterReaderService();
+        ReflectionTestUtils.setField(rasterReaderService, "rasterInfoCache", rasterInfoCache);
+
+        MemoryCostEstimator estimator = new MemoryCostEstimator();
+        ReflectionTestUtils.setField(estimator, "rasterReaderService", rasterReaderService);
+        return estimator;
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.rasterprocessing.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MosaicServiceTests {
+
+    private static final double[] GRID = {500000, 10, 0, 4200000, 0, -10};
+
+    @TempDir
+    Path tempDir;
+
+    private static MosaicService.Member member(double originX, double originY, int width, int height) {
+        MosaicService.Member member = new MosaicService.Member();
+        member.width = width;
+        member.height = height;
+        member.geoTransform = new double[]{originX, 10, 0, originY, 0, -10};
+        member.offset = MosaicService.alignment(GRID, member.geoTransform);
+        return member;
+    }
+
+    @Test
+    void alignmentGivesIntegerPixelOffsets() {
+        assertArrayEquals(new int[]{0, 0}, MosaicService.alignment(GRID, GRID));
+        assertArrayEquals(new int[]{100, 250}, member(501000, 4197500, 10, 10).offset);
+        // 浮点误差范围内仍视为对齐
+        assertArrayEquals(new int[]{3, 0}, MosaicService.alignment(GRID, new double[]{500030.0000001, 10, 0, 4200000, 0, -10}));
+    }
+
+    @Test
+    void misalignedOrDifferentResolutionFallsBackToVrt() {
+        assertNull(member(500005, 4200000, 10, 10).offset);
+        assertNull(MosaicService.alignment(GRID, new double[]{500000, 20, 0, 4200000, 0, -20}));
+    }
+
+    @Test
+    void memberWindowClipsRequestToMember() {
+        MosaicService.Member m = member(501000, 4199000, 100, 50); // 偏移 (100, 100)
+        assertArrayEquals(new int[]{0, 0, 100, 50}, MosaicService.memberWindow(m, 0, 0, 1000, 1000));
+        assertArrayEquals(new int[]{20, 10, 30, 40}, MosaicService.memberWindow(m, 120, 110, 30, 100));
+        // 只共享边界不算相交
+        assertNull(MosaicService.memberWindow(m, 200, 100, 10, 10));
+        assertNull(MosaicService.memberWindow(m, 0, 0, 100, 100));
+    }
+
+    @Test
+    void statisticsCountOverlapsOnceForTheLastMember() throws Exception {
+        // 两个 20x10 成员（像素值 = x + y * 100）在列 10-19 重叠，后登记的 b 覆盖 a
+        MosaicService.Member a = member(500000, 4200000, 20, 10);
+        a.path = MappedTiffReaderTests.writeStripedTiff(tempDir.resolve("a.tif"), 20, 10).toString();
+        MosaicService.Member b = member(500100, 4200000, 20, 10);
+        b.index = 1;
+        b.path = MappedTiffReaderTests.writeStripedTiff(tempDir.resolve("b.tif"), 20, 10).toString();
+        MosaicService.Mosaic mosaic = new MosaicService.Mosaic("pair", tempDir.resolve("pair.vrt").toString(),
+                Arrays.asList(a, b), 30, 10, 1, GRID.clone(), "", null, 0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            MosaicService service = newService(pool, mosaic);
+            Map<String, Object> full = service.statistics("pair", 1, null);
+            assertEquals(300L, full.get("count"));
+            // a 的列 0-9 加上 b 的全部像素
+            assertEquals((450 + 45000 + 1900 + 90000) / 300.0, (Double) full.get("mean"), 1e-9);
+            assertEquals(0.0, full.get("min"));
+            assertEquals(919.0, full.get("max"));
+            assertEquals(0, full.get("vrtTiles"));
+
+            // 只覆盖重叠区的 bbox：全部来自 b
+            Map<String, Object> overlap = service.statistics("pair", 1, new double[]{500100, 4199900, 500200, 4200000});
+            assertEquals(100L, overlap.get("count"));
+            assertEquals(9.0 + 900, overlap.get("max"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MosaicService newService(ExecutorService pool, MosaicService.Mosaic mosaic) {
+        MappedTiffReader mappedTiffReader = new MappedTiffReader();
+        ReflectionTestUtils.setField(mappedTiffReader, "enabled", true);
+        ReflectionTestUtils.setField(mappedTiffReader, "maxOpenFiles", 4);
+        RasterReaderService rasterReaderService = new RasterReaderService();
+        ReflectionTestUtils.setField(rasterReaderService, "mappedTiffReader", mappedTiffReader);
+        ReflectionTestUtils.setField(rasterReaderService, "gdalIoAccounting", new GdalIoAccounting());
+        ParallelRasterExecutor executor = new ParallelRasterExecutor();
+        ReflectionTestUtils.setField(executor, "rasterWorkerPool", pool);
+
+        MosaicService service = new MosaicService();
+        ReflectionTestUtils.setField(service, "rasterReaderService", rasterReaderService);
+        ReflectionTestUtils.setField(service, "parallelRasterExecutor", executor);
+        ReflectionTestUtils.setField(service, "gdalIoAccounting", new GdalIoAccounting());
+        ((Map<String, MosaicService.Mosaic>) ReflectionTestUtils.getField(service, "mosaics")).put(mosaic.name, mosaic);
+        return service;
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.rasterprocessing.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeLibraryLoaderTests {
+
+    @Test
+    void driverListKeepsOrderAndAddsRequiredDrivers() {
+        assertEquals(Arrays.asList("GTiff", "COG", "netCDF", "VRT", "MEM"),
+                NativeLibraryLoader.driverNames(Arrays.asList(" GTiff", "COG", "gtiff", "netCDF", "")));
+        assertEquals(Arrays.asList("MEM", "GTiff", "VRT"),
+                NativeLibraryLoader.driverNames(Arrays.asList("MEM", "GTiff")));
+        // 为空表示注册全部驱动
+        assertTrue(NativeLibraryLoader.driverNames(new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    void registersDriversOneByOne() {
+        List<String> registered = new ArrayList<>();
+        GdalDriverRegistrar registrar = name -> {
+            if (name.equals("HDF4")) {
+                return false; // 未编译进 GDAL
+            }
+            registered.add(name);
+            return true;
+        };
+        List<String> names = NativeLibraryLoader.driverNames(Arrays.asList("GTiff", "COG", "HDF4"));
+        assertEquals(Arrays.asList("HDF4"), NativeLibraryLoader.registerEach(registrar, names));
+        assertEquals(Arrays.asList("GTiff", "COG", "VRT", "MEM"), registered);
+    }
+
+    @Test
+    void missingRequiredDriverFallsBackToFullRegistration() {
+        GdalDriverRegistrar registrar = name -> !name.equals("VRT");
+        assertNull(NativeLibraryLoader.registerEach(registrar, NativeLibraryLoader.driverNames(Arrays.asList("GTiff"))));
+    }
+}
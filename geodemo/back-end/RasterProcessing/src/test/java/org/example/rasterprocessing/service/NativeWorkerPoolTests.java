@@ -0,0 +1,164 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.util.SharedExchangeFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用模拟工作进程（不加载 Spring 与本地库，按同样的协议应答）验证进程池的启动、消息分帧与崩溃重启
+ */
+class NativeWorkerPoolTests {
+
+    @TempDir
+    Path tempDir;
+
+    private NativeWorkerPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private NativeWorkerPool startPool() throws Exception {
+        pool = new NativeWorkerPool();
+        ReflectionTestUtils.setField(pool, "environment", new StandardEnvironment());
+        ReflectionTestUtils.setField(pool, "enabled", true);
+        ReflectionTestUtils.setField(pool, "workerCount", 1);
+        ReflectionTestUtils.setField(pool, "jvmOptions", "-Xmx64m");
+        ReflectionTestUtils.setField(pool, "requestTimeoutMs", 20_000L);
+        ReflectionTestUtils.setField(pool, "startupTimeoutMs", 20_000L);
+        ReflectionTestUtils.setField(pool, "exchangeDir", tempDir.toString());
+        ReflectionTestUtils.setField(pool, "workerMainClass", FakeWorker.class.getName());
+        pool.onApplicationReady();
+        await(status -> Integer.valueOf(1).equals(status.get("idle")));
+        return pool;
+    }
+
+    private void await(Predicate<Map<String, Object>> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.test(pool.status())) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时: " + pool.status());
+            Thread.sleep(20);
+        }
+    }
+
+    private static Map<String, Object> args(Object... keyValues) {
+        Map<String, Object> args = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            args.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return args;
+    }
+
+    @Test
+    void framesRequestsAndResponses() throws Exception {
+        startPool();
+        Object echoed = pool.invoke("echo", args("text", "a b\"c", "n", 7), NativeWorkerPool.Reply::result);
+        assertEquals(args("text", "a b\"c", "n", 7), echoed);
+
+        // 响应前的非协议输出不影响分帧；大块结果走交换文件
+        double[] doubles = pool.invoke("doubles", args(), NativeWorkerPool.Reply::doubles);
+        assertArrayEquals(new double[]{1.5, -2.5, 1e300}, doubles, 0.0);
+
+        RuntimeException failed = assertThrows(RuntimeException.class,
+                () -> pool.invoke("fail", args(), NativeWorkerPool.Reply::result));
+        assertEquals("boom", failed.getMessage());
+        // 业务失败不影响进程复用
+        assertEquals("pong", pool.invoke("ping", args(), NativeWorkerPool.Reply::result));
+        Map<String, Object> status = pool.status();
+        assertEquals(Long.valueOf(4), status.get("requests"));
+        assertEquals(Long.valueOf(1), status.get("failures"));
+        assertEquals(Long.valueOf(0), status.get("restarts"));
+    }
+
+    @Test
+    void crashFailsOnlyTheCurrentRequest() throws Exception {
+        startPool();
+        RuntimeException crashed = assertThrows(RuntimeException.class,
+                () -> pool.invoke("crash", args(), NativeWorkerPool.Reply::result));
+        assertTrue(crashed.getMessage().contains("退出码 3"), crashed.getMessage());
+
+        assertEquals("pong", pool.invoke("ping", args(), NativeWorkerPool.Reply::result));
+        Map<String, Object> status = pool.status();
+        assertEquals(Long.valueOf(1), status.get("crashes"));
+        assertEquals(Long.valueOf(1), status.get("restarts"));
+    }
+
+    @Test
+    void workerThatDiedWhileIdleIsReplacedOnCheckout() throws Exception {
+        startPool();
+        assertEquals("bye", pool.invoke("exitAfterReply", args(), NativeWorkerPool.Reply::result));
+        await(status -> {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> workers = (List<Map<String, Object>>) status.get("workers");
+            return workers.size() == 1 && Boolean.FALSE.equals(workers.get(0).get("alive"));
+        });
+
+        // 下一个无关请求不应因空闲时退出的进程而失败
+        assertEquals("pong", pool.invoke("ping", args(), NativeWorkerPool.Reply::result));
+        Map<String, Object> status = pool.status();
+        assertEquals(Long.valueOf(1), status.get("crashes"));
+        assertEquals(Long.valueOf(1), status.get("restarts"));
+    }
+
+    /**
+     * 模拟工作进程：参数为交换文件路径，按操作名应答
+     */
+    static class FakeWorker {
+        public static void main(String[] args) throws Exception {
+            PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+            protocol.println("启动日志不属于协议");
+            try (SharedExchangeFile exchange = new SharedExchangeFile(Paths.get(args[0]));
+                 BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+                protocol.println(NativeWorkerPool.PROTOCOL_PREFIX + "{\"ready\":true}");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String op = line.substring(line.indexOf("\"op\":\"") + 6, line.indexOf("\",\"args\""));
+                    String reply;
+                    switch (op) {
+                        case "echo":
+                            reply = "{\"ok\":true,\"result\":" + line.substring(line.indexOf("\"args\":") + 7, line.length() - 1) + "}";
+                            break;
+                        case "doubles":
+                            protocol.println("本地库直接写到标准输出的内容");
+                            reply = "{\"ok\":true,\"doubles\":" + exchange.writeDoubles(new double[]{1.5, -2.5, 1e300}) + "}";
+                            break;
+                        case "fail":
+                            reply = "{\"ok\":false,\"error\":\"boom\"}";
+                            break;
+                        case "crash":
+                            System.exit(3);
+                            return;
+                        case "exitAfterReply":
+                            protocol.println(NativeWorkerPool.PROTOCOL_PREFIX + "{\"ok\":true,\"result\":\"bye\"}");
+                            System.exit(0);
+                            return;
+                        default:
+                            reply = "{\"ok\":true,\"result\":\"pong\"}";
+                    }
+                    protocol.println(NativeWorkerPool.PROTOCOL_PREFIX + reply);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.model.PointSampleRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointSamplingServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void groupsPointsByBlockAndSkipsOutsidePoints() {
+        // 10x10 的块，宽 25 像素 -> 每行 3 个块
+        int[] cols = {1, 12, -1, 3, 24, 11};
+        int[] rows = {1, 2, -1, 9, 15, 10};
+        List<int[]> groups = PointSamplingService.groupByBlock(cols, rows, new int[]{10, 10}, 25);
+
+        int[] order = groups.get(0);
+        assertEquals(5, order.length);
+        // 块 0: 点 0、3；块 1: 点 1；块 4: 点 5；块 5: 点 4
+        assertArrayEquals(new int[]{0, 3, 1, 5, 4}, order);
+        assertEquals(5, groups.size());
+        assertArrayEquals(new int[]{0, 2}, groups.get(1));
+        assertArrayEquals(new int[]{2, 3}, groups.get(2));
+        assertArrayEquals(new int[]{3, 4}, groups.get(3));
+        assertArrayEquals(new int[]{4, 5}, groups.get(4));
+
+        assertTrue(PointSamplingService.groupByBlock(new int[]{-1}, new int[]{-1}, new int[]{10, 10}, 25).isEmpty());
+    }
+
+    @Test
+    void samplesMappedTiffInRequestOrder() throws Exception {
+        // 20x10 UInt16、4 行一条带，像素值 = x + y * 100，无地理参考时坐标即行列号
+        Path file = MappedTiffReaderTests.writeStripedTiff(tempDir.resolve("sample.tif"), 20, 10);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            PointSamplingService service = newService(pool);
+            PointSampleRequest request = new PointSampleRequest();
+            request.setFilePath(file.toString());
+            List<double[]> points = new ArrayList<>();
+            points.add(new double[]{19.5, 9.5});
+            points.add(new double[]{0.2, 0.7});
+            points.add(new double[]{25, 3});
+            points.add(new double[]{5.9, 4.1});
+            points.add(new double[]{6, 0});
+            request.setPoints(points);
+
+            Map<String, Object> response = service.sample(request);
+            Double[][] values = (Double[][]) response.get("values");
+            assertEquals(Arrays.asList(919.0, 0.0, null, 405.0, 6.0), Arrays.asList(values[0]));
+            assertEquals(1, response.get("outsideCount"));
+            // 条带 0（两点）、条带 1、条带 2
+            assertEquals(3, response.get("blocksRead"));
+            assertArrayEquals(new int[]{20, 4}, (int[]) response.get("blockSize"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static PointSamplingService newService(ExecutorService pool) {
+        MappedTiffReader mappedTiffReader = new MappedTiffReader();
+        ReflectionTestUtils.setField(mappedTiffReader, "enabled", true);
+        ReflectionTestUtils.setField(mappedTiffReader, "maxOpenFiles", 4);
+        RasterInfoCache rasterInfoCache = new RasterInfoCache();
+        ReflectionTestUtils.setField(rasterInfoCache, "maxEntries", 16);
+
+        RasterReaderService rasterReaderService = new RasterReaderService();
+        ReflectionTestUtils.setField(rasterReaderService, "mappedTiffReader", mappedTiffReader);
+        ReflectionTestUtils.setField(rasterReaderService, "rasterInfoCache", rasterInfoCache);
+        ReflectionTestUtils.setField(rasterReaderService, "gdalIoAccounting", new GdalIoAccounting());
+
+        ParallelRasterExecutor executor = new ParallelRasterExecutor();
+        ReflectionTestUtils.setField(executor, "rasterWorkerPool", pool);
+
+        PointSamplingService service = new PointSamplingService();
+        ReflectionTestUtils.setField(service, "rasterReaderService", rasterReaderService);
+        ReflectionTestUtils.setField(service, "parallelRasterExecutor", executor);
+        ReflectionTestUtils.setField(service, "gdalIoAccounting", new GdalIoAccounting());
+        return service;
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.rasterprocessing.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuicklookServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void outputSizeKeepsAspectAndNeverUpscales() {
+        assertArrayEquals(new int[]{256, 128}, QuicklookService.outputSize(40000, 20000, 256));
+        assertArrayEquals(new int[]{1, 256}, QuicklookService.outputSize(10, 100000, 256));
+        assertArrayEquals(new int[]{100, 50}, QuicklookService.outputSize(100, 50, 256));
+    }
+
+    @Test
+    void stretchClipsAtPercentilesAndMasksNoData() {
+        float[] values = new float[101];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        values[50] = -9999;
+        values[51] = Float.NaN;
+        byte[][] result = QuicklookService.stretch(values, -9999.0, 2, 98);
+        byte[] out = result[0];
+        byte[] mask = result[1];
+
+        assertEquals(0, out[0]);
+        assertEquals(0, out[2]);
+        assertEquals((byte) 255, out[98]);
+        assertEquals((byte) 255, out[100]);
+        assertTrue((out[60] & 0xFF) > (out[40] & 0xFF));
+        assertEquals(0, mask[50]);
+        assertEquals(0, mask[51]);
+        assertEquals((byte) 255, mask[0]);
+    }
+
+    @Test
+    void stretchOfConstantBandHasNoMask() {
+        float[] values = new float[64];
+        Arrays.fill(values, 7);
+        byte[][] result = QuicklookService.stretch(values, null, 2, 98);
+        assertNull(result[1]);
+        assertEquals(0, result[0][0]);
+    }
+
+    @Test
+    void bandSelection() {
+        assertEquals(Arrays.asList(1, 2, 3), QuicklookService.parseBands(null, 4));
+        assertEquals(Arrays.asList(1), QuicklookService.parseBands("", 2));
+        assertEquals(Arrays.asList(4, 3, 2), QuicklookService.parseBands("4, 3,2", 4));
+        assertThrows(RuntimeException.class, () -> QuicklookService.parseBands("1,2", 4));
+        assertThrows(RuntimeException.class, () -> QuicklookService.parseBands("5", 4));
+    }
+
+    @Test
+    void matchingIfNoneMatchSkipsRendering() throws Exception {
+        // 未注入 NativeLibraryLoader：一旦进入读取与编码就会失败
+        QuicklookService service = new QuicklookService();
+        ReflectionTestUtils.setField(service, "maxSizeLimit", 1024);
+        ReflectionTestUtils.setField(service, "cacheSize", "1MB");
+        service.init();
+        String file = Files.write(tempDir.resolve("q.tif"), new byte[16]).toString();
+
+        assertThrows(RuntimeException.class, () -> service.render(file, 256, "png", null, 2, 98, null));
+        String etag = service.render(file, 256, "png", null, 2, 98, "*").getEtag();
+        QuicklookService.Quicklook weak = service.render(file, 256, "png", null, 2, 98, "\"other\", W/" + etag);
+        assertTrue(weak.isNotModified());
+        assertEquals(etag, weak.getEtag());
+        assertTrue(service.render(file, 256, "PNG", null, 2, 98, etag).isNotModified());
+        // 样式不同则 ETag 不同，仍需渲染
+        assertThrows(RuntimeException.class, () -> service.render(file, 128, "png", null, 2, 98, etag));
+        assertEquals(0L, service.stats().get("hits"));
+    }
+}
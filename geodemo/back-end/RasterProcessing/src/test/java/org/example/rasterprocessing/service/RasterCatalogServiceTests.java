@@ -0,0 +1,133 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.entity.RasterCatalogEntry;
+import org.example.rasterprocessing.model.RasterInfo;
+import org.example.rasterprocessing.repository.RasterCatalogRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RasterCatalogServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    private static RasterCatalogEntry entry(long mtime, long size, String error) {
+        RasterCatalogEntry entry = new RasterCatalogEntry("/data/a.tif");
+        entry.setLastModified(mtime);
+        entry.setFileSize(size);
+        entry.setError(error);
+        return entry;
+    }
+
+    @Test
+    void unchangedEntriesAreSkipped() {
+        assertTrue(RasterCatalogService.isCurrent(entry(1000, 42, null), 1000, 42));
+        assertFalse(RasterCatalogService.isCurrent(entry(1000, 42, null), 2000, 42));
+        assertFalse(RasterCatalogService.isCurrent(entry(1000, 42, null), 1000, 43));
+        assertFalse(RasterCatalogService.isCurrent(null, 1000, 42));
+    }
+
+    @Test
+    void failedEntriesAreRetriedEvenIfUnchanged() {
+        assertFalse(RasterCatalogService.isCurrent(entry(1000, 42, "无法打开栅格文件"), 1000, 42));
+    }
+
+    @Test
+    void rescanReadsOnlyChangedFiles() throws Exception {
+        Path root = Files.createDirectories(tempDir.resolve("catalog"));
+        Path a = MappedTiffReaderTests.writeStripedTiff(root.resolve("a.tif"), 16, 8);
+        Path b = MappedTiffReaderTests.writeStripedTiff(root.resolve("b.tif"), 16, 8);
+        Set<String> reads = ConcurrentHashMap.newKeySet();
+        AtomicInteger readCount = new AtomicInteger();
+        RasterCatalogService service = newService(root, path -> {
+            reads.add(path);
+            readCount.incrementAndGet();
+        });
+
+        Map<String, Object> first = service.scan();
+        assertEquals(2, first.get("updated"));
+        assertEquals(0, first.get("failed"));
+        assertEquals(2, readCount.get());
+
+        // 文件都没变：只列目录，不再读取
+        Map<String, Object> second = service.scan();
+        assertEquals(2, second.get("scanned"));
+        assertEquals(0, second.get("updated"));
+        assertEquals(2, readCount.get());
+
+        // 只改一个文件的修改时间，并删除另一个
+        reads.clear();
+        Files.setLastModifiedTime(a, FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis() + 5000));
+        Files.delete(b);
+        Map<String, Object> third = service.scan();
+        assertEquals(1, third.get("updated"));
+        assertEquals(1, third.get("removed"));
+        assertEquals(Set.of(a.toString()), reads);
+    }
+
+    private static RasterCatalogService newService(Path root, Consumer<String> onRead) {
+        RasterInfoCache rasterInfoCache = new RasterInfoCache();
+        ReflectionTestUtils.setField(rasterInfoCache, "maxEntries", 16);
+        RasterReaderService rasterReaderService = new RasterReaderService() {
+            @Override
+            public RasterInfo readRasterInfo(String filePath) {
+                onRead.accept(filePath);
+                return super.readRasterInfo(filePath);
+            }
+        };
+        ReflectionTestUtils.setField(rasterReaderService, "rasterInfoCache", rasterInfoCache);
+
+        RasterCatalogService service = new RasterCatalogService();
+        ReflectionTestUtils.setField(service, "repository", inMemoryRepository());
+        ReflectionTestUtils.setField(service, "rasterReaderService", rasterReaderService);
+        ReflectionTestUtils.setField(service, "coordinateTransformService", new CoordinateTransformService());
+        ReflectionTestUtils.setField(service, "roots", root.toString());
+        ReflectionTestUtils.setField(service, "scanThreads", 2);
+        ReflectionTestUtils.setField(service, "computeStatistics", false);
+        return service;
+    }
+
+    /** 只实现扫描用到的几个方法的内存仓库 */
+    @SuppressWarnings("unchecked")
+    private static RasterCatalogRepository inMemoryRepository() {
+        Map<String, RasterCatalogEntry> rows = new ConcurrentHashMap<>();
+        return (RasterCatalogRepository) Proxy.newProxyInstance(RasterCatalogRepository.class.getClassLoader(),
+                new Class<?>[]{RasterCatalogRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findAll":
+                            return new ArrayList<>(rows.values());
+                        case "findByRootDir":
+                            return rows.values().stream()
+                                    .filter(e -> args[0].equals(e.getRootDir()))
+                                    .collect(Collectors.toList());
+                        case "saveAll":
+                            for (RasterCatalogEntry entry : (Iterable<RasterCatalogEntry>) args[0]) {
+                                rows.put(entry.getFilePath(), entry);
+                            }
+                            return null;
+                        case "deleteAllById":
+                            for (String id : (Iterable<String>) args[0]) {
+                                rows.remove(id);
+                            }
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.util.RasterBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RasterReaderServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void refillsOneBufferStripByStrip() throws Exception {
+        // 20x10 UInt16，像素值 = x + y * 100；从 (3, 1) 起按 4 行一段读 12x9 的窗口
+        String file = MappedTiffReaderTests.writeStripedTiff(tempDir.resolve("strips.tif"), 20, 10).toString();
+        RasterReaderService service = newService();
+
+        try (RasterBuffer strip = service.readPixelBuffer(file, 1, 3, 1, 12, 4)) {
+            assertEquals(3 + 100, strip.get(0), 0.0);
+            service.readPixelBuffer(file, 1, 3, 5, strip);
+            assertEquals(3 + 500, strip.get(0), 0.0);
+            assertEquals(14 + 800, strip.get(3L * 12 + 11), 0.0);
+        }
+        try (RasterBuffer tail = RasterBuffer.allocate(12, 1)) {
+            service.readPixelBuffer(file, 1, 3, 9, tail);
+            assertEquals(14 + 900, tail.get(11), 0.0);
+        }
+    }
+
+    private static RasterReaderService newService() {
+        MappedTiffReader mappedTiffReader = new MappedTiffReader();
+        ReflectionTestUtils.setField(mappedTiffReader, "enabled", true);
+        ReflectionTestUtils.setField(mappedTiffReader, "maxOpenFiles", 4);
+        RasterReaderService service = new RasterReaderService();
+        ReflectionTestUtils.setField(service, "mappedTiffReader", mappedTiffReader);
+        ReflectionTestUtils.setField(service, "gdalIoAccounting", new GdalIoAccounting());
+        return service;
+    }
+}
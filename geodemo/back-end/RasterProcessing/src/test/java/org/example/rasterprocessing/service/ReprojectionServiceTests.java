@@ -0,0 +1,33 @@
+package org.example.rasterprocessing.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReprojectionServiceTests {
+
+    // 100x50 的 VRT，原点 (1000, 2000)，分辨率 10
+    private static final ReprojectionService.Definition DEFINITION = new ReprojectionService.Definition(
+            1L, 2L, "<VRTDataset/>", new double[]{1000, 10, 0, 2000, 0, -10}, 100, 50);
+
+    @Test
+    void bboxSnapsOutwardToGrid() {
+        assertArrayEquals(new int[]{0, 0, 100, 50}, ReprojectionService.window(DEFINITION, null));
+        assertArrayEquals(new int[]{1, 2, 2, 3}, ReprojectionService.window(DEFINITION, new double[]{1015, 1950, 1030, 1980}));
+        assertArrayEquals(new int[]{1, 1, 3, 3}, ReprojectionService.window(DEFINITION, new double[]{1015, 1961, 1031, 1985}));
+    }
+
+    @Test
+    void bboxIsClippedToRaster() {
+        assertArrayEquals(new int[]{95, 0, 5, 2}, ReprojectionService.window(DEFINITION, new double[]{1950, 1980, 3000, 2500}));
+        assertThrows(RuntimeException.class, () -> ReprojectionService.window(DEFINITION, new double[]{0, 0, 500, 500}));
+    }
+
+    @Test
+    void handleVersionFollowsFileFingerprint() {
+        ReprojectionService.Definition changed = new ReprojectionService.Definition(
+                3L, 2L, "<VRTDataset/>", DEFINITION.geoTransform, 100, 50);
+        assertEquals("1:2", DEFINITION.version());
+        assertNotEquals(DEFINITION.version(), changed.version());
+    }
+}
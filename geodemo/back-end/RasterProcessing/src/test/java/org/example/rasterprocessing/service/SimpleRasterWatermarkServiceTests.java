@@ -0,0 +1,267 @@
+package org.example.rasterprocessing.service;
+
+import org.example.rasterprocessing.config.NativeLibraryProperties;
+import org.example.rasterprocessing.util.BlockJournal;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SimpleRasterWatermarkServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    /** 正交 8x8 DCT 的系数 (u 行频率, v 列频率) */
+    private static double dct(double[] data, int stride, int offset, int u, int v) {
+        double sum = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                sum += data[offset + y * stride + x] * Math.cos((2 * y + 1) * u * Math.PI / 16)
+                        * Math.cos((2 * x + 1) * v * Math.PI / 16);
+            }
+        }
+        return (u == 0 ? Math.sqrt(0.125) : 0.5) * (v == 0 ? Math.sqrt(0.125) : 0.5) * sum;
+    }
+
+    @Test
+    void addingBasisShiftsOnlyCoefficient23() {
+        // 两个块并排的窗口，只改右边的块
+        double[] data = new double[16 * 8];
+        Random random = new Random(7);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextDouble() * 1000;
+        }
+        double[] before = data.clone();
+        assertEquals(dct(data, 16, 8, 2, 3), SimpleRasterWatermarkService.coefficient(data, 16, 8), 1e-9);
+
+        SimpleRasterWatermarkService.addBasis(data, 16, 8, -20.0);
+
+        for (int u = 0; u < 8; u++) {
+            for (int v = 0; v < 8; v++) {
+                double expected = u == 2 && v == 3 ? -20.0 : 0.0;
+                assertEquals(expected, dct(data, 16, 8, u, v) - dct(before, 16, 8, u, v), 1e-9);
+                assertEquals(dct(before, 16, 0, u, v), dct(data, 16, 0, u, v), 0.0);
+            }
+        }
+        assertEquals(SimpleRasterWatermarkService.coefficient(before, 16, 8) - 20.0,
+                SimpleRasterWatermarkService.coefficient(data, 16, 8), 1e-9);
+    }
+
+    @Test
+    void integerRangesCoverAllGdalIntegerTypes() {
+        assertArrayEquals(new double[]{-128, 127}, SimpleRasterWatermarkService.integerRange("Int8"), 0.0);
+        assertArrayEquals(new double[]{0, 255}, SimpleRasterWatermarkService.integerRange("Byte"), 0.0);
+        assertArrayEquals(new double[]{-0x1p63, 0x1p63}, SimpleRasterWatermarkService.integerRange("Int64"), 0.0);
+        assertArrayEquals(new double[]{0, 0x1p64}, SimpleRasterWatermarkService.integerRange("UInt64"), 0.0);
+        assertNull(SimpleRasterWatermarkService.integerRange("Float32"));
+        assertNull(SimpleRasterWatermarkService.integerRange("CInt16"));
+    }
+
+    @Test
+    void payloadRowsCoverWholeBlockRows() {
+        // 宽 80 像素 -> 每块行 10 个块
+        assertEquals(8, SimpleRasterWatermarkService.payloadRows(1, 80, 100));
+        assertEquals(8, SimpleRasterWatermarkService.payloadRows(10, 80, 100));
+        assertEquals(16, SimpleRasterWatermarkService.payloadRows(11, 80, 100));
+        // 不超过完整块行覆盖的高度，放不下一个块时为 0
+        assertEquals(96, SimpleRasterWatermarkService.payloadRows(100000, 80, 100));
+        assertEquals(0, SimpleRasterWatermarkService.payloadRows(10, 7, 100));
+        assertEquals(0, SimpleRasterWatermarkService.payloadRows(10, 80, 7));
+    }
+
+    @Test
+    void stripLengthRejectsRowsBeyondArrayLimit() {
+        assertEquals(80 * 8, SimpleRasterWatermarkService.stripLength(80));
+        // 宽 3 亿像素时 width * 8 超过 int，不能静默溢出
+        assertThrows(RuntimeException.class, () -> SimpleRasterWatermarkService.stripLength(300_000_000));
+    }
+
+    /**
+     * 另一个进程持有文件锁时（它的更新正在进行），回滚须等待；对方结束并删除日志后不再回滚
+     */
+    @Test
+    void recoveryWaitsForUpdateInAnotherProcess() throws Exception {
+        String raster = tempDir.resolve("busy.tif").toString();
+        Path journal = BlockJournal.pathFor(raster);
+        BlockJournal.write(journal, Collections.singletonList(
+                new BlockJournal.Window(0, 0, 8, 8, new double[64])));
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process holder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                LockHolder.class.getName(), raster).redirectErrorStream(true).start();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            BufferedReader out = new BufferedReader(new InputStreamReader(holder.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("locked", out.readLine());
+
+            SimpleRasterWatermarkService service = new SimpleRasterWatermarkService();
+            Future<Boolean> recovered = pool.submit(() -> service.recoverJournal(raster));
+            Thread.sleep(300);
+            assertFalse(recovered.isDone(), "对方持锁期间回滚不应开始");
+
+            // 对方的更新完成：删除日志后释放锁
+            Files.delete(journal);
+            OutputStream in = holder.getOutputStream();
+            in.write('\n');
+            in.flush();
+            assertTrue(holder.waitFor(10, TimeUnit.SECONDS));
+            assertFalse(recovered.get(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+            holder.destroyForcibly();
+        }
+    }
+
+    /** 在独立进程中持有栅格文件锁，直到标准输入收到一行 */
+    static class LockHolder {
+        public static void main(String[] args) throws Exception {
+            try (BlockJournal.Lock lock = BlockJournal.lock(args[0])) {
+                System.out.println("locked");
+                System.out.flush();
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+            }
+        }
+    }
+
+    private static void ensureGdal() {
+        NativeLibraryLoader loader = new NativeLibraryLoader();
+        ReflectionTestUtils.setField(loader, "properties", new NativeLibraryProperties());
+        try {
+            loader.ensureGdal();
+        } catch (RuntimeException | LinkageError e) {
+            assumeTrue(false, "GDAL 不可用: " + e.getMessage());
+        }
+        assumeTrue(gdal.GetDriverByName("GTiff") != null, "GDAL 未注册 GTiff 驱动");
+    }
+
+    private static double[] readAll(String path) {
+        return readAll(path, 16, 16);
+    }
+
+    private static double[] readAll(String path, int width, int height) {
+        Dataset dataset = gdal.Open(path, gdalconst.GA_ReadOnly);
+        try {
+            double[] data = new double[width * height];
+            dataset.GetRasterBand(1).ReadRaster(0, 0, width, height, width, height, gdalconst.GDT_Float64, data);
+            return data;
+        } finally {
+            dataset.delete();
+        }
+    }
+
+    private static void fill(String path, double value) {
+        Dataset dataset = gdal.Open(path, gdalconst.GA_Update);
+        try {
+            Band band = dataset.GetRasterBand(1);
+            band.Fill(value);
+            dataset.FlushCache();
+        } finally {
+            dataset.delete();
+        }
+    }
+
+    /**
+     * 改写中途崩溃：完整的日志把像素恢复原状，不完整的日志直接丢弃
+     */
+    @Test
+    void crashedUpdateIsRolledBackFromJournal() throws Exception {
+        ensureGdal();
+        String raster = tempDir.resolve("crashed.tif").toString();
+        Dataset created = gdal.GetDriverByName("GTiff").Create(raster, 16, 16, 1, gdalconst.GDT_Float32);
+        created.GetRasterBand(1).Fill(100);
+        created.delete();
+
+        double[] original = new double[16 * 8];
+        Arrays.fill(original, 100);
+        Path journal = BlockJournal.pathFor(raster);
+        BlockJournal.write(journal, Collections.singletonList(new BlockJournal.Window(0, 8, 16, 8, original)));
+        fill(raster, 3);
+
+        SimpleRasterWatermarkService service = new SimpleRasterWatermarkService();
+        assertTrue(service.recoverJournal(raster));
+        assertFalse(Files.exists(journal));
+        double[] pixels = readAll(raster);
+        for (int i = 0; i < pixels.length; i++) {
+            assertEquals(i < 16 * 8 ? 3.0 : 100.0, pixels[i], 0.0);
+        }
+
+        // 日志没写完就崩溃：像素还没被改动，日志不可信，不回滚
+        BlockJournal.write(journal, Collections.singletonList(new BlockJournal.Window(0, 0, 16, 8, original)));
+        byte[] bytes = Files.readAllBytes(journal);
+        Files.write(journal, Arrays.copyOf(bytes, bytes.length / 2));
+        assertFalse(service.recoverJournal(raster));
+        assertFalse(Files.exists(journal));
+        assertEquals(3.0, readAll(raster)[0], 0.0);
+    }
+
+    /**
+     * 原地更新端到端：嵌入 A 后更新为 B，能解出 B，水印块行之外的像素保持不变
+     */
+    @Test
+    void updateReplacesWatermarkAndLeavesOtherRowsUntouched() throws Exception {
+        ensureGdal();
+        NativeLibraryLoader loader = new NativeLibraryLoader();
+        ReflectionTestUtils.setField(loader, "properties", new NativeLibraryProperties());
+        try {
+            loader.ensureOpenCv();
+        } catch (RuntimeException | LinkageError e) {
+            assumeTrue(false, "OpenCV 不可用: " + e.getMessage());
+        }
+        SimpleRasterWatermarkService service = new SimpleRasterWatermarkService();
+        ReflectionTestUtils.setField(service, "nativeLibraryLoader", loader);
+        ReflectionTestUtils.setField(service, "gdalIoAccounting", new GdalIoAccounting());
+
+        int width = 64;
+        int height = 512;
+        String source = tempDir.resolve("source.tif").toString();
+        String marked = tempDir.resolve("marked.tif").toString();
+        Dataset created = gdal.GetDriverByName("GTiff").Create(source, width, height, 1, gdalconst.GDT_Float32);
+        float[] values = new float[width * height];
+        Random random = new Random(11);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000 + (i % width) + (i / width) + random.nextInt(50);
+        }
+        created.GetRasterBand(1).WriteRaster(0, 0, width, height, values);
+        created.delete();
+
+        service.embedWatermark(source, marked, "A");
+        assertEquals("A", service.extractWatermark(marked, 1));
+        double[] before = readAll(marked, width, height);
+
+        Map<String, Object> result = service.updateWatermark(marked, "B-new", null);
+        assertEquals("A", result.get("previousText"));
+        assertEquals(Boolean.TRUE, result.get("verified"));
+        assertFalse(Files.exists(BlockJournal.pathFor(marked)));
+        assertEquals("B-new", service.extractWatermark(marked, 5));
+
+        // "B-new" 需要 (8 + 5 * 8) * 9 = 432 个块，每行 8 块，即前 432 行
+        int payloadRows = SimpleRasterWatermarkService.payloadRows(432, width, height);
+        assertTrue(payloadRows < height);
+        double[] after = readAll(marked, width, height);
+        assertArrayEquals(Arrays.copyOfRange(before, payloadRows * width, before.length),
+                Arrays.copyOfRange(after, payloadRows * width, after.length));
+    }
+}
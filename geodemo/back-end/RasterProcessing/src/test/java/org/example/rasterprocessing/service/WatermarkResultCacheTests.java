@@ -0,0 +1,155 @@
+package org.example.rasterprocessing.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatermarkResultCacheTests {
+
+    @TempDir
+    Path tempDir;
+
+    private WatermarkResultCache newCache() {
+        WatermarkResultCache cache = new WatermarkResultCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "dir", tempDir.resolve("cache").toString());
+        ReflectionTestUtils.setField(cache, "maxSize", "1MB");
+        ReflectionTestUtils.setField(cache, "maxExtractEntries", 16);
+        cache.init();
+        return cache;
+    }
+
+    private Path input() throws Exception {
+        return Files.write(tempDir.resolve("input.tif"), new byte[]{1, 2, 3, 4});
+    }
+
+    private static Runnable writes(Path output, byte[] bytes, AtomicInteger runs) {
+        return () -> {
+            runs.incrementAndGet();
+            try {
+                Files.write(output, bytes);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    @Test
+    void secondEmbedCopiesCachedResult() throws Exception {
+        WatermarkResultCache cache = newCache();
+        String input = input().toString();
+        byte[] result = {9, 8, 7};
+        AtomicInteger runs = new AtomicInteger();
+
+        Path first = tempDir.resolve("first.tif");
+        assertFalse(cache.embed(input, first.toString(), "wm", "raster", writes(first, result, runs)));
+        Path second = tempDir.resolve("second.tif");
+        assertTrue(cache.embed(input, second.toString(), "wm", "raster", writes(second, result, runs)));
+
+        assertEquals(1, runs.get());
+        assertArrayEquals(result, Files.readAllBytes(second));
+        // 水印不同不复用
+        Path other = tempDir.resolve("other.tif");
+        assertFalse(cache.embed(input, other.toString(), "wm2", "raster", writes(other, result, runs)));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void verifiedEmbedReturnsCachedReport() throws Exception {
+        WatermarkResultCache cache = newCache();
+        String input = input().toString();
+        AtomicInteger runs = new AtomicInteger();
+        Map<String, Object> report = new HashMap<>();
+        report.put("verified", true);
+
+        Path first = tempDir.resolve("first.tif");
+        WatermarkResultCache.VerifiedEmbedding a = cache.embedVerified(input, first.toString(), "wm", "raster", () -> {
+            writes(first, new byte[]{5}, runs).run();
+            return report;
+        });
+        Path second = tempDir.resolve("second.tif");
+        WatermarkResultCache.VerifiedEmbedding b = cache.embedVerified(input, second.toString(), "wm", "raster", () -> {
+            throw new AssertionError("命中时不应重新嵌入");
+        });
+
+        assertFalse(a.isCached());
+        assertTrue(b.isCached());
+        assertEquals(report, b.getReport());
+        assertArrayEquals(new byte[]{5}, Files.readAllBytes(second));
+    }
+
+    @Test
+    void followerRecomputesWhenSharedFileIsGone() throws Exception {
+        WatermarkResultCache cache = newCache();
+        String input = input().toString();
+        Path leaderOutput = tempDir.resolve("leader.tif");
+        Path followerOutput = tempDir.resolve("follower.tif");
+        AtomicInteger followerRuns = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            // 领头请求等跟随者加入后才结束，且不留下结果文件，相当于共享结果在跟随者复制前已被淘汰
+            Future<Boolean> leader = pool.submit(() -> cache.embed(input, leaderOutput.toString(), "wm", "raster", () -> {
+                leaderStarted.countDown();
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!Long.valueOf(1).equals(cache.stats().get("coalesced"))
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.onSpinWait();
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+            Future<Boolean> follower = pool.submit(() -> cache.embed(input, followerOutput.toString(), "wm", "raster",
+                    writes(followerOutput, new byte[]{4, 2}, followerRuns)));
+
+            assertFalse(leader.get(5, TimeUnit.SECONDS));
+            assertFalse(follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, followerRuns.get());
+            assertTrue(Arrays.equals(new byte[]{4, 2}, Files.readAllBytes(followerOutput)));
+            assertEquals(Long.valueOf(2), cache.stats().get("embedMisses"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void probesSeeOnlyStoredResults() throws Exception {
+        WatermarkResultCache cache = newCache();
+        String input = input().toString();
+        AtomicInteger runs = new AtomicInteger();
+        Path output = tempDir.resolve("out.tif");
+
+        assertFalse(cache.containsEmbedding(input, output.toString(), "wm", "raster", false));
+        cache.embed(input, output.toString(), "wm", "raster", writes(output, new byte[]{5}, runs));
+        assertTrue(cache.containsEmbedding(input, output.toString(), "wm", "raster", false));
+        // 没有校验报告的结果不能满足 verify 请求
+        assertFalse(cache.containsEmbedding(input, output.toString(), "wm", "raster", true));
+        assertFalse(cache.containsEmbedding(input, output.toString(), "wm", "image", false));
+
+        assertFalse(cache.containsExtraction(input, 4, "raster"));
+        cache.extract(input, 4, "raster", () -> "wm");
+        assertTrue(cache.containsExtraction(input, 4, "raster"));
+        assertFalse(cache.containsExtraction(input, 5, "raster"));
+        assertFalse(cache.containsExtraction(tempDir.resolve("missing.tif").toString(), 4, "raster"));
+        assertEquals(0L, cache.stats().get("extractHits"));
+    }
+}
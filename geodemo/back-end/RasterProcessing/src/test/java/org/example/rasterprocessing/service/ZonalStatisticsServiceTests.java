@@ -0,0 +1,25 @@
+package org.example.rasterprocessing.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZonalStatisticsServiceTests {
+
+    @Test
+    void histogramNeedsExplicitRange() {
+        assertArrayEquals(new double[]{0, 0}, ZonalStatisticsService.histogramRange(0, 10, null, null));
+        assertArrayEquals(new double[]{0, 255}, ZonalStatisticsService.histogramRange(32, 10, 0.0, 255.0));
+        assertThrows(RuntimeException.class, () -> ZonalStatisticsService.histogramRange(32, 10, null, 255.0));
+        assertThrows(RuntimeException.class, () -> ZonalStatisticsService.histogramRange(32, 10, 10.0, 5.0));
+    }
+
+    @Test
+    void histogramSizeIsBounded() {
+        assertThrows(RuntimeException.class, () -> ZonalStatisticsService.histogramRange(-1, 1, 0.0, 1.0));
+        assertThrows(RuntimeException.class, () -> ZonalStatisticsService.histogramRange(1_001, 1, 0.0, 1.0));
+        // 区域数 x 分箱数受限
+        assertArrayEquals(new double[]{0, 1}, ZonalStatisticsService.histogramRange(100, 10_000, 0.0, 1.0));
+        assertThrows(RuntimeException.class, () -> ZonalStatisticsService.histogramRange(1_000, 10_000, 0.0, 1.0));
+    }
+}
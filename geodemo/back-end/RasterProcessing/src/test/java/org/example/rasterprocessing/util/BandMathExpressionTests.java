@@ -0,0 +1,88 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BandMathExpressionTests {
+
+    private static final List<String> SINGLE = List.of("a");
+
+    private static double[] eval(BandMathExpression expression, double[][] bands, double[] noData) {
+        int n = bands[0].length;
+        double[] out = new double[n];
+        expression.evaluator(n).evaluate(bands, noData, n, out, -9999);
+        return out;
+    }
+
+    @Test
+    void ndvi() {
+        BandMathExpression ndvi = BandMathExpression.compile("(b4 - b3) / (b4 + b3)", SINGLE);
+        assertEquals("[a.b4, a.b3]", ndvi.getInputs().toString());
+        double[] nir = {0.5, 0.8, 0.3};
+        double[] red = {0.1, 0.2, 0.3};
+        double[] out = eval(ndvi, new double[][]{nir, red}, new double[]{Double.NaN, Double.NaN});
+        for (int i = 0; i < nir.length; i++) {
+            assertEquals((nir[i] - red[i]) / (nir[i] + red[i]), out[i], 1e-12);
+        }
+    }
+
+    @Test
+    void precedenceFunctionsAndConstantFolding() {
+        BandMathExpression e = BandMathExpression.compile("-b1^2 + 2*3 + max(b1, 10) / sqrt(4) - abs(-1)", SINGLE);
+        double[] out = eval(e, new double[][]{{3, 20}}, new double[]{Double.NaN});
+        assertEquals(-9 + 6 + 5 - 1, out[0], 1e-12);
+        assertEquals(-400 + 6 + 10 - 1, out[1], 1e-12);
+        // 常量子表达式折叠为一个常量寄存器：输入 + 常量 + 加法
+        assertEquals(3, BandMathExpression.compile("b1 + 2 * 3 * sqrt(4)", SINGLE).getRegisterCount());
+    }
+
+    @Test
+    void whereAndComparisons() {
+        BandMathExpression e = BandMathExpression.compile("where(b1 >= 2, b1 * 10, 0) + (b1 != 3)", SINGLE);
+        double[] out = eval(e, new double[][]{{1, 2, 3}}, new double[]{Double.NaN});
+        assertArrayEquals(new double[]{1, 21, 30}, out, 1e-12);
+    }
+
+    @Test
+    void noDataAndNonFiniteResultsPropagate() {
+        BandMathExpression e = BandMathExpression.compile("x.b1 / y.b2", List.of("x", "y"));
+        double[] x = {1, 0, -1, 4, Double.NaN};
+        double[] y = {2, 0, 5, 0, 1};
+        double[] out = new double[5];
+        int count = e.evaluator(8).evaluate(new double[][]{x, y}, new double[]{-1, Double.NaN}, 5, out, -9999);
+        assertArrayEquals(new double[]{0.5, -9999, -9999, -9999, -9999}, out, 1e-12);
+        assertEquals(4, count);
+    }
+
+    @Test
+    void aliasesAndRepeatedBandsShareOneInput() {
+        BandMathExpression e = BandMathExpression.compile("b1 + b1 + t2.b1", List.of("t1", "t2"));
+        assertEquals("[t1.b1, t2.b1]", e.getInputs().toString());
+        double[] out = eval(e, new double[][]{{1, 2}, {10, 20}}, new double[]{Double.NaN, Double.NaN});
+        assertArrayEquals(new double[]{12, 24}, out, 1e-12);
+    }
+
+    @Test
+    void evaluatorIsReusableAcrossBlocks() {
+        BandMathExpression e = BandMathExpression.compile("b1 * 2 + 1", SINGLE);
+        BandMathExpression.Evaluator evaluator = e.evaluator(4);
+        double[] out = new double[4];
+        evaluator.evaluate(new double[][]{{1, 2, 3, 4}}, new double[]{Double.NaN}, 4, out, 0);
+        evaluator.evaluate(new double[][]{{5, 6, 0, 0}}, new double[]{Double.NaN}, 2, out, 0);
+        assertEquals(11.0, out[0]);
+        assertEquals(13.0, out[1]);
+        assertEquals(7.0, out[2]);
+    }
+
+    @Test
+    void errorsReportPosition() {
+        for (String bad : Arrays.asList("", "b1 +", "(b1", "foo(b1)", "q.b1", "b1 b2", "3 + 4", "max(b1)", "c7")) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> BandMathExpression.compile(bad, SINGLE), bad);
+            assertTrue(e.getMessage().contains("表达式"), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockJournalTests {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<BlockJournal.Window> windows() {
+        double[] first = new double[16 * 8];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = i * 0.5 - 3;
+        }
+        double[] second = new double[8 * 8];
+        Arrays.fill(second, Double.NaN);
+        second[5] = 65535;
+        return Arrays.asList(new BlockJournal.Window(8, 0, 16, 8, first),
+                new BlockJournal.Window(0, 24, 8, 8, second));
+    }
+
+    @Test
+    void readsBackWrittenWindows() throws Exception {
+        Path journal = BlockJournal.pathFor(tempDir.resolve("a.tif").toString());
+        assertEquals(tempDir.resolve("a.tif.wmjournal"), journal);
+        List<BlockJournal.Window> written = windows();
+        BlockJournal.write(journal, written);
+
+        List<BlockJournal.Window> read = BlockJournal.read(journal);
+        assertNotNull(read);
+        assertEquals(written.size(), read.size());
+        for (int i = 0; i < written.size(); i++) {
+            BlockJournal.Window a = written.get(i);
+            BlockJournal.Window b = read.get(i);
+            assertEquals(a.x, b.x);
+            assertEquals(a.y, b.y);
+            assertEquals(a.width, b.width);
+            assertEquals(a.height, b.height);
+            assertArrayEquals(a.data, b.data, 0.0);
+        }
+    }
+
+    @Test
+    void journalCutShortByCrashIsIgnored() throws Exception {
+        Path journal = tempDir.resolve("b.tif.wmjournal");
+        BlockJournal.write(journal, windows());
+        byte[] full = Files.readAllBytes(journal);
+
+        // 写日志中途崩溃：任何截断长度都不能被当作有效日志回滚
+        Path cut = tempDir.resolve("cut.wmjournal");
+        for (int length = 0; length < full.length; length += 7) {
+            Files.write(cut, Arrays.copyOf(full, length));
+            assertNull(BlockJournal.read(cut), "截断到 " + length + " 字节");
+        }
+        Files.write(cut, Arrays.copyOf(full, full.length - 1));
+        assertNull(BlockJournal.read(cut));
+    }
+
+    @Test
+    void corruptedJournalIsIgnored() throws Exception {
+        Path journal = tempDir.resolve("c.tif.wmjournal");
+        BlockJournal.write(journal, windows());
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[40] ^= 0x10;
+        Files.write(journal, bytes);
+        assertNull(BlockJournal.read(journal));
+    }
+
+    @Test
+    void lockIsHeldUntilClosed() throws Exception {
+        String raster = tempDir.resolve("d.tif").toString();
+        Path lockFile = Paths.get(raster + ".wmlock");
+        try (BlockJournal.Lock lock = BlockJournal.lock(raster)) {
+            assertTrue(lock.isValid());
+            try (FileChannel other = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+                assertThrows(OverlappingFileLockException.class, other::tryLock);
+            }
+        }
+        try (FileChannel other = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            assertNotNull(other.tryLock());
+        }
+        // 锁文件保留
+        assertTrue(Files.exists(lockFile));
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityTagsTests {
+
+    @Test
+    void ifNoneMatchUsesWeakComparison() {
+        String etag = "\"18f-2a\"";
+        assertTrue(EntityTags.matchesAny("\"18f-2a\"", etag));
+        assertTrue(EntityTags.matchesAny("W/\"18f-2a\"", etag));
+        assertTrue(EntityTags.matchesAny("\"other\", W/\"18f-2a\"", etag));
+        assertTrue(EntityTags.matchesAny("*", etag));
+        assertFalse(EntityTags.matchesAny("\"18f-2b\"", etag));
+        assertFalse(EntityTags.matchesAny("18f-2a", etag));
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoJsonPolygonsTests {
+
+    @Test
+    void densifyInsertsPointsAlongEveryEdge() {
+        double[][] box = GeoJsonPolygons.fromBounds(new double[]{0, 0, 4, 2}).getRings().get(0);
+        double[][] dense = GeoJsonPolygons.densify(box, 1);
+        // 周长 12，每段 1
+        assertEquals(12, dense.length);
+        assertArrayEquals(new double[]{0, 0}, dense[0]);
+        assertArrayEquals(new double[]{1, 0}, dense[1]);
+        assertArrayEquals(new double[]{4, 1}, dense[5]);
+        assertArrayEquals(new double[]{0, 1}, dense[11]);
+        for (int i = 0; i < dense.length; i++) {
+            double[] a = dense[i];
+            double[] b = dense[(i + 1) % dense.length];
+            assertTrue(Math.hypot(b[0] - a[0], b[1] - a[1]) <= 1 + 1e-12);
+        }
+    }
+
+    @Test
+    void densifyDropsRepeatedClosingPoint() {
+        double[][] closed = {{0, 0}, {2, 0}, {2, 2}, {0, 0}};
+        double[][] dense = GeoJsonPolygons.densify(closed, 1);
+        // 2 + 2 + ceil(2.83 / 1) = 7 个点，首点不重复
+        assertEquals(7, dense.length);
+        assertArrayEquals(new double[]{0, 0}, dense[0]);
+        assertFalse(dense[6][0] == 0 && dense[6][1] == 0);
+        assertSame(closed, GeoJsonPolygons.densify(closed, 0));
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HandlePoolTests {
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final List<String> closed = new ArrayList<>();
+
+    private String open(String name) {
+        return name + "#" + opened.incrementAndGet();
+    }
+
+    @Test
+    void reusesReleasedHandleAcrossThreads() throws Exception {
+        HandlePool<String> pool = new HandlePool<>(4, closed::add);
+        String first = pool.borrow("a.tif", "1", () -> open("a"));
+        pool.release("a.tif", "1", first, false);
+
+        String[] second = new String[1];
+        Thread other = new Thread(() -> second[0] = pool.borrow("a.tif", "1", () -> open("a")));
+        other.start();
+        other.join();
+        assertEquals(first, second[0]);
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+
+        // 借出期间独占，同一键的第二个借用者打开新句柄
+        String third = pool.borrow("a.tif", "1", () -> open("a"));
+        assertNotEquals(first, third);
+        assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    void staleVersionIsClosedOnBorrow() {
+        HandlePool<String> pool = new HandlePool<>(4, closed::add);
+        String old = pool.borrow("a.tif", "100:42", () -> open("a"));
+        pool.release("a.tif", "100:42", old, false);
+
+        // 文件被修改
+        String fresh = pool.borrow("a.tif", "200:42", () -> open("a"));
+        assertNotEquals(old, fresh);
+        assertEquals(List.of(old), closed);
+        assertEquals(0, pool.idleCount());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndClosesOnShutdown() {
+        HandlePool<String> pool = new HandlePool<>(2, closed::add);
+        String a = pool.borrow("a", "1", () -> open("a"));
+        String b = pool.borrow("b", "1", () -> open("b"));
+        String c = pool.borrow("c", "1", () -> open("c"));
+        pool.release("a", "1", a, false);
+        pool.release("b", "1", b, false);
+        pool.release("c", "1", c, false);
+        assertEquals(List.of(a), closed);
+        assertEquals(1, pool.getEvictions());
+
+        String broken = pool.borrow("d", "1", () -> open("d"));
+        pool.release("d", "1", broken, true);
+        assertEquals(List.of(a, broken), closed);
+
+        String inUse = pool.borrow("b", "1", () -> open("b"));
+        pool.close();
+        assertEquals(List.of(a, broken, c), closed);
+        // 关闭后归还的句柄直接关闭
+        pool.release("b", "1", inUse, false);
+        assertEquals(List.of(a, broken, c, b), closed);
+        assertThrows(IllegalStateException.class, () -> pool.borrow("b", "1", () -> open("b")));
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageQualityMetricsTests {
+
+    private static final int SIZE = 20;
+
+    private static double[] image(long seed) {
+        Random random = new Random(seed);
+        double[] data = new double[SIZE * SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt(256);
+        }
+        return data;
+    }
+
+    private static double[] window(double[] data, int x, int y, int w, int h) {
+        double[] out = new double[w * h];
+        for (int r = 0; r < h; r++) {
+            System.arraycopy(data, (y + r) * SIZE + x, out, r * w, w);
+        }
+        return out;
+    }
+
+    @Test
+    void identicalImagesHavePerfectScores() {
+        double[] a = image(1);
+        ImageQualityMetrics metrics = new ImageQualityMetrics(255);
+        metrics.add(a, a.clone(), SIZE, SIZE, SIZE, SIZE, Double.NaN);
+        Map<String, Object> report = metrics.toMap();
+        assertEquals(0.0, metrics.getMse());
+        assertNull(report.get("psnr"));
+        assertEquals(true, report.get("identical"));
+        assertEquals(1.0, metrics.getSsim(), 1e-12);
+        // 起点 0、4、8、12 的 8x8 窗口
+        assertEquals(16L, report.get("ssimWindows"));
+    }
+
+    @Test
+    void constantOffsetGivesKnownError() {
+        double[] a = image(2);
+        double[] b = a.clone();
+        for (int i = 0; i < b.length; i++) {
+            b[i] += 2;
+        }
+        ImageQualityMetrics metrics = new ImageQualityMetrics(255);
+        metrics.add(a, b, SIZE, SIZE, SIZE, SIZE, Double.NaN);
+        assertEquals(4.0, metrics.getMse(), 1e-12);
+        assertEquals(10 * Math.log10(255.0 * 255.0 / 4), metrics.getPsnr(), 1e-9);
+        assertEquals(2.0, metrics.getMaxAbsError());
+        assertTrue(metrics.getSsim() < 1 && metrics.getSsim() > 0.99);
+    }
+
+    @Test
+    void tiledAccumulationMatchesWholeImage() {
+        double[] a = image(3);
+        double[] b = image(4);
+        ImageQualityMetrics whole = new ImageQualityMetrics(255);
+        whole.add(a, b, SIZE, SIZE, SIZE, SIZE, Double.NaN);
+
+        // 8x8 瓦片，向右、向下多读 STRIDE 个像素，与 QualityReportService 相同
+        int tile = 8;
+        ImageQualityMetrics merged = new ImageQualityMetrics(255);
+        for (int ty = 0; ty < SIZE; ty += tile) {
+            for (int tx = 0; tx < SIZE; tx += tile) {
+                int ownW = Math.min(tile, SIZE - tx);
+                int ownH = Math.min(tile, SIZE - ty);
+                int w = Math.min(ownW + ImageQualityMetrics.STRIDE, SIZE - tx);
+                int h = Math.min(ownH + ImageQualityMetrics.STRIDE, SIZE - ty);
+                ImageQualityMetrics part = new ImageQualityMetrics(255);
+                part.add(window(a, tx, ty, w, h), window(b, tx, ty, w, h), w, h, ownW, ownH, Double.NaN);
+                merged.merge(part);
+            }
+        }
+        assertEquals(whole.getPixels(), merged.getPixels());
+        assertEquals(whole.getMse(), merged.getMse(), 1e-9);
+        assertEquals(whole.getMaxAbsError(), merged.getMaxAbsError());
+        assertEquals(whole.getSsim(), merged.getSsim(), 1e-12);
+        assertEquals(whole.toMap().get("ssimWindows"), merged.toMap().get("ssimWindows"));
+    }
+
+    @Test
+    void noDataPixelsAreExcluded() {
+        double[] a = image(5);
+        double[] b = a.clone();
+        a[0] = -1;
+        b[0] = 1000;
+        ImageQualityMetrics metrics = new ImageQualityMetrics(255);
+        metrics.add(a, b, SIZE, SIZE, SIZE, SIZE, -1);
+        assertEquals(SIZE * SIZE - 1, metrics.getPixels());
+        assertEquals(0.0, metrics.getMaxAbsError());
+        // 含 nodata 的窗口（左上角）不计入 SSIM
+        assertEquals(15L, metrics.toMap().get("ssimWindows"));
+        assertThrows(IllegalArgumentException.class, () -> new ImageQualityMetrics(0));
+    }
+}
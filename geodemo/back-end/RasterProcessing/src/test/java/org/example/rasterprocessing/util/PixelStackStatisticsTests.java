@@ -0,0 +1,84 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PixelStackStatisticsTests {
+
+    private static final int PIXELS = 6;
+    private static final double NODATA = -1;
+
+    /** 20 景，每景 6 个像素；像素 5 始终为 nodata，其余随机夹杂 NaN 和 nodata */
+    private static double[][] scenes() {
+        Random random = new Random(7);
+        double[][] scenes = new double[20][PIXELS];
+        for (double[] scene : scenes) {
+            for (int i = 0; i < PIXELS; i++) {
+                double r = random.nextDouble();
+                scene[i] = i == 5 || r < 0.1 ? NODATA : r < 0.15 ? Double.NaN : 1000 + random.nextGaussian() * 50;
+            }
+        }
+        return scenes;
+    }
+
+    private static double[] result(PixelStackStatistics stats, String statistic) {
+        double[] out = new double[PIXELS];
+        stats.write(statistic, out, -9999);
+        return out;
+    }
+
+    @Test
+    void matchesRunningStatisticsPerPixel() {
+        double[][] scenes = scenes();
+        PixelStackStatistics stats = new PixelStackStatistics(PIXELS);
+        for (double[] scene : scenes) {
+            stats.add(scene, NODATA);
+        }
+        for (int i = 0; i < 5; i++) {
+            RunningStatistics expected = new RunningStatistics();
+            for (double[] scene : scenes) {
+                if (scene[i] == scene[i] && scene[i] != NODATA) {
+                    expected.add(scene[i]);
+                }
+            }
+            assertEquals((double) expected.getCount(), result(stats, "count")[i]);
+            assertEquals(expected.getMean(), result(stats, "mean")[i], 1e-9);
+            assertEquals(expected.getMin(), result(stats, "min")[i]);
+            assertEquals(expected.getMax(), result(stats, "max")[i]);
+            assertEquals(expected.getStddev(), result(stats, "stddev")[i], 1e-9);
+        }
+        // 没有有效观测的像素
+        assertEquals(0.0, result(stats, "count")[5]);
+        assertEquals(-9999.0, result(stats, "mean")[5]);
+        assertEquals(1, stats.write("stddev", new double[PIXELS], -9999));
+    }
+
+    @Test
+    void mergedSegmentsEqualSequentialAccumulation() {
+        double[][] scenes = scenes();
+        PixelStackStatistics sequential = new PixelStackStatistics(PIXELS);
+        PixelStackStatistics[] segments = {new PixelStackStatistics(PIXELS), new PixelStackStatistics(PIXELS),
+                new PixelStackStatistics(PIXELS)};
+        for (int s = 0; s < scenes.length; s++) {
+            sequential.add(scenes[s], NODATA);
+            segments[s * segments.length / scenes.length].add(scenes[s], NODATA);
+        }
+        segments[0].merge(segments[1]);
+        segments[0].merge(segments[2]);
+        for (String statistic : PixelStackStatistics.STATISTICS) {
+            assertArrayEquals(result(sequential, statistic), result(segments[0], statistic), 1e-9);
+        }
+        assertEquals(sequential.observations(), segments[0].observations());
+    }
+
+    @Test
+    void parseNormalizesAndRejectsUnknown() {
+        assertEquals(PixelStackStatistics.STATISTICS, PixelStackStatistics.parse(null));
+        assertEquals(List.of("max", "count"), PixelStackStatistics.parse(List.of(" MAX", "count", "max")));
+        assertThrows(IllegalArgumentException.class, () -> PixelStackStatistics.parse(List.of("median")));
+    }
+}
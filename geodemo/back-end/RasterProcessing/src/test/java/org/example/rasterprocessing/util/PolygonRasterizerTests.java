@@ -0,0 +1,55 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolygonRasterizerTests {
+
+    @Test
+    void rectangleCoversPixelCentres() {
+        List<double[][]> rings = new ArrayList<>();
+        rings.add(new double[][]{{2, 1}, {6, 1}, {6, 4}, {2, 4}});
+        PolygonRasterizer.Mask mask = PolygonRasterizer.rasterize(rings, 10, 10);
+        assertEquals(12, mask.pixelCount);
+        assertEquals(1, mask.y0);
+        assertEquals(3, mask.height);
+        assertArrayEquals(new int[]{2, 6}, mask.spans[0]);
+        assertTrue(mask.intersects(5, 3, 1, 1));
+        assertFalse(mask.intersects(6, 0, 4, 10));
+    }
+
+    @Test
+    void holeIsExcludedAndResultClippedToRaster() {
+        List<double[][]> rings = new ArrayList<>();
+        rings.add(new double[][]{{-2, -2}, {8, -2}, {8, 8}, {-2, 8}, {-2, -2}});
+        rings.add(new double[][]{{2, 2}, {4, 2}, {4, 4}, {2, 4}});
+        PolygonRasterizer.Mask mask = PolygonRasterizer.rasterize(rings, 6, 6);
+        assertEquals(36 - 4, mask.pixelCount);
+        assertArrayEquals(new int[]{0, 2, 4, 6}, mask.spans[2]);
+    }
+
+    @Test
+    void statisticsMergeMatchesSinglePass() {
+        RunningStatistics all = new RunningStatistics(4, 0, 100);
+        RunningStatistics a = new RunningStatistics(4, 0, 100);
+        RunningStatistics b = new RunningStatistics(4, 0, 100);
+        double[] values = {1e6 + 1, 1e6 + 5, 7, 100, 30, 55, 1e6 + 3};
+        for (int i = 0; i < values.length; i++) {
+            all.add(values[i]);
+            (i % 2 == 0 ? a : b).add(values[i]);
+        }
+        a.merge(b);
+        assertEquals(all.getCount(), a.getCount());
+        assertEquals(all.getMean(), a.getMean(), 1e-6);
+        assertEquals(all.getStddev(), a.getStddev(), 1e-6);
+        assertEquals(all.getSum(), a.getSum(), 1e-6);
+        assertEquals(7.0, a.getMin());
+        assertEquals(1e6 + 5, a.getMax());
+        assertEquals("[1, 1, 1, 1]", Arrays.toString(a.getHistogram()));
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RasterBufferTests {
+
+    /** 5 x 7 的窗口，每块 3 行（120 字节），共 3 块，最后一块 1 行 */
+    private static RasterBuffer smallChunks() {
+        return new DirectRasterBuffer(5, 7, 3 * 5 * Double.BYTES);
+    }
+
+    @Test
+    void splitsIntoWholeRowChunks() {
+        try (RasterBuffer buffer = smallChunks()) {
+            assertEquals(35, buffer.size());
+            assertEquals(3, buffer.chunkCount());
+            assertEquals(6, buffer.chunkFirstRow(2));
+            assertEquals(1, buffer.chunkRows(2));
+            assertEquals(3 * 5 * Double.BYTES, buffer.chunk(0).capacity());
+            assertEquals(ByteOrder.nativeOrder(), buffer.chunk(1).order());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new DirectRasterBuffer(10, 1, 79));
+    }
+
+    @Test
+    void bulkAccessCrossesChunkBoundaries() {
+        double[] values = new double[35];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 1.5;
+        }
+        try (RasterBuffer buffer = smallChunks()) {
+            buffer.put(0, values, 0, 12);
+            buffer.put(12, values, 12, 23);
+            assertArrayEquals(values, buffer.toArray());
+
+            double[] middle = new double[20];
+            buffer.get(10, middle, 0, 20);
+            assertEquals(values[10], middle[0]);
+            assertEquals(values[29], middle[19]);
+
+            buffer.set(30L, -1);
+            assertEquals(-1.0, buffer.get(30L));
+            // 直接写入块视图（GDAL ReadRaster_Direct 的方式）后按全局下标可见
+            buffer.chunk(1).putDouble(Double.BYTES, 42);
+            assertEquals(42.0, buffer.get(16L));
+            assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(30, new double[6], 0, 6));
+        }
+    }
+
+    @Test
+    void writesLittleEndianRows() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RasterBuffer buffer = smallChunks()) {
+            for (long i = 0; i < buffer.size(); i++) {
+                buffer.set(i, i);
+            }
+            buffer.writeTo(out);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(35 * Double.BYTES, bytes.remaining());
+        for (int i = 0; i < 35; i++) {
+            assertEquals((double) i, bytes.getDouble());
+        }
+    }
+
+    @Test
+    void closeReleasesAndRejectsAccess() {
+        RasterBuffer buffer = RasterBuffer.allocate(4, 4);
+        buffer.close();
+        buffer.close();
+        assertThrows(IllegalStateException.class, () -> buffer.chunk(0));
+        assertThrows(RuntimeException.class, () -> buffer.get(0L));
+    }
+}
@@ -0,0 +1,208 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpoolQueueTests {
+
+    @TempDir
+    Path spool;
+
+    @Test
+    void concurrentNodesProcessEachJobOnce() throws Exception {
+        SpoolQueue submitter = new SpoolQueue(spool, "submitter");
+        int jobs = 60;
+        for (int i = 0; i < jobs; i++) {
+            submitter.submit("embed", Map.of("index", i));
+        }
+
+        Set<Object> processed = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int n = 0; n < 3; n++) {
+            SpoolQueue node = new SpoolQueue(spool, "node-" + n);
+            for (int t = 0; t < 2; t++) {
+                futures.add(pool.submit(() -> {
+                    SpoolQueue.Claim claim;
+                    while ((claim = node.claim()) != null) {
+                        if (!processed.add(claim.getPayload().get("index"))) {
+                            duplicates.incrementAndGet();
+                        }
+                        assertTrue(node.complete(claim, Map.of("node", node.getNodeId())));
+                    }
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(0, duplicates.get());
+        assertEquals(jobs, processed.size());
+        Map<String, Object> counts = submitter.counts();
+        assertEquals(jobs, ((Number) counts.get("done")).intValue());
+        assertEquals(0, ((Number) counts.get("pending")).intValue());
+        assertEquals(0, ((Number) counts.get("running")).intValue());
+    }
+
+    @Test
+    void expiredLeaseIsRequeuedAndStaleOwnerCannotComplete() throws Exception {
+        SpoolQueue a = new SpoolQueue(spool, "a");
+        SpoolQueue b = new SpoolQueue(spool, "b");
+        String jobId = a.submit("embed", Map.of("inputPath", "x.tif"));
+
+        SpoolQueue.Claim stale = a.claim();
+        assertEquals(1, stale.getAttempt());
+        expire(jobId);
+        assertEquals(1, b.requeueExpired(1000, 3));
+        assertEquals("pending", b.find(jobId).get("state"));
+
+        SpoolQueue.Claim fresh = b.claim();
+        assertEquals(2, fresh.getAttempt());
+        assertFalse(a.renew(stale));
+        assertFalse(a.complete(stale, Map.of()));
+        assertTrue(b.renew(fresh));
+        assertTrue(b.complete(fresh, Map.of("ok", true)));
+        assertEquals("done", a.find(jobId).get("state"));
+    }
+
+    @Test
+    void leaseExpiringTooOftenFailsTheJobAndReleaseKeepsAttempts() throws Exception {
+        SpoolQueue a = new SpoolQueue(spool, "a");
+        String jobId = a.submit("extract", Map.of("filePath", "y.tif"));
+
+        SpoolQueue.Claim claim = a.claim();
+        assertTrue(a.release(claim, 0));
+        assertEquals(0, ((Number) a.find(jobId).get("attempt")).intValue());
+
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            assertEquals(attempt, a.claim().getAttempt());
+            expire(jobId);
+            a.requeueExpired(1000, 2);
+        }
+        Map<String, Object> job = a.find(jobId);
+        assertEquals("failed", job.get("state"));
+        assertNotNull(job.get("error"));
+        assertNull(a.claim());
+    }
+
+    @Test
+    void requeuedJobDropsTheStaleOwnerEverywhere() throws Exception {
+        SpoolQueue a = new SpoolQueue(spool, "node.a");
+        SpoolQueue b = new SpoolQueue(spool, "b");
+        String jobId = a.submit("embed", Map.of("inputPath", "x.tif"));
+
+        SpoolQueue.Claim stale = a.claim();
+        // 认领后的文件名带节点名且每次不同
+        Path claimed = running(jobId);
+        assertTrue(claimed.getFileName().toString().startsWith(jobId + ".node_a-"), claimed.toString());
+        expire(jobId);
+        assertEquals(1, b.requeueExpired(1000, 3));
+        Map<String, Object> requeued = a.find(jobId);
+        assertEquals("pending", requeued.get("state"));
+        assertNull(requeued.get("owner"));
+        assertEquals(1, ((Number) requeued.get("attempt")).intValue());
+
+        // 过期的持有者不能提交、放回或失败，也不能在 running 中重新生成文件
+        assertFalse(a.owns(stale));
+        assertFalse(a.complete(stale, Map.of()));
+        assertFalse(a.fail(stale, "late", true, 3));
+        assertFalse(a.release(stale, 0));
+        assertCounts(a, 1, 0, 0, 0);
+
+        // 同一任务被重新认领后，旧租约依然无效
+        SpoolQueue.Claim fresh = a.claim();
+        assertEquals(2, fresh.getAttempt());
+        assertFalse(a.owns(stale));
+        assertFalse(a.renew(stale));
+        assertFalse(a.complete(stale, Map.of()));
+        assertTrue(a.complete(fresh, Map.of("ok", true)));
+        assertCounts(a, 0, 0, 1, 0);
+        assertEquals(Boolean.TRUE, ((Map<?, ?>) a.find(jobId).get("result")).get("ok"));
+    }
+
+    @Test
+    void releasedJobWaitsForItsDelayWithoutBlockingOthers() throws Exception {
+        SpoolQueue a = new SpoolQueue(spool, "a");
+        a.submit("extract", Map.of("filePath", "1.tif"));
+        a.submit("extract", Map.of("filePath", "2.tif"));
+
+        SpoolQueue.Claim claim = a.claim();
+        String claimedId = claim.getJobId();
+        assertTrue(a.release(claim, 60_000));
+        Map<String, Object> released = a.find(claimedId);
+        assertEquals("pending", released.get("state"));
+        assertNotNull(released.get("notBefore"));
+
+        SpoolQueue.Claim other = a.claim();
+        assertNotNull(other);
+        assertNotEquals(claimedId, other.getJobId());
+        assertTrue(a.complete(other, Map.of()));
+        assertNull(a.claim());
+
+        // 到期后可以再次认领，放回不计尝试次数
+        Files.setLastModifiedTime(spool.resolve("pending").resolve(claimedId + ".json"),
+                FileTime.fromMillis(System.currentTimeMillis() - 1));
+        SpoolQueue.Claim again = a.claim();
+        assertEquals(claimedId, again.getJobId());
+        assertEquals(1, again.getAttempt());
+    }
+
+    @Test
+    void jobStrandedMidTransitionIsRecovered() throws Exception {
+        SpoolQueue a = new SpoolQueue(spool, "a");
+        String jobId = a.submit("embed", Map.of("inputPath", "x.tif"));
+        a.claim();
+        // 模拟节点在把任务移到 tmp/ 后、移入目标目录前崩溃
+        Path stranded = spool.resolve("tmp").resolve(jobId + ".a-crashed.json");
+        Files.move(running(jobId), stranded);
+        Files.setLastModifiedTime(stranded, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        assertEquals("running", a.find(jobId).get("state"));
+        assertEquals(0, a.purge(0));
+
+        assertEquals(1, a.requeueExpired(1000, 3));
+        assertCounts(a, 1, 0, 0, 0);
+        assertEquals(2, a.claim().getAttempt());
+    }
+
+    private Path running(String jobId) throws Exception {
+        try (Stream<Path> files = Files.list(spool.resolve("running"))) {
+            List<Path> matches = files.filter(f -> f.getFileName().toString().startsWith(jobId + "."))
+                    .collect(Collectors.toList());
+            assertEquals(1, matches.size(), "running 中应恰有一个文件: " + matches);
+            return matches.get(0);
+        }
+    }
+
+    private static void assertCounts(SpoolQueue queue, int pending, int running, int done, int failed) throws Exception {
+        Map<String, Object> counts = queue.counts();
+        assertEquals(pending, ((Number) counts.get("pending")).intValue(), "pending");
+        assertEquals(running, ((Number) counts.get("running")).intValue(), "running");
+        assertEquals(done, ((Number) counts.get("done")).intValue(), "done");
+        assertEquals(failed, ((Number) counts.get("failed")).intValue(), "failed");
+    }
+
+    private void expire(String jobId) throws Exception {
+        Files.setLastModifiedTime(running(jobId), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StrTreeTests {
+
+    /** {minX, minY, maxX, maxY, id} */
+    private static List<double[]> randomBoxes(Random random, int count) {
+        List<double[]> boxes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double x = random.nextDouble() * 360 - 180;
+            double y = random.nextDouble() * 180 - 90;
+            boxes.add(new double[]{x, y, x + random.nextDouble() * 5, y + random.nextDouble() * 5, i});
+        }
+        return boxes;
+    }
+
+    private static Set<Double> ids(List<double[]> boxes) {
+        Set<Double> ids = new HashSet<>();
+        for (double[] box : boxes) {
+            ids.add(box[4]);
+        }
+        return ids;
+    }
+
+    @Test
+    void queryMatchesBruteForce() {
+        Random random = new Random(42);
+        List<double[]> boxes = randomBoxes(random, 5000);
+        // 小节点容量让树有多层
+        StrTree<double[]> tree = StrTree.build(boxes, b -> b, 4);
+        assertEquals(5000, tree.size());
+
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 360 - 180;
+            double y = random.nextDouble() * 180 - 90;
+            double size = random.nextDouble() * 20;
+            List<double[]> expected = new ArrayList<>();
+            for (double[] b : boxes) {
+                if (b[0] <= x + size && b[2] >= x && b[1] <= y + size && b[3] >= y) {
+                    expected.add(b);
+                }
+            }
+            List<double[]> result = tree.query(x, y, x + size, y + size);
+            assertEquals(expected.size(), result.size());
+            assertEquals(ids(expected), ids(result));
+        }
+    }
+
+    @Test
+    void touchingEdgesAndPointsIntersect() {
+        List<double[]> boxes = new ArrayList<>();
+        boxes.add(new double[]{0, 0, 10, 10, 0});
+        boxes.add(new double[]{20, 20, 20, 20, 1});
+        StrTree<double[]> tree = StrTree.build(boxes, b -> b);
+
+        assertEquals(ids(boxes.subList(0, 1)), ids(tree.query(10, 10, 15, 15)));
+        assertEquals(ids(boxes.subList(1, 2)), ids(tree.query(19, 19, 21, 21)));
+        assertTrue(tree.query(11, 11, 19.5, 19.5).isEmpty());
+        assertEquals(2, tree.query(-180, -90, 180, 90).size());
+    }
+
+    @Test
+    void emptyTreeReturnsNothing() {
+        StrTree<double[]> tree = StrTree.build(new ArrayList<>(), b -> b);
+        assertEquals(0, tree.size());
+        assertTrue(tree.query(-180, -90, 180, 90).isEmpty());
+        assertTrue(StrTree.empty().query(0, 0, 1, 1).isEmpty());
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TerrainKernelTests {
+
+    /** 3x3 输出、带光晕的 5x5 输入，高程为 f(行, 列) */
+    private static double[] plane(double perCol, double perRow) {
+        double[] in = new double[25];
+        for (int r = 0; r < 5; r++) {
+            for (int c = 0; c < 5; c++) {
+                in[r * 5 + c] = 100 + c * perCol + r * perRow;
+            }
+        }
+        return in;
+    }
+
+    private static double[] run(TerrainKernel kernel, double[] in, double spacing) {
+        double[] rows = new double[3];
+        Arrays.fill(rows, spacing);
+        double[] out = new double[9];
+        kernel.apply(in, 3, 3, rows, rows, out);
+        return out;
+    }
+
+    @Test
+    void slopeAndAspectOfTiltedPlanes() {
+        // 向东每像元升高 10 米，像元 10 米：坡度 45°，坡面朝西
+        double[] east = plane(10, 0);
+        assertEquals(45.0, run(TerrainKernel.of("slope", 1, false, 315, 45), east, 10)[4], 1e-9);
+        assertEquals(100.0, run(TerrainKernel.of("slope", 1, true, 315, 45), east, 10)[4], 1e-9);
+        assertEquals(270.0, run(TerrainKernel.of("aspect", 1, false, 315, 45), east, 10)[4], 1e-9);
+        // 行号向南增大，高程向北升高：坡面朝南
+        assertEquals(180.0, run(TerrainKernel.of("aspect", 1, false, 315, 45), plane(0, -5), 10)[4], 1e-9);
+        // zFactor 换算高程单位
+        assertEquals(Math.toDegrees(Math.atan(0.3048)), run(TerrainKernel.of("slope", 0.3048, false, 315, 45), east, 10)[4], 1e-9);
+    }
+
+    @Test
+    void flatAreasAndHillshade() {
+        double[] flat = plane(0, 0);
+        assertEquals(-9999.0, run(TerrainKernel.of("aspect", 1, false, 315, 45), flat, 30)[4]);
+        // 平地亮度为 1 + 254 * sin(高度角)
+        assertEquals(181.0, run(TerrainKernel.of("hillshade", 1, false, 315, 45), flat, 30)[4]);
+        // 朝向光源（西北，即向东南升高）的坡比背光坡亮
+        TerrainKernel shade = TerrainKernel.of("hillshade", 1, false, 315, 45);
+        double facingLight = run(shade, plane(10, 10), 10)[4];
+        double facingAway = run(shade, plane(-10, -10), 10)[4];
+        assertTrue(facingLight > 181 && facingAway < 181, facingLight + " / " + facingAway);
+    }
+
+    @Test
+    void noDataAndHaloOutsideRaster() {
+        double[] in = plane(10, 0);
+        in[12] = Double.NaN; // 中心像素
+        double[] out = run(TerrainKernel.of("slope", 1, false, 315, 45), in, 10);
+        assertEquals(-9999.0, out[4]);
+        // 以 nodata 为邻居的像素用中心值补齐后仍有结果
+        assertTrue(out[3] > 0 && out[3] < 45, String.valueOf(out[3]));
+
+        // 光晕全在栅格外：单个像素的坡度为 0
+        double[] single = new double[9];
+        Arrays.fill(single, Double.NaN);
+        single[4] = 50;
+        double[] one = new double[1];
+        TerrainKernel.of("hillshade", 1, false, 315, 45).apply(single, 1, 1, new double[]{10}, new double[]{10}, one);
+        assertEquals(181.0, one[0]);
+    }
+
+    @Test
+    void geographicSpacingAndValidation() {
+        double[] equator = TerrainKernel.metersPerDegree(0);
+        assertEquals(111319.5, equator[0], 1);
+        assertEquals(110574.3, equator[1], 1);
+        assertEquals(equator[0] / 2, TerrainKernel.metersPerDegree(60)[0], 200);
+        assertThrows(IllegalArgumentException.class, () -> TerrainKernel.of("curvature", 1, false, 315, 45));
+        assertThrows(IllegalArgumentException.class, () -> TerrainKernel.of("slope", 0, false, 315, 45));
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatermarkVerificationTests {
+
+    private static final int REPEAT = 3;
+
+    /** 与水印服务相同的位布局：长度字节加数据字节，每位重复 REPEAT 次 */
+    private static List<Integer> bits(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        List<Integer> bits = new ArrayList<>();
+        int[] values = new int[bytes.length + 1];
+        values[0] = bytes.length;
+        for (int i = 0; i < bytes.length; i++) {
+            values[i + 1] = bytes[i] & 0xFF;
+        }
+        for (int value : values) {
+            for (int j = 7; j >= 0; j--) {
+                for (int r = 0; r < REPEAT; r++) {
+                    bits.add((value >> j) & 1);
+                }
+            }
+        }
+        return bits;
+    }
+
+    private static double[] coefficients(List<Integer> bits, double strength) {
+        double[] coefficients = new double[bits.size()];
+        for (int i = 0; i < coefficients.length; i++) {
+            coefficients[i] = bits.get(i) == 1 ? strength : -strength;
+        }
+        return coefficients;
+    }
+
+    @Test
+    void cleanEmbeddingDecodesWithFullMargins() {
+        List<Integer> expected = bits("水印");
+        Map<String, Object> report = WatermarkVerification.evaluate(expected, coefficients(expected, 10), true, REPEAT);
+
+        assertEquals(true, report.get("passed"));
+        assertEquals(0, report.get("blockErrors"));
+        assertEquals(0.0, (double) report.get("bitErrorRate"));
+        assertEquals(56, report.get("payloadBits"));
+        assertEquals(REPEAT, report.get("minVoteMargin"));
+        assertEquals(10.0, (double) report.get("minCoefficientMargin"));
+        assertEquals("水印", report.get("decodedText"));
+    }
+
+    @Test
+    void votingAbsorbsMinorityErrorsButReportsThem() {
+        List<Integer> expected = bits("A");
+        double[] coefficients = coefficients(expected, 10);
+        // 第 0 位（长度最高位）错一票，第 9 位（数据次高位）错两票
+        coefficients[0] = -coefficients[0];
+        coefficients[27] = -coefficients[27];
+        coefficients[28] = -coefficients[28];
+        Map<String, Object> report = WatermarkVerification.evaluate(expected, coefficients, true, REPEAT);
+
+        assertEquals(3, report.get("blockErrors"));
+        assertEquals(3.0 / expected.size(), (double) report.get("bitErrorRate"), 1e-12);
+        assertEquals(1, report.get("payloadBitErrors"));
+        int[] margins = (int[]) report.get("voteMargins");
+        assertEquals(1, margins[0]);
+        assertEquals(-1, margins[9]);
+        assertEquals(-1, report.get("minVoteMargin"));
+        assertEquals(false, report.get("passed"));
+        assertEquals("\u0001", report.get("decodedText")); // 'A' = 0x41 的次高位被翻转
+    }
+
+    @Test
+    void missingBlocksCountAsErrorsAndZeroFollowsExtractionRule() {
+        List<Integer> expected = bits("B");
+        double[] truncated = new double[expected.size() - REPEAT];
+        System.arraycopy(coefficients(expected, 10), 0, truncated, 0, truncated.length);
+        Map<String, Object> report = WatermarkVerification.evaluate(expected, truncated, true, REPEAT);
+        assertEquals(REPEAT, report.get("missingBlocks"));
+        assertEquals(1, report.get("payloadBitErrors"));
+
+        List<Integer> ones = List.of(1, 1, 1);
+        double[] zeros = {0, 0, 0};
+        assertEquals(0, WatermarkVerification.evaluate(ones, zeros, true, REPEAT).get("blockErrors"));
+        assertEquals(3, WatermarkVerification.evaluate(ones, zeros, false, REPEAT).get("blockErrors"));
+    }
+
+    @Test
+    void quantizeMatchesGdalIntegerConversion() {
+        double[] bytes = {0, 255};
+        assertEquals(3.0, WatermarkVerification.quantize(2.5, bytes));
+        assertEquals(2.0, WatermarkVerification.quantize(2.49, bytes));
+        assertEquals(0.0, WatermarkVerification.quantize(-3.2, bytes));
+        assertEquals(255.0, WatermarkVerification.quantize(300.7, bytes));
+        assertEquals(0.0, WatermarkVerification.quantize(Double.NaN, bytes));
+        assertEquals(-3.0, WatermarkVerification.quantize(-2.5, new double[]{-32768, 32767}));
+        assertEquals(1.25, WatermarkVerification.quantize(1.25, null));
+    }
+}
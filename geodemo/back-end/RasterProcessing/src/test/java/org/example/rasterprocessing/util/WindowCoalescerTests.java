@@ -0,0 +1,131 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowCoalescerTests {
+
+    private static final int[] RASTER = {1000, 1000};
+    private static final int[] BLOCK = {256, 256};
+
+    /** 像素值为 y * 1000 + x，便于核对切片 */
+    private static double[] expected(int x, int y, int w, int h) {
+        double[] values = new double[w * h];
+        for (int r = 0; r < h; r++) {
+            for (int c = 0; c < w; c++) {
+                values[r * w + c] = (y + r) * 1000 + x + c;
+            }
+        }
+        return values;
+    }
+
+    @Test
+    void alignAndSlice() {
+        assertArrayEquals(new int[]{256, 0, 512, 256}, WindowCoalescer.align(new int[]{300, 10, 300, 20}, BLOCK, RASTER));
+        // 右下边缘裁剪到栅格范围
+        assertArrayEquals(new int[]{768, 768, 232, 232}, WindowCoalescer.align(new int[]{900, 900, 100, 100}, BLOCK, RASTER));
+        int[] box = {10, 20, 30, 40};
+        assertArrayEquals(expected(15, 25, 5, 6), WindowCoalescer.slice(expected(10, 20, 30, 40), box, new int[]{15, 25, 5, 6}));
+        assertTrue(WindowCoalescer.contains(box, new int[]{10, 20, 30, 40}));
+        assertFalse(WindowCoalescer.contains(box, new int[]{10, 20, 31, 40}));
+    }
+
+    @Test
+    void uncontendedRequestReadsExactWindow() {
+        WindowCoalescer coalescer = new WindowCoalescer(1 << 22);
+        List<int[]> reads = new ArrayList<>();
+        double[] values = coalescer.read("f#1", new int[]{5, 6, 7, 8}, BLOCK, RASTER, (x, y, w, h) -> {
+            reads.add(new int[]{x, y, w, h});
+            return expected(x, y, w, h);
+        });
+        assertArrayEquals(expected(5, 6, 7, 8), values);
+        assertEquals(1, reads.size());
+        assertArrayEquals(new int[]{5, 6, 7, 8}, reads.get(0));
+        assertEquals(56, coalescer.getPixelsRead());
+    }
+
+    @Test
+    void concurrentOverlappingWindowsShareReads() throws Exception {
+        WindowCoalescer coalescer = new WindowCoalescer(1 << 22);
+        CountDownLatch firstReadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        WindowCoalescer.Reader reader = (x, y, w, h) -> {
+            if (reads.incrementAndGet() == 1) {
+                firstReadStarted.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return expected(x, y, w, h);
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            Future<double[]> first = pool.submit(() -> coalescer.read("f#1", new int[]{0, 0, 100, 100}, BLOCK, RASTER, reader));
+            assertTrue(firstReadStarted.await(5, TimeUnit.SECONDS));
+            // 第一次读取进行中：被它覆盖的请求直接切片，其余请求排成一批，等它结束后合并读取
+            List<int[]> windows = new ArrayList<>();
+            List<Future<double[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                int[] window = i % 3 == 0 ? new int[]{10 + i, 10, 50, 50} : new int[]{200 + i * 20, 300 + i, 64, 64};
+                windows.add(window);
+                futures.add(pool.submit(() -> coalescer.read("f#1", window, BLOCK, RASTER, reader)));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            assertArrayEquals(expected(0, 0, 100, 100), first.get(5, TimeUnit.SECONDS));
+            for (int i = 0; i < windows.size(); i++) {
+                int[] w = windows.get(i);
+                assertArrayEquals(expected(w[0], w[1], w[2], w[3]), futures.get(i).get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(13, coalescer.getRequests());
+        // 第一次读取 + 合并后的一批
+        assertEquals(2, reads.get());
+        assertEquals(2, coalescer.getReads());
+    }
+
+    @Test
+    void failuresReachEveryWaiter() throws Exception {
+        WindowCoalescer coalescer = new WindowCoalescer(1 << 22);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WindowCoalescer.Reader reader = (x, y, w, h) -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("读取失败");
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<double[]> leader = pool.submit(() -> coalescer.read("f#1", new int[]{0, 0, 10, 10}, BLOCK, RASTER, reader));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<double[]> follower = pool.submit(() -> coalescer.read("f#1", new int[]{2, 2, 3, 3}, BLOCK, RASTER, reader));
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<double[]> future : List.of(leader, follower)) {
+                Exception e = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertTrue(e.getCause() instanceof IllegalStateException, String.valueOf(e.getCause()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
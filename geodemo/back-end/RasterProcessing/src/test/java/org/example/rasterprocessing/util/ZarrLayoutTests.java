@@ -0,0 +1,101 @@
+package org.example.rasterprocessing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZarrLayoutTests {
+
+    @Test
+    void v2MetadataAndChunkKeys() {
+        ZarrLayout layout = ZarrLayout.of(2, "UInt16", 3, 1000, 700, 256, 512, "zlib", 1, 0.0);
+        assertEquals(4, layout.rowChunks());
+        assertEquals(2, layout.colChunks());
+        assertEquals("2/3/1", layout.chunkKey(2, 3, 1));
+
+        Map<String, Object> files = layout.arrayMetadata(Map.of("crs", "EPSG:4326"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> array = (Map<String, Object>) files.get(".zarray");
+        assertEquals(Arrays.asList(3L, 1000L, 700L), array.get("shape"));
+        assertEquals(Arrays.asList(1, 256, 512), array.get("chunks"));
+        assertEquals("<u2", array.get("dtype"));
+        assertEquals(Map.of("id", "zlib", "level", 1), array.get("compressor"));
+        assertEquals(0L, array.get("fill_value"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> attrs = (Map<String, Object>) files.get(".zattrs");
+        assertEquals(List.of("band", "y", "x"), attrs.get("_ARRAY_DIMENSIONS"));
+        assertEquals("EPSG:4326", attrs.get("crs"));
+        assertTrue(layout.groupMetadata().containsKey(".zgroup"));
+    }
+
+    @Test
+    void v3MetadataUsesDefaultKeyEncodingAndRejectsZlib() {
+        ZarrLayout layout = ZarrLayout.of(3, "Float32", 1, 10, 10, 4, 4, "gzip", 5, null);
+        assertEquals("c/0/2/1", layout.chunkKey(0, 2, 1));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> array = (Map<String, Object>) layout.arrayMetadata(Map.of()).get("zarr.json");
+        assertEquals("float32", array.get("data_type"));
+        assertEquals("NaN", array.get("fill_value"));
+        assertEquals(2, ((List<?>) array.get("codecs")).size());
+        assertThrows(IllegalArgumentException.class, () -> ZarrLayout.of(3, "Byte", 1, 10, 10, 4, 4, "zlib", 1, null));
+        assertThrows(IllegalArgumentException.class, () -> ZarrLayout.of(2, "CFloat32", 1, 10, 10, 4, 4, "zlib", 1, null));
+    }
+
+    @Test
+    void edgeChunksArePaddedWithFillValue() {
+        ZarrLayout layout = ZarrLayout.of(2, "Int16", 1, 3, 3, 2, 2, "none", 0, -1.0);
+        // 右下角的边缘块只有一个有效像素
+        byte[] raw = layout.encode(new double[]{300}, 1, 1);
+        ByteBuffer buffer = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(8, raw.length);
+        assertEquals(300, buffer.getShort(0));
+        assertEquals(-1, buffer.getShort(2));
+        assertEquals(-1, buffer.getShort(6));
+        assertSame(raw, layout.compress(raw));
+    }
+
+    @Test
+    void fillDetection() {
+        ZarrLayout ints = ZarrLayout.of(2, "Byte", 1, 4, 4, 2, 2, "zlib", 1, 255.0);
+        assertTrue(ints.isFill(new double[]{255, 255, Double.NaN, 255}, 4));
+        assertFalse(ints.isFill(new double[]{255, 0, 255, 255}, 4));
+        ZarrLayout floats = ZarrLayout.of(2, "Float64", 1, 4, 4, 2, 2, "zlib", 1, null);
+        assertTrue(floats.isFill(new double[]{Double.NaN, Double.NaN}, 2));
+        assertFalse(floats.isFill(new double[]{Double.NaN, 0}, 2));
+    }
+
+    @Test
+    void compressedChunksRoundTrip() throws Exception {
+        double[] values = new double[64 * 64];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 97;
+        }
+        ZarrLayout zlib = ZarrLayout.of(2, "Float32", 1, 64, 64, 64, 64, "zlib", 6, null);
+        byte[] raw = zlib.encode(values, 64, 64);
+        Inflater inflater = new Inflater();
+        inflater.setInput(zlib.compress(raw));
+        byte[] inflated = new byte[raw.length];
+        assertEquals(raw.length, inflater.inflate(inflated));
+        inflater.end();
+        assertArrayEquals(raw, inflated);
+
+        ZarrLayout gzip = ZarrLayout.of(3, "Float32", 1, 64, 64, 64, 64, "gzip", 6, null);
+        byte[] compressed = gzip.compress(raw);
+        assertTrue(compressed.length < raw.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            in.transferTo(out);
+        }
+        assertArrayEquals(raw, out.toByteArray());
+    }
+}